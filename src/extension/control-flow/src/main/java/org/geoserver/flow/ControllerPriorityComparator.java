@@ -16,7 +16,7 @@ import java.util.Comparator;
 public class ControllerPriorityComparator implements Comparator<FlowController> {
 
     public int compare(FlowController o1, FlowController o2) {
-        return o1.getPriority() - o2.getPriority();
+        return Integer.compare(o1.getPriority(), o2.getPriority());
     }
 
 }
@@ -9,7 +9,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.StringTokenizer;
 import java.util.logging.Logger;
@@ -21,12 +23,14 @@ import org.geoserver.flow.ControlFlowConfigurator;
 import org.geoserver.flow.FlowController;
 import org.geoserver.flow.controller.BasicOWSController;
 import org.geoserver.flow.controller.CookieKeyGenerator;
+import org.geoserver.flow.controller.CostBasedFlowController;
 import org.geoserver.flow.controller.GlobalFlowController;
 import org.geoserver.flow.controller.IpFlowController;
 import org.geoserver.flow.controller.IpKeyGenerator;
 import org.geoserver.flow.controller.KeyGenerator;
 import org.geoserver.flow.controller.OWSRequestMatcher;
 import org.geoserver.flow.controller.RateFlowController;
+import org.geoserver.flow.controller.RequestCostEstimator;
 import org.geoserver.flow.controller.SingleIpFlowController;
 import org.geoserver.flow.controller.UserConcurrentFlowController;
 import org.geoserver.platform.GeoServerExtensions;
@@ -45,7 +49,7 @@ import org.geotools.util.logging.Logging;
  * @author Juan Marin, OpenGeo
  */
 public class DefaultControlFlowConfigurator implements ControlFlowConfigurator, GeoServerPluginConfigurator {
-    static final Pattern RATE_PATTERN = Pattern.compile("(\\d+)/([smhd])(;(\\d+)s)?");
+    static final Pattern RATE_PATTERN = Pattern.compile("(\\d+)/([smhd])(;(\\d+)s)?(;burst=(\\d+))?");
 
     static final Logger LOGGER = Logging.getLogger(DefaultControlFlowConfigurator.class);
     static final String PROPERTYFILENAME="controlflow.properties";
@@ -60,7 +64,7 @@ public class DefaultControlFlowConfigurator implements ControlFlowConfigurator,
         public FlowController build(String[] keys, String value) {
             Matcher matcher = RATE_PATTERN.matcher(value);
             if (!matcher.matches()) {
-                LOGGER.severe("Rate limiting rule values should be expressed as <rate</<unit>[;<delay>s], "
+                LOGGER.severe("Rate limiting rule values should be expressed as <rate</<unit>[;<delay>s][;burst=<requests>], "
                         + "where unit can be s, m, h or d. This one is invalid: "
                         + value);
                 return null;
@@ -72,13 +76,20 @@ public class DefaultControlFlowConfigurator implements ControlFlowConfigurator,
             if (userDelay != null) {
                 delay = Integer.parseInt(userDelay) * 1000;
             }
+            // by default allow as many requests in a row as the rate
+            int burst = rate;
+            String userBurst = matcher.group(6);
+            if (userBurst != null) {
+                burst = Integer.parseInt(userBurst);
+            }
             
             String service = keys.length >= 3 ? keys[2] : null;
             String request = keys.length >= 4 ? keys[3] : null;
             String format = keys.length >= 5 ? keys[4] : null;
             OWSRequestMatcher requestMatcher = new OWSRequestMatcher(service, request, format);
             KeyGenerator keyGenerator = buildKeyGenerator(keys, value);
-            return new RateFlowController(requestMatcher, rate, interval, delay, keyGenerator);
+            return new RateFlowController(requestMatcher, rate, interval, delay, burst,
+                    keyGenerator);
         }
 
         protected abstract KeyGenerator buildKeyGenerator(String[] keys, String value);
@@ -87,6 +98,12 @@ public class DefaultControlFlowConfigurator implements ControlFlowConfigurator,
 
     long timeout = -1;
 
+    /**
+     * Shared by the cost based controllers built on each reload, so that the cost history
+     * survives configuration changes
+     */
+    final RequestCostEstimator estimator = new RequestCostEstimator();
+
     /** Default watches controlflow.properties */
     public DefaultControlFlowConfigurator() {
         GeoServerResourceLoader loader = GeoServerExtensions.bean(GeoServerResourceLoader.class);
@@ -108,6 +125,8 @@ public class DefaultControlFlowConfigurator implements ControlFlowConfigurator,
 
         Properties p = configFile.getProperties();
         List<FlowController> newControllers = new ArrayList<FlowController>();
+        int costBudget = 0;
+        Map<OWSRequestMatcher, Integer> priorities = new LinkedHashMap<>();
         for (Object okey : p.keySet()) {
             String key = ((String) okey).trim();
             String value = (String) p.get(okey);
@@ -141,6 +160,19 @@ public class DefaultControlFlowConfigurator implements ControlFlowConfigurator,
                 timeout = queueSize * 1000;
                 continue;
             }
+            if ("cost".equals(keys[0])) {
+                if (keys.length == 2 && "budget".equals(keys[1])) {
+                    costBudget = queueSize;
+                } else if (keys.length >= 3 && keys.length <= 5 && "priority".equals(keys[1])) {
+                    String service = keys[2];
+                    String request = keys.length >= 4 ? keys[3] : null;
+                    String format = keys.length >= 5 ? keys[4] : null;
+                    priorities.put(new OWSRequestMatcher(service, request, format), queueSize);
+                } else {
+                    LOGGER.severe("Could not parse rule '" + okey + "=" + value);
+                }
+                continue;
+            }
             if ("ows.global".equalsIgnoreCase(key)) {
                 controller = new GlobalFlowController(queueSize);
             } else if ("ows".equals(keys[0])) {
@@ -191,6 +223,16 @@ public class DefaultControlFlowConfigurator implements ControlFlowConfigurator,
             }
         }
 
+        if (costBudget > 0) {
+            CostBasedFlowController controller = new CostBasedFlowController(costBudget,
+                    priorities, estimator);
+            controller.registerStatistics();
+            newControllers.add(controller);
+        } else if (!priorities.isEmpty()) {
+            LOGGER.severe("Priority classes are configured, but there is no cost.budget rule "
+                    + "enabling the cost based scheduling, they will be ignored");
+        }
+
         return newControllers;
     }
 
@@ -0,0 +1,415 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.geoserver.flow.ControlFlowCallback;
+import org.geoserver.flow.FlowController;
+import org.geoserver.ows.Request;
+import org.geotools.util.logging.Logging;
+
+/**
+ * A flow controller admitting requests against a shared budget, where each request takes a share
+ * proportional to its estimated cost, instead of a fixed slot like the queue based controllers.
+ * A small tile weighs less than a large map, and a layer that historically took seconds to render
+ * weighs more than one rendering in a few milliseconds.
+ * <p>
+ * The budget is expressed in units of average request cost, so a budget of 16 allows running 16
+ * average requests in parallel. A request whose cost exceeds the whole budget is run alone.
+ * <p>
+ * Waiting requests are admitted in order of priority class (higher first), and then in order of
+ * arrival. A waiting request is never overtaken by cheaper ones in the same or lower classes, so
+ * that expensive requests cannot be starved.
+ */
+public class CostBasedFlowController implements FlowController, CostBasedFlowControllerMXBean {
+
+    static final Logger LOGGER = Logging.getLogger(ControlFlowCallback.class);
+
+    /**
+     * The name the statistics are published under in JMX
+     */
+    static final String OBJECT_NAME = "org.geoserver:type=ControlFlow,name=CostBasedFlowController";
+
+    /**
+     * Minimum weight of a request, bounds the number of concurrent requests to ten times the
+     * budget, no matter how cheap they are
+     */
+    static final double MIN_WEIGHT = 0.1;
+
+    /**
+     * Assigns a priority class to the requests matching a service, request and output format
+     */
+    static final class PriorityRule {
+        final OWSRequestMatcher matcher;
+
+        final int priority;
+
+        PriorityRule(OWSRequestMatcher matcher, int priority) {
+            this.matcher = matcher;
+            this.priority = priority;
+        }
+
+        int getSpecificity() {
+            return (matcher.getService() != null ? 1 : 0) + (matcher.getMethod() != null ? 1 : 0)
+                    + (matcher.getOutputFormat() != null ? 1 : 0);
+        }
+    }
+
+    /**
+     * A request waiting in queue, or running
+     */
+    static final class Ticket {
+        final double weight;
+
+        final int priority;
+
+        final long sequence;
+
+        final long enqueued = System.nanoTime();
+
+        final Condition admission;
+
+        boolean admitted;
+
+        long admissionTime;
+
+        Ticket(double weight, int priority, long sequence, Condition admission) {
+            this.weight = weight;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.admission = admission;
+        }
+    }
+
+    static final Comparator<Ticket> TICKET_ORDER = (t1, t2) -> {
+        if (t1.priority != t2.priority) {
+            return t1.priority > t2.priority ? -1 : 1;
+        }
+        return Long.compare(t1.sequence, t2.sequence);
+    };
+
+    final int budget;
+
+    final List<PriorityRule> rules;
+
+    final RequestCostEstimator estimator;
+
+    final ReentrantLock lock = new ReentrantLock();
+
+    final PriorityQueue<Ticket> queue = new PriorityQueue<>(TICKET_ORDER);
+
+    final Map<Request, Ticket> running = new ConcurrentHashMap<>();
+
+    // the following are guarded by the lock
+
+    long sequence;
+
+    double usedBudget;
+
+    int runningCount;
+
+    long admittedRequests;
+
+    long timedOutRequests;
+
+    long totalWaitTime;
+
+    long maxWaitTime;
+
+    /**
+     * Builds the controller
+     *
+     * @param budget The budget, in units of average request cost
+     * @param priorities The priority classes, requests not matching any default to zero. When
+     *        multiple matchers apply, the most specific wins
+     */
+    public CostBasedFlowController(int budget, Map<OWSRequestMatcher, Integer> priorities) {
+        this(budget, priorities, new RequestCostEstimator());
+    }
+
+    /**
+     * Builds the controller using the given estimator, allows to keep the cost history across
+     * configuration reloads
+     *
+     * @param budget The budget, in units of average request cost
+     * @param priorities The priority classes, see
+     *        {@link #CostBasedFlowController(int, Map)}
+     * @param estimator The request cost estimator
+     */
+    public CostBasedFlowController(int budget, Map<OWSRequestMatcher, Integer> priorities,
+            RequestCostEstimator estimator) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("The budget must be positive");
+        }
+        this.budget = budget;
+        this.estimator = estimator;
+        List<PriorityRule> rules = new ArrayList<>();
+        for (Map.Entry<OWSRequestMatcher, Integer> entry : priorities.entrySet()) {
+            rules.add(new PriorityRule(entry.getKey(), entry.getValue()));
+        }
+        Collections.sort(rules, (r1, r2) -> r2.getSpecificity() - r1.getSpecificity());
+        this.rules = rules;
+    }
+
+    @Override
+    public int getPriority() {
+        // go last, requests should wait in the more specific queues and per user limits
+        // before taking a share of the global budget
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean requestIncoming(Request request, long timeout) {
+        double weight = Math.min(budget, Math.max(MIN_WEIGHT, estimator.getWeight(request)));
+        int priority = getPriorityClass(request);
+
+        lock.lock();
+        try {
+            Ticket ticket = new Ticket(weight, priority, sequence++, lock.newCondition());
+            queue.add(ticket);
+            dispatch();
+            try {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+                while (!ticket.admitted) {
+                    if (timeout <= 0) {
+                        ticket.admission.await();
+                    } else if (remaining <= 0) {
+                        queue.remove(ticket);
+                        timedOutRequests++;
+                        // the head might have changed, and fit in the budget now
+                        dispatch();
+                        return false;
+                    } else {
+                        remaining = ticket.admission.awaitNanos(remaining);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.log(Level.WARNING,
+                        "Unexpected interruption while waiting for the request to be scheduled");
+                if (!ticket.admitted) {
+                    queue.remove(ticket);
+                    dispatch();
+                    return false;
+                }
+                // admitted before the interruption was noticed, the budget share has been
+                // taken already and will be released by requestComplete, let the request run
+                // with the interrupted flag restored
+            }
+            running.put(request, ticket);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine(this + " admitted request with weight " + weight + " and priority "
+                        + priority + ", used budget " + usedBudget + ", queue size "
+                        + queue.size());
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void requestComplete(Request request) {
+        Ticket ticket = running.remove(request);
+        if (ticket == null) {
+            // never admitted, e.g., timed out
+            return;
+        }
+        try {
+            estimator.record(request,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ticket.admissionTime));
+        } finally {
+            // the budget has to be released no matter what, or the queue would stall
+            lock.lock();
+            try {
+                runningCount--;
+                // avoid accumulating rounding errors
+                usedBudget = runningCount == 0 ? 0 : usedBudget - ticket.weight;
+                dispatch();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Admits as many requests as possible from the head of the queue. Must be called with the
+     * lock held
+     */
+    private void dispatch() {
+        Ticket head;
+        while ((head = queue.peek()) != null
+                && (runningCount == 0 || usedBudget + head.weight <= budget)) {
+            queue.poll();
+            long now = System.nanoTime();
+            head.admitted = true;
+            head.admissionTime = now;
+            usedBudget += head.weight;
+            runningCount++;
+            admittedRequests++;
+            long wait = TimeUnit.NANOSECONDS.toMillis(now - head.enqueued);
+            totalWaitTime += wait;
+            maxWaitTime = Math.max(maxWaitTime, wait);
+            head.admission.signal();
+        }
+    }
+
+    /**
+     * Returns the priority class of the request, higher values are served first
+     */
+    public int getPriorityClass(Request request) {
+        for (PriorityRule rule : rules) {
+            if (rule.matcher.apply(request)) {
+                return rule.priority;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Publishes the statistics of this controller in JMX, replacing the ones of a previous
+     * controller, if any
+     */
+    public void registerStatistics() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to register the control flow statistics in JMX", e);
+        }
+    }
+
+    public RequestCostEstimator getEstimator() {
+        return estimator;
+    }
+
+    @Override
+    public int getBudget() {
+        return budget;
+    }
+
+    @Override
+    public double getUsedBudget() {
+        lock.lock();
+        try {
+            return usedBudget;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getRunningRequests() {
+        lock.lock();
+        try {
+            return runningCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getQueuedRequests() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Map<Integer, Integer> getQueuedRequestsByPriority() {
+        Map<Integer, Integer> result = new TreeMap<>();
+        lock.lock();
+        try {
+            for (Ticket ticket : queue) {
+                result.merge(ticket.priority, 1, Integer::sum);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    @Override
+    public long getAdmittedRequests() {
+        lock.lock();
+        try {
+            return admittedRequests;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getTimedOutRequests() {
+        lock.lock();
+        try {
+            return timedOutRequests;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public double getAverageWaitTime() {
+        lock.lock();
+        try {
+            return admittedRequests == 0 ? 0 : (double) totalWaitTime / admittedRequests;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getMaxWaitTime() {
+        lock.lock();
+        try {
+            return maxWaitTime;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void resetStatistics() {
+        lock.lock();
+        try {
+            admittedRequests = 0;
+            timedOutRequests = 0;
+            totalWaitTime = 0;
+            maxWaitTime = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CostBasedFlowController(" + budget + ")";
+    }
+}
@@ -0,0 +1,64 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import java.util.Map;
+
+/**
+ * Management interface of the {@link CostBasedFlowController}, exposing the queue and budget
+ * usage metrics
+ */
+public interface CostBasedFlowControllerMXBean {
+
+    /**
+     * The total budget, in units of average request cost
+     */
+    int getBudget();
+
+    /**
+     * The budget currently used by the running requests
+     */
+    double getUsedBudget();
+
+    /**
+     * Number of requests currently running
+     */
+    int getRunningRequests();
+
+    /**
+     * Number of requests waiting to be executed
+     */
+    int getQueuedRequests();
+
+    /**
+     * Number of requests waiting to be executed, by priority class
+     */
+    Map<Integer, Integer> getQueuedRequestsByPriority();
+
+    /**
+     * Total number of requests admitted for execution
+     */
+    long getAdmittedRequests();
+
+    /**
+     * Total number of requests that timed out while waiting in the queue
+     */
+    long getTimedOutRequests();
+
+    /**
+     * The average time spent in queue by the admitted requests, in milliseconds
+     */
+    double getAverageWaitTime();
+
+    /**
+     * The longest time spent in queue by an admitted request, in milliseconds
+     */
+    long getMaxWaitTime();
+
+    /**
+     * Resets the counters and the wait times
+     */
+    void resetStatistics();
+}
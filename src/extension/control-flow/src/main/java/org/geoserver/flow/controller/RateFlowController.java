@@ -4,9 +4,12 @@
  */
 package org.geoserver.flow.controller;
 
+import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -16,31 +19,38 @@ import org.geoserver.flow.ControlFlowCallback;
 import org.geoserver.flow.FlowController;
 import org.geoserver.ows.HttpErrorCodeException;
 import org.geoserver.ows.Request;
-import org.geotools.util.CanonicalSet;
 import org.geotools.util.logging.Logging;
 
 import com.google.common.base.Predicate;
 
 /**
  * Limits the rate of requests, and slows them down after the number of requests per unit of time is
- * filled, or throws a HTTP 429 if no delay if configured
+ * filled, or throws a HTTP 429 if no delay if configured.
+ * <p>
+ * The limit is implemented as a token bucket refilling continuously at {@code maxRequests} per
+ * {@code timeInterval}, and holding up to {@code burst} requests, so there are no time slot edges
+ * allowing double bursts. Idle users are expired a few at a time while serving requests.
  * 
  * @author Andrea Aime - GeoSolutions
  */
 public class RateFlowController implements FlowController {
 
     /**
-     * The next epoc at which the counter will reset
+     * The epoch at which the user bucket will be full again
      */
     public static final String X_RATE_LIMIT_RESET = "X-Rate-Limit-Reset";
 
     /**
-     * How many request remain in this time slot before the rate limiting occurs
+     * How many more requests the user can issue right away before the rate limiting occurs,
+     * that is, the burst capacity left in the bucket. It grows back by one every
+     * {@code timeInterval / maxRequests}
      */
     public static final String X_RATE_LIMIT_REMAINING = "X-Rate-Limit-Remaining";
 
     /**
-     * How many requests per time slot before the rate limiting kicks in
+     * How many requests the user can issue per {@code timeInterval} in the long run, that is, the
+     * rate at which the bucket refills. Bursts are capped separately by {@code burst}, which
+     * defaults to the same value
      */
     public static final String X_RATE_LIMIT_LIMIT = "X-Rate-Limit-Limit";
 
@@ -52,40 +62,29 @@ public class RateFlowController implements FlowController {
     static final Logger LOGGER = Logging.getLogger(ControlFlowCallback.class);
 
     /**
-     * The minimum number of counters we have need to have around before a cleanup is initiated
+     * How many buckets are checked for expiry at each request, the incremental sweep replaces
+     * a full scan of the bucket map
      */
-    static int COUNTERS_CLEANUP_THRESHOLD = Integer.parseInt(System.getProperty(
-            "org.geoserver.flow.countersCleanupThreshold", "200"));
+    static int EXPIRY_CHECKS_PER_REQUEST = Integer.parseInt(System.getProperty(
+            "org.geoserver.flow.expiryChecksPerRequest", "4"));
 
     /**
-     * The cleanup interval before a cleanup is initiated
+     * Marks a bucket that has been removed from the map, and should not be used anymore
      */
-    static int COUNTERS_CLEANUP_INTERVAL = Integer.parseInt(System.getProperty(
-            "org.geoserver.flow.countersCleanupInterval", "10000"));
+    static final long EXPIRED = Long.MIN_VALUE;
 
-    final class Counter {
-        volatile long timePeriodId;
-
-        AtomicInteger requests = new AtomicInteger(0);
-
-        public int addRequest(long currPeriodId) {
-            if (currPeriodId != timePeriodId) {
-                synchronized (this) {
-                    if (currPeriodId != timePeriodId) {
-                        timePeriodId = currPeriodId;
-                        requests.set(0);
-                    }
-                }
-            }
-
-            // increment and return if we have gone above the limit
-            return requests.incrementAndGet();
-        }
+    /**
+     * The state of a user, according to the generic cell rate algorithm (GCRA), a token bucket
+     * equivalent that only needs to track one number: the theoretical arrival time (TAT) of the
+     * next request, in nanoseconds. Requests arriving before {@code TAT - burstTolerance} are
+     * in excess. All updates are done with compare and set, there is no locking.
+     */
+    static final class Bucket extends AtomicLong {
+        private static final long serialVersionUID = 2707420935003592924L;
 
-        public synchronized long getTimePeriodId() {
-            return timePeriodId;
+        Bucket(long tat) {
+            super(tat);
         }
-
     }
 
     /**
@@ -99,14 +98,9 @@ public class RateFlowController implements FlowController {
     KeyGenerator keyGenerator;
 
     /**
-     * Contains all active counters
-     */
-    Map<String, Counter> counters = new ConcurrentHashMap<>();
-
-    /**
-     * Used to make user keys unique before using them as synchronization locks
+     * Contains all active buckets
      */
-    CanonicalSet<String> canonicalizer = CanonicalSet.newInstance(String.class);
+    Map<String, Bucket> buckets = new ConcurrentHashMap<>();
 
     /**
      * Checks if we should apply this request rate limit to the request
@@ -119,25 +113,64 @@ public class RateFlowController implements FlowController {
 
     long delay;
 
+    int burst;
+
     String action;
 
     /**
-     * Last time we've performed a queue cleanup
+     * Time between two requests at the sustained rate, in nanoseconds
+     */
+    final long emissionInterval;
+
+    /**
+     * How far ahead of the sustained rate a user can get, in nanoseconds
+     */
+    final long burstTolerance;
+
+    /**
+     * Reference for the monotonic clock, so that times are always positive
+     */
+    final long origin = System.nanoTime();
+
+    /**
+     * Iterator used to incrementally look for idle buckets
      */
-    volatile long lastCleanup = System.currentTimeMillis();
+    Iterator<Map.Entry<String, Bucket>> sweeper;
+
+    final AtomicBoolean sweeping = new AtomicBoolean();
 
     /**
-     * Builds a UserFlowController that will trigger stale queue expiration once 100 queues have
-     * been accumulated and
+     * Builds a rate controller allowing bursts as large as the number of requests per time
+     * interval
      */
     public RateFlowController(Predicate<Request> matcher,
             int maxRequests, long timeInterval, long delay, KeyGenerator keyGenerator) {
+        this(matcher, maxRequests, timeInterval, delay, maxRequests, keyGenerator);
+    }
+
+    /**
+     * Builds a rate controller allowing {@code maxRequests} per {@code timeInterval} in the
+     * long run, and up to {@code burst} requests in a row
+     */
+    public RateFlowController(Predicate<Request> matcher, int maxRequests, long timeInterval,
+            long delay, int burst, KeyGenerator keyGenerator) {
+        if (maxRequests <= 0) {
+            throw new IllegalArgumentException("The number of requests must be positive");
+        }
         this.matcher = matcher;
         this.maxRequests = maxRequests;
         this.timeInterval = timeInterval;
         this.delay = delay;
+        this.burst = burst > 0 ? burst : maxRequests;
         this.keyGenerator = keyGenerator;
 
+        // cap the emission interval so that the arithmetic cannot overflow even with
+        // "infinite" intervals, the cap is anyways in the order of decades
+        long maxEmissionInterval = Long.MAX_VALUE / (4L * (this.burst + 1));
+        double interval = (double) timeInterval * 1000000 / maxRequests;
+        this.emissionInterval = Math.max(1, (long) Math.min(interval, maxEmissionInterval));
+        this.burstTolerance = emissionInterval * (this.burst - 1);
+
         if (delay > 0) {
             this.action = "Delay excess requests " + delay + "ms";
         } else {
@@ -155,39 +188,49 @@ public class RateFlowController implements FlowController {
             return true;
         }
 
-        boolean retval = true;
-        long now = System.currentTimeMillis();
-        long currPeriodId = now / timeInterval;
+        long now = System.nanoTime() - origin;
         String userKey = keyGenerator.getUserKey(request);
 
-        // grab/generate the counter
-        Counter counter = counters.get(userKey);
-        if (counter == null) {
-            userKey = canonicalizer.unique(userKey);
-            synchronized (userKey) {
-                counter = counters.get(userKey);
-                if (counter == null) {
-                    counter = new Counter();
-                    counters.put(userKey, counter);
-                }
+        // update the bucket, only conforming requests consume capacity
+        long limit = burstTolerance + emissionInterval;
+        long tat;
+        long newTat;
+        boolean conforming;
+        while (true) {
+            Bucket bucket = buckets.get(userKey);
+            if (bucket == null) {
+                bucket = buckets.computeIfAbsent(userKey, k -> new Bucket(0));
+            }
+            tat = bucket.get();
+            if (tat == EXPIRED) {
+                // removed by the sweeper in the meantime, get a fresh one
+                buckets.remove(userKey, bucket);
+                continue;
+            }
+            newTat = Math.max(tat, now) + emissionInterval;
+            conforming = newTat - now <= limit;
+            if (!conforming || bucket.compareAndSet(tat, newTat)) {
+                break;
             }
         }
+        long used = conforming ? newTat - now : Math.max(tat, now) - now;
+        int residual = conforming ? (int) ((limit - used) / emissionInterval) : -1;
 
-        // update the counters
-        int requests = counter.addRequest(currPeriodId);
-        int residual = maxRequests - requests;
-        
         // set the headers
         HttpServletResponse response = request.getHttpResponse();
         response.addHeader(X_RATE_LIMIT_CONTEXT, matcher.toString());
         response.addIntHeader(X_RATE_LIMIT_LIMIT, maxRequests);
         response.addIntHeader(X_RATE_LIMIT_REMAINING, Math.max(residual, 0));
-        response.addDateHeader(X_RATE_LIMIT_RESET, ((currPeriodId + 1) * timeInterval));
+        response.addDateHeader(X_RATE_LIMIT_RESET,
+                System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(used));
         response.addHeader("X-Rate-Limit-Action", action);
-        // counter cleanup handling
         if (LOGGER.isLoggable(Level.FINE)) {
-            LOGGER.fine(this + ", residual in current time period " + residual);
+            LOGGER.fine(this + ", residual burst capacity " + residual);
         }
+
+        // incremental cleanup of idle buckets
+        expireIdleBuckets(now);
+
         if (residual < 0) {
             if (delay <= 0) {
                 throw new HttpErrorCodeException(429,
@@ -207,29 +250,42 @@ public class RateFlowController implements FlowController {
             }
         }
 
-        // cleanup stale counters if necessary
-        long elapsed = now - lastCleanup;
-        if (counters.size() > COUNTERS_CLEANUP_THRESHOLD
-                && (elapsed > (timeInterval) || (elapsed > 10000))) {
-            int cleanupCount = 0;
-            synchronized (counters) {
-                for(Map.Entry<String, Counter> entry : counters.entrySet()) {
-                    Counter c = entry.getValue();
-                    long timePeriodId = c.getTimePeriodId();
-                    long age = (currPeriodId - timePeriodId) * timeInterval;
-                    if(age > COUNTERS_CLEANUP_THRESHOLD) {
-                        counters.remove(entry.getKey());
+        return true;
+    }
+
+    /**
+     * Checks a few buckets for expiry, continuing from where the previous check left. A bucket
+     * whose TAT is in the past is full, and thus equivalent to a missing one, so it can be
+     * safely removed.
+     */
+    void expireIdleBuckets(long now) {
+        if (!sweeping.compareAndSet(false, true)) {
+            // someone else is at it
+            return;
+        }
+        try {
+            int removed = 0;
+            for (int i = 0; i < EXPIRY_CHECKS_PER_REQUEST; i++) {
+                if (sweeper == null || !sweeper.hasNext()) {
+                    sweeper = buckets.entrySet().iterator();
+                    if (!sweeper.hasNext()) {
+                        break;
                     }
                 }
-                lastCleanup = now;
-                if (LOGGER.isLoggable(Level.FINE)) {
-                    LOGGER.fine(this + ", purged " + cleanupCount
-                            + " stale counters");
+                Map.Entry<String, Bucket> entry = sweeper.next();
+                Bucket bucket = entry.getValue();
+                long tat = bucket.get();
+                if (tat <= now && bucket.compareAndSet(tat, EXPIRED)) {
+                    buckets.remove(entry.getKey(), bucket);
+                    removed++;
                 }
             }
+            if (removed > 0 && LOGGER.isLoggable(Level.FINER)) {
+                LOGGER.finer(this + ", purged " + removed + " idle buckets");
+            }
+        } finally {
+            sweeping.set(false);
         }
-
-        return retval;
     }
 
     public KeyGenerator getKeyGenerator() {
@@ -252,6 +308,14 @@ public class RateFlowController implements FlowController {
         return delay;
     }
 
+    /**
+     * The maximum number of requests that can be performed in a row, before the rate limiting
+     * kicks in
+     */
+    public int getBurst() {
+        return burst;
+    }
+
     @Override
     public int getPriority() {
         // higher priority, we want to go thought the rate limiters before going through
@@ -0,0 +1,184 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.geoserver.ows.Request;
+
+/**
+ * Estimates the cost of a request based on the history of the previous ones. Execution times are
+ * tracked as exponentially weighted moving averages per operation and layer, falling back on the
+ * per operation averages for layers not seen yet.
+ * <p>
+ * Requests producing images are normalized by their area, so that the history of a layer collected
+ * from 256x256 tiles can be used to estimate the cost of a 4096x4096 map, and vice versa.
+ * <p>
+ * Costs are returned as weights relative to the average request, so a weight of 1 is a request
+ * as expensive as the average one seen so far, and 10 one that is expected to take ten times
+ * longer.
+ */
+public class RequestCostEstimator {
+
+    /**
+     * Weight of the last sample in the moving averages
+     */
+    static final double ALPHA = 0.2;
+
+    /**
+     * Upper bound to the number of operations tracked
+     */
+    static final int MAX_KEYS = 1000;
+
+    /**
+     * Upper bound to the number of operation/layer combinations tracked, kept apart from the
+     * operations as the layer names are chosen by the client
+     */
+    static final int MAX_LAYER_KEYS = 10000;
+
+    /**
+     * The area of a map used as a unit of size, the one of a common tile
+     */
+    static final double REFERENCE_AREA = 256 * 256;
+
+    /**
+     * The parameters used to locate the layers in the request
+     */
+    static final String[] LAYER_PARAMETERS = { "LAYERS", "LAYER", "TYPENAMES", "TYPENAME",
+            "COVERAGEID", "IDENTIFIER", "QUERY_LAYERS" };
+
+    /**
+     * A moving average, updates are serialized, reads are not
+     */
+    static final class Average {
+        volatile double value = Double.NaN;
+
+        synchronized void add(double sample) {
+            double current = value;
+            value = Double.isNaN(current) ? sample : current + ALPHA * (sample - current);
+        }
+
+        double get() {
+            return value;
+        }
+    }
+
+    Map<String, Average> averages = new ConcurrentHashMap<>();
+
+    Map<String, Average> layerAverages = new ConcurrentHashMap<>();
+
+    Average global = new Average();
+
+    /**
+     * Returns the estimated cost of the request, relative to the average one, or 1 if there is
+     * not enough history to make an estimate
+     */
+    public double getWeight(Request request) {
+        double average = global.get();
+        if (Double.isNaN(average) || average <= 0) {
+            return 1;
+        }
+        String operation = getOperationKey(request);
+        Average history = null;
+        String layers = getLayers(request);
+        if (layers != null) {
+            history = layerAverages.get(operation + ":" + layers);
+        }
+        if (history == null) {
+            history = averages.get(operation);
+        }
+        if (history == null) {
+            return 1;
+        }
+        return history.get() * getSize(request) / average;
+    }
+
+    /**
+     * Adds the execution time of a request to the history
+     */
+    public void record(Request request, long millis) {
+        double perUnit = millis / getSize(request);
+        String operation = getOperationKey(request);
+        Average operationAverage = getAverage(averages, operation, MAX_KEYS);
+        if (operationAverage != null) {
+            operationAverage.add(perUnit);
+        }
+        String layers = getLayers(request);
+        if (layers != null) {
+            Average layerAverage = getAverage(layerAverages, operation + ":" + layers,
+                    MAX_LAYER_KEYS);
+            if (layerAverage != null) {
+                layerAverage.add(perUnit);
+            }
+        }
+        global.add(millis);
+    }
+
+    /**
+     * Returns the average for the key, creating it if there is still room, null otherwise
+     */
+    private Average getAverage(Map<String, Average> averages, String key, int maxKeys) {
+        Average average = averages.get(key);
+        if (average == null && averages.size() < maxKeys) {
+            average = averages.computeIfAbsent(key, k -> new Average());
+        }
+        return average;
+    }
+
+    /**
+     * Number of tracked operation and layer combinations
+     */
+    public int getTrackedKeys() {
+        return averages.size() + layerAverages.size();
+    }
+
+    String getOperationKey(Request request) {
+        String service = request.getService();
+        String operation = request.getRequest();
+        return (service == null ? "*" : service.toLowerCase(Locale.ENGLISH)) + "."
+                + (operation == null ? "*" : operation.toLowerCase(Locale.ENGLISH));
+    }
+
+    String getLayers(Request request) {
+        Map<?, ?> kvp = request.getRawKvp();
+        if (kvp == null) {
+            return null;
+        }
+        for (String parameter : LAYER_PARAMETERS) {
+            Object value = kvp.get(parameter);
+            if (value != null && !"".equals(value)) {
+                return String.valueOf(value);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the size of the request output, in number of tiles for requests having a width and
+     * height, 1 otherwise
+     */
+    double getSize(Request request) {
+        Map<?, ?> kvp = request.getRawKvp();
+        if (kvp == null) {
+            return 1;
+        }
+        try {
+            Object width = kvp.get("WIDTH");
+            Object height = kvp.get("HEIGHT");
+            if (width != null && height != null) {
+                double area = Double.parseDouble(String.valueOf(width))
+                        * Double.parseDouble(String.valueOf(height));
+                if (area > 0) {
+                    return area / REFERENCE_AREA;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // the request will fail anyways
+        }
+        return 1;
+    }
+}
@@ -7,6 +7,7 @@ package org.geoserver.flow.config;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -18,12 +19,14 @@ import java.util.Properties;
 import org.geoserver.flow.ControllerPriorityComparator;
 import org.geoserver.flow.FlowController;
 import org.geoserver.flow.controller.BasicOWSController;
+import org.geoserver.flow.controller.CostBasedFlowController;
 import org.geoserver.flow.controller.GlobalFlowController;
 import org.geoserver.flow.controller.IpFlowController;
 import org.geoserver.flow.controller.IpRequestMatcher;
 import org.geoserver.flow.controller.RateFlowController;
 import org.geoserver.flow.controller.SingleIpFlowController;
 import org.geoserver.flow.controller.UserConcurrentFlowController;
+import org.geoserver.ows.Request;
 import org.geoserver.platform.GeoServerResourceLoader;
 import org.geoserver.platform.resource.Files;
 import org.geoserver.platform.resource.Resource;
@@ -48,7 +51,7 @@ public class DefaultControlFlowConfigurationTest {
         p.put("user.ows", "20/s");
         p.put("user.ows.wms", "300/m;3s");
         p.put("ip.ows.wms.getmap", "100/m;3s");
-        p.put("ip.ows.wps.execute", "50/d;60s");
+        p.put("ip.ows.wps.execute", "50/d;60s;burst=5");
 
         DefaultControlFlowConfigurator configurator = new DefaultControlFlowConfigurator(
                 new FixedWatcher(p));
@@ -66,6 +69,7 @@ public class DefaultControlFlowConfigurationTest {
         assertEquals(50, rfc.getMaxRequests());
         assertEquals(Intervals.d.getDuration(), rfc.getTimeInterval());
         assertEquals(60000, rfc.getDelay());
+        assertEquals(5, rfc.getBurst());
 
         assertTrue(controllers.get(1) instanceof RateFlowController);
         rfc = (RateFlowController) controllers.get(1);
@@ -73,6 +77,7 @@ public class DefaultControlFlowConfigurationTest {
         assertEquals(100, rfc.getMaxRequests());
         assertEquals(Intervals.m.getDuration(), rfc.getTimeInterval());
         assertEquals(3000, rfc.getDelay());
+        assertEquals(100, rfc.getBurst());
 
         assertTrue(controllers.get(2) instanceof RateFlowController);
         rfc = (RateFlowController) controllers.get(2);
@@ -130,6 +135,56 @@ public class DefaultControlFlowConfigurationTest {
         assertEquals(savedProps.getProperties(), p);
     }
 
+    @Test
+    public void testCostBasedParsing() throws Exception {
+        Properties p = new Properties();
+        p.put("ows.global", "100");
+        p.put("cost.budget", "16");
+        p.put("cost.priority.wms", "10");
+        p.put("cost.priority.wms.getmap.image/png", "20");
+        p.put("cost.priority.wfs.getfeature", "-5");
+
+        DefaultControlFlowConfigurator configurator = new DefaultControlFlowConfigurator(
+                new FixedWatcher(p));
+        List<FlowController> controllers = configurator.buildFlowControllers();
+        Collections.sort(controllers, new ControllerPriorityComparator());
+        assertEquals(2, controllers.size());
+        assertTrue(controllers.get(0) instanceof GlobalFlowController);
+        assertTrue(controllers.get(1) instanceof CostBasedFlowController);
+
+        CostBasedFlowController cbc = (CostBasedFlowController) controllers.get(1);
+        assertEquals(16, cbc.getBudget());
+        assertEquals(10, cbc.getPriorityClass(buildRequest("WMS", "GetFeatureInfo", null)));
+        assertEquals(20, cbc.getPriorityClass(buildRequest("WMS", "GetMap", "image/png")));
+        assertEquals(10, cbc.getPriorityClass(buildRequest("WMS", "GetMap", "image/jpeg")));
+        assertEquals(-5, cbc.getPriorityClass(buildRequest("WFS", "GetFeature", null)));
+        assertEquals(0, cbc.getPriorityClass(buildRequest("WCS", "GetCoverage", null)));
+
+        // the cost history is kept across reloads
+        controllers = configurator.buildFlowControllers();
+        Collections.sort(controllers, new ControllerPriorityComparator());
+        assertSame(cbc.getEstimator(),
+                ((CostBasedFlowController) controllers.get(1)).getEstimator());
+    }
+
+    @Test
+    public void testPrioritiesWithoutBudget() throws Exception {
+        Properties p = new Properties();
+        p.put("cost.priority.wms", "10");
+
+        DefaultControlFlowConfigurator configurator = new DefaultControlFlowConfigurator(
+                new FixedWatcher(p));
+        assertTrue(configurator.buildFlowControllers().isEmpty());
+    }
+
+    Request buildRequest(String service, String request, String outputFormat) {
+        Request result = new Request();
+        result.setService(service);
+        result.setRequest(request);
+        result.setOutputFormat(outputFormat);
+        return result;
+    }
+
     static class FixedWatcher extends PropertyFileWatcher {
         boolean stale = true;
 
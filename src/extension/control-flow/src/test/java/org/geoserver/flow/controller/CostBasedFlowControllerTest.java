@@ -0,0 +1,302 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.geoserver.flow.controller.FlowControllerTestingThread.ThreadState;
+import org.geoserver.ows.Request;
+import org.geoserver.ows.util.KvpMap;
+import org.junit.Test;
+
+public class CostBasedFlowControllerTest extends AbstractFlowControllerTest {
+
+    /**
+     * Uses the "WEIGHT" parameter as the request cost
+     */
+    static class FixedCostEstimator extends RequestCostEstimator {
+        @Override
+        public double getWeight(Request request) {
+            return Double.parseDouble((String) request.getRawKvp().get("WEIGHT"));
+        }
+    }
+
+    Request buildRequest(String service, String request, String layers, int width, int height) {
+        Request result = new Request();
+        result.setService(service);
+        result.setRequest(request);
+        KvpMap kvp = new KvpMap();
+        kvp.put("LAYERS", layers);
+        kvp.put("WIDTH", String.valueOf(width));
+        kvp.put("HEIGHT", String.valueOf(height));
+        result.setRawKvp(kvp);
+        return result;
+    }
+
+    Request buildWeightedRequest(String service, String request, double weight) {
+        Request result = new Request();
+        result.setService(service);
+        result.setRequest(request);
+        KvpMap kvp = new KvpMap();
+        kvp.put("WEIGHT", String.valueOf(weight));
+        result.setRawKvp(kvp);
+        return result;
+    }
+
+    @Test
+    public void testCostEstimation() {
+        RequestCostEstimator estimator = new RequestCostEstimator();
+        // no history
+        assertEquals(1, estimator.getWeight(buildRequest("WMS", "GetMap", "a", 256, 256)), 0d);
+
+        estimator.record(buildRequest("WMS", "GetMap", "a", 256, 256), 10);
+        estimator.record(buildRequest("WMS", "GetMap", "b", 256, 256), 100);
+        // the average request now takes 28ms, and so does the average GetMap
+        assertEquals(28, estimator.global.get(), 1e-6);
+        assertEquals(10d / 28,
+                estimator.getWeight(buildRequest("WMS", "GetMap", "a", 256, 256)), 1e-6);
+        // larger maps cost proportionally more
+        assertEquals(400d / 28,
+                estimator.getWeight(buildRequest("WMS", "GetMap", "b", 512, 512)), 1e-6);
+        // unknown layers fall back on the operation average
+        assertEquals(1, estimator.getWeight(buildRequest("WMS", "GetMap", "c", 256, 256)),
+                1e-6);
+        // unknown operations are average
+        assertEquals(1, estimator.getWeight(buildRequest("WFS", "GetFeature", "a", 0, 0)), 0d);
+        assertEquals(3, estimator.getTrackedKeys());
+    }
+
+    @Test
+    public void testLayerKeysBounded() {
+        RequestCostEstimator estimator = new RequestCostEstimator();
+        for (int i = 0; i < RequestCostEstimator.MAX_LAYER_KEYS + 10; i++) {
+            estimator.record(buildRequest("WMS", "GetMap", "layer" + i, 256, 256), 10);
+        }
+        // the client chosen layer names do not prevent tracking a new operation
+        estimator.record(buildRequest("WFS", "GetFeature", "other", 0, 0), 10);
+        assertEquals(RequestCostEstimator.MAX_LAYER_KEYS + 2, estimator.getTrackedKeys());
+        assertNotNull(estimator.averages.get("wfs.getfeature"));
+    }
+
+    @Test
+    public void testBudgetReleasedWhenRecordFails() {
+        CostBasedFlowController controller = new CostBasedFlowController(1,
+                Collections.emptyMap(), new FixedCostEstimator() {
+                    @Override
+                    public void record(Request request, long millis) {
+                        throw new IllegalStateException("failed");
+                    }
+                });
+        Request request = buildWeightedRequest("WMS", "GetMap", 1);
+        assertTrue(controller.requestIncoming(request, 0));
+        assertEquals(1, controller.getUsedBudget(), 1e-6);
+        try {
+            controller.requestComplete(request);
+            fail("The estimator failure should have been propagated");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(0, controller.getUsedBudget(), 0d);
+        assertEquals(0, controller.getRunningRequests());
+        assertTrue(controller.requestIncoming(buildWeightedRequest("WMS", "GetMap", 1), 0));
+    }
+
+    @Test
+    public void testWeightedAdmission() throws Exception {
+        CostBasedFlowController controller = new CostBasedFlowController(4,
+                Collections.emptyMap(), new FixedCostEstimator());
+
+        FlowControllerTestingThread t1 = new FlowControllerTestingThread(
+                buildWeightedRequest("WMS", "GetMap", 3), 0, Long.MAX_VALUE, controller);
+        FlowControllerTestingThread t2 = new FlowControllerTestingThread(
+                buildWeightedRequest("WMS", "GetMap", 2), 0, Long.MAX_VALUE, controller);
+        FlowControllerTestingThread t3 = new FlowControllerTestingThread(
+                buildWeightedRequest("WMS", "GetMap", 1), 0, Long.MAX_VALUE, controller);
+        try {
+            t1.start();
+            waitBlocked(t1, MAX_WAIT);
+            t2.start();
+            waitBlocked(t2, MAX_WAIT);
+            t3.start();
+            waitBlocked(t3, MAX_WAIT);
+
+            // t2 does not fit, and t3 cannot overtake it, even if it would fit
+            assertEquals(ThreadState.PROCESSING, t1.state);
+            assertEquals(ThreadState.STARTED, t2.state);
+            assertEquals(ThreadState.STARTED, t3.state);
+            assertEquals(3, controller.getUsedBudget(), 1e-6);
+            assertEquals(2, controller.getQueuedRequests());
+
+            // releasing t1 lets both go
+            t1.interrupt();
+            waitTerminated(t1, MAX_WAIT);
+            waitState(ThreadState.PROCESSING, t2, MAX_WAIT);
+            waitState(ThreadState.PROCESSING, t3, MAX_WAIT);
+            assertEquals(3, controller.getUsedBudget(), 1e-6);
+            assertEquals(2, controller.getRunningRequests());
+            assertEquals(0, controller.getQueuedRequests());
+            assertEquals(3, controller.getAdmittedRequests());
+            assertTrue(controller.getMaxWaitTime() > 0);
+
+            t2.interrupt();
+            t3.interrupt();
+            waitTerminated(t2, MAX_WAIT);
+            waitTerminated(t3, MAX_WAIT);
+            assertEquals(0, controller.getUsedBudget(), 0d);
+        } finally {
+            waitAndKill(t1, MAX_WAIT);
+            waitAndKill(t2, MAX_WAIT);
+            waitAndKill(t3, MAX_WAIT);
+        }
+    }
+
+    @Test
+    public void testInterruptedWhileQueued() throws Exception {
+        CostBasedFlowController controller = new CostBasedFlowController(1,
+                Collections.emptyMap(), new FixedCostEstimator());
+        FlowControllerTestingThread t1 = new FlowControllerTestingThread(
+                buildWeightedRequest("WMS", "GetMap", 1), 0, Long.MAX_VALUE, controller);
+        AtomicBoolean admitted = new AtomicBoolean(true);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        Request request = buildWeightedRequest("WMS", "GetMap", 1);
+        Thread t2 = new Thread(() -> {
+            admitted.set(controller.requestIncoming(request, 0));
+            interrupted.set(Thread.currentThread().isInterrupted());
+        });
+        try {
+            t1.start();
+            waitBlocked(t1, MAX_WAIT);
+            t2.start();
+            long start = System.currentTimeMillis();
+            while (controller.getQueuedRequests() == 0
+                    && System.currentTimeMillis() - start < MAX_WAIT) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, controller.getQueuedRequests());
+
+            // the interruption gives up the wait, and is preserved for the caller
+            t2.interrupt();
+            t2.join(MAX_WAIT);
+            assertFalse(admitted.get());
+            assertTrue(interrupted.get());
+            assertEquals(0, controller.getQueuedRequests());
+            assertEquals(1, controller.getRunningRequests());
+        } finally {
+            waitAndKill(t1, MAX_WAIT);
+            t2.interrupt();
+        }
+    }
+
+    @Test
+    public void testOversizedRequestRunsAlone() throws Exception {
+        CostBasedFlowController controller = new CostBasedFlowController(2,
+                Collections.emptyMap(), new FixedCostEstimator());
+
+        FlowControllerTestingThread t1 = new FlowControllerTestingThread(
+                buildWeightedRequest("WPS", "Execute", 100), 0, Long.MAX_VALUE, controller);
+        FlowControllerTestingThread t2 = new FlowControllerTestingThread(
+                buildWeightedRequest("WMS", "GetMap", 0.5), 0, Long.MAX_VALUE, controller);
+        try {
+            t1.start();
+            waitBlocked(t1, MAX_WAIT);
+            t2.start();
+            waitBlocked(t2, MAX_WAIT);
+
+            assertEquals(ThreadState.PROCESSING, t1.state);
+            assertEquals(ThreadState.STARTED, t2.state);
+            // capped to the budget
+            assertEquals(2, controller.getUsedBudget(), 1e-6);
+
+            t1.interrupt();
+            waitTerminated(t1, MAX_WAIT);
+            waitState(ThreadState.PROCESSING, t2, MAX_WAIT);
+            t2.interrupt();
+        } finally {
+            waitAndKill(t1, MAX_WAIT);
+            waitAndKill(t2, MAX_WAIT);
+        }
+    }
+
+    @Test
+    public void testPriorityClasses() throws Exception {
+        Map<OWSRequestMatcher, Integer> priorities = new HashMap<>();
+        priorities.put(new OWSRequestMatcher("WMS"), 10);
+        priorities.put(new OWSRequestMatcher("WFS"), -1);
+        CostBasedFlowController controller = new CostBasedFlowController(1, priorities,
+                new FixedCostEstimator());
+        assertEquals(10, controller.getPriorityClass(buildWeightedRequest("WMS", "GetMap", 1)));
+        assertEquals(-1,
+                controller.getPriorityClass(buildWeightedRequest("WFS", "GetFeature", 1)));
+        assertEquals(0, controller.getPriorityClass(buildWeightedRequest("WCS", "GetCoverage", 1)));
+
+        FlowControllerTestingThread t1 = new FlowControllerTestingThread(
+                buildWeightedRequest("WCS", "GetCoverage", 1), 0, Long.MAX_VALUE, controller);
+        FlowControllerTestingThread t2 = new FlowControllerTestingThread(
+                buildWeightedRequest("WFS", "GetFeature", 1), 0, Long.MAX_VALUE, controller);
+        FlowControllerTestingThread t3 = new FlowControllerTestingThread(
+                buildWeightedRequest("WMS", "GetMap", 1), 0, Long.MAX_VALUE, controller);
+        try {
+            t1.start();
+            waitBlocked(t1, MAX_WAIT);
+            t2.start();
+            waitBlocked(t2, MAX_WAIT);
+            t3.start();
+            waitBlocked(t3, MAX_WAIT);
+
+            assertEquals(ThreadState.PROCESSING, t1.state);
+            Map<Integer, Integer> queued = controller.getQueuedRequestsByPriority();
+            assertEquals(Integer.valueOf(1), queued.get(10));
+            assertEquals(Integer.valueOf(1), queued.get(-1));
+
+            // the WMS request came in last, but goes first
+            t1.interrupt();
+            waitTerminated(t1, MAX_WAIT);
+            waitState(ThreadState.PROCESSING, t3, MAX_WAIT);
+            assertEquals(ThreadState.STARTED, t2.state);
+
+            t3.interrupt();
+            waitTerminated(t3, MAX_WAIT);
+            waitState(ThreadState.PROCESSING, t2, MAX_WAIT);
+            t2.interrupt();
+        } finally {
+            waitAndKill(t1, MAX_WAIT);
+            waitAndKill(t2, MAX_WAIT);
+            waitAndKill(t3, MAX_WAIT);
+        }
+    }
+
+    @Test
+    public void testTimeout() {
+        CostBasedFlowController controller = new CostBasedFlowController(1,
+                Collections.emptyMap(), new FixedCostEstimator());
+
+        FlowControllerTestingThread t1 = new FlowControllerTestingThread(
+                buildWeightedRequest("WMS", "GetMap", 1), 100, 400, controller);
+        FlowControllerTestingThread t2 = new FlowControllerTestingThread(
+                buildWeightedRequest("WMS", "GetMap", 1), 100, 400, controller);
+        try {
+            t1.start();
+            waitBlocked(t1, MAX_WAIT);
+            t2.start();
+
+            waitTerminated(t1, MAX_WAIT);
+            waitTerminated(t2, MAX_WAIT);
+
+            assertEquals(ThreadState.COMPLETE, t1.state);
+            assertEquals(ThreadState.TIMED_OUT, t2.state);
+            assertEquals(1, controller.getTimedOutRequests());
+            assertEquals(0, controller.getQueuedRequests());
+            assertEquals(0, controller.getRunningRequests());
+        } finally {
+            waitAndKill(t1, MAX_WAIT);
+            waitAndKill(t2, MAX_WAIT);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.geoserver.ows.HttpErrorCodeException;
+import org.geoserver.ows.Request;
+import org.geotools.util.logging.Logging;
+import org.junit.Test;
+
+import com.google.common.base.Predicates;
+
+/**
+ * Throughput and latency of {@link RateFlowController} with requests from many distinct users.
+ */
+public class RateFlowControllerBenchmark {
+
+    static final Logger LOGGER = Logging.getLogger(RateFlowControllerBenchmark.class);
+
+    static final int KEYS = Integer.getInteger("benchmark.keys", 100000);
+
+    static final int THREADS = Integer.getInteger("benchmark.threads",
+            Runtime.getRuntime().availableProcessors());
+
+    static final int REQUESTS_PER_THREAD = 2000000;
+
+    static final ThreadLocal<String> KEY = new ThreadLocal<>();
+
+    @Test
+    public void benchmark() throws Exception {
+        // warm up, then measure
+        run(false);
+        run(true);
+    }
+
+    void run(boolean report) throws Exception {
+        // 10 requests a second per user, in bursts of 5
+        RateFlowController controller = new RateFlowController(Predicates.<Request> alwaysTrue(),
+                10, 1000, 0, 5, request -> KEY.get());
+        String[] keys = new String[KEYS];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "10." + (i >> 16) + "." + ((i >> 8) & 0xFF) + "." + (i & 0xFF);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<long[]>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(new Callable<long[]>() {
+
+                @Override
+                public long[] call() throws Exception {
+                    Request request = new Request();
+                    request.setHttpResponse((HttpServletResponse) Proxy.newProxyInstance(
+                            getClass().getClassLoader(),
+                            new Class<?>[] { HttpServletResponse.class },
+                            (proxy, method, args) -> null));
+                    long[] latencies = new long[REQUESTS_PER_THREAD];
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                        KEY.set(keys[random.nextInt(keys.length)]);
+                        long s = System.nanoTime();
+                        try {
+                            controller.requestIncoming(request, Long.MAX_VALUE);
+                        } catch (HttpErrorCodeException e) {
+                            // rate limited, fine
+                        }
+                        latencies[i] = System.nanoTime() - s;
+                    }
+                    return latencies;
+                }
+            }));
+        }
+        long[] all = new long[THREADS * REQUESTS_PER_THREAD];
+        int idx = 0;
+        for (Future<long[]> future : futures) {
+            long[] latencies = future.get();
+            System.arraycopy(latencies, 0, all, idx, latencies.length);
+            idx += latencies.length;
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        if (report) {
+            Arrays.sort(all);
+            LOGGER.log(Level.INFO, String.format(
+                    "%d keys, %d threads: %.0f requests/s, latency p50 %d ns, p99 %d ns, "
+                            + "p99.9 %d ns, max %d us, live buckets %d",
+                    KEYS, THREADS, all.length / (elapsed / 1e9), all[all.length / 2],
+                    all[(int) (all.length * 0.99)], all[(int) (all.length * 0.999)],
+                    TimeUnit.NANOSECONDS.toMicros(all[all.length - 1]),
+                    controller.buckets.size()));
+        }
+    }
+}
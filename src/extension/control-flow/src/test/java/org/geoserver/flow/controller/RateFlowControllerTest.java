@@ -120,4 +120,55 @@ public class RateFlowControllerTest extends AbstractFlowControllerTest {
         }
     }
 
+    @Test
+    public void testBurstAndRefill() throws Exception {
+        // 10 requests per second, but only 2 in a row
+        RateFlowController controller = new RateFlowController(new OWSRequestMatcher(), 10,
+                1000, 0, 2, new IpKeyGenerator());
+
+        Request request = buildIpRequest("127.0.0.1", "");
+        assertTrue(controller.requestIncoming(request, Integer.MAX_VALUE));
+        assertTrue(controller.requestIncoming(request, Integer.MAX_VALUE));
+        try {
+            controller.requestIncoming(request, Integer.MAX_VALUE);
+            fail("Should have been rejected, burst exhausted");
+        } catch (HttpErrorCodeException e) {
+            assertEquals(429, e.getErrorCode());
+        }
+
+        // other users are not affected
+        assertTrue(controller.requestIncoming(buildIpRequest("127.0.0.2", ""),
+                Integer.MAX_VALUE));
+
+        // one request every 100ms is refilled, no need to wait for a time slot to end
+        Thread.sleep(150);
+        assertTrue(controller.requestIncoming(buildIpRequest("127.0.0.1", ""),
+                Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testIdleBucketsExpire() throws Exception {
+        // one request every 200ms
+        RateFlowController controller = new RateFlowController(new OWSRequestMatcher(), 1,
+                200, 0, new IpKeyGenerator());
+        for (int i = 0; i < 50; i++) {
+            assertTrue(controller.requestIncoming(buildIpRequest("10.0.0." + i, ""),
+                    Integer.MAX_VALUE));
+        }
+        assertEquals(50, controller.buckets.size());
+
+        // once the buckets are full again they get incrementally removed by the following
+        // requests, no matter if they are accepted or not
+        Thread.sleep(250);
+        Request request = buildIpRequest("127.0.0.1", "");
+        for (int i = 0; i < 20; i++) {
+            try {
+                controller.requestIncoming(request, Integer.MAX_VALUE);
+            } catch (HttpErrorCodeException e) {
+                assertEquals(429, e.getErrorCode());
+            }
+        }
+        assertEquals(1, controller.buckets.size());
+    }
+
 }
@@ -7,10 +7,13 @@ package org.geoserver.monitor;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.geoserver.config.GeoServer;
 import org.geoserver.monitor.MonitorConfig.Mode;
 import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.util.logging.Logging;
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextRefreshedEvent;
@@ -33,6 +36,8 @@ import org.springframework.context.event.ContextRefreshedEvent;
  */
 public class Monitor implements ApplicationListener<ApplicationEvent>{
 
+    static Logger LOGGER = Logging.getLogger(Monitor.class);
+
     /**  
      * thread local request object.
      */
@@ -55,6 +60,13 @@ public class Monitor implements ApplicationListener<ApplicationEvent>{
      * The set of listeners for the monitor
      */
     List<RequestDataListener> listeners = new ArrayList<RequestDataListener>();
+
+    /**
+     * Aggregated statistics of the completed requests
+     */
+    RequestStatistics statistics = new RequestStatistics();
+
+    boolean statisticsSeeded;
     
     public Monitor(MonitorConfig config) {
         this.config = config;
@@ -113,6 +125,7 @@ public class Monitor implements ApplicationListener<ApplicationEvent>{
         for (RequestDataListener listener : listeners) {
             listener.requestCompleted(data);
         }
+        statistics.record(data);
         // have the DAO persist/propagate the change
         dao.save(data);
         REQUEST.remove();
@@ -137,6 +150,13 @@ public class Monitor implements ApplicationListener<ApplicationEvent>{
         return dao;
     }
     
+    /**
+     * Returns the aggregated statistics of the completed requests
+     */
+    public RequestStatistics getStatistics() {
+        return statistics;
+    }
+
     public GeoServer getServer() {
         return server;
     }
@@ -153,6 +173,32 @@ public class Monitor implements ApplicationListener<ApplicationEvent>{
     public void onApplicationEvent(ApplicationEvent event) {
         if(event instanceof ContextRefreshedEvent) {
             listeners = GeoServerExtensions.extensions(RequestDataListener.class);
+            if (dao instanceof MemoryMonitorDAO) {
+                // cheap, the in memory history is short. Other DAOs seed the statistics
+                // from their own initializers, see seedStatistics()
+                seedStatistics();
+            }
+        }
+    }
+
+    /**
+     * Loads the recent request history in the statistics. Only the first call has any effect.
+     * <p>
+     * DAOs backed by a database should call this from a background thread, as it might take a
+     * while on a large history, after setting up whatever the DAO needs to run queries
+     * outside of a request.
+     * </p>
+     */
+    public synchronized void seedStatistics() {
+        if (statisticsSeeded || dao == null) {
+            return;
+        }
+        statisticsSeeded = true;
+        try {
+            statistics.seed(dao);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to load the request history in the statistics, "
+                    + "the activity charts will query the history directly", e);
         }
     }
 
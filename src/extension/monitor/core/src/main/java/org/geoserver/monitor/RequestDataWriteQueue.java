@@ -0,0 +1,297 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+
+/**
+ * A bounded queue of {@link RequestData} waiting to be persisted, drained by a single writer thread
+ * in batches.
+ * <p>
+ * Each request is queued at most once: if it's modified again while still waiting, the writer will
+ * persist its latest state, so a request going through start, update and completion while the
+ * writer is busy costs a single write. When the queue fills up, the {@link Overflow} policy decides
+ * between blocking the request threads, sampling the new requests, or dropping them. Dropped and
+ * sampled out records are counted and periodically logged.
+ */
+public class RequestDataWriteQueue {
+
+    static Logger LOGGER = Logging.getLogger("org.geoserver.monitor");
+
+    /**
+     * What to do when the writer cannot keep up with the incoming requests
+     */
+    public static enum Overflow {
+        /**
+         * Request threads wait for room in the queue, up to a timeout, then drop the record
+         */
+        BLOCK,
+        /**
+         * Once the queue is half full, only one in "sampleRate" new requests is recorded, records
+         * are dropped if the queue is full anyways
+         */
+        SAMPLE,
+        /**
+         * Records are dropped as soon as the queue is full
+         */
+        DROP;
+    }
+
+    /**
+     * Persists a batch of requests
+     */
+    public static interface BatchWriter {
+        void write(List<RequestData> batch) throws Exception;
+    }
+
+    /**
+     * How often the dropped and sampled out records are reported in the logs
+     */
+    static final long REPORT_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    final ArrayBlockingQueue<RequestData> queue;
+
+    final Set<RequestData> pending = Collections
+            .newSetFromMap(new ConcurrentHashMap<RequestData, Boolean>());
+
+    final BatchWriter writer;
+
+    final int capacity;
+
+    final int batchSize;
+
+    final Overflow overflow;
+
+    final int sampleRate;
+
+    final long blockTimeout;
+
+    final AtomicLong sampleCounter = new AtomicLong();
+
+    final AtomicLong written = new AtomicLong();
+
+    final AtomicLong batches = new AtomicLong();
+
+    final AtomicLong coalesced = new AtomicLong();
+
+    final AtomicLong sampled = new AtomicLong();
+
+    final AtomicLong dropped = new AtomicLong();
+
+    final AtomicLong failed = new AtomicLong();
+
+    volatile boolean running;
+
+    Thread thread;
+
+    /**
+     * Builds the queue, {@link #start()} must be called before offering records
+     *
+     * @param writer The batch writer
+     * @param capacity The maximum number of requests waiting to be written
+     * @param batchSize The maximum number of requests written in a single batch
+     * @param overflow The policy applied when the queue is full
+     * @param sampleRate When sampling, one every sampleRate new requests is recorded
+     * @param blockTimeout When blocking, how long to wait for room in the queue, in milliseconds
+     */
+    public RequestDataWriteQueue(BatchWriter writer, int capacity, int batchSize,
+            Overflow overflow, int sampleRate, long blockTimeout) {
+        this.writer = writer;
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.overflow = overflow;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.blockTimeout = blockTimeout;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::drain, "GeoServer monitor writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the writer thread, after writing out the records still in the queue
+     */
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    /**
+     * Queues the request for writing
+     *
+     * @return true if the request has been queued, or was already queued, false if it was dropped
+     *         or sampled out
+     */
+    public boolean offer(RequestData data) {
+        if (!pending.add(data)) {
+            // already waiting, the writer will pick up the latest state
+            coalesced.incrementAndGet();
+            return true;
+        }
+
+        if (overflow == Overflow.SAMPLE && data.getId() == -1 && queue.size() >= capacity / 2
+                && sampleCounter.getAndIncrement() % sampleRate != 0) {
+            pending.remove(data);
+            sampled.incrementAndGet();
+            return false;
+        }
+
+        boolean queued;
+        if (overflow == Overflow.BLOCK) {
+            try {
+                queued = queue.offer(data, blockTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+        } else {
+            queued = queue.offer(data);
+        }
+        if (!queued) {
+            pending.remove(data);
+            dropped.incrementAndGet();
+        }
+        return queued;
+    }
+
+    void drain() {
+        List<RequestData> batch = new ArrayList<>(batchSize);
+        long lastReport = System.currentTimeMillis();
+        long reportedLosses = 0;
+        while (running || !queue.isEmpty()) {
+            try {
+                RequestData first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    // from now on further changes need to be queued again
+                    for (RequestData data : batch) {
+                        pending.remove(data);
+                    }
+                    write(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                // keep going until stopped
+            } catch (Throwable t) {
+                LOGGER.log(Level.SEVERE, "Unexpected error in the monitor writer", t);
+                batch.clear();
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastReport > REPORT_INTERVAL) {
+                long losses = dropped.get() + sampled.get();
+                if (losses > reportedLosses) {
+                    LOGGER.warning("Monitoring storage cannot keep up with the requests, "
+                            + "so far " + dropped.get() + " records have been dropped and "
+                            + sampled.get() + " sampled out");
+                    reportedLosses = losses;
+                }
+                lastReport = now;
+            }
+        }
+    }
+
+    void write(List<RequestData> batch) {
+        try {
+            writer.write(batch);
+            written.addAndGet(batch.size());
+            batches.incrementAndGet();
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                failed.incrementAndGet();
+                LOGGER.log(Level.WARNING, "Failed to persist request " + batch.get(0).getId(), e);
+                return;
+            }
+            // isolate the offending records
+            LOGGER.log(Level.FINE, "Batch write failed, retrying records one by one", e);
+            for (RequestData data : batch) {
+                write(Collections.singletonList(data));
+            }
+        }
+    }
+
+    /**
+     * Number of requests waiting to be written
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Number of records written
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * Number of batches written
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * Number of updates merged into a record already waiting in the queue
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * Number of requests not recorded due to sampling
+     */
+    public long getSampled() {
+        return sampled.get();
+    }
+
+    /**
+     * Number of records dropped because the queue was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Number of records that could not be written
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    @Override
+    public String toString() {
+        return "RequestDataWriteQueue [queued=" + queue.size() + ", written=" + written
+                + ", batches=" + batches + ", coalesced=" + coalesced + ", sampled=" + sampled
+                + ", dropped=" + dropped + ", failed=" + failed + "]";
+    }
+}
@@ -0,0 +1,584 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.monitor.Query.Comparison;
+import org.geoserver.monitor.RequestData.Status;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Statistics about the completed requests, aggregated incrementally in rolling per minute, per
+ * hour and per day time slots. Each slot holds the request count, total and maximum response time
+ * and a latency histogram for each combination of service, operation, layer and status, so that
+ * activity charts and summaries can be computed in time proportional to the number of slots,
+ * instead of going through the request history.
+ * <p>
+ * Each request is accounted for once with a {@code null} resource, see {@link Key#isRequest()},
+ * and once more for each layer it touched. Slots are aligned to the server time zone, so that a
+ * daily slot covers a calendar day.
+ * <p>
+ * The statistics are kept in memory, and can be seeded from the request history at startup, see
+ * {@link #seed(MonitorDAO)}. Use {@link #covers(Resolution, Date)} to check whether they account
+ * for all the requests in a time range.
+ */
+public class RequestStatistics {
+
+    static final Logger LOGGER = Logging.getLogger(RequestStatistics.class);
+
+    /**
+     * Resource name the layers are accounted under once a time slot tracks too many keys
+     */
+    public static final String OTHER_RESOURCES = "__other__";
+
+    /**
+     * Default maximum number of keys tracked by a single time slot
+     */
+    static final int DEFAULT_MAX_KEYS = 1000;
+
+    /**
+     * Number of buckets in the latency histograms. Bucket boundaries grow by a factor of
+     * sqrt(2), the last one collects everything taking more than 2^25 milliseconds
+     */
+    static final int BUCKETS = 52;
+
+    /**
+     * The time resolutions, along with how many slots of each are kept
+     */
+    public static enum Resolution {
+        /**
+         * One slot per minute, for the last day
+         */
+        MINUTE(TimeUnit.MINUTES.toMillis(1), 24 * 60),
+        /**
+         * One slot per hour, for the last week
+         */
+        HOUR(TimeUnit.HOURS.toMillis(1), 7 * 24),
+        /**
+         * One slot per day, for the last three months
+         */
+        DAY(TimeUnit.DAYS.toMillis(1), 92);
+
+        final long duration;
+
+        final int slots;
+
+        Resolution(long duration, int slots) {
+            this.duration = duration;
+            this.slots = slots;
+        }
+
+        /**
+         * The duration of a time slot, in milliseconds
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * The number of time slots kept
+         */
+        public int getSlots() {
+            return slots;
+        }
+    }
+
+    /**
+     * Identifies a group of requests within a time slot
+     */
+    public static final class Key {
+        final String service;
+
+        final String operation;
+
+        final String resource;
+
+        final Status status;
+
+        public Key(String service, String operation, String resource, Status status) {
+            this.service = service;
+            this.operation = operation;
+            this.resource = resource;
+            this.status = status;
+        }
+
+        public String getService() {
+            return service;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        /**
+         * The layer, or {@code null} for the key accounting for whole requests
+         */
+        public String getResource() {
+            return resource;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * Returns true if the key accounts for whole requests, false if it accounts for the
+         * requests touching a layer
+         */
+        public boolean isRequest() {
+            return resource == null;
+        }
+
+        Key withResource(String resource) {
+            return new Key(service, operation, resource, status);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(service, operation, resource, status);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return Objects.equals(service, other.service)
+                    && Objects.equals(operation, other.operation)
+                    && Objects.equals(resource, other.resource) && status == other.status;
+        }
+
+        @Override
+        public String toString() {
+            return "Key [service=" + service + ", operation=" + operation + ", resource="
+                    + resource + ", status=" + status + "]";
+        }
+    }
+
+    /**
+     * Aggregated statistics for a set of requests. Not thread safe, instances are built on read
+     * and owned by the caller
+     */
+    public static final class Summary {
+        long count;
+
+        long totalTime;
+
+        long maxTime;
+
+        final long[] histogram = new long[BUCKETS];
+
+        /**
+         * Adds the statistics of another summary to this one
+         */
+        public Summary add(Summary other) {
+            count += other.count;
+            totalTime += other.totalTime;
+            maxTime = Math.max(maxTime, other.maxTime);
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram[i] += other.histogram[i];
+            }
+            return this;
+        }
+
+        /**
+         * The number of requests
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * The sum of the response times, in milliseconds
+         */
+        public long getTotalTime() {
+            return totalTime;
+        }
+
+        /**
+         * The average response time, in milliseconds
+         */
+        public double getAverageTime() {
+            return count == 0 ? 0 : (double) totalTime / count;
+        }
+
+        /**
+         * The maximum response time, in milliseconds
+         */
+        public long getMaxTime() {
+            return maxTime;
+        }
+
+        /**
+         * Estimates a response time percentile from the latency histogram, the result is an upper
+         * bound at most 50% larger than the actual value
+         *
+         * @param percentile The percentile, between 0 and 100
+         * @return The response time, in milliseconds
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), maxTime);
+                }
+            }
+            return maxTime;
+        }
+
+        @Override
+        public String toString() {
+            return "Summary [count=" + count + ", averageTime=" + getAverageTime() + ", maxTime="
+                    + maxTime + "]";
+        }
+    }
+
+    /**
+     * Returns the histogram bucket for the given response time
+     */
+    static int bucket(long time) {
+        if (time <= 0) {
+            return 0;
+        }
+        int octave = 63 - Long.numberOfLeadingZeros(time);
+        int half = octave > 0 ? (int) ((time >>> (octave - 1)) & 1) : 0;
+        return Math.min(1 + 2 * octave + half, BUCKETS - 1);
+    }
+
+    /**
+     * Returns the largest response time falling in the given bucket
+     */
+    static long upperBound(int bucket) {
+        if (bucket == 0) {
+            return 0;
+        }
+        if (bucket == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        int octave = (bucket - 1) / 2;
+        long base = 1L << octave;
+        return (bucket - 1) % 2 == 0 ? base + (base >> 1) - (octave > 0 ? 1 : 0)
+                : 2 * base - 1;
+    }
+
+    /**
+     * Live statistics of a key in a time slot
+     */
+    static final class Counter {
+        final LongAdder count = new LongAdder();
+
+        final LongAdder totalTime = new LongAdder();
+
+        final AtomicLong maxTime = new AtomicLong();
+
+        final AtomicIntegerArray histogram = new AtomicIntegerArray(BUCKETS);
+
+        void record(long time) {
+            count.increment();
+            totalTime.add(time);
+            histogram.incrementAndGet(bucket(time));
+            long max;
+            while ((max = maxTime.get()) < time && !maxTime.compareAndSet(max, time))
+                ;
+        }
+
+        void addTo(Summary summary) {
+            summary.count += count.sum();
+            summary.totalTime += totalTime.sum();
+            summary.maxTime = Math.max(summary.maxTime, maxTime.get());
+            for (int i = 0; i < BUCKETS; i++) {
+                summary.histogram[i] += histogram.get(i);
+            }
+        }
+    }
+
+    /**
+     * A time slot, replaced by a new one when its position in the ring is reused
+     */
+    static final class Slot {
+        final long epoch;
+
+        final Map<Key, Counter> counters = new ConcurrentHashMap<>();
+
+        Slot(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    final TimeZone timeZone;
+
+    final int maxKeys;
+
+    final Map<Resolution, AtomicReferenceArray<Slot>> slots = new HashMap<>();
+
+    /**
+     * Requests started from this time on are all accounted for
+     */
+    volatile long coveredSince;
+
+    /**
+     * The earliest start time recorded
+     */
+    final AtomicLong oldest = new AtomicLong(Long.MAX_VALUE);
+
+    /**
+     * Requests started before this time are left to {@link #seed(MonitorDAO)}
+     */
+    final long created;
+
+    public RequestStatistics() {
+        this(TimeZone.getDefault(), DEFAULT_MAX_KEYS);
+    }
+
+    RequestStatistics(TimeZone timeZone, int maxKeys) {
+        this.timeZone = timeZone;
+        this.maxKeys = maxKeys;
+        for (Resolution resolution : Resolution.values()) {
+            slots.put(resolution, new AtomicReferenceArray<>(resolution.slots));
+        }
+        this.created = System.currentTimeMillis();
+        this.coveredSince = created;
+    }
+
+    /**
+     * Accounts for a completed request. Requests started before these statistics were created are
+     * left to {@link #seed(MonitorDAO)}, as it would count them a second time
+     */
+    public void record(RequestData data) {
+        Date startTime = data.getStartTime();
+        if (startTime == null || startTime.getTime() < created) {
+            return;
+        }
+        add(data);
+    }
+
+    /**
+     * Accounts for a completed request, regardless of when it started
+     */
+    void add(RequestData data) {
+        Date startTime = data.getStartTime();
+        if (startTime == null) {
+            return;
+        }
+        long start = startTime.getTime();
+        long time = Math.max(0, data.getTotalTime());
+        Key request = new Key(data.getService(), data.getOperation(), null, data.getStatus());
+        LinkedHashSet<String> resources = data.getResources() == null ? null
+                : new LinkedHashSet<>(data.getResources());
+        long now = System.currentTimeMillis();
+        for (Resolution resolution : Resolution.values()) {
+            long epoch = epoch(resolution, start);
+            Slot slot = epoch > epoch(resolution, now) - resolution.slots
+                    ? getSlot(resolution, epoch) : null;
+            if (slot == null) {
+                // too old for this resolution
+                continue;
+            }
+            counter(slot, request).record(time);
+            if (resources != null) {
+                for (String resource : resources) {
+                    counter(slot, request.withResource(resource)).record(time);
+                }
+            }
+        }
+        long min;
+        while ((min = oldest.get()) > start && !oldest.compareAndSet(min, start))
+            ;
+    }
+
+    Counter counter(Slot slot, Key key) {
+        Counter counter = slot.counters.get(key);
+        if (counter == null) {
+            if (!key.isRequest() && slot.counters.size() >= maxKeys) {
+                key = key.withResource(OTHER_RESOURCES);
+            }
+            counter = slot.counters.computeIfAbsent(key, k -> new Counter());
+        }
+        return counter;
+    }
+
+    /**
+     * Returns the slot for the given epoch, replacing the one in its position if older, or null if
+     * the position has already been taken by a more recent slot
+     */
+    Slot getSlot(Resolution resolution, long epoch) {
+        AtomicReferenceArray<Slot> ring = slots.get(resolution);
+        int index = (int) Math.floorMod(epoch, (long) resolution.slots);
+        while (true) {
+            Slot slot = ring.get(index);
+            if (slot != null && slot.epoch == epoch) {
+                return slot;
+            } else if (slot != null && slot.epoch > epoch) {
+                return null;
+            }
+            Slot replacement = new Slot(epoch);
+            if (ring.compareAndSet(index, slot, replacement)) {
+                return replacement;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of the time slot containing the given time
+     */
+    long epoch(Resolution resolution, long time) {
+        return Math.floorDiv(time + timeZone.getOffset(time), resolution.duration);
+    }
+
+    /**
+     * Returns the start time of a time slot
+     */
+    long slotStart(Resolution resolution, long epoch) {
+        long local = epoch * resolution.duration;
+        return local - timeZone.getOffset(local - timeZone.getRawOffset());
+    }
+
+    /**
+     * Returns the start of the oldest time slot still kept at the given resolution
+     */
+    long retentionStart(Resolution resolution, long now) {
+        return slotStart(resolution, epoch(resolution, now) - resolution.slots + 1);
+    }
+
+    /**
+     * Returns true if all the requests started from the given time on have been accounted for,
+     * and are still kept at the given resolution
+     *
+     * @param from The start of the time range, or null to check the whole history
+     */
+    public boolean covers(Resolution resolution, Date from) {
+        long start = from == null ? Long.MIN_VALUE : from.getTime();
+        long retention = retentionStart(resolution, System.currentTimeMillis());
+        return start >= coveredSince && Math.max(start, oldest.get()) >= retention;
+    }
+
+    /**
+     * Returns the statistics of each time slot in the given range, for the keys matching the
+     * filter. Slots without matching requests are omitted
+     *
+     * @param from The start of the range, or null to start from the oldest slot kept
+     * @param to The end of the range, or null to end at the current time
+     * @param filter The key filter, or null to match all keys
+     */
+    public SortedMap<Date, Summary> getTimeSeries(Resolution resolution, Date from, Date to,
+            Predicate<Key> filter) {
+        SortedMap<Date, Summary> result = new TreeMap<>();
+        visit(resolution, from, to, (slot, key, counter) -> {
+            if (filter == null || filter.test(key)) {
+                Date start = new Date(slotStart(resolution, slot.epoch));
+                counter.addTo(result.computeIfAbsent(start, d -> new Summary()));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the statistics of each key matching the filter, over the given time range
+     *
+     * @param from The start of the range, or null to start from the oldest slot kept
+     * @param to The end of the range, or null to end at the current time
+     * @param filter The key filter, or null to match all keys
+     */
+    public Map<Key, Summary> getSummary(Resolution resolution, Date from, Date to,
+            Predicate<Key> filter) {
+        Map<Key, Summary> result = new HashMap<>();
+        visit(resolution, from, to, (slot, key, counter) -> {
+            if (filter == null || filter.test(key)) {
+                counter.addTo(result.computeIfAbsent(key, k -> new Summary()));
+            }
+        });
+        return result;
+    }
+
+    interface CounterVisitor {
+        void visit(Slot slot, Key key, Counter counter);
+    }
+
+    void visit(Resolution resolution, Date from, Date to, CounterVisitor visitor) {
+        long now = System.currentTimeMillis();
+        long last = epoch(resolution, to == null ? now : to.getTime());
+        long first = epoch(resolution, now) - resolution.slots + 1;
+        if (from != null) {
+            first = Math.max(first, epoch(resolution, from.getTime()));
+        }
+        if (last - first >= resolution.slots) {
+            // the range ends in the future, the older slots have already been reused
+            first = last - resolution.slots + 1;
+        }
+        AtomicReferenceArray<Slot> ring = slots.get(resolution);
+        for (long epoch = first; epoch <= last; epoch++) {
+            Slot slot = ring.get((int) Math.floorMod(epoch, (long) resolution.slots));
+            if (slot != null && slot.epoch == epoch) {
+                for (Map.Entry<Key, Counter> entry : slot.counters.entrySet()) {
+                    visitor.visit(slot, entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Accounts for the completed requests found in the history that started before these
+     * statistics were created, and are recent enough to be kept. Once done, the statistics cover
+     * the whole retention period, or the whole history if the history holds no older request
+     */
+    public void seed(MonitorDAO dao) {
+        long start = retentionStart(Resolution.DAY, created);
+        Query query = new Query().between(new Date(start), new Date(created - 1)).filter(
+                "status", Arrays.asList(Status.FINISHED, Status.FAILED), Comparison.IN);
+        long[] count = new long[1];
+        dao.getRequests(query, new RequestDataVisitor() {
+            public void visit(RequestData data, Object... aggregates) {
+                add(data);
+                count[0]++;
+            }
+        });
+        long older = dao.getCount(new Query().between(null, new Date(start - 1)));
+        coveredSince = older == 0 ? Long.MIN_VALUE : start;
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Seeded the request statistics with " + count[0]
+                    + " requests from the history");
+        }
+    }
+
+    /**
+     * Drops all the statistics, to be called when the request history is cleared
+     */
+    public void clear() {
+        for (AtomicReferenceArray<Slot> ring : slots.values()) {
+            for (int i = 0; i < ring.length(); i++) {
+                ring.set(i, null);
+            }
+        }
+        oldest.set(Long.MAX_VALUE);
+        coveredSince = Long.MIN_VALUE;
+    }
+}
@@ -192,7 +192,7 @@ public class MonitorRequestController extends RestBaseController {
         }
     }
 
-    Date parseDate(String s) {
+    static Date parseDate(String s) {
         try {
             return DATE_FORMAT.parse(s);
         } catch (ParseException e) {
@@ -235,6 +235,7 @@ public class MonitorRequestController extends RestBaseController {
     public void handleObjectDelete(@PathVariable(name = "request", required = false) String req) {
         if (req == null) {
             monitor.getDAO().clear();
+            monitor.getStatistics().clear();
         } else {
             throw new RestException("Cannot delete a specific request", HttpStatus.METHOD_NOT_ALLOWED);
         }
@@ -0,0 +1,112 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor.rest;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.geoserver.monitor.Monitor;
+import org.geoserver.monitor.RequestData.Status;
+import org.geoserver.monitor.RequestStatistics;
+import org.geoserver.monitor.RequestStatistics.Key;
+import org.geoserver.monitor.RequestStatistics.Resolution;
+import org.geoserver.monitor.RequestStatistics.Summary;
+import org.geoserver.rest.RestBaseController;
+import org.geoserver.rest.RestException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Exposes the pre-aggregated {@link RequestStatistics}: a time series of request counts and
+ * response times at the chosen resolution, along with the totals over the whole range.
+ */
+@RestController
+@RequestMapping(path = RestBaseController.ROOT_PATH + "/monitor/statistics")
+public class MonitorStatisticsController extends RestBaseController {
+
+    Monitor monitor;
+
+    @Autowired
+    public MonitorStatisticsController(Monitor monitor) {
+        this.monitor = monitor;
+    }
+
+    @GetMapping(produces = { MediaType.APPLICATION_JSON_VALUE })
+    public Map<String, Object> statisticsGet(
+            @RequestParam(name = "resolution", required = false, defaultValue = "hour") String res,
+            @RequestParam(name = "from", required = false) String from,
+            @RequestParam(name = "to", required = false) String to,
+            @RequestParam(name = "service", required = false) String service,
+            @RequestParam(name = "operation", required = false) String operation,
+            @RequestParam(name = "layer", required = false) String layer,
+            @RequestParam(name = "status", required = false) String status) {
+        Resolution resolution;
+        Status requestStatus = null;
+        try {
+            resolution = Resolution.valueOf(res.toUpperCase());
+            if (status != null) {
+                requestStatus = Status.valueOf(status.toUpperCase());
+            }
+        } catch (IllegalArgumentException e) {
+            throw new RestException("Invalid resolution or status", HttpStatus.BAD_REQUEST, e);
+        }
+        Date fromDate = from != null ? MonitorRequestController.parseDate(from) : null;
+        Date toDate = to != null ? MonitorRequestController.parseDate(to) : null;
+
+        Predicate<Key> filter = layer != null ? k -> layer.equals(k.getResource())
+                : Key::isRequest;
+        if (service != null) {
+            filter = filter.and(k -> service.equalsIgnoreCase(k.getService()));
+        }
+        if (operation != null) {
+            filter = filter.and(k -> operation.equalsIgnoreCase(k.getOperation()));
+        }
+        if (requestStatus != null) {
+            Status s = requestStatus;
+            filter = filter.and(k -> k.getStatus() == s);
+        }
+
+        RequestStatistics statistics = monitor.getStatistics();
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
+        Summary total = new Summary();
+        List<Object> series = new ArrayList<>();
+        for (Map.Entry<Date, Summary> e : statistics
+                .getTimeSeries(resolution, fromDate, toDate, filter).entrySet()) {
+            Map<String, Object> item = toMap(e.getValue());
+            item.put("time", format.format(e.getKey()));
+            series.add(item);
+            total.add(e.getValue());
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("resolution", resolution.name());
+        // false if part of the range predates the statistics, the history might have more
+        result.put("complete", statistics.covers(resolution, fromDate));
+        result.put("total", toMap(total));
+        result.put("series", series);
+        return result;
+    }
+
+    Map<String, Object> toMap(Summary summary) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("count", summary.getCount());
+        map.put("averageTime", summary.getAverageTime());
+        map.put("maxTime", summary.getMaxTime());
+        map.put("p50", summary.getPercentile(50));
+        map.put("p90", summary.getPercentile(90));
+        map.put("p99", summary.getPercentile(99));
+        return map;
+    }
+}
@@ -23,6 +23,10 @@ import org.geoserver.monitor.Monitor;
 import org.geoserver.monitor.Query;
 import org.geoserver.monitor.RequestData;
 import org.geoserver.monitor.RequestDataVisitor;
+import org.geoserver.monitor.RequestStatistics;
+import org.geoserver.monitor.RequestStatistics.Key;
+import org.geoserver.monitor.RequestStatistics.Resolution;
+import org.geoserver.monitor.RequestStatistics.Summary;
 import org.geoserver.web.GeoServerApplication;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.DateAxis;
@@ -96,13 +100,27 @@ public abstract class ActivityChartBasePanel extends Panel {
     }
     
     BufferedDynamicImageResource queryAndRenderChart(Monitor monitor, Date[] range) {
-        Query q = new Query();
-        q.properties("startTime").between(range[0], range[1]);
-        
-        DataGatherer gatherer = new DataGatherer();
-        monitor.query(q, gatherer);
-        
-        HashMap<RegularTimePeriod,Integer> data = gatherer.getData();
+        HashMap<RegularTimePeriod,Integer> data;
+        RequestStatistics statistics = monitor.getStatistics();
+        Resolution resolution = getResolution();
+        if (resolution != null && statistics.covers(resolution, range[0])) {
+            // use the pre-aggregated counts
+            data = new HashMap<RegularTimePeriod, Integer>();
+            Map<Date, Summary> series = 
+                statistics.getTimeSeries(resolution, range[0], range[1], Key::isRequest);
+            for (Map.Entry<Date, Summary> e : series.entrySet()) {
+                data.merge(getTimePeriod(e.getKey()), (int) e.getValue().getCount(), Integer::sum);
+            }
+        }
+        else {
+            Query q = new Query();
+            q.properties("startTime").between(range[0], range[1]);
+            
+            DataGatherer gatherer = new DataGatherer();
+            monitor.query(q, gatherer);
+            
+            data = gatherer.getData();
+        }
         
         Class<?> timeUnitClass = getTimePeriod(range[0]).getClass();
         TimeSeries series = new TimeSeries("foo", timeUnitClass);
@@ -177,6 +195,14 @@ public abstract class ActivityChartBasePanel extends Panel {
     
     protected abstract RegularTimePeriod getTimePeriod(Date time);
     
+    /**
+     * The resolution of the {@link RequestStatistics} matching {@link #getTimePeriod(Date)}, or
+     * null if the chart must always be computed from the request history
+     */
+    protected Resolution getResolution() {
+        return null;
+    }
+    
     
 
 }
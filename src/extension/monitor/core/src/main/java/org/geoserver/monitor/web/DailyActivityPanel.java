@@ -9,8 +9,9 @@ import java.util.Calendar;
 import java.util.Date;
 
 import org.geoserver.monitor.Monitor;
+import org.geoserver.monitor.RequestStatistics.Resolution;
+import org.jfree.data.time.Minute;
 import org.jfree.data.time.RegularTimePeriod;
-import org.jfree.data.time.Second;
 
 
 public class DailyActivityPanel extends ActivityChartBasePanel {
@@ -36,9 +37,12 @@ public class DailyActivityPanel extends ActivityChartBasePanel {
     
     @Override
     protected RegularTimePeriod getTimePeriod(Date time) {
-        return new Second(time);
-        //return new Minute(time);
-        //return new Hour(time);
+        return new Minute(time);
+    }
+    
+    @Override
+    protected Resolution getResolution() {
+        return Resolution.MINUTE;
     }
     
     @Override
@@ -9,6 +9,7 @@ import java.util.Calendar;
 import java.util.Date;
 
 import org.geoserver.monitor.Monitor;
+import org.geoserver.monitor.RequestStatistics.Resolution;
 import org.jfree.data.time.Day;
 import org.jfree.data.time.RegularTimePeriod;
 
@@ -38,4 +39,9 @@ public class MonthlyActivityPanel extends ActivityChartBasePanel {
         return new Day(time);
     }
 
+    @Override
+    protected Resolution getResolution() {
+        return Resolution.DAY;
+    }
+
 }
@@ -12,6 +12,7 @@ import org.geoserver.monitor.Monitor;
 import org.geoserver.monitor.Query;
 import org.geoserver.monitor.RequestData;
 import org.geoserver.monitor.RequestDataVisitor;
+import org.geoserver.monitor.RequestStatistics.Key;
 import org.geoserver.monitor.Query.Comparison;
 
 public class OWSDetailsPanel extends OWSSummaryChartBasePanel {
@@ -29,6 +30,13 @@ public class OWSDetailsPanel extends OWSSummaryChartBasePanel {
     
     @Override
     protected Map<String, Integer> gatherData(Monitor monitor) {
+        Map<String, Integer> counts = countRequests(monitor,
+            k -> owsService.equals(k.getService()) && k.getOperation() != null,
+            k -> k.getOperation().toLowerCase());
+        if (counts != null) {
+            return counts;
+        }
+        
         DataGatherer g = new DataGatherer();
         monitor.query(new Query().properties("operation")
             .filter("service", owsService, Comparison.EQ), g);
@@ -12,6 +12,7 @@ import org.geoserver.monitor.Monitor;
 import org.geoserver.monitor.Query;
 import org.geoserver.monitor.RequestData;
 import org.geoserver.monitor.RequestDataVisitor;
+import org.geoserver.monitor.RequestStatistics.Key;
 import org.geoserver.monitor.Query.Comparison;
 
 public class OWSOverviewPanel extends OWSSummaryChartBasePanel {
@@ -29,6 +30,12 @@ public class OWSOverviewPanel extends OWSSummaryChartBasePanel {
     
     @Override
     protected Map<String,Integer> gatherData(Monitor monitor) {
+        Map<String, Integer> counts = 
+            countRequests(monitor, k -> k.getService() != null, Key::getService);
+        if (counts != null) {
+            return counts;
+        }
+        
         Query q = new Query();
         q.properties("service").filter("service", null, Comparison.NEQ);
         
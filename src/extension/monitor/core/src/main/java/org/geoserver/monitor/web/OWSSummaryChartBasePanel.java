@@ -6,12 +6,19 @@
 package org.geoserver.monitor.web;
 
 import java.awt.Color;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import org.apache.wicket.markup.html.image.NonCachingImage;
 import org.apache.wicket.markup.html.image.resource.BufferedDynamicImageResource;
 import org.apache.wicket.markup.html.panel.Panel;
 import org.geoserver.monitor.Monitor;
+import org.geoserver.monitor.RequestStatistics;
+import org.geoserver.monitor.RequestStatistics.Key;
+import org.geoserver.monitor.RequestStatistics.Resolution;
+import org.geoserver.monitor.RequestStatistics.Summary;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
 import org.jfree.data.general.DefaultPieDataset;
@@ -46,6 +53,27 @@ public abstract class OWSSummaryChartBasePanel extends Panel {
 
     protected abstract Map<String, Integer> gatherData(Monitor monitor);
     
+    /**
+     * Counts the requests matching the filter using the pre-aggregated statistics, grouped by
+     * the value the classifier extracts from their key
+     * 
+     * @return The counts, or null if the statistics do not cover the whole request history
+     */
+    protected Map<String, Integer> countRequests(Monitor monitor, Predicate<Key> filter,
+            Function<Key, String> classifier) {
+        RequestStatistics statistics = monitor.getStatistics();
+        if (!statistics.covers(Resolution.DAY, null)) {
+            return null;
+        }
+        Map<String, Integer> data = new HashMap<String, Integer>();
+        Map<Key, Summary> summary = statistics.getSummary(Resolution.DAY, null, null,
+                filter.and(Key::isRequest));
+        for (Map.Entry<Key, Summary> e : summary.entrySet()) {
+            data.merge(classifier.apply(e.getKey()), (int) e.getValue().getCount(), Integer::sum);
+        }
+        return data;
+    }
+    
     protected abstract String getChartTitle();
 
 }
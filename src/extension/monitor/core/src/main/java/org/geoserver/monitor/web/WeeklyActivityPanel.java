@@ -9,6 +9,7 @@ import java.util.Calendar;
 import java.util.Date;
 
 import org.geoserver.monitor.Monitor;
+import org.geoserver.monitor.RequestStatistics.Resolution;
 import org.jfree.data.time.Hour;
 import org.jfree.data.time.RegularTimePeriod;
 
@@ -36,4 +37,9 @@ public class WeeklyActivityPanel extends ActivityChartBasePanel {
         return new Hour(time);
     }
 
+    @Override
+    protected Resolution getResolution() {
+        return Resolution.HOUR;
+    }
+
 }
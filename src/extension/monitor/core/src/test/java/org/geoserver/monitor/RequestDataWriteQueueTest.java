@@ -0,0 +1,208 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.geoserver.monitor.RequestDataWriteQueue.Overflow;
+import org.junit.After;
+import org.junit.Test;
+
+public class RequestDataWriteQueueTest {
+
+    /**
+     * Records the batches, blocking until released
+     */
+    static class BlockingWriter implements RequestDataWriteQueue.BatchWriter {
+        CountDownLatch entered = new CountDownLatch(1);
+
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<List<RequestData>> batches = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void write(List<RequestData> batch) throws Exception {
+            entered.countDown();
+            release.await();
+            batches.add(new ArrayList<>(batch));
+        }
+    }
+
+    RequestDataWriteQueue queue;
+
+    @After
+    public void shutdown() {
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    /**
+     * Offers a first request and waits until the writer is stuck on it
+     */
+    void blockWriter(BlockingWriter writer) throws InterruptedException {
+        queue.offer(new RequestData());
+        assertTrue(writer.entered.await(5, TimeUnit.SECONDS));
+    }
+
+    void waitWritten(long count) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        while (queue.getWritten() + queue.getFailed() < count
+                && System.currentTimeMillis() - start < 5000) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testBatchingAndCoalescing() throws Exception {
+        BlockingWriter writer = new BlockingWriter();
+        queue = new RequestDataWriteQueue(writer, 100, 10, Overflow.DROP, 1, 0);
+        queue.start();
+        blockWriter(writer);
+
+        // while the writer is busy, queue 25 requests, each updated 3 times
+        List<RequestData> requests = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            requests.add(new RequestData());
+        }
+        for (int i = 0; i < 3; i++) {
+            for (RequestData data : requests) {
+                assertTrue(queue.offer(data));
+            }
+        }
+        assertEquals(25, queue.getQueueSize());
+        assertEquals(50, queue.getCoalesced());
+
+        writer.release.countDown();
+        waitWritten(26);
+        assertEquals(26, queue.getWritten());
+        // the first request, then batches of at most 10
+        assertEquals(4, writer.batches.size());
+        assertEquals(1, writer.batches.get(0).size());
+        assertEquals(10, writer.batches.get(1).size());
+        assertEquals(5, writer.batches.get(3).size());
+        assertEquals(requests.get(0), writer.batches.get(1).get(0));
+
+        // once written, changes are queued again
+        assertTrue(queue.offer(requests.get(0)));
+        waitWritten(27);
+        assertEquals(27, queue.getWritten());
+    }
+
+    @Test
+    public void testDrop() throws Exception {
+        BlockingWriter writer = new BlockingWriter();
+        queue = new RequestDataWriteQueue(writer, 10, 10, Overflow.DROP, 1, 0);
+        queue.start();
+        blockWriter(writer);
+
+        int accepted = 0;
+        for (int i = 0; i < 15; i++) {
+            if (queue.offer(new RequestData())) {
+                accepted++;
+            }
+        }
+        assertEquals(10, accepted);
+        assertEquals(5, queue.getDropped());
+        writer.release.countDown();
+        waitWritten(11);
+        assertEquals(11, queue.getWritten());
+    }
+
+    @Test
+    public void testSample() throws Exception {
+        BlockingWriter writer = new BlockingWriter();
+        queue = new RequestDataWriteQueue(writer, 100, 100, Overflow.SAMPLE, 10, 0);
+        queue.start();
+        blockWriter(writer);
+
+        // first half goes in without sampling
+        for (int i = 0; i < 50; i++) {
+            assertTrue(queue.offer(new RequestData()));
+        }
+        // then one in ten
+        int accepted = 0;
+        for (int i = 0; i < 100; i++) {
+            if (queue.offer(new RequestData())) {
+                accepted++;
+            }
+        }
+        assertEquals(10, accepted);
+        assertEquals(90, queue.getSampled());
+        assertEquals(0, queue.getDropped());
+
+        // requests already stored are not sampled
+        RequestData stored = new RequestData();
+        stored.setId(10);
+        assertTrue(queue.offer(stored));
+        writer.release.countDown();
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        BlockingWriter writer = new BlockingWriter();
+        queue = new RequestDataWriteQueue(writer, 1, 10, Overflow.BLOCK, 1, 50);
+        queue.start();
+        blockWriter(writer);
+
+        assertTrue(queue.offer(new RequestData()));
+        long start = System.currentTimeMillis();
+        assertFalse(queue.offer(new RequestData()));
+        assertTrue(System.currentTimeMillis() - start >= 40);
+        assertEquals(1, queue.getDropped());
+
+        // room is made as soon as the writer catches up
+        writer.release.countDown();
+        assertTrue(queue.offer(new RequestData()));
+        waitWritten(3);
+        assertEquals(3, queue.getWritten());
+    }
+
+    @Test
+    public void testFailedBatchIsolated() throws Exception {
+        RequestData bad = new RequestData();
+        List<RequestData> written = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        queue = new RequestDataWriteQueue(batch -> {
+            release.await();
+            if (batch.contains(bad)) {
+                throw new Exception("Cannot write this one");
+            }
+            written.addAll(batch);
+        }, 10, 10, Overflow.DROP, 1, 0);
+        queue.start();
+        List<RequestData> requests = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            RequestData data = i == 2 ? bad : new RequestData();
+            requests.add(data);
+            queue.offer(data);
+        }
+        release.countDown();
+        waitWritten(5);
+
+        assertEquals(4, queue.getWritten());
+        assertEquals(1, queue.getFailed());
+        requests.remove(bad);
+        assertTrue(written.containsAll(requests));
+    }
+
+    @Test
+    public void testShutdownFlushes() throws Exception {
+        List<RequestData> written = new CopyOnWriteArrayList<>();
+        queue = new RequestDataWriteQueue(written::addAll, 100, 10, Overflow.BLOCK, 1, 1000);
+        queue.start();
+        for (int i = 0; i < 50; i++) {
+            queue.offer(new RequestData());
+        }
+        queue.shutdown();
+        assertEquals(50, written.size());
+    }
+}
@@ -0,0 +1,186 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.geoserver.monitor.RequestData.Status;
+import org.geoserver.monitor.RequestStatistics.Key;
+import org.geoserver.monitor.RequestStatistics.Resolution;
+import org.geoserver.monitor.RequestStatistics.Summary;
+import org.junit.Test;
+
+public class RequestStatisticsTest {
+
+    static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    RequestData request(long startTime, String service, String operation, Status status,
+            long totalTime, String... layers) {
+        RequestData data = new RequestData();
+        data.setStartTime(new Date(startTime));
+        data.setService(service);
+        data.setOperation(operation);
+        data.setStatus(status);
+        data.setTotalTime(totalTime);
+        if (layers.length > 0) {
+            data.setResources(Arrays.asList(layers));
+        }
+        return data;
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        for (long t = 0; t < 100000; t++) {
+            long upper = RequestStatistics.upperBound(RequestStatistics.bucket(t));
+            assertTrue(upper >= t);
+            assertTrue(upper <= t * 1.5);
+        }
+    }
+
+    @Test
+    public void testAggregation() {
+        RequestStatistics statistics = new RequestStatistics(TimeZone.getTimeZone("UTC"), 100);
+        long now = System.currentTimeMillis();
+        statistics.record(request(now, "WMS", "GetMap", Status.FINISHED, 10, "a", "b"));
+        statistics.record(request(now, "WMS", "GetMap", Status.FINISHED, 30, "a"));
+        statistics.record(request(now, "WMS", "GetMap", Status.FAILED, 5, "b"));
+        statistics.add(request(now - HOUR, "WFS", "GetFeature", Status.FINISHED, 100, "a"));
+
+        for (Resolution resolution : Resolution.values()) {
+            Map<Key, Summary> summary = statistics.getSummary(resolution, null, null,
+                    Key::isRequest);
+            assertEquals(3, summary.size());
+            Summary getMap = summary.get(new Key("WMS", "GetMap", null, Status.FINISHED));
+            assertEquals(2, getMap.getCount());
+            assertEquals(20, getMap.getAverageTime(), 0d);
+            assertEquals(30, getMap.getMaxTime());
+        }
+
+        // per layer
+        Map<Key, Summary> layerA = statistics.getSummary(Resolution.HOUR, null, null,
+                k -> "a".equals(k.getResource()));
+        assertEquals(2, layerA.size());
+        assertEquals(2, layerA.get(new Key("WMS", "GetMap", "a", Status.FINISHED)).getCount());
+        assertEquals(1, layerA.get(new Key("WFS", "GetFeature", "a", Status.FINISHED)).getCount());
+
+        // time series, the WFS request is in the previous hour
+        SortedMap<Date, Summary> series = statistics.getTimeSeries(Resolution.HOUR,
+                new Date(now - 2 * HOUR), null, Key::isRequest);
+        assertEquals(2, series.size());
+        assertEquals(1, series.get(series.firstKey()).getCount());
+        assertEquals(3, series.get(series.lastKey()).getCount());
+        assertEquals((now / HOUR) * HOUR, series.lastKey().getTime());
+        assertEquals(1, statistics.getTimeSeries(Resolution.MINUTE, new Date(now - 1000), null,
+                Key::isRequest).size());
+    }
+
+    @Test
+    public void testPercentiles() {
+        RequestStatistics statistics = new RequestStatistics(TimeZone.getTimeZone("UTC"), 100);
+        long now = System.currentTimeMillis();
+        for (int i = 1; i <= 1000; i++) {
+            statistics.record(request(now, "WMS", "GetMap", Status.FINISHED, i));
+        }
+        Summary summary = statistics.getTimeSeries(Resolution.DAY, null, null, null).values()
+                .iterator().next();
+        assertEquals(1000, summary.getCount());
+        assertTrue(summary.getPercentile(50) >= 500);
+        assertTrue(summary.getPercentile(50) <= 750);
+        assertTrue(summary.getPercentile(90) >= 900);
+        assertEquals(1000, summary.getPercentile(100));
+    }
+
+    @Test
+    public void testRetention() {
+        RequestStatistics statistics = new RequestStatistics(TimeZone.getTimeZone("UTC"), 100);
+        long now = System.currentTimeMillis();
+        // only kept in the hourly and daily slots
+        statistics.add(request(now - 48 * HOUR, "WMS", "GetMap", Status.FINISHED, 10));
+        // only kept in the daily slots
+        statistics.add(request(now - 30 * 24 * HOUR, "WMS", "GetMap", Status.FINISHED, 10));
+        // too old
+        statistics.add(request(now - 365 * 24 * HOUR, "WMS", "GetMap", Status.FINISHED, 10));
+
+        assertTrue(statistics.getTimeSeries(Resolution.MINUTE, null, null, null).isEmpty());
+        assertEquals(1, statistics.getTimeSeries(Resolution.HOUR, null, null, null).size());
+        assertEquals(2, statistics.getTimeSeries(Resolution.DAY, null, null, null).size());
+    }
+
+    @Test
+    public void testMaxKeys() {
+        RequestStatistics statistics = new RequestStatistics(TimeZone.getTimeZone("UTC"), 3);
+        long now = System.currentTimeMillis();
+        statistics.record(request(now, "WMS", "GetMap", Status.FINISHED, 10, "a", "b", "c", "d"));
+
+        Map<Key, Summary> summary = statistics.getSummary(Resolution.MINUTE, null, null, null);
+        // the request key is always tracked
+        assertEquals(1, summary.get(new Key("WMS", "GetMap", null, Status.FINISHED)).getCount());
+        assertNotNull(summary.get(new Key("WMS", "GetMap", "a", Status.FINISHED)));
+        assertNotNull(summary.get(new Key("WMS", "GetMap", "b", Status.FINISHED)));
+        assertEquals(2, summary.get(new Key("WMS", "GetMap", RequestStatistics.OTHER_RESOURCES,
+                Status.FINISHED)).getCount());
+    }
+
+    @Test
+    public void testSeedAndCoverage() throws Exception {
+        long now = System.currentTimeMillis();
+        MemoryMonitorDAO dao = new MemoryMonitorDAO();
+        dao.save(request(now - HOUR, "WMS", "GetMap", Status.FINISHED, 10));
+        dao.save(request(now - HOUR, "WMS", "GetMap", Status.RUNNING, 10));
+        // make sure the statistics are created after the request above started
+        Thread.sleep(10);
+
+        RequestStatistics statistics = new RequestStatistics(TimeZone.getTimeZone("UTC"), 100);
+        assertFalse(statistics.covers(Resolution.MINUTE, new Date(now - 2 * HOUR)));
+        assertTrue(statistics.covers(Resolution.MINUTE, new Date(now + 1000)));
+
+        statistics.seed(dao);
+        // the running request is not accounted for
+        assertEquals(1, statistics.getTimeSeries(Resolution.HOUR, null, null, null).values()
+                .iterator().next().getCount());
+        assertTrue(statistics.covers(Resolution.MINUTE, new Date(now - 2 * HOUR)));
+        assertTrue(statistics.covers(Resolution.DAY, null));
+        // the hourly slots do not go back to the first request, the daily ones do
+        statistics.add(request(now - 10 * 24 * HOUR, "WMS", "GetMap", Status.FINISHED, 10));
+        assertFalse(statistics.covers(Resolution.MINUTE, new Date(now - 48 * HOUR)));
+        assertFalse(statistics.covers(Resolution.HOUR, null));
+        assertTrue(statistics.covers(Resolution.DAY, null));
+
+        statistics.clear();
+        assertTrue(statistics.getSummary(Resolution.DAY, null, null, null).isEmpty());
+        assertTrue(statistics.covers(Resolution.HOUR, null));
+    }
+
+    @Test
+    public void testSeedThenRecord() throws Exception {
+        long now = System.currentTimeMillis();
+        MemoryMonitorDAO dao = new MemoryMonitorDAO();
+        RequestData data = request(now - 1000, "WMS", "GetMap", Status.FINISHED, 10);
+        dao.save(data);
+        Thread.sleep(10);
+
+        // the request started before the statistics were created, and completes after
+        RequestStatistics statistics = new RequestStatistics(TimeZone.getTimeZone("UTC"), 100);
+        statistics.seed(dao);
+        statistics.record(data);
+        // counted once
+        assertEquals(1, statistics.getTimeSeries(Resolution.HOUR, null, null, null).values()
+                .iterator().next().getCount());
+
+        // a request started afterwards is counted
+        Thread.sleep(10);
+        statistics.record(request(System.currentTimeMillis(), "WMS", "GetMap", Status.FINISHED,
+                10));
+        assertEquals(2, statistics.getSummary(Resolution.DAY, null, null, null)
+                .get(new Key("WMS", "GetMap", null, Status.FINISHED)).getCount());
+    }
+}
@@ -22,6 +22,9 @@ import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
 import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.Row;
@@ -29,6 +32,8 @@ import org.geoserver.data.test.SystemTestData;
 import org.geoserver.monitor.Monitor;
 import org.geoserver.monitor.MonitorTestData;
 import org.geoserver.monitor.RequestData;
+import org.geoserver.monitor.RequestData.Status;
+import org.geoserver.monitor.RequestStatistics;
 import org.geoserver.rest.RestBaseController;
 import org.geoserver.test.GeoServerSystemTestSupport;
 import org.geotools.feature.type.DateUtil;
@@ -106,6 +111,39 @@ public class RequestControllerTest extends GeoServerSystemTestSupport {
         assertFalse(it.hasNext());
     }
     
+    @Test
+    public void testStatistics() throws Exception {
+        RequestStatistics statistics = monitor.getStatistics();
+        statistics.clear();
+        for (int i = 0; i < 3; i++) {
+            RequestData data = new RequestData();
+            data.setStartTime(new Date());
+            data.setService("WMS");
+            data.setOperation("GetMap");
+            data.setStatus(i == 0 ? Status.FAILED : Status.FINISHED);
+            data.setTotalTime(100);
+            data.setResources(Arrays.asList("topp:states"));
+            statistics.record(data);
+        }
+
+        JSONObject json = (JSONObject) getAsJSON(
+                RestBaseController.ROOT_PATH + "/monitor/statistics.json?resolution=minute");
+        assertEquals("MINUTE", json.getString("resolution"));
+        assertTrue(json.getBoolean("complete"));
+        assertEquals(3, json.getJSONObject("total").getInt("count"));
+        assertEquals(100, json.getJSONObject("total").getInt("maxTime"));
+        JSONArray series = json.getJSONArray("series");
+        assertEquals(1, series.size());
+        assertEquals(3, series.getJSONObject(0).getInt("count"));
+
+        json = (JSONObject) getAsJSON(RestBaseController.ROOT_PATH
+                + "/monitor/statistics.json?service=wms&layer=topp:states&status=FINISHED");
+        assertEquals(2, json.getJSONObject("total").getInt("count"));
+        json = (JSONObject) getAsJSON(
+                RestBaseController.ROOT_PATH + "/monitor/statistics.json?service=WFS");
+        assertEquals(0, json.getJSONObject("total").getInt("count"));
+    }
+
     @Test
     public void testDelete() throws Exception {
         // delete all
@@ -7,6 +7,7 @@ package org.geoserver.monitor.hib;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
@@ -17,12 +18,13 @@ import org.geoserver.monitor.FilterVisitorSupport;
 import org.geoserver.monitor.MonitorConfig;
 import org.geoserver.monitor.MonitorConfig.Mode;
 import org.geoserver.monitor.MonitorDAO;
-import org.geoserver.monitor.PipeliningTaskQueue;
 import org.geoserver.monitor.Query;
 import org.geoserver.monitor.Query.Comparison;
 import org.geoserver.monitor.Query.SortOrder;
 import org.geoserver.monitor.RequestData;
 import org.geoserver.monitor.RequestDataVisitor;
+import org.geoserver.monitor.RequestDataWriteQueue;
+import org.geoserver.monitor.RequestDataWriteQueue.Overflow;
 import org.geoserver.ows.util.OwsUtils;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
@@ -32,19 +34,33 @@ import org.springframework.beans.factory.DisposableBean;
 import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.orm.hibernate3.HibernateTemplate;
 
-import com.google.common.base.FinalizableReference;
-
 public class HibernateMonitorDAO2 implements MonitorDAO , DisposableBean {
 
     public static enum Sync {
         SYNC, ASYNC, ASYNC_UPDATE;
     }
 
+    /**
+     * Default number of requests waiting to be written
+     */
+    static final int DEFAULT_QUEUE_SIZE = 10000;
+
+    /**
+     * Default number of requests written in a single transaction
+     */
+    static final int DEFAULT_BATCH_SIZE = 500;
+
     HibernateTemplate hib;
-    PipeliningTaskQueue<Thread> tasks;
+    RequestDataWriteQueue queue;
 
     Mode mode = Mode.HISTORY;
     Sync sync = Sync.ASYNC;
+
+    int queueSize = DEFAULT_QUEUE_SIZE;
+    int batchSize = DEFAULT_BATCH_SIZE;
+    Overflow overflow = Overflow.BLOCK;
+    int sampleRate = 10;
+    long blockTimeout = 1000;
     
     public HibernateMonitorDAO2() {
         setMode(Mode.HISTORY);
@@ -58,6 +74,17 @@ public class HibernateMonitorDAO2 implements MonitorDAO , DisposableBean {
     @Override
     public void init(MonitorConfig config) {
         setMode(config.getMode());
+        Properties props = config.getProperties();
+        queueSize = Integer.parseInt(props.getProperty("hibernate.queueSize",
+                String.valueOf(DEFAULT_QUEUE_SIZE)));
+        batchSize = Integer.parseInt(props.getProperty("hibernate.batchSize",
+                String.valueOf(DEFAULT_BATCH_SIZE)));
+        overflow = Overflow.valueOf(props.getProperty("hibernate.overflow", "block")
+                .toUpperCase());
+        sampleRate = Integer.parseInt(props.getProperty("hibernate.sampleRate", "10"));
+        blockTimeout = Long.parseLong(props.getProperty("hibernate.blockTimeout", "1000"));
+        // rebuild the queue with the new settings
+        dispose();
         setSync(getSync(config));
     }
 
@@ -68,17 +95,26 @@ public class HibernateMonitorDAO2 implements MonitorDAO , DisposableBean {
     public void setSync(Sync sync) {
         this.sync = sync;
         if (sync != Sync.SYNC) {
-            if (tasks == null) {
-                tasks = new PipeliningTaskQueue<Thread>();
-                tasks.start();
+            if (queue == null) {
+                queue = new RequestDataWriteQueue(this::write, queueSize, batchSize, overflow,
+                        sampleRate, blockTimeout);
+                queue.start();
             }
         }
         else {
-            if (tasks != null) {
+            if (queue != null) {
                 dispose();
             }
         }
     }
+
+    /**
+     * Returns the queue of requests waiting to be written, with its statistics, or null if
+     * running in synchronous mode
+     */
+    public RequestDataWriteQueue getWriteQueue() {
+        return queue;
+    }
     public void setMode(Mode mode) {
         this.mode = mode;
     }
@@ -96,10 +132,10 @@ public class HibernateMonitorDAO2 implements MonitorDAO , DisposableBean {
         if (mode != Mode.HISTORY) {
             if (sync == Sync.ASYNC_UPDATE) {
                 //async_update means don't run the initial insert asynchronously
-                new Insert(data).run();
+                write(Collections.singletonList(data));
             }
             else {
-                run(new Insert(data));
+                run(data);
             }
         }
         else {
@@ -110,12 +146,12 @@ public class HibernateMonitorDAO2 implements MonitorDAO , DisposableBean {
     }
     
     public void add(RequestData data) {
-        if (sync == Sync.ASYNC_UPDATE) {
+        if (sync == Sync.ASYNC_UPDATE && data.getId() == -1) {
             //async_update means don't run the initial insert asynchronously
-            new Insert(data).run();
+            write(Collections.singletonList(data));
         }
         else {
-            run(new Insert(data));
+            run(data);
         }
     }
     
@@ -124,22 +160,16 @@ public class HibernateMonitorDAO2 implements MonitorDAO , DisposableBean {
     }
     
     public void save(RequestData data) {
-        run(new Save(data));
-//        if(data.getId() == -1) {
-//            run(new Insert(data));
-//        }
-//        else {
-//            run(new Update(data));
-//        }
+        run(data);
     }
     
     public void clear() {
     }
 
     public void dispose() {
-        if (tasks != null) {
-            tasks.shutdown();
-            tasks = null;
+        if (queue != null) {
+            queue.shutdown();
+            queue = null;
         }
     }
 
@@ -576,108 +606,53 @@ public class HibernateMonitorDAO2 implements MonitorDAO , DisposableBean {
 //        }
 //    }
     
-    protected void run(Task task) {
-        if (tasks != null) {
-            tasks.execute(Thread.currentThread(), new Async(task), task.desc);
+    /**
+     * Queues the request for writing, or writes it immediately in synchronous mode
+     */
+    protected void run(RequestData data) {
+        RequestDataWriteQueue queue = this.queue;
+        if (queue != null) {
+            queue.offer(data);
         }
         else {
-            task.run();
+            write(Collections.singletonList(data));
         }
     }
 
-    class Async implements Runnable {
-
-        Task task;
-        
-        Async(Task task) {
-            this.task = task;
-        }
-        
-        public void run() {
-            synchronized(task.data) {
-                task.run();
-            }
-        }
-        
-    }
-    
-    static abstract class Task implements Runnable {
-        
-        RequestData data;
-        String desc;
-        
-        Task(RequestData data) {
-            this.data = data;
-        }
-    }
-    
-    class Save extends Task {
-        RequestData data;
-        
-        Save(RequestData data) {
-            super(data);
-            this.data = data;
-        }
-        
-        public void run() {
-            if (data.getId() == -1) {
-                new Insert(data).run();
-            }
-            else {
-                new Update(data).run();
-            }
-            
-        }
-        
-    }
-    class Insert extends Task {
-        
-        Insert(RequestData data) {
-            super(data);
-            this.desc = "Insert " + data.internalid;
-        }
-        
-        public void run() {
-            hib.execute(new HibernateCallback() {
-                public Object doInHibernate(Session session) throws HibernateException,
-                        SQLException {
-                    Transaction tx = session.beginTransaction();
-                    data.setId((Long)session.save(data));
-                    //mergeLayers(data, session);
-                    session.save(data);
+    /**
+     * Writes out a batch of requests in a single transaction, inserting the new ones and
+     * updating the others. The statements are grouped in JDBC batches according to the
+     * hibernate.jdbc.batch_size setting of the session factory.
+     */
+    protected void write(final List<RequestData> batch) {
+        hib.execute(new HibernateCallback<Object>() {
+            public Object doInHibernate(Session session) throws HibernateException,
+                    SQLException {
+                List<RequestData> inserted = new ArrayList<>();
+                Transaction tx = session.beginTransaction();
+                try {
+                    for (RequestData data : batch) {
+                        if (data.getId() == -1) {
+                            data.setId((Long) session.save(data));
+                            inserted.add(data);
+                        }
+                        else {
+                            session.update(data);
+                        }
+                    }
                     tx.commit();
-                    return data;
                 }
-            });
-        }
-    }
-    
-    class Update extends Task {
-
-        Update(RequestData data) {
-            super(data);
-            this.desc = "Update " + data.internalid;
-        }
-        
-        public void run() {
-            hib.execute(new HibernateCallback() {
-                public Object doInHibernate(Session session) throws HibernateException,
-                        SQLException {
-                    try {
-                        Transaction tx = session.beginTransaction();
-                        //mergeLayers(data, session);
-                        session.update(data);
-                        tx.commit();
-                    }
-                    catch(HibernateException e) {
-                        if (tasks != null) tasks.print();
-                        throw e;
+                catch(HibernateException e) {
+                    tx.rollback();
+                    // the ids assigned by the rolled back inserts are not valid anymore
+                    for (RequestData data : inserted) {
+                        data.setId(-1);
                     }
-                    return null;
+                    throw e;
                 }
-            });
-        }
-        
+                return null;
+            }
+        });
     }
 
 	@Override
@@ -60,6 +60,24 @@ public class MonitorHibernateInitializer implements GeoServerInitializer {
         }
 
         LOGGER.info("Monitor hibernate extension enabled");
+
+        // load the recent history in the request statistics, in background as the
+        // history can be large
+        final SessionFactory statisticsSessionFactory = sessionFactory;
+        Thread loader = new Thread(() -> {
+            if (statisticsSessionFactory != null) {
+                HibUtil.setUpSession(statisticsSessionFactory);
+            }
+            try {
+                monitor.seedStatistics();
+            } finally {
+                if (statisticsSessionFactory != null) {
+                    HibUtil.tearDownSession(statisticsSessionFactory, null);
+                }
+            }
+        }, "GeoServer monitor statistics loader");
+        loader.setDaemon(true);
+        loader.start();
     }
 
 }
@@ -0,0 +1,150 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor.hib;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.IOUtils;
+import org.geoserver.hibernate.HibUtil;
+import org.geoserver.monitor.MonitorConfig.Mode;
+import org.geoserver.monitor.Query;
+import org.geoserver.monitor.RequestData;
+import org.geoserver.monitor.RequestData.Status;
+import org.geoserver.monitor.RequestDataWriteQueue;
+import org.geoserver.monitor.hib.HibernateMonitorDAO2.Sync;
+import org.geotools.util.logging.Logging;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.web.context.support.XmlWebApplicationContext;
+
+/**
+ * Request and storage throughput of the monitoring storage in hybrid mode, against in memory H2.
+ */
+public class HibernateMonitorDAO2Benchmark {
+
+    static final Logger LOGGER = Logging.getLogger(HibernateMonitorDAO2Benchmark.class);
+
+    static final int THREADS = Integer.getInteger("benchmark.threads", 16);
+
+    static final int REQUESTS = Integer.getInteger("benchmark.requests", 5000);
+
+    static XmlWebApplicationContext ctx;
+
+    static HibernateMonitorDAO2 dao;
+
+    @BeforeClass
+    public static void initHibernate() throws Exception {
+        Properties p = new Properties();
+        p.put("driver", "org.h2.Driver");
+        p.put("url", "jdbc:h2:mem:monitoringBenchmark;DB_CLOSE_DELAY=-1");
+        File file = new File("./target/monitoring/db.properties");
+        if (!file.getParentFile().exists()) {
+            assertTrue(file.getParentFile().mkdirs());
+        }
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            p.store(fos, null);
+        } finally {
+            IOUtils.closeQuietly(fos);
+        }
+
+        ctx = new XmlWebApplicationContext() {
+            public String[] getConfigLocations() {
+                return new String[] { "classpath*:applicationContext-hibtest.xml",
+                        "classpath*:applicationContext-hib2.xml" };
+            }
+        };
+        ctx.refresh();
+        dao = (HibernateMonitorDAO2) ctx.getBean("hibMonitorDAO");
+        dao.setMode(Mode.HYBRID);
+    }
+
+    @AfterClass
+    public static void destroy() throws Exception {
+        dao.dispose();
+        ctx.close();
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        // warm up
+        run(Sync.ASYNC, false);
+        run(Sync.SYNC, true);
+        run(Sync.ASYNC, true);
+        run(Sync.ASYNC_UPDATE, true);
+    }
+
+    void run(Sync sync, boolean report) throws Exception {
+        long before = count();
+        dao.dispose();
+        dao.setSync(sync);
+        RequestDataWriteQueue queue = dao.getWriteQueue();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < REQUESTS; i++) {
+                    RequestData data = new RequestData();
+                    data.setStatus(Status.WAITING);
+                    data.setStartTime(new Date());
+                    data.setPath("/wms");
+                    dao.init(data);
+                    data.setStatus(Status.RUNNING);
+                    data.setService("WMS");
+                    data.setOperation("GetMap");
+                    dao.update(data);
+                    data.setResponseLength(1024);
+                    dao.update(data);
+                    data.setStatus(Status.FINISHED);
+                    data.setEndTime(new Date());
+                    dao.save(data);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long requestsTime = System.nanoTime() - start;
+        executor.shutdown();
+        // wait for the writer to catch up
+        dao.dispose();
+        long totalTime = System.nanoTime() - start;
+        long written = count() - before;
+
+        if (report) {
+            int total = THREADS * REQUESTS;
+            LOGGER.log(Level.INFO, String.format(
+                    "%s, %d threads: %.0f requests/s on the request threads, "
+                            + "%.0f requests/s stored, %d/%d requests stored%s",
+                    sync, THREADS, total / (requestsTime / 1e9), written / (totalTime / 1e9),
+                    written, total, queue == null ? "" : ", " + queue));
+        }
+    }
+
+    long count() throws Exception {
+        HibUtil.setUpSession(dao.getSessionFactory());
+        try {
+            return dao.getCount(new Query());
+        } finally {
+            HibUtil.tearDownSession(dao.getSessionFactory(), null);
+        }
+    }
+}
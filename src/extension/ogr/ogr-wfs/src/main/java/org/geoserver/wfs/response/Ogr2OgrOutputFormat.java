@@ -28,6 +28,7 @@ import org.geoserver.ogr.core.FormatConverter;
 import org.geoserver.ogr.core.OutputType;
 import org.geoserver.ogr.core.ToolWrapper;
 import org.geoserver.ogr.core.ToolWrapperFactory;
+import org.geoserver.ows.DispatchIndex;
 import org.geoserver.platform.Operation;
 import org.geoserver.platform.ServiceException;
 import org.geoserver.wfs.WFSException;
@@ -229,6 +230,8 @@ public class Ogr2OgrOutputFormat extends WFSGetFeatureOutputFormat implements Fo
     @Override
     public void addFormat(Format parameters) {
         formats.put(parameters.getGeoserverFormat(), parameters);
+        // the output formats are indexed by the dispatcher
+        DispatchIndex.invalidate();
     }
 
     /**
@@ -244,6 +247,7 @@ public class Ogr2OgrOutputFormat extends WFSGetFeatureOutputFormat implements Fo
     @Override
     public void clearFormats() {
         formats.clear();
+        DispatchIndex.invalidate();
     }
 
     @Override
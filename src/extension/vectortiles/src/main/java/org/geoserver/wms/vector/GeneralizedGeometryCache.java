@@ -0,0 +1,348 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.vector;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.namespace.QName;
+
+import net.opengis.wfs.TransactionResponseType;
+import net.opengis.wfs.TransactionType;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.wfs.TransactionEvent;
+import org.geoserver.wfs.TransactionEventType;
+import org.geoserver.wfs.TransactionPlugin;
+import org.geoserver.wfs.WFSException;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.NameImpl;
+import org.geotools.referencing.CRS;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.type.Name;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Keeps the projected and simplified geometries of the vector tiles layers, so that the same
+ * generalizations are not recomputed for every tile of a zoom level.
+ * <p>
+ * The cache is enabled on a layer basis, setting the {@link #ENABLED_KEY} key in the feature type
+ * metadata. The geometries are grouped in buckets, one for each layer, target CRS and
+ * simplification distance, the latter depending on the scale denominator of the request: the
+ * tiles of the same gridset zoom level end up in the same bucket. Only the geometries left
+ * untouched by the tile specific pre-processing are cached, and the bucket contents are dropped
+ * when the features are modified by a WFS transaction or the layer configuration changes. Edits
+ * made to the data by other means are not tracked.
+ * <p>
+ * The total number of cached coordinates is bounded by the
+ * {@code org.geoserver.vectortiles.geometryCache.maxCoordinates} system property (defaults to
+ * 2 millions), the least recently used geometries are evicted first.
+ */
+public class GeneralizedGeometryCache implements TransactionPlugin, CatalogListener {
+
+    static final Logger LOGGER = Logging.getLogger(GeneralizedGeometryCache.class);
+
+    /**
+     * The feature type metadata key enabling the cache for the layer
+     */
+    public static final String ENABLED_KEY = "vectorTiles.geometryCache";
+
+    static final long MAX_COORDINATES = Long
+            .getLong("org.geoserver.vectortiles.geometryCache.maxCoordinates", 2_000_000);
+
+    /**
+     * Number of buckets per power of two in the simplification distance, requests whose distance
+     * differs by less than 0.1% share the bucket
+     */
+    static final int LEVEL_RESOLUTION = 1000;
+
+    static final String TRANSACTION_IDS = "VECTOR_TILES_GEOMETRY_CACHE_IDS";
+
+    /**
+     * The geometries of a layer generalized for a given zoom level
+     */
+    static final class Bucket {
+        final Name layer;
+
+        final String crs;
+
+        final long level;
+
+        Bucket(Name layer, String crs, long level) {
+            this.layer = layer;
+            this.crs = crs;
+            this.level = level;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Bucket)) {
+                return false;
+            }
+            Bucket other = (Bucket) obj;
+            return level == other.level && layer.equals(other.layer) && crs.equals(other.crs);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(layer, crs, level);
+        }
+
+        @Override
+        public String toString() {
+            return layer + "/" + crs + "/" + level;
+        }
+    }
+
+    static final class Key {
+        final Bucket bucket;
+
+        final String featureId;
+
+        Key(Bucket bucket, String featureId) {
+            this.bucket = bucket;
+            this.featureId = featureId;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return featureId.equals(other.featureId) && bucket.equals(other.bucket);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * bucket.hashCode() + featureId.hashCode();
+        }
+    }
+
+    final Catalog catalog;
+
+    final Cache<Key, Geometry> geometries;
+
+    /**
+     * The layers having geometries in the cache, used to skip the transactions not affecting
+     * them
+     */
+    final Set<Name> cachedLayers = ConcurrentHashMap.newKeySet();
+
+    public GeneralizedGeometryCache(Catalog catalog) {
+        this(catalog, MAX_COORDINATES);
+    }
+
+    GeneralizedGeometryCache(Catalog catalog, long maxCoordinates) {
+        this.catalog = catalog;
+        this.geometries = CacheBuilder.newBuilder().maximumWeight(maxCoordinates)
+                .weigher((Key k, Geometry g) -> g.getNumPoints() + 1).recordStats().build();
+        catalog.addListener(this);
+    }
+
+    /**
+     * Returns true if the cache is enabled for the given feature type
+     */
+    public boolean isEnabled(Name featureTypeName) {
+        FeatureTypeInfo info = catalog.getFeatureTypeByName(featureTypeName);
+        if (info == null) {
+            return false;
+        }
+        Boolean enabled = info.getMetadata().get(ENABLED_KEY, Boolean.class);
+        return enabled != null && enabled;
+    }
+
+    /**
+     * Returns the bucket holding the layer geometries for the given target CRS and
+     * simplification distance
+     */
+    Bucket getBucket(Name layer, CoordinateReferenceSystem targetCrs,
+            double simplificationDistance) {
+        String crs = CRS.toSRS(targetCrs);
+        if (crs == null) {
+            crs = targetCrs.toWKT();
+        }
+        long level = Math.round(Math.log(simplificationDistance) / Math.log(2)
+                * LEVEL_RESOLUTION);
+        return new Bucket(layer, crs, level);
+    }
+
+    /**
+     * Returns the cached geometry, computing it with the loader if missing
+     */
+    Geometry get(Bucket bucket, String featureId, Callable<Geometry> loader) throws Exception {
+        try {
+            cachedLayers.add(bucket.layer);
+            return geometries.get(new Key(bucket, featureId), loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Drops the geometries of the given features, in all the buckets of the layer
+     */
+    public void invalidate(Name layer, Set<String> featureIds) {
+        if (cachedLayers.contains(layer)) {
+            geometries.asMap().keySet().removeIf(
+                    k -> k.bucket.layer.equals(layer) && featureIds.contains(k.featureId));
+        }
+    }
+
+    /**
+     * Drops all the geometries of the layer
+     */
+    public void invalidate(Name layer) {
+        if (cachedLayers.remove(layer)) {
+            geometries.asMap().keySet().removeIf(k -> k.bucket.layer.equals(layer));
+        }
+    }
+
+    /**
+     * Drops all the cached geometries
+     */
+    public void invalidateAll() {
+        cachedLayers.clear();
+        geometries.invalidateAll();
+    }
+
+    /**
+     * The cache hits and misses
+     */
+    public CacheStats getStatistics() {
+        return geometries.stats();
+    }
+
+    /**
+     * Number of cached geometries
+     */
+    public long size() {
+        return geometries.size();
+    }
+
+    @Override
+    public void dataStoreChange(TransactionEvent event) throws WFSException {
+        // collect the ids even if nothing is cached yet, a tile request might load the old
+        // geometries before the commit
+        Name layer = new NameImpl(event.getLayerName());
+        Set<String> ids = new HashSet<>();
+        try (SimpleFeatureIterator it = event.getAffectedFeatures().features()) {
+            while (it.hasNext()) {
+                ids.add(it.next().getID());
+            }
+        } catch (RuntimeException e) {
+            // never make the transaction fail, just be conservative
+            LOGGER.log(Level.WARNING, "Failed to collect the features affected by the "
+                    + "transaction, dropping all the cached geometries of " + layer, e);
+            invalidate(layer);
+            return;
+        }
+        invalidate(layer, ids);
+        if (event.getType() != TransactionEventType.POST_INSERT) {
+            // a tile request could cache the old geometries again before the commit,
+            // drop them once more after it
+            getTransactionIds(event.getRequest()).computeIfAbsent(event.getLayerName(),
+                    n -> new HashSet<>()).addAll(ids);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<QName, Set<String>> getTransactionIds(TransactionType transaction) {
+        Map<Object, Object> properties = transaction.getExtendedProperties();
+        Map<QName, Set<String>> ids = (Map<QName, Set<String>>) properties.get(TRANSACTION_IDS);
+        if (ids == null) {
+            ids = new HashMap<>();
+            properties.put(TRANSACTION_IDS, ids);
+        }
+        return ids;
+    }
+
+    @Override
+    public TransactionType beforeTransaction(TransactionType request) throws WFSException {
+        return request;
+    }
+
+    @Override
+    public void beforeCommit(TransactionType request) throws WFSException {
+        // nothing to do
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void afterTransaction(TransactionType request, TransactionResponseType result,
+            boolean committed) {
+        Map<QName, Set<String>> ids = (Map<QName, Set<String>>) request.getExtendedProperties()
+                .get(TRANSACTION_IDS);
+        if (ids != null) {
+            for (Map.Entry<QName, Set<String>> entry : ids.entrySet()) {
+                invalidate(new NameImpl(entry.getKey()), entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public int getPriority() {
+        return 0;
+    }
+
+    @Override
+    public void handleAddEvent(CatalogAddEvent event) {
+        // nothing to do
+    }
+
+    @Override
+    public void handleRemoveEvent(CatalogRemoveEvent event) {
+        invalidate(event.getSource());
+    }
+
+    @Override
+    public void handleModifyEvent(CatalogModifyEvent event) {
+        // the name might be changing, drop the geometries cached under the old one
+        invalidate(event.getSource());
+    }
+
+    @Override
+    public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+        invalidate(event.getSource());
+    }
+
+    private void invalidate(Object source) {
+        if (source instanceof FeatureTypeInfo) {
+            invalidate(((FeatureTypeInfo) source).getQualifiedName());
+        } else if (source instanceof StoreInfo) {
+            invalidateAll();
+        }
+    }
+
+    @Override
+    public void reloaded() {
+        invalidateAll();
+    }
+}
@@ -23,7 +23,7 @@ abstract class Pipeline {
     static final Pipeline END = new Pipeline() {
 
         @Override
-        protected final Geometry execute(Geometry geom) {
+        protected final Geometry execute(Geometry geom, String featureId) {
             return geom;
         }
 
@@ -52,12 +52,67 @@ abstract class Pipeline {
      * @throws Exception
      */
     Geometry execute(Geometry geom) throws Exception {
+        return execute(geom, null);
+    }
+
+    /**
+     * Execute pipeline including all downstream pipelines, on the geometry of a feature.
+     * @param geom
+     * @param featureId The feature identifier, or {@code null} if the steps must not rely on it
+     * @return
+     * @throws Exception
+     */
+    Geometry execute(Geometry geom, String featureId) throws Exception {
         Preconditions.checkNotNull(next, getClass().getName());
+        Geometry g = _run(geom, featureId);
+        if (g == null || g.isEmpty()) {
+            return EMPTY;
+        }
+        return next.execute(g, featureId);
+    }
+
+    /**
+     * Returns true if the step can run concurrently on different geometries, and its results do
+     * not depend on the order the geometries are fed to it. Steps that are not concurrent must
+     * come first in the pipeline.
+     */
+    boolean isConcurrent() {
+        return true;
+    }
+
+    /**
+     * Execute the leading steps that are not concurrent, the result is meant to be passed to
+     * {@link #getConcurrentTail()}.
+     * @param geom
+     * @return
+     * @throws Exception
+     */
+    Geometry executeSequential(Geometry geom) throws Exception {
+        if (isConcurrent()) {
+            return geom;
+        }
         Geometry g = _run(geom);
         if (g == null || g.isEmpty()) {
             return EMPTY;
         }
-        return next.execute(g);
+        return next.executeSequential(g);
+    }
+
+    /**
+     * Returns the first concurrent step of the pipeline, which can be executed on multiple
+     * threads, or {@code null} if a step that is not concurrent follows a concurrent one
+     */
+    Pipeline getConcurrentTail() {
+        Pipeline tail = this;
+        while (tail != END && !tail.isConcurrent()) {
+            tail = tail.next;
+        }
+        for (Pipeline step = tail; step != END; step = step.next) {
+            if (!step.isConcurrent()) {
+                return null;
+            }
+        }
+        return tail;
     }
 
     /**
@@ -67,4 +122,16 @@ abstract class Pipeline {
      * @throws Exception
      */
     protected abstract Geometry _run(Geometry geom) throws Exception;
+
+    /**
+     * Implementation of the pipeline for steps that can take advantage of the feature identifier,
+     * such as the ones caching their results. Defaults to {@link #_run(Geometry)}.
+     * @param geom
+     * @param featureId The feature identifier, may be {@code null}
+     * @return
+     * @throws Exception
+     */
+    protected Geometry _run(Geometry geom, String featureId) throws Exception {
+        return _run(geom);
+    }
 }
\ No newline at end of file
@@ -23,6 +23,7 @@ import org.geotools.renderer.ScreenMap;
 import org.geotools.renderer.crs.ProjectionHandler;
 import org.geotools.renderer.crs.ProjectionHandlerFinder;
 import org.geotools.renderer.lite.RendererUtilities;
+import org.opengis.feature.type.Name;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.MathTransform;
@@ -218,6 +219,15 @@ class PipelineBuilder {
             this.screenMap = screenMap;
         }
 
+        /**
+         * The screen map drops the geometries falling in a pixel already taken, so the result
+         * depends on the order
+         */
+        @Override
+        boolean isConcurrent() {
+            return false;
+        }
+
         @Override
         protected Geometry _run(Geometry geom) throws TransformException, FactoryException {
 
@@ -278,6 +288,35 @@ class PipelineBuilder {
         return this;
     }
 
+    /**
+     * Transform and simplify the geometry, same as {@link #transform(boolean)} followed by
+     * {@link #simplify(boolean)}, but keeping the results in the cache. The simplification is
+     * performed in the target CRS, and the cached geometries are then moved to screen coordinates
+     * if requested.
+     * @param transformToScreenCoordinates If true, further transform from target to screen coordinates
+     * @param cache The cache of the generalized geometries
+     * @param layer The name of the feature type being processed
+     * @return
+     */
+    public PipelineBuilder generalize(boolean transformToScreenCoordinates,
+            GeneralizedGeometryCache cache, Name layer) {
+        // same tolerance as simplify(), but expressed in the target CRS
+        double distanceTolerance = context.targetCRSSimplificationDistance;
+        if (transformToScreenCoordinates) {
+            distanceTolerance *= PIXEL_BASE_SAMPLE_SIZE;
+        }
+        Pipeline transform = new Transform(context.sourceToTargetCrs);
+        transform.setNext(new Simplify(distanceTolerance));
+        GeneralizedGeometryCache.Bucket bucket = cache.getBucket(layer,
+                context.renderingArea.getCoordinateReferenceSystem(), distanceTolerance);
+
+        addLast(new CachedGeneralize(cache, bucket, transform));
+        if (transformToScreenCoordinates) {
+            addLast(new Transform(context.targetToScreen));
+        }
+        return this;
+    }
+
     /**
      * Clip to the area of the tile plus its gutter
      * @param clipToMapBounds Do we actually want to clip.  Does nothing if false.
@@ -345,6 +384,35 @@ class PipelineBuilder {
         }
     }
 
+    private static final class CachedGeneralize extends Pipeline {
+
+        private final GeneralizedGeometryCache cache;
+
+        private final GeneralizedGeometryCache.Bucket bucket;
+
+        private final Pipeline generalize;
+
+        CachedGeneralize(GeneralizedGeometryCache cache, GeneralizedGeometryCache.Bucket bucket,
+                Pipeline generalize) {
+            this.cache = cache;
+            this.bucket = bucket;
+            this.generalize = generalize;
+        }
+
+        @Override
+        protected Geometry _run(Geometry geom) throws Exception {
+            return generalize.execute(geom);
+        }
+
+        @Override
+        protected Geometry _run(Geometry geom, String featureId) throws Exception {
+            if (featureId == null) {
+                return generalize.execute(geom);
+            }
+            return cache.get(bucket, featureId, () -> generalize.execute(geom));
+        }
+    }
+
     protected static class Clip extends Pipeline {
 
         private final Envelope clippingEnvelope;
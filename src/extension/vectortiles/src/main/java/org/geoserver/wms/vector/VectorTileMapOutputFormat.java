@@ -10,12 +10,26 @@ import static org.geotools.renderer.lite.VectorMapRenderUtils.getStyleQuery;
 
 import java.awt.Rectangle;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
+
 import org.geoserver.platform.ServiceException;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
 import org.geoserver.wms.MapProducerCapabilities;
 import org.geoserver.wms.WMS;
 import org.geoserver.wms.WMSMapContent;
@@ -37,6 +51,7 @@ import org.opengis.feature.GeometryAttribute;
 import org.opengis.feature.Property;
 import org.opengis.feature.type.FeatureType;
 import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.feature.type.Name;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
@@ -59,6 +74,26 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
 
     private boolean transformToScreenCoordinates;
 
+    private GeneralizedGeometryCache geometryCache;
+
+    /**
+     * Number of threads processing the layers and geometries of a tile, set to 1 to build the
+     * tiles on the request thread only
+     */
+    static final int THREADS = Integer.getInteger("org.geoserver.vectortiles.threads",
+            Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Number of features handed to the geometry threads as a single task
+     */
+    static final int BATCH_SIZE = Integer.getInteger("org.geoserver.vectortiles.batchSize",
+            256);
+
+    /**
+     * Max number of batches a layer keeps in flight, bounds the memory used by large layers
+     */
+    static final int WINDOW = THREADS * 2;
+
     public VectorTileMapOutputFormat(WMS wms, VectorTileBuilderFactory tileBuilderFactory) {
         super(tileBuilderFactory.getMimeType(), tileBuilderFactory.getOutputFormats());
         this.wms = wms;
@@ -88,6 +123,13 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
         this.transformToScreenCoordinates = useScreenCoords;
     }
 
+    /**
+     * The cache of generalized geometries, used for the layers enabling it
+     */
+    public void setGeometryCache(GeneralizedGeometryCache geometryCache) {
+        this.geometryCache = geometryCache;
+    }
+
     @Override
     public WebMap produceMap(final WMSMapContent mapContent) throws ServiceException, IOException {
         checkNotNull(mapContent);
@@ -105,6 +147,9 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
         VectorTileBuilder vectorTileBuilder;
         vectorTileBuilder = this.tileBuilderFactory.newBuilder(paintArea, renderingArea);
 
+        // the queries and pipelines are set up on the request thread, the layers are then read
+        // and processed concurrently, and added to the tile in order
+        List<LayerJob> jobs = new ArrayList<>();
         CoordinateReferenceSystem sourceCrs;
         for (Layer layer : mapContent.layers()) {
 
@@ -120,14 +165,24 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
                     VectorMapRenderUtils.getFeatureStyles(layer, paintArea, 
                         VectorMapRenderUtils.getMapScale(mapContent, renderingArea), 
                         (FeatureType)featureSource.getSchema()));
-            Pipeline pipeline = getPipeline(mapContent, renderingArea, paintArea, sourceCrs, buffer);
+            Pipeline pipeline = getPipeline(mapContent, renderingArea, paintArea, sourceCrs, buffer,
+                    featureSource.getSchema().getName());
             
             Query query = getStyleQuery(layer, mapContent);
             query.getHints().remove(Hints.SCREENMAP);
 
             FeatureCollection<?, ?> features = featureSource.getFeatures(query);
             
-            run(features, pipeline, geometryDescriptor, vectorTileBuilder, layer);
+            jobs.add(new LayerJob(features, pipeline, geometryDescriptor, layer));
+        }
+
+        if (jobs.size() > 1 && THREADS > 1) {
+            runConcurrently(jobs, vectorTileBuilder);
+        } else {
+            for (LayerJob job : jobs) {
+                run(job.features, job.pipeline, job.geometryDescriptor,
+                        tf -> addFeature(tf, vectorTileBuilder), job.layer);
+            }
         }
         
         WebMap map = vectorTileBuilder.build(mapContent);
@@ -137,15 +192,31 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
     protected Pipeline getPipeline(final WMSMapContent mapContent,
             final ReferencedEnvelope renderingArea, final Rectangle paintArea,
             CoordinateReferenceSystem sourceCrs, int buffer) {
+        return getPipeline(mapContent, renderingArea, paintArea, sourceCrs, buffer, null);
+    }
+
+    /**
+     * Builds the pipeline for the given layer, using the generalized geometries cache if the
+     * layer enables it
+     */
+    protected Pipeline getPipeline(final WMSMapContent mapContent,
+            final ReferencedEnvelope renderingArea, final Rectangle paintArea,
+            CoordinateReferenceSystem sourceCrs, int buffer, @Nullable Name layerName) {
         Pipeline pipeline;
         try {
             final PipelineBuilder builder = PipelineBuilder.newBuilder(renderingArea, paintArea, sourceCrs,
                     overSamplingFactor, buffer);
             
-            pipeline = builder.preprocess().transform(transformToScreenCoordinates)
-                    .simplify(transformToScreenCoordinates)
-                    .clip(clipToMapBounds, transformToScreenCoordinates).collapseCollections()
-                    .build();
+            builder.preprocess();
+            if (geometryCache != null && layerName != null
+                    && geometryCache.isEnabled(layerName)) {
+                builder.generalize(transformToScreenCoordinates, geometryCache, layerName);
+            } else {
+                builder.transform(transformToScreenCoordinates)
+                        .simplify(transformToScreenCoordinates);
+            }
+            pipeline = builder.clip(clipToMapBounds, transformToScreenCoordinates)
+                    .collapseCollections().build();
         } catch (FactoryException e) {
             throw new ServiceException(e);
         }
@@ -172,13 +243,55 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
         return props;
     }
 
+    /**
+     * Reads the layers in parallel, each into its own {@link FeatureBuffer}, and adds the buffered
+     * features to the tile in layer order
+     */
+    void runConcurrently(List<LayerJob> jobs, VectorTileBuilder vectorTileBuilder) {
+        ThreadLocalsTransfer threadLocals = new ThreadLocalsTransfer();
+        List<Future<FeatureBuffer>> futures = new ArrayList<>(jobs.size());
+        try {
+            for (LayerJob job : jobs) {
+                futures.add(LayerThreads.EXECUTOR.submit(() -> {
+                    threadLocals.apply();
+                    try {
+                        FeatureBuffer buffer = new FeatureBuffer();
+                        run(job.features, job.pipeline, job.geometryDescriptor, buffer::add,
+                                job.layer);
+                        return buffer;
+                    } finally {
+                        threadLocals.cleanup();
+                    }
+                }));
+            }
+            for (Future<FeatureBuffer> future : futures) {
+                getResult(future).replay(vectorTileBuilder);
+            }
+        } finally {
+            for (Future<FeatureBuffer> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Reads the features of a layer, runs them through the pipeline, and hands the ones that
+     * survived it to the sink, in the order they were read
+     */
     void run(FeatureCollection<?, ?> features, Pipeline pipeline, 
             GeometryDescriptor geometryDescriptor, 
-            VectorTileBuilder vectorTileBuilder, Layer layer){
+            Consumer<TileFeature> sink, Layer layer){
         Stopwatch sw = Stopwatch.createStarted();
         int count = 0;
         int total = 0;
         Feature feature;
+
+        // the order dependent steps run on this thread, the others on the geometry threads,
+        // in batches, with a bounded number of batches in flight
+        Pipeline tail = pipeline.getConcurrentTail();
+        boolean concurrent = THREADS > 1 && tail != null;
+        Deque<Future<List<TileFeature>>> inFlight = new ArrayDeque<>();
+        List<TileFeature> batch = new ArrayList<>();
         
         try (FeatureIterator<?> it = features.features()) {
             while (it.hasNext()) {
@@ -187,26 +300,74 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
                 Geometry originalGeom;
                 Geometry finalGeom;
 
+                final String layerName = feature.getName().getLocalPart();
+                final String featureId = feature.getIdentifier().toString();
+                final String geometryName = geometryDescriptor.getName().getLocalPart();
+
                 originalGeom = (Geometry) feature.getDefaultGeometryProperty().getValue();
                 try {
-                    finalGeom = pipeline.execute(originalGeom);
+                    finalGeom = tail == null ? pipeline.execute(originalGeom)
+                            : pipeline.executeSequential(originalGeom);
                 } catch (Exception processingException) {
-                    processingException.printStackTrace();
+                    LOGGER.log(Level.FINE, "Failed to process the geometry of " + featureId,
+                            processingException);
                     continue;
                 }
                 if (finalGeom.isEmpty()) {
                     continue;
                 }
+                // the pipeline can cache its results only if the tile specific pre-processing
+                // left the geometry untouched
+                final String cacheKey = tail != null && finalGeom == originalGeom ? featureId
+                        : null;
 
-                final String layerName = feature.getName().getLocalPart();
-                final String featureId = feature.getIdentifier().toString();
-                final String geometryName = geometryDescriptor.getName().getLocalPart();
-
-                final Map<String, Object> properties = getProperties(feature);
+                if (!concurrent) {
+                    if (tail != null) {
+                        try {
+                            finalGeom = tail.execute(finalGeom, cacheKey);
+                        } catch (Exception processingException) {
+                            LOGGER.log(Level.FINE, "Failed to process the geometry of "
+                                    + featureId, processingException);
+                            continue;
+                        }
+                        if (finalGeom.isEmpty()) {
+                            continue;
+                        }
+                    }
+                    sink.accept(new TileFeature(layerName, featureId, geometryName, finalGeom,
+                            getProperties(feature)));
+                    count++;
+                } else {
+                    TileFeature tf = new TileFeature(layerName, featureId, geometryName,
+                            finalGeom, getProperties(feature));
+                    tf.cacheKey = cacheKey;
+                    batch.add(tf);
+                    if (batch.size() >= BATCH_SIZE) {
+                        inFlight.add(submit(tail, batch));
+                        batch = new ArrayList<>();
+                        while (inFlight.size() > WINDOW) {
+                            count += addFeatures(getResult(inFlight.removeFirst()), sink);
+                        }
+                    }
+                }
+            }
 
-                vectorTileBuilder.addFeature(layerName, featureId, geometryName, finalGeom,
-                        properties);
-                count++;
+            if (concurrent) {
+                // a small layer is not worth a thread switch
+                if (inFlight.isEmpty()) {
+                    count += addFeatures(process(tail, batch), sink);
+                } else {
+                    if (!batch.isEmpty()) {
+                        inFlight.add(submit(tail, batch));
+                    }
+                    while (!inFlight.isEmpty()) {
+                        count += addFeatures(getResult(inFlight.removeFirst()), sink);
+                    }
+                }
+            }
+        } finally {
+            for (Future<List<TileFeature>> future : inFlight) {
+                future.cancel(true);
             }
         }
         sw.stop();
@@ -217,6 +378,155 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
             LOGGER.fine(msg);
         }
     }
+
+    private Future<List<TileFeature>> submit(Pipeline tail, List<TileFeature> batch) {
+        return GeometryThreads.EXECUTOR.submit(() -> process(tail, batch));
+    }
+
+    /**
+     * Runs the concurrent steps of the pipeline on the batch, the features whose geometry failed
+     * processing or became empty are left with a {@code null} geometry
+     */
+    static List<TileFeature> process(Pipeline tail, List<TileFeature> batch) {
+        for (TileFeature tf : batch) {
+            Geometry geom;
+            try {
+                geom = tail.execute(tf.geometry, tf.cacheKey);
+            } catch (Exception processingException) {
+                LOGGER.log(Level.FINE, "Failed to process the geometry of " + tf.featureId,
+                        processingException);
+                geom = null;
+            }
+            tf.geometry = geom == null || geom.isEmpty() ? null : geom;
+        }
+        return batch;
+    }
+
+    private static int addFeatures(List<TileFeature> features, Consumer<TileFeature> sink) {
+        int count = 0;
+        for (TileFeature tf : features) {
+            if (tf.geometry != null) {
+                sink.accept(tf);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void addFeature(TileFeature tf, VectorTileBuilder vectorTileBuilder) {
+        vectorTileBuilder.addFeature(tf.layerName, tf.featureId, tf.geometryName, tf.geometry,
+                tf.properties);
+    }
+
+    private static <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("Interrupted while building the vector tile", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ServiceException("Failed to build the vector tile", cause);
+        }
+    }
+
+    /**
+     * A layer ready to be read and added to the tile
+     */
+    static final class LayerJob {
+        final FeatureCollection<?, ?> features;
+
+        final Pipeline pipeline;
+
+        final GeometryDescriptor geometryDescriptor;
+
+        final Layer layer;
+
+        LayerJob(FeatureCollection<?, ?> features, Pipeline pipeline,
+                GeometryDescriptor geometryDescriptor, Layer layer) {
+            this.features = features;
+            this.pipeline = pipeline;
+            this.geometryDescriptor = geometryDescriptor;
+            this.layer = layer;
+        }
+    }
+
+    /**
+     * A feature on its way to the tile
+     */
+    static final class TileFeature {
+        final String layerName;
+
+        final String featureId;
+
+        final String geometryName;
+
+        final Map<String, Object> properties;
+
+        Geometry geometry;
+
+        /**
+         * The key the pipeline steps can cache the geometry with, if any
+         */
+        String cacheKey;
+
+        TileFeature(String layerName, String featureId, String geometryName, Geometry geometry,
+                Map<String, Object> properties) {
+            this.layerName = layerName;
+            this.featureId = featureId;
+            this.geometryName = geometryName;
+            this.geometry = geometry;
+            this.properties = properties;
+        }
+    }
+
+    /**
+     * Collects the features of a layer, to be added to the actual tile builder later
+     */
+    static final class FeatureBuffer {
+        final List<TileFeature> features = new ArrayList<>();
+
+        void add(TileFeature feature) {
+            features.add(feature);
+        }
+
+        void replay(VectorTileBuilder builder) {
+            for (TileFeature tf : features) {
+                addFeature(tf, builder);
+            }
+        }
+    }
+
+    static ExecutorService newExecutor(String name) {
+        return Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+            final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + " " + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Lazily initialized pool reading the layers of a tile, separate from the geometry one so
+     * that the layer tasks waiting on their batches cannot starve them
+     */
+    static final class LayerThreads {
+        static final ExecutorService EXECUTOR = newExecutor("GeoServer vector tile layer");
+    }
+
+    /**
+     * Lazily initialized pool running the concurrent steps of the geometry pipelines
+     */
+    static final class GeometryThreads {
+        static final ExecutorService EXECUTOR = newExecutor("GeoServer vector tile geometry");
+    }
     
     /**
      * @return {@code null}, not a raster format.
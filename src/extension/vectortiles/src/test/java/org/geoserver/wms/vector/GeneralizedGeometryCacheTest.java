@@ -0,0 +1,194 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.vector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.Rectangle;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.namespace.QName;
+
+import net.opengis.wfs.TransactionResponseType;
+import net.opengis.wfs.TransactionType;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.MetadataMap;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.wfs.TransactionEvent;
+import org.geoserver.wfs.TransactionEventType;
+import org.geotools.data.DataUtilities;
+import org.geotools.feature.NameImpl;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.geometry.jts.WKTReader2;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.Name;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+public class GeneralizedGeometryCacheTest {
+
+    static final Name LAYER = new NameImpl("http://test", "roads");
+
+    Catalog catalog;
+
+    FeatureTypeInfo featureType;
+
+    GeneralizedGeometryCache cache;
+
+    @Before
+    public void setUp() {
+        catalog = mock(Catalog.class);
+        featureType = mock(FeatureTypeInfo.class);
+        when(featureType.getMetadata()).thenReturn(new MetadataMap());
+        when(featureType.getQualifiedName()).thenReturn(LAYER);
+        when(catalog.getFeatureTypeByName(any(Name.class))).thenReturn(null);
+        when(catalog.getFeatureTypeByName(LAYER)).thenReturn(featureType);
+        cache = new GeneralizedGeometryCache(catalog);
+    }
+
+    Geometry load(String featureId, AtomicInteger loads) throws Exception {
+        GeneralizedGeometryCache.Bucket bucket = cache.getBucket(LAYER,
+                DefaultGeographicCRS.WGS84, 0.01);
+        return cache.get(bucket, featureId, () -> {
+            loads.incrementAndGet();
+            return new WKTReader2().read("LINESTRING(0 0, 1 1)");
+        });
+    }
+
+    @Test
+    public void testEnabled() {
+        assertFalse(cache.isEnabled(LAYER));
+        featureType.getMetadata().put(GeneralizedGeometryCache.ENABLED_KEY, true);
+        assertTrue(cache.isEnabled(LAYER));
+        assertFalse(cache.isEnabled(new NameImpl("http://test", "other")));
+    }
+
+    @Test
+    public void testBuckets() {
+        GeneralizedGeometryCache.Bucket bucket = cache.getBucket(LAYER,
+                DefaultGeographicCRS.WGS84, 0.01);
+        // tiny differences due to floating point math still hit the same bucket
+        assertEquals(bucket, cache.getBucket(LAYER, DefaultGeographicCRS.WGS84, 0.0100001));
+        // the next zoom level does not
+        assertNotEquals(bucket, cache.getBucket(LAYER, DefaultGeographicCRS.WGS84, 0.005));
+    }
+
+    @Test
+    public void testCaching() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        Geometry first = load("roads.1", loads);
+        assertSame(first, load("roads.1", loads));
+        assertEquals(1, loads.get());
+        load("roads.2", loads);
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getStatistics().hitCount());
+    }
+
+    @Test
+    public void testTransaction() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        load("roads.1", loads);
+        load("roads.2", loads);
+
+        SimpleFeatureType type = DataUtilities.createType("roads", "geom:LineString");
+        Map<Object, Object> extendedProperties = new HashMap<>();
+        TransactionType request = mock(TransactionType.class);
+        when(request.getExtendedProperties()).thenReturn(extendedProperties);
+        TransactionEvent event = mock(TransactionEvent.class);
+        when(event.getType()).thenReturn(TransactionEventType.PRE_UPDATE);
+        when(event.getRequest()).thenReturn(request);
+        when(event.getLayerName()).thenReturn(new QName("http://test", "roads"));
+        when(event.getAffectedFeatures()).thenReturn(DataUtilities.collection(
+                DataUtilities.createFeature(type, "roads.1=LINESTRING(0 0, 2 2)")));
+
+        cache.dataStoreChange(event);
+        assertEquals(1, cache.size());
+        load("roads.1", loads);
+        assertEquals(3, loads.get());
+
+        // a tile request cached the old geometry again before the commit
+        cache.afterTransaction(request, mock(TransactionResponseType.class), true);
+        load("roads.1", loads);
+        load("roads.2", loads);
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void testTransactionBeforeCaching() throws Exception {
+        SimpleFeatureType type = DataUtilities.createType("roads", "geom:LineString");
+        Map<Object, Object> extendedProperties = new HashMap<>();
+        TransactionType request = mock(TransactionType.class);
+        when(request.getExtendedProperties()).thenReturn(extendedProperties);
+        TransactionEvent event = mock(TransactionEvent.class);
+        when(event.getType()).thenReturn(TransactionEventType.PRE_DELETE);
+        when(event.getRequest()).thenReturn(request);
+        when(event.getLayerName()).thenReturn(new QName("http://test", "roads"));
+        when(event.getAffectedFeatures()).thenReturn(DataUtilities.collection(
+                DataUtilities.createFeature(type, "roads.1=LINESTRING(0 0, 2 2)")));
+
+        // nothing cached for the layer yet, the ids still have to be tracked
+        cache.dataStoreChange(event);
+        AtomicInteger loads = new AtomicInteger();
+        load("roads.1", loads);
+        load("roads.2", loads);
+
+        cache.afterTransaction(request, mock(TransactionResponseType.class), true);
+        assertEquals(1, cache.size());
+        load("roads.1", loads);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testCatalogChange() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        load("roads.1", loads);
+
+        CatalogPostModifyEvent event = mock(CatalogPostModifyEvent.class);
+        when(event.getSource()).thenReturn(featureType);
+        cache.handlePostModifyEvent(event);
+        assertEquals(0, cache.size());
+
+        load("roads.1", loads);
+        cache.reloaded();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPipeline() throws Exception {
+        ReferencedEnvelope tile = new ReferencedEnvelope(0, 10, 0, 10,
+                DefaultGeographicCRS.WGS84);
+        Geometry line = new WKTReader2().read("LINESTRING(1 1, 2 2.0001, 3 3, 4 5)");
+
+        Pipeline cached = PipelineBuilder
+                .newBuilder(tile, new Rectangle(256, 256), DefaultGeographicCRS.WGS84, 1, 0)
+                .generalize(true, cache, LAYER).build();
+        Pipeline plain = PipelineBuilder
+                .newBuilder(tile, new Rectangle(256, 256), DefaultGeographicCRS.WGS84, 1, 0)
+                .transform(true).simplify(true).build();
+
+        Geometry expected = plain.execute(line);
+        assertTrue(expected.equalsExact(cached.execute(line, "roads.1"), 1e-6));
+        assertEquals(1, cache.size());
+        assertTrue(expected.equalsExact(cached.execute(line, "roads.1"), 1e-6));
+        assertEquals(1, cache.getStatistics().hitCount());
+        // no feature id, no caching
+        assertTrue(expected.equalsExact(cached.execute(line), 1e-6));
+        assertEquals(1, cache.size());
+    }
+}
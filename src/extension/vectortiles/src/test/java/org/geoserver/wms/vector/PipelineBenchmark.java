@@ -0,0 +1,174 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.vector;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+import org.geotools.util.logging.Logging;
+import org.junit.Test;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Time spent in each vector tile {@link Pipeline} stage, run sequentially and concurrently.
+ */
+public class PipelineBenchmark {
+
+    static final Logger LOGGER = Logging.getLogger(PipelineBenchmark.class);
+
+    static final int FEATURES = Integer.getInteger("benchmark.features", 5000);
+
+    static final int VERTICES = Integer.getInteger("benchmark.vertices", 1000);
+
+    static final int ITERATIONS = 5;
+
+    static final Rectangle PAINT_AREA = new Rectangle(256, 256);
+
+    @Test
+    public void benchmark() throws Exception {
+        CoordinateReferenceSystem wgs84 = CRS.decode("EPSG:4326", true);
+        CoordinateReferenceSystem mercator = CRS.decode("EPSG:3857", true);
+        // a zoom level 8 tile, the geometries spill over its borders
+        ReferencedEnvelope tile = new ReferencedEnvelope(1_095_801, 1_252_344, 5_322_463,
+                5_479_006, mercator);
+        List<Geometry> geometries = geometries(tile.transform(wgs84, true));
+
+        // warm up, then measure
+        for (boolean report : new boolean[] { false, true }) {
+            stage("preprocess", report, geometries,
+                    b -> b.preprocess(), tile, wgs84);
+            stage("+ transform", report, geometries,
+                    b -> b.preprocess().transform(true), tile, wgs84);
+            stage("+ simplify", report, geometries,
+                    b -> b.preprocess().transform(true).simplify(true), tile, wgs84);
+            stage("+ clip", report, geometries,
+                    b -> b.preprocess().transform(true).simplify(true).clip(true, true), tile,
+                    wgs84);
+            concurrent(report, geometries, tile, wgs84);
+        }
+    }
+
+    Pipeline pipeline(UnaryOperator<PipelineBuilder> steps, ReferencedEnvelope tile,
+            CoordinateReferenceSystem sourceCrs) throws Exception {
+        // the builder modifies the rendering area, use a copy
+        return steps.apply(PipelineBuilder.newBuilder(new ReferencedEnvelope(tile), PAINT_AREA,
+                sourceCrs, 1, 0)).collapseCollections().build();
+    }
+
+    void stage(String name, boolean report, List<Geometry> geometries,
+            UnaryOperator<PipelineBuilder> steps, ReferencedEnvelope tile,
+            CoordinateReferenceSystem sourceCrs) throws Exception {
+        long time = 0;
+        int coordinates = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            // the screen map is stateful, a new pipeline for each run
+            Pipeline pipeline = pipeline(steps, tile, sourceCrs);
+            coordinates = 0;
+            long start = System.nanoTime();
+            for (Geometry geometry : geometries) {
+                coordinates += pipeline.execute(geometry).getNumPoints();
+            }
+            time += System.nanoTime() - start;
+        }
+        if (report) {
+            LOGGER.log(Level.INFO, String.format("%s: %.1f ms, %,d output coordinates", name,
+                    time / 1e6 / ITERATIONS, coordinates));
+        }
+    }
+
+    void concurrent(boolean report, List<Geometry> geometries, ReferencedEnvelope tile,
+            CoordinateReferenceSystem sourceCrs) throws Exception {
+        UnaryOperator<PipelineBuilder> steps = b -> b.preprocess().transform(true).simplify(true)
+                .clip(true, true);
+        long time = 0;
+        int coordinates = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            Pipeline pipeline = pipeline(steps, tile, sourceCrs);
+            Pipeline tail = pipeline.getConcurrentTail();
+            coordinates = 0;
+            long start = System.nanoTime();
+            List<Future<List<VectorTileMapOutputFormat.TileFeature>>> futures = new ArrayList<>();
+            List<VectorTileMapOutputFormat.TileFeature> batch = new ArrayList<>();
+            for (Geometry geometry : geometries) {
+                Geometry head = pipeline.executeSequential(geometry);
+                if (!head.isEmpty()) {
+                    batch.add(new VectorTileMapOutputFormat.TileFeature("layer", "id", "geom",
+                            head, null));
+                }
+                if (batch.size() >= VectorTileMapOutputFormat.BATCH_SIZE) {
+                    List<VectorTileMapOutputFormat.TileFeature> submitted = batch;
+                    futures.add(VectorTileMapOutputFormat.GeometryThreads.EXECUTOR
+                            .submit(() -> VectorTileMapOutputFormat.process(tail, submitted)));
+                    batch = new ArrayList<>();
+                }
+            }
+            List<VectorTileMapOutputFormat.TileFeature> last = batch;
+            futures.add(VectorTileMapOutputFormat.GeometryThreads.EXECUTOR
+                    .submit(() -> VectorTileMapOutputFormat.process(tail, last)));
+            for (Future<List<VectorTileMapOutputFormat.TileFeature>> future : futures) {
+                for (VectorTileMapOutputFormat.TileFeature feature : future.get()) {
+                    if (feature.geometry != null) {
+                        coordinates += feature.geometry.getNumPoints();
+                    }
+                }
+            }
+            time += System.nanoTime() - start;
+        }
+        if (report) {
+            LOGGER.log(Level.INFO, String.format(
+                    "concurrent (%d threads, batches of %d): %.1f ms, %,d output coordinates",
+                    VectorTileMapOutputFormat.THREADS, VectorTileMapOutputFormat.BATCH_SIZE,
+                    time / 1e6 / ITERATIONS, coordinates));
+        }
+    }
+
+    /**
+     * Star shaped polygons and random walk lines, a few times the tile size, with
+     * {@link #VERTICES} vertices each
+     */
+    List<Geometry> geometries(ReferencedEnvelope area) {
+        GeometryFactory gf = new GeometryFactory();
+        Random random = new Random(42);
+        double width = area.getWidth(), height = area.getHeight();
+        List<Geometry> result = new ArrayList<>(FEATURES);
+        for (int i = 0; i < FEATURES; i++) {
+            double cx = area.getMinX() - width + random.nextDouble() * width * 3;
+            double cy = area.getMinY() - height + random.nextDouble() * height * 3;
+            double size = width * (0.01 + random.nextDouble() * 0.5);
+            Coordinate[] coords = new Coordinate[VERTICES + 1];
+            if (i % 2 == 0) {
+                for (int j = 0; j < VERTICES; j++) {
+                    double angle = 2 * Math.PI * j / VERTICES;
+                    double radius = size * (0.5 + random.nextDouble() * 0.5);
+                    coords[j] = new Coordinate(cx + Math.cos(angle) * radius,
+                            cy + Math.sin(angle) * radius);
+                }
+                coords[VERTICES] = coords[0];
+                result.add(gf.createPolygon(coords));
+            } else {
+                double step = size / VERTICES * 4;
+                coords[0] = new Coordinate(cx, cy);
+                for (int j = 1; j <= VERTICES; j++) {
+                    coords[j] = new Coordinate(coords[j - 1].x + (random.nextDouble() - 0.3) * step,
+                            coords[j - 1].y + (random.nextDouble() - 0.5) * step);
+                }
+                result.add(gf.createLineString(coords));
+            }
+        }
+        return result;
+    }
+}
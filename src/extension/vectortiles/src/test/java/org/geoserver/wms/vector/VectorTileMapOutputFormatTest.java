@@ -7,14 +7,17 @@ package org.geoserver.wms.vector;
 import static org.geotools.renderer.lite.VectorMapRenderUtils.getStyleQuery;
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 
 import java.awt.Rectangle;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 
@@ -30,6 +33,7 @@ import org.geoserver.wms.WebMap;
 import org.geotools.data.DataUtilities;
 import org.geotools.data.Query;
 import org.geotools.data.memory.MemoryDataStore;
+import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.geometry.jts.WKTReader2;
@@ -240,6 +244,70 @@ public class VectorTileMapOutputFormatTest {
                 any(Geometry.class), any(Map.class));
     }
 
+    @Test
+    public void testMultipleLayersOrder() throws Exception {
+        ReferencedEnvelope mapBounds = new ReferencedEnvelope(-90, 90, 0, 180, WGS84);
+        Rectangle renderingArea = new Rectangle(256, 256);
+
+        // reference, one layer at a time
+        List<String> added = recordFeatures();
+        List<String> expected = new ArrayList<>();
+        for (Layer layer : Arrays.asList(polygonLayer, pointLayer, lineLayer)) {
+            added.clear();
+            outputFormat.produceMap(createMapContent(mapBounds, renderingArea, null, layer));
+            expected.addAll(added);
+        }
+        assertFalse(expected.isEmpty());
+
+        // the layers are read concurrently, but added in the map order
+        added.clear();
+        outputFormat.produceMap(createMapContent(mapBounds, renderingArea, null, polygonLayer,
+                pointLayer, lineLayer));
+        assertEquals(expected, added);
+    }
+
+    @Test
+    public void testLargeLayerOrder() throws Exception {
+        // enough features to be split in several batches
+        SimpleFeatureType pointType = DataUtilities.createType("many",
+                "sp:String,ip:Integer,geom:Point:srid=4326");
+        MemoryDataStore ds = new MemoryDataStore();
+        int count = VectorTileMapOutputFormat.BATCH_SIZE * 5 + 7;
+        for (int i = 0; i < count; i++) {
+            // points are never dropped by the screen map
+            String wkt = String.format(Locale.ENGLISH, "POINT(%f %f)", (i % 200) * 0.01,
+                    (i / 200) * 0.01);
+            ds.addFeature(feature(pointType, "p" + i, "sp" + i, i, wkt));
+        }
+        List<String> expected = new ArrayList<>();
+        try (SimpleFeatureIterator it = ds.getFeatureSource("many").getFeatures().features()) {
+            while (it.hasNext()) {
+                expected.add("many." + it.next().getID());
+            }
+        }
+        assertEquals(count, expected.size());
+        FeatureLayer layer = new FeatureLayer(ds.getFeatureSource("many"), defaultPointStyle);
+
+        ReferencedEnvelope mapBounds = new ReferencedEnvelope(0, 2.56, 0, 2.56, WGS84);
+        Rectangle renderingArea = new Rectangle(256, 256);
+        WMSMapContent mapContent = createMapContent(mapBounds, renderingArea, null, layer);
+        List<String> added = recordFeatures();
+
+        outputFormat.produceMap(mapContent);
+
+        assertEquals(expected, added);
+    }
+
+    private List<String> recordFeatures() {
+        List<String> added = new ArrayList<>();
+        doAnswer(invocation -> {
+            added.add(invocation.getArguments()[0] + "." + invocation.getArguments()[1]);
+            return null;
+        }).when(tileBuilderMock).addFeature(anyString(), anyString(), anyString(),
+                any(Geometry.class), any(Map.class));
+        return added;
+    }
+
     private WMSMapContent createMapContent(ReferencedEnvelope mapBounds, Rectangle renderingArea, 
             Integer buffer, Layer... layers) throws Exception {
 
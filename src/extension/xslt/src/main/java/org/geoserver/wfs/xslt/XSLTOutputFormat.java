@@ -33,6 +33,7 @@ import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.config.GeoServer;
+import org.geoserver.ows.DispatchIndex;
 import org.geoserver.ows.Dispatcher;
 import org.geoserver.ows.Request;
 import org.geoserver.ows.Response;
@@ -119,6 +120,8 @@ public class XSLTOutputFormat extends WFSGetFeatureOutputFormat implements Appli
             }
             formats.clear();
             formats.putAll(replacement);
+            // the output formats are indexed by the dispatcher
+            DispatchIndex.invalidate();
         }
     }
     
@@ -185,4 +185,20 @@ public class GetFeatureXSLTTest extends XSLTTestSupport {
                 + "&version=1.0.0&service=wfs");
         XMLAssert.assertXpathEvaluatesTo("1", "count(/wfs:FeatureCollection)", d);
     }
+
+    @Test
+    public void testRemovedOutputFormat() throws Exception {
+        String request = "wfs?request=GetFeature&typename=" + getLayerId(MockData.BUILDINGS)
+                + "&version=1.1.0&service=wfs&outputFormat=text/html; subtype=xslt";
+        XMLAssert.assertXpathEvaluatesTo("2", "count(//h2)", getAsDOM(request));
+
+        // drop the transformations, the dispatcher should stop accepting the format
+        File dd = getTestData().getDataDirectoryRoot();
+        deleteDirectory(new File(new File(dd, "wfs"), "transform"));
+        XSLTOutputFormatUpdater updater = applicationContext.getBean(XSLTOutputFormatUpdater.class);
+        updater.run();
+
+        checkOws10Exception(getAsDOM(request), ServiceException.INVALID_PARAMETER_VALUE,
+                "outputFormat");
+    }
 }
@@ -29,6 +29,8 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -38,6 +40,7 @@ import javax.servlet.http.HttpServletResponse;
 import javax.xml.XMLConstants;
 
 import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogException;
 import org.geoserver.catalog.CatalogInfo;
 import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.catalog.LayerGroupInfo;
@@ -47,6 +50,11 @@ import org.geoserver.catalog.PublishedInfo;
 import org.geoserver.catalog.PublishedType;
 import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
 import org.geoserver.catalog.impl.ProxyUtils;
 import org.geoserver.catalog.util.CloseableIterator;
 import org.geoserver.gwc.config.GWCConfig;
@@ -230,6 +238,45 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
 
     // list of GeoServer contributed grid sets that should not be editable by the user
     private final Set<String> geoserverEmbeddedGridSets = new HashSet<>();
+
+    /**
+     * The names of the layers and groups built on top of each feature type, keyed by feature
+     * type namespace and name, see {@link #getTileLayersByFeatureType(String, String)}
+     */
+    private final Map<String, Set<String>> featureTypeTileLayers = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented on each catalog change, to avoid caching lookups that raced with a change
+     */
+    private final AtomicLong featureTypeTileLayersVersion = new AtomicLong();
+
+    private final CatalogListener featureTypeTileLayersListener = new CatalogListener() {
+
+        @Override
+        public void handleAddEvent(CatalogAddEvent event) throws CatalogException {
+            clearFeatureTypeTileLayers();
+        }
+
+        @Override
+        public void handleRemoveEvent(CatalogRemoveEvent event) throws CatalogException {
+            clearFeatureTypeTileLayers();
+        }
+
+        @Override
+        public void handleModifyEvent(CatalogModifyEvent event) throws CatalogException {
+            // wait for the post modify
+        }
+
+        @Override
+        public void handlePostModifyEvent(CatalogPostModifyEvent event) throws CatalogException {
+            clearFeatureTypeTileLayers();
+        }
+
+        @Override
+        public void reloaded() {
+            clearFeatureTypeTileLayers();
+        }
+    };
     
     public GWC(final GWCConfigPersister gwcConfigPersister, final StorageBroker sb,
             final TileLayerDispatcher tld, final GridSetBroker gridSetBroker,
@@ -253,6 +300,7 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
         catalogStyleChangeListener = new CatalogStyleChangeListener(this, catalog);
         this.catalog.addListener(catalogLayerEventListener);
         this.catalog.addListener(catalogStyleChangeListener);
+        this.rawCatalog.addListener(featureTypeTileLayersListener);
         
         this.lockProvider = new ConfigurableLockProvider();
         updateLockProvider(getConfig().getLockProviderName());
@@ -326,6 +374,7 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
         if (this.catalogStyleChangeListener != null) {
             catalog.removeListener(this.catalogStyleChangeListener);
         }
+        rawCatalog.removeListener(featureTypeTileLayersListener);
         GWC.set(null);
     }
 
@@ -1411,23 +1460,54 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
      *         feature type, may be empty
      */
     public Set<String> getTileLayersByFeatureType(final String namespaceURI, final String typeName) {
+        final String key = namespaceURI + ":" + typeName;
+        Set<String> publishedNames = featureTypeTileLayers.get(key);
+        if (publishedNames == null) {
+            final long version = featureTypeTileLayersVersion.get();
+            publishedNames = loadPublishedByFeatureType(namespaceURI, typeName);
+            synchronized (featureTypeTileLayers) {
+                if (version == featureTypeTileLayersVersion.get()) {
+                    featureTypeTileLayers.put(key, publishedNames);
+                }
+            }
+        }
+
+        Set<String> affectedLayers = new HashSet<String>();
+        for (String tileLayerName : publishedNames) {
+            if (tileLayerExists(tileLayerName)) {
+                affectedLayers.add(tileLayerName);
+            }
+        }
+        return affectedLayers;
+    }
+
+    private void clearFeatureTypeTileLayers() {
+        synchronized (featureTypeTileLayers) {
+            featureTypeTileLayersVersion.incrementAndGet();
+            featureTypeTileLayers.clear();
+        }
+    }
+
+    /**
+     * Looks up the names of all the layers and groups, cached or not, built on top of the feature
+     * type. Uses the raw catalog, as the results are shared among all users.
+     */
+    private Set<String> loadPublishedByFeatureType(final String namespaceURI,
+            final String typeName) {
         NamespaceInfo namespace;
         if (namespaceURI == null || XMLConstants.DEFAULT_NS_PREFIX.equals(namespaceURI)) {
-            namespace = getCatalog().getDefaultNamespace();
+            namespace = rawCatalog.getDefaultNamespace();
         } else {
-            namespace = getCatalog().getNamespaceByURI(namespaceURI);
+            namespace = rawCatalog.getNamespaceByURI(namespaceURI);
         }
 
-        final FeatureTypeInfo typeInfo = getCatalog().getFeatureTypeByName(namespace, typeName);
-                final List<LayerInfo> layers = getCatalog().getLayers(typeInfo);
+        final FeatureTypeInfo typeInfo = rawCatalog.getFeatureTypeByName(namespace, typeName);
+        final List<LayerInfo> layers = rawCatalog.getLayers(typeInfo);
 
         Set<String> affectedLayers = new HashSet<String>();
 
         for (LayerInfo layer : layers) {
-            final String tileLayerName = tileLayerName(layer);
-            if (tileLayerExists(tileLayerName)) {
-                affectedLayers.add(tileLayerName);
-            }
+            affectedLayers.add(tileLayerName(layer));
         }
         
         // build a query to find all groups directly containing any
@@ -1439,7 +1519,7 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
         }
         Or groupFilter = ff.or(filters);
         List<LayerGroupInfo> groups = new ArrayList<>();
-        try(CloseableIterator<LayerGroupInfo> it = getCatalog().list(LayerGroupInfo.class, groupFilter)) {
+        try(CloseableIterator<LayerGroupInfo> it = rawCatalog.list(LayerGroupInfo.class, groupFilter)) {
             while(it.hasNext()) {
                 LayerGroupInfo lg = it.next();
                 groups.add(lg);
@@ -1448,13 +1528,9 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
             log.log(Level.SEVERE, "Failed to load groups associated to feature type " + typeName, e);
         }
         // add the parents recursively
-        loadGroupParents(groups);
+        loadGroupParents(rawCatalog, groups);
         for (LayerGroupInfo lgi : groups) {
-            final String tileLayerName = tileLayerName(lgi);
-            if (!tileLayerExists(tileLayerName)) {
-                continue;
-            }
-            affectedLayers.add(tileLayerName);
+            affectedLayers.add(tileLayerName(lgi));
         }
         return affectedLayers;
     }
@@ -1734,7 +1810,7 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
             log.log(Level.SEVERE, "Failed to load groups associated to style " + style.prefixedName(), e);
         }
         
-        loadGroupParents(layerGroups); 
+        loadGroupParents(getCatalog(), layerGroups); 
         
 
         return layerGroups;
@@ -1744,7 +1820,7 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
      * Given a list of groups, recursively loads all other groups containing any of them
      * @param layerGroups
      */
-    private void loadGroupParents(List<LayerGroupInfo> layerGroups) {
+    private void loadGroupParents(Catalog catalog, List<LayerGroupInfo> layerGroups) {
         // we now have groups that are directly referencing the incriminated style, and need
         // to find all their parents, recursively...
         boolean foundNewParents = true;
@@ -1757,7 +1833,7 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
             Or parentFilter = ff.or(parentFilters);
             newGroups.clear();
             foundNewParents = false;
-            try(CloseableIterator<LayerGroupInfo> it = getCatalog().list(LayerGroupInfo.class, parentFilter)) {
+            try(CloseableIterator<LayerGroupInfo> it = catalog.list(LayerGroupInfo.class, parentFilter)) {
                 while(it.hasNext()) {
                     LayerGroupInfo lg = it.next();
                     if(!layerGroups.contains(lg)) {
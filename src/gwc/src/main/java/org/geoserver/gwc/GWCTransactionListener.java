@@ -33,10 +33,10 @@ import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.geometry.jts.ReferencedEnvelope3D;
 import org.geotools.referencing.CRS;
 import org.geotools.util.logging.Logging;
-import org.geowebcache.GeoWebCacheException;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.TransformException;
+import org.springframework.beans.factory.DisposableBean;
 
 /**
  * Listens to transactions (so far only issued by WFS) and truncates the cache for the affected area
@@ -54,19 +54,61 @@ import org.opengis.referencing.operation.TransformException;
  * @version $Id$
  * 
  */
-public class GWCTransactionListener implements TransactionPlugin {
+public class GWCTransactionListener implements TransactionPlugin, DisposableBean {
 
     private static Logger log = Logging.getLogger(GWCTransactionListener.class);
 
     final private GWC gwc;
 
+    final private TruncationQueue truncationQueue;
+
+    /**
+     * Whether the truncation queue was created by this listener, and needs to be shut down with it
+     */
+    final private boolean ownsQueue;
+
     static final String GWC_TRANSACTION_INFO_PLACEHOLDER = "GWC_TRANSACTION_INFO_PLACEHOLDER";
 
     /**
+     * Builds a listener with its own truncation queue, shut down by {@link #destroy()}
+     * 
      * @param gwc
      */
     public GWCTransactionListener(final GWC gwc) {
+        this(gwc, new TruncationQueue(gwc), true);
+    }
+
+    /**
+     * @param gwc
+     * @param truncationQueue the queue running the truncations in the background, its lifecycle
+     *        is managed by the caller
+     */
+    public GWCTransactionListener(final GWC gwc, final TruncationQueue truncationQueue) {
+        this(gwc, truncationQueue, false);
+    }
+
+    private GWCTransactionListener(final GWC gwc, final TruncationQueue truncationQueue,
+            boolean ownsQueue) {
         this.gwc = gwc;
+        this.truncationQueue = truncationQueue;
+        this.ownsQueue = ownsQueue;
+    }
+
+    /**
+     * Shuts down the truncation queue, if created by this listener
+     */
+    @Override
+    public void destroy() throws Exception {
+        if (ownsQueue) {
+            truncationQueue.destroy();
+        }
+    }
+
+    /**
+     * The queue running the truncations caused by the transactions
+     */
+    public TruncationQueue getTruncationQueue() {
+        return truncationQueue;
     }
 
     /**
@@ -91,8 +133,8 @@ public class GWCTransactionListener implements TransactionPlugin {
     }
 
     /**
-     * If transaction's succeeded then truncate the affected layers at the transaction affected
-     * bounds
+     * If transaction's succeeded then schedule the truncation of the affected layers at the
+     * transaction affected bounds, the truncation happens in the background
      * 
      * @see org.geoserver.wfs.TransactionPlugin#afterTransaction
      */
@@ -127,12 +169,7 @@ public class GWCTransactionListener implements TransactionPlugin {
             if (dirtyRegion == null) {
                 continue;
             }
-            try {
-                gwc.truncate(tileLayerName, dirtyRegion);
-            } catch (GeoWebCacheException e) {
-                log.warning("Error truncating tile layer " + tileLayerName
-                        + " for transaction affected bounds " + dirtyRegion);
-            }
+            truncationQueue.submit(tileLayerName, dirtyRegion);
         }
     }
 
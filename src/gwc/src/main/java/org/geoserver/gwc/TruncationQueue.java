@@ -0,0 +1,269 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.util.logging.Logging;
+import org.springframework.beans.factory.DisposableBean;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Truncates the tile layers dirty regions in the background, so that the transactions modifying
+ * cached data do not have to wait for the cache truncation.
+ * <p>
+ * The dirty regions are collected per tile layer until the layer truncation starts: regions
+ * overlapping each other are merged, and a layer is never queued more than once, so a stream of
+ * small edits results in few, larger truncations. The truncations run on a fixed number of
+ * threads, set by the {@code org.geoserver.gwc.truncate.threads} system property (defaults to 2).
+ * <p>
+ * The queue depth and coalescing statistics are published in JMX as
+ * {@code org.geoserver:type=GWC,name=TruncationQueue}.
+ */
+public class TruncationQueue implements TruncationQueueMXBean, DisposableBean {
+
+    static final Logger LOGGER = Logging.getLogger(TruncationQueue.class);
+
+    static final String OBJECT_NAME = "org.geoserver:type=GWC,name=TruncationQueue";
+
+    static final int THREADS = Integer.getInteger("org.geoserver.gwc.truncate.threads", 2);
+
+    /**
+     * Max number of disjoint regions kept for a layer, past it they are merged into one
+     */
+    static final int MAX_REGIONS = 16;
+
+    final GWC gwc;
+
+    final ExecutorService executor;
+
+    /**
+     * Whether this queue published its statistics in JMX
+     */
+    volatile boolean registered;
+
+    /**
+     * The dirty regions of the layers waiting to be truncated, guarded by this
+     */
+    final Map<String, List<ReferencedEnvelope>> pending = new LinkedHashMap<>();
+
+    int running;
+
+    final AtomicLong submitted = new AtomicLong();
+
+    final AtomicLong coalesced = new AtomicLong();
+
+    final AtomicLong executed = new AtomicLong();
+
+    final AtomicLong failed = new AtomicLong();
+
+    public TruncationQueue(GWC gwc) {
+        this.gwc = gwc;
+        this.executor = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+            final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "GeoServer GWC truncate " + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Publishes the statistics in JMX
+     */
+    public void registerStatistics() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            registered = true;
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to register the GWC truncation statistics in JMX", e);
+        }
+    }
+
+    /**
+     * Schedules the truncation of the dirty region, which must be expressed in the tile layer
+     * declared CRS
+     */
+    public void submit(String tileLayerName, ReferencedEnvelope dirtyRegion) {
+        submitted.incrementAndGet();
+        boolean schedule = false;
+        synchronized (this) {
+            List<ReferencedEnvelope> regions = pending.get(tileLayerName);
+            if (regions == null) {
+                regions = new ArrayList<>(2);
+                pending.put(tileLayerName, regions);
+                schedule = true;
+            } else {
+                coalesced.incrementAndGet();
+            }
+            addRegion(regions, dirtyRegion);
+        }
+        if (schedule) {
+            executor.execute(() -> truncate(tileLayerName));
+        }
+    }
+
+    /**
+     * Adds the region to the list, merging it with the ones it overlaps
+     */
+    static void addRegion(List<ReferencedEnvelope> regions, ReferencedEnvelope region) {
+        ReferencedEnvelope merged = new ReferencedEnvelope(region);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Iterator<ReferencedEnvelope> it = regions.iterator(); it.hasNext();) {
+                ReferencedEnvelope existing = it.next();
+                if (existing.intersects((Envelope) merged)) {
+                    merged.expandToInclude(existing);
+                    it.remove();
+                    changed = true;
+                }
+            }
+        }
+        regions.add(merged);
+        if (regions.size() > MAX_REGIONS) {
+            ReferencedEnvelope union = new ReferencedEnvelope(regions.get(0));
+            for (ReferencedEnvelope r : regions) {
+                union.expandToInclude(r);
+            }
+            regions.clear();
+            regions.add(union);
+        }
+    }
+
+    void truncate(String tileLayerName) {
+        List<ReferencedEnvelope> regions;
+        synchronized (this) {
+            // from now on the new regions go into a new truncation
+            regions = pending.remove(tileLayerName);
+            running++;
+        }
+        try {
+            if (regions == null) {
+                return;
+            }
+            for (ReferencedEnvelope region : regions) {
+                try {
+                    gwc.truncate(tileLayerName, region);
+                    executed.incrementAndGet();
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    LOGGER.log(Level.WARNING, "Error truncating tile layer " + tileLayerName
+                            + " for transaction affected bounds " + region, e);
+                }
+            }
+        } finally {
+            synchronized (this) {
+                running--;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits for the queued truncations to complete, returns false if they did not complete in
+     * the given time
+     */
+    public synchronized boolean awaitIdle(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!pending.isEmpty() || running > 0) {
+            long wait = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (wait <= 0) {
+                return false;
+            }
+            wait(wait);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized int getQueueDepth() {
+        return pending.size();
+    }
+
+    @Override
+    public synchronized int getRunningTruncations() {
+        return running;
+    }
+
+    @Override
+    public long getSubmittedRegions() {
+        return submitted.get();
+    }
+
+    @Override
+    public long getCoalescedRegions() {
+        return coalesced.get();
+    }
+
+    @Override
+    public double getCoalescingRatio() {
+        long total = submitted.get();
+        return total == 0 ? 0 : coalesced.get() / (double) total;
+    }
+
+    @Override
+    public long getExecutedTruncations() {
+        return executed.get();
+    }
+
+    @Override
+    public long getFailedTruncations() {
+        return failed.get();
+    }
+
+    @Override
+    public void resetStatistics() {
+        submitted.set(0);
+        coalesced.set(0);
+        executed.set(0);
+        failed.set(0);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        executor.shutdownNow();
+        if (!registered) {
+            // do not unregister the statistics of another queue
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Failed to unregister the GWC truncation statistics", e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+/**
+ * Management interface of the {@link TruncationQueue}, exposing the queue depth and coalescing
+ * metrics
+ */
+public interface TruncationQueueMXBean {
+
+    /**
+     * Number of tile layers waiting to be truncated
+     */
+    int getQueueDepth();
+
+    /**
+     * Number of truncations currently running
+     */
+    int getRunningTruncations();
+
+    /**
+     * Total number of dirty regions submitted
+     */
+    long getSubmittedRegions();
+
+    /**
+     * Total number of dirty regions merged into a pending truncation, instead of causing a new
+     * one
+     */
+    long getCoalescedRegions();
+
+    /**
+     * The ratio between the coalesced and submitted regions, from 0 (no coalescing) to 1
+     */
+    double getCoalescingRatio();
+
+    /**
+     * Total number of region truncations executed
+     */
+    long getExecutedTruncations();
+
+    /**
+     * Total number of region truncations that failed
+     */
+    long getFailedTruncations();
+
+    /**
+     * Resets the counters
+     */
+    void resetStatistics();
+}
@@ -11,16 +11,25 @@ import static com.google.common.base.Throwables.propagateIfInstanceOf;
 import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -40,13 +49,85 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
 import com.thoughtworks.xstream.XStream;
 
+/**
+ * Stores the tile layers configuration as one XML file per layer.
+ * <p>
+ * Along with the layer files an index of the layers id, name and file modification time is kept,
+ * so that at startup only the layers whose file got modified behind the catalog back are parsed
+ * (in parallel), while the others are parsed on first access. The index is written in the
+ * background, batching the changes, and checked against the layer files at each startup, so a
+ * stale or missing index only results in more layers being parsed at startup.
+ * <p>
+ * Reads do not lock, the layers are kept in concurrent maps.
+ */
 public class DefaultTileLayerCatalog implements TileLayerCatalog {
 
     private static final Logger LOGGER = Logging.getLogger(DefaultTileLayerCatalog.class);
 
     private static final String LAYERINFO_DIRECTORY = "gwc-layers";
 
-    private Map<String, GeoServerTileLayerInfo> layersById;
+    static final String INDEX_FILE = "tilelayers.index";
+
+    /**
+     * Delay between a change and the index update, in milliseconds, so that bulk changes write
+     * the index once
+     */
+    static final long INDEX_WRITE_DELAY = 1000;
+
+    static final ScheduledExecutorService INDEX_WRITER = Executors
+            .newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "GeoServer tile layer index writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * A tile layer, whose configuration is parsed on first access
+     */
+    final class LazyTileLayer {
+        final String id;
+
+        final String name;
+
+        /**
+         * Modification time of the layer file
+         */
+        final long lastModified;
+
+        volatile GeoServerTileLayerInfo info;
+
+        LazyTileLayer(String id, String name, long lastModified,
+                GeoServerTileLayerInfo info) {
+            this.id = id;
+            this.name = name;
+            this.lastModified = lastModified;
+            this.info = info;
+        }
+
+        GeoServerTileLayerInfo getInfo() {
+            GeoServerTileLayerInfo result = info;
+            if (result == null) {
+                synchronized (this) {
+                    result = info;
+                    if (result == null) {
+                        try {
+                            result = info = loadInternal(id);
+                        } catch (IOException e) {
+                            LOGGER.log(Level.SEVERE, "Error depersisting tile layer information "
+                                    + "for layer " + name, e);
+                            // forget about it, as if it did not load at startup
+                            if (layersById.remove(id, this)) {
+                                layersByName.remove(name, id);
+                            }
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    Map<String, LazyTileLayer> layersById;
 
     /**
      * View of layer ids by name
@@ -61,6 +142,8 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
 
     private volatile boolean initialized;
 
+    private final AtomicBoolean indexWriteScheduled = new AtomicBoolean();
+
     public DefaultTileLayerCatalog(GeoServerResourceLoader resourceLoader,
             XMLConfiguration xmlPersisterFactory) throws IOException {
         this(resourceLoader,
@@ -102,38 +185,128 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
 
         LOGGER.info("GeoServer TileLayer store base directory is: " + baseDir.path());
         LOGGER.info("Loading tile layers from " + baseDir.path());
-        
+
+        // the layers whose file did not change since the index got written are loaded lazily
+        Map<String, LazyTileLayer> indexed = readIndex(baseDir);
+        AtomicInteger parsed = new AtomicInteger();
         ExtensionFilter xmlFilter = new Resources.ExtensionFilter("XML");
         baseDir.list().parallelStream().filter(r -> xmlFilter.accept(r)).forEach(res -> {
-            GeoServerTileLayerInfoImpl info;
-            try {
-                info = depersist(res);
-            } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, "Error depersisting tile layer information from file "
-                        + res.name(), e);
-                return;
+            LazyTileLayer layer = indexed.get(res.name());
+            long lastModified = res.lastmodified();
+            if (layer == null || layer.lastModified != lastModified) {
+                GeoServerTileLayerInfoImpl info;
+                try {
+                    info = depersist(res);
+                } catch (Exception e) {
+                    LOGGER.log(Level.SEVERE, "Error depersisting tile layer information from file "
+                            + res.name(), e);
+                    return;
+                }
+                layer = new LazyTileLayer(info.getId(), info.getName(), lastModified, info);
+                parsed.incrementAndGet();
             }
 
-            layersByName.put(info.getName(), info.getId());
-            layersById.put(info.getId(), info);
+            layersByName.put(layer.name, layer.id);
+            layersById.put(layer.id, layer);
 
             if (LOGGER.isLoggable(Level.FINER)) {
-                LOGGER.finer("Loaded tile layer '" + info.getName() + "'");
+                LOGGER.finer("Loaded tile layer '" + layer.name + "'");
             }
         });
         this.initialized = true;
+
+        LOGGER.info("Loaded " + layersById.size() + " tile layers, " + parsed.get()
+                + " of them not found in the index");
+        if (parsed.get() > 0 || indexed.size() != layersById.size()) {
+            scheduleIndexWrite();
+        }
+    }
+
+    /**
+     * Reads the layers index, keyed by layer file name. Returns an empty map if the index is
+     * missing or cannot be read.
+     */
+    Map<String, LazyTileLayer> readIndex(Resource baseDir) {
+        Map<String, LazyTileLayer> result = new HashMap<>();
+        Resource index = baseDir.get(INDEX_FILE);
+        if (index.getType() != Type.RESOURCE) {
+            return result;
+        }
+        Properties properties = new Properties();
+        try (InputStream is = index.in()) {
+            properties.load(is);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to read the tile layers index, will parse all "
+                    + "the tile layers", e);
+            return result;
+        }
+        for (String id : properties.stringPropertyNames()) {
+            // the value is the modification time of the layer file, followed by the name
+            String value = properties.getProperty(id);
+            int idx = value.indexOf(':');
+            if (idx <= 0) {
+                continue;
+            }
+            try {
+                long lastModified = Long.parseLong(value.substring(0, idx));
+                String name = value.substring(idx + 1);
+                result.put(getFileName(id), new LazyTileLayer(id, name, lastModified, null));
+            } catch (NumberFormatException e) {
+                LOGGER.log(Level.FINE, "Skipping invalid index entry for " + id, e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Schedules the write of the index, the changes happening in the meantime are written
+     * along
+     */
+    void scheduleIndexWrite() {
+        if (indexWriteScheduled.compareAndSet(false, true)) {
+            INDEX_WRITER.schedule(() -> writeIndex(), INDEX_WRITE_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void writeIndex() {
+        indexWriteScheduled.set(false);
+        if (!initialized) {
+            // reset in the meantime, the index will be rewritten at the next initialization
+            return;
+        }
+        Properties properties = new Properties();
+        for (LazyTileLayer layer : layersById.values()) {
+            properties.setProperty(layer.id, layer.lastModified + ":" + layer.name);
+        }
+        Resource baseDir = resourceLoader.get(baseDirectory);
+        Resource index = baseDir.get(INDEX_FILE);
+        Resource tmp = baseDir.get(INDEX_FILE + ".tmp");
+        try {
+            try (OutputStream os = tmp.out()) {
+                properties.store(os, "Tile layers index: id=lastModified:name");
+            }
+            rename(tmp, index);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to write the tile layers index", e);
+            tmp.delete();
+        }
     }
 
     @Override
     public GeoServerTileLayerInfo getLayerById(final String id) {
         checkInitialized();
-        GeoServerTileLayerInfo layer = layersById.get(id);
-        return layer == null ? null : layer.clone();
+        LazyTileLayer layer = layersById.get(id);
+        GeoServerTileLayerInfo info = layer == null ? null : layer.getInfo();
+        return info == null ? null : info.clone();
     }
 
-    private synchronized void checkInitialized() {
+    private void checkInitialized() {
         if (!initialized) {
-            initialize();
+            synchronized (this) {
+                if (!initialized) {
+                    initialize();
+                }
+            }
         }
     }
 
@@ -175,6 +348,7 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
                 layersById.remove(tileLayerId);
                 layersByName.remove(info.getName());
                 file.delete();
+                scheduleIndexWrite();
             }
             return info;
         } catch (IOException notFound) {
@@ -210,9 +384,11 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
                 layersByName.remove(oldValue.getName());
             }
 
-            persist(newValue);
+            long lastModified = persist(newValue);
             layersByName.put(newValue.getName(), newValue.getId());
-            layersById.put(newValue.getId(), newValue.clone());
+            layersById.put(newValue.getId(), new LazyTileLayer(newValue.getId(),
+                    newValue.getName(), lastModified, newValue.clone()));
+            scheduleIndexWrite();
 
         } catch (Exception e) {
             if (e instanceof ExecutionException) {
@@ -223,7 +399,10 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
         return oldValue;
     }
 
-    private void persist(GeoServerTileLayerInfo real) throws IOException {
+    /**
+     * Writes down the layer, returns the modification time of its file
+     */
+    private long persist(GeoServerTileLayerInfo real) throws IOException {
         final String tileLayerId = real.getId();
         Resource file = getFile(tileLayerId);
         boolean cleanup = false;
@@ -256,6 +435,7 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
             throw propagate(e);
         }
         rename(tmp, file);
+        return file.lastmodified();
     }
 
     private GeoServerTileLayerInfoImpl loadInternal(final String tileLayerId)
@@ -268,13 +448,17 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
     }
 
     private Resource getFile(final String tileLayerId) throws IOException {
-        final String fileName = FilePathUtils.filteredLayerName(tileLayerId) + ".xml";
+        final String fileName = getFileName(tileLayerId);
 
         final Resource base = resourceLoader.get(baseDirectory);
 
         return base.get(fileName);
     }
 
+    private static String getFileName(final String tileLayerId) {
+        return FilePathUtils.filteredLayerName(tileLayerId) + ".xml";
+    }
+
     private GeoServerTileLayerInfoImpl depersist(final Resource res) throws IOException {
         if (LOGGER.isLoggable(Level.FINE)) {
             LOGGER.fine("Depersisting GeoServerTileLayerInfo from " + res.path());
@@ -324,7 +508,7 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
     @Override
     public String getLayerName(String layerId) {
         checkInitialized();
-        return layersById.get(layerId).getName();
+        return layersById.get(layerId).name;
     }
 
 }
@@ -691,11 +691,11 @@ public class GWCTest {
         mediator.destroy();
 
         ArgumentCaptor<CatalogListener> captor = ArgumentCaptor.forClass(CatalogListener.class);
-        verify(catalog, times(2)).removeListener(captor.capture());
-        for (CatalogListener captured : captor.getAllValues()) {
-            assertTrue(captured instanceof CatalogLayerEventListener
-                    || captured instanceof CatalogStyleChangeListener);
-        }
+        // the test uses the same catalog as the raw one, which gets the feature type index listener
+        verify(catalog, times(3)).removeListener(captor.capture());
+        List<CatalogListener> listeners = captor.getAllValues();
+        assertTrue(listeners.stream().anyMatch(l -> l instanceof CatalogLayerEventListener));
+        assertTrue(listeners.stream().anyMatch(l -> l instanceof CatalogStyleChangeListener));
     }
 
     @Test
@@ -5,6 +5,7 @@
  */
 package org.geoserver.gwc;
 
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertSame;
 import static junit.framework.Assert.assertTrue;
@@ -22,6 +23,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.namespace.QName;
 
@@ -35,6 +37,7 @@ import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.geometry.jts.ReferencedEnvelope3D;
 import org.geotools.referencing.CRS;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
@@ -53,6 +56,28 @@ public class GWCTransactionListenerTest {
         listener = new GWCTransactionListener(mediator);
     }
 
+    @After
+    public void tearDown() throws Exception {
+        listener.destroy();
+    }
+
+    @Test
+    public void testQueueShutdown() throws Exception {
+        // the listener shuts down the queue it created
+        TruncationQueue owned = listener.getTruncationQueue();
+        listener.destroy();
+        assertTrue(owned.executor.isShutdown());
+
+        // but not the one it has been given
+        TruncationQueue shared = new TruncationQueue(mediator);
+        try {
+            new GWCTransactionListener(mediator, shared).destroy();
+            assertFalse(shared.executor.isShutdown());
+        } finally {
+            shared.destroy();
+        }
+    }
+
     @Test
     public void testNoInteractionsInUnusedMethods() {
 
@@ -177,6 +202,8 @@ public class GWCTransactionListenerTest {
 
         when(mediator.getDeclaredCrs(anyString())).thenReturn(compoundCrs);
         listener.afterTransaction(request, result, true);
+        // truncation happens in the background
+        assertTrue(listener.getTruncationQueue().awaitIdle(10, TimeUnit.SECONDS));
         
         ReferencedEnvelope expectedBounds = new ReferencedEnvelope(transactionBounds, CRS.getHorizontalCRS(compoundCrs));
 
@@ -200,6 +227,7 @@ public class GWCTransactionListenerTest {
 
         when(mediator.getDeclaredCrs(anyString())).thenReturn(WGS84);
         listener.afterTransaction(request, result, true);
+        assertTrue(listener.getTruncationQueue().awaitIdle(10, TimeUnit.SECONDS));
 
         ReferencedEnvelope expectedEnv = new ReferencedEnvelope(affectedBounds1);
         expectedEnv.expandToInclude(affectedBounds2);
@@ -0,0 +1,101 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+import static org.geotools.referencing.crs.DefaultGeographicCRS.WGS84;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TruncationQueueTest {
+
+    GWC gwc;
+
+    TruncationQueue queue;
+
+    @Before
+    public void setUp() {
+        gwc = mock(GWC.class);
+        queue = new TruncationQueue(gwc);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        queue.destroy();
+    }
+
+    @Test
+    public void testMergeRegions() {
+        List<ReferencedEnvelope> regions = new ArrayList<>();
+        TruncationQueue.addRegion(regions, new ReferencedEnvelope(0, 10, 0, 10, WGS84));
+        TruncationQueue.addRegion(regions, new ReferencedEnvelope(20, 30, 20, 30, WGS84));
+        assertEquals(2, regions.size());
+
+        // bridges the two, all get merged
+        TruncationQueue.addRegion(regions, new ReferencedEnvelope(5, 25, 5, 25, WGS84));
+        assertEquals(1, regions.size());
+        assertEquals(new ReferencedEnvelope(0, 30, 0, 30, WGS84), regions.get(0));
+
+        // too many disjoint regions collapse into one
+        regions.clear();
+        for (int i = 0; i <= TruncationQueue.MAX_REGIONS; i++) {
+            TruncationQueue.addRegion(regions,
+                    new ReferencedEnvelope(i * 10, i * 10 + 1, 0, 1, WGS84));
+        }
+        assertEquals(1, regions.size());
+        assertEquals(new ReferencedEnvelope(0, TruncationQueue.MAX_REGIONS * 10 + 1, 0, 1,
+                WGS84), regions.get(0));
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        // block the first truncation, so that the following regions pile up
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return null;
+        }).when(gwc).truncate(eq("blocker"), any(ReferencedEnvelope.class));
+
+        queue.submit("blocker", new ReferencedEnvelope(0, 1, 0, 1, WGS84));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        // keep all the threads busy, so that the next layer stays in the queue
+        for (int i = 1; i < TruncationQueue.THREADS; i++) {
+            queue.submit("blocker", new ReferencedEnvelope(0, 1, 0, 1, WGS84));
+        }
+
+        queue.submit("layer", new ReferencedEnvelope(0, 10, 0, 10, WGS84));
+        queue.submit("layer", new ReferencedEnvelope(5, 15, 5, 15, WGS84));
+        queue.submit("layer", new ReferencedEnvelope(50, 60, 50, 60, WGS84));
+        assertTrue(queue.getQueueDepth() >= 1);
+        assertTrue(queue.getCoalescingRatio() > 0);
+
+        release.countDown();
+        assertTrue(queue.awaitIdle(10, TimeUnit.SECONDS));
+
+        verify(gwc, times(1)).truncate(eq("layer"),
+                eq(new ReferencedEnvelope(0, 15, 0, 15, WGS84)));
+        verify(gwc, times(1)).truncate(eq("layer"),
+                eq(new ReferencedEnvelope(50, 60, 50, 60, WGS84)));
+        assertTrue(queue.getCoalescedRegions() >= 2);
+        assertEquals(0, queue.getQueueDepth());
+    }
+}
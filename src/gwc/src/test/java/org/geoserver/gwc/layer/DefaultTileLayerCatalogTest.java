@@ -43,8 +43,24 @@ public class DefaultTileLayerCatalogTest {
         catalog = new DefaultTileLayerCatalog(resourceLoader, xStream);
     }
 
+    DefaultTileLayerCatalog newCatalog() {
+        XStream xStream = XMLConfiguration.getConfiguredXStreamWithContext(new XStream(),
+                (WebApplicationContext) null, Context.PERSIST);
+        return new DefaultTileLayerCatalog(new GeoServerResourceLoader(baseDirectory), xStream);
+    }
+
+    GeoServerTileLayerInfo saveLayer(String id, String name) {
+        GeoServerTileLayerInfo info = new GeoServerTileLayerInfoImpl();
+        info.setId(id);
+        info.setName(name);
+        catalog.save(info);
+        return info;
+    }
+
     @After
     public void tearDown() throws Exception {
+        // avoids background index writes
+        catalog.reset();
         FileUtils.deleteDirectory(baseDirectory);
     }
 
@@ -115,4 +131,44 @@ public class DefaultTileLayerCatalogTest {
         assertEquals(ImmutableSet.of("image/gif"), modified.getMimeFormats());
     }
 
+    @Test
+    public void testLazyLoadFromIndex() throws Exception {
+        GeoServerTileLayerInfo info1 = saveLayer("id1", "name1");
+        saveLayer("id2", "name2");
+        catalog.writeIndex();
+
+        // the layers listed in the index are not parsed at startup
+        DefaultTileLayerCatalog reloaded = newCatalog();
+        reloaded.initialize();
+        assertEquals(ImmutableSet.of("name1", "name2"), reloaded.getLayerNames());
+        assertEquals("name2", reloaded.getLayerName("id2"));
+        assertNull(reloaded.layersById.get("id1").info);
+        assertNull(reloaded.layersById.get("id2").info);
+
+        // until accessed
+        assertEquals(info1, ModificationProxy.unwrap(reloaded.getLayerByName("name1")));
+        assertNotNull(reloaded.layersById.get("id1").info);
+        reloaded.reset();
+    }
+
+    @Test
+    public void testStaleIndex() throws Exception {
+        saveLayer("id1", "name1");
+        catalog.writeIndex();
+        // changes not yet in the index
+        GeoServerTileLayerInfo info2 = saveLayer("id2", "name2");
+        GeoServerTileLayerInfo renamed = catalog.getLayerById("id1");
+        renamed.setName("renamed");
+        catalog.save(renamed);
+        // make sure the file modification time differs from the indexed one
+        File file1 = new File(baseDirectory, "gwc-layers/id1.xml");
+        file1.setLastModified(file1.lastModified() + 10000);
+
+        DefaultTileLayerCatalog reloaded = newCatalog();
+        reloaded.initialize();
+        assertEquals(ImmutableSet.of("renamed", "name2"), reloaded.getLayerNames());
+        assertNotNull(reloaded.layersById.get("id1").info);
+        assertEquals(info2, ModificationProxy.unwrap(reloaded.getLayerById("id2")));
+        reloaded.reset();
+    }
 }
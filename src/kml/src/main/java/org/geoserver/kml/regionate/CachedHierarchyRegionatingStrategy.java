@@ -6,16 +6,20 @@
 package org.geoserver.kml.regionate;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
 import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,7 +40,6 @@ import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.map.Layer;
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.operation.projection.ProjectionException;
-import org.geotools.util.CanonicalSet;
 import org.geotools.util.logging.Logging;
 import org.h2.tools.DeleteDbFiles;
 import org.opengis.feature.simple.SimpleFeature;
@@ -56,9 +59,11 @@ import com.vividsolutions.jts.geom.Point;
  * Base class for regionating strategies. Common functionality provided:
  * <ul>
  * <li>tiling based on the TMS tiling recommendation</li>
- * <li>caching the assignment of a feature in a specific tile in an H2 database
- * stored in the data directory</li>
- * <li>
+ * <li>caching the assignment of a feature in a specific tile in a memory mapped
+ * index stored in the data directory, built with a single scan of the features
+ * the first time the layer is regionated, and dropped when the layer data or
+ * configuration changes</li>
+ * </ul>
  * 
  * @author Andrea Aime - OpenGeo
  * @author David Winslow - OpenGeo
@@ -72,13 +77,28 @@ public abstract class CachedHierarchyRegionatingStrategy implements
 
     static final Set<String> NO_FIDS = Collections.emptySet();
 
+    static final String INDEX_EXTENSION = ".tiles";
+
+    /**
+     * Returned by {@link #assign} when the feature could not be assigned to any tile
+     */
+    static final long NO_TILE = -1;
+
+    /**
+     * The mapped tile indexes, by file path
+     */
+    static final Map<String, TileFidIndex> INDEXES = new ConcurrentHashMap<String, TileFidIndex>();
+
     /**
-     * This structure is used to make sure that multiple threads end up using
-     * the same table name object, so that we can use it as a synchonization
-     * token
+     * Used to make sure two threads do not build the same index at the same time
      */
-    static CanonicalSet<String> canonicalizer = CanonicalSet
-            .newInstance(String.class);
+    static final Map<String, Object> BUILD_LOCKS = new ConcurrentHashMap<String, Object>();
+
+    /**
+     * Incremented on each invalidation, so that the indexes being built at the time are not
+     * kept
+     */
+    static final AtomicLong GENERATION = new AtomicLong();
 
     static {
         try {
@@ -108,7 +128,8 @@ public abstract class CachedHierarchyRegionatingStrategy implements
     protected Integer featuresPerTile;
 
     /**
-     * The name of the database that will contain the fid to tile cache
+     * The base name of the fid to tile index file, and of the scratch database used to sort
+     * the features while building it
      */
     protected String tableName;
 
@@ -192,9 +213,17 @@ public abstract class CachedHierarchyRegionatingStrategy implements
             Resource geosearch = loader.get("geosearch");
             if( geosearch.getType() == Type.DIRECTORY ){
                 File directory = geosearch.dir();
+                String name = getDatabaseName(cfg);
+                GENERATION.incrementAndGet();
+                File index = new File(directory, name + INDEX_EXTENSION);
+                TileFidIndex mapped = INDEXES.remove(index.getPath());
+                if (mapped != null) {
+                    mapped.close();
+                }
+                index.delete();
                 DeleteDbFiles.execute(
                         directory.getCanonicalPath(),
-                    "h2cache_" + getDatabaseName(cfg),
+                    "h2cache_" + name,
                     true
                     );
             }
@@ -231,7 +260,7 @@ public abstract class CachedHierarchyRegionatingStrategy implements
     }
 
     /**
-     * Open/creates the db and then reads/computes the tile features
+     * Reads the tile features from the layer index, building it if missing
      * 
      * @param dataDir
      * @param tile
@@ -239,211 +268,253 @@ public abstract class CachedHierarchyRegionatingStrategy implements
      */
     private Set<String> getFeaturesForTile(String dataDir, Tile tile)
             throws Exception {
-        Connection conn = null;
-        Statement st = null;
-
-        // build the synchonization token
-        canonicalizer.add(tableName);
-        tableName = canonicalizer.get(tableName);
-
-        try {
-            // make sure no two thread in parallel can build the same db
-            synchronized (tableName) {
-                // get a hold to the database that contains the cache (this will
-                // eventually create the db)
-                conn = DriverManager.getConnection("jdbc:h2:file:" + dataDir
-                        + "/geosearch/h2cache_" + tableName, "geoserver",
-                        "geopass");
-
-                // try to create the table, if it's already there this will fail
-                st = conn.createStatement();
-                st.execute("CREATE TABLE IF NOT EXISTS TILECACHE( " //
-                        + "x BIGINT, " //
-                        + "y BIGINT, " //
-                        + "z INT, " //
-                        + "fid varchar (64))");
-                st.execute("CREATE INDEX IF NOT EXISTS IDX_TILECACHE ON TILECACHE(x, y, z)");
+        while (true) {
+            TileFidIndex index = getIndex(dataDir);
+            Set<String> fids;
+            try {
+                // the tiles containing the whole data set all act as the hierarchy root
+                long rootKey = index.getRootKey();
+                if (rootKey != TileFidIndex.NO_ROOT
+                        && tile.getEnvelope().contains((BoundingBox) dataEnvelope)) {
+                    fids = index.getFids(rootKey);
+                } else {
+                    fids = index.getFids(tile.x, tile.y, tile.z);
+                }
+            } finally {
+                if (index.temporary) {
+                    index.close();
+                }
+            }
+            // null if the index got invalidated in the meantime, try again with a new one
+            if (fids != null) {
+                return fids;
             }
-
-            return readFeaturesForTile(tile, conn);
-        } finally {
-            JDBCUtils.close(st);
-            JDBCUtils.close(conn, null, null);
         }
     }
 
     /**
-     * Reads/computes the tile feature set
-     * 
-     * @param tile
-     *            the Tile whose features we must find
-     * @param conn
-     *            the H2 connection
-     *
+     * Returns the index of the layer, mapping or building it if necessary. Once the index is
+     * available, the lookups only take its shared read lock.
      */
-    protected Set<String> readFeaturesForTile(Tile tile, Connection conn)
-            throws Exception {
-        // grab the fids and decide whether we have to compute them
-        Set<String> fids = readCachedTileFids(tile, conn);
-        if (fids != null) {
-            return fids;
-        } else {
-            // build the synchronization token
-            String tileKey = tableName + tile.x + "-" + tile.y + "-" + tile.z;
-            canonicalizer.add(tileKey);
-            tileKey = canonicalizer.get(tileKey);
-
-            synchronized (tileKey) {
-                // might have been built while we were waiting
-                fids = readCachedTileFids(tile, conn);
-                if (fids != null)
-                    return fids;
-
-                // still missing, we need to compute them
-                fids = computeFids(tile, conn);
-                storeFids(tile, fids, conn);
-
-                // optimization, if we did not manage to fill up this tile,
-                // the ones below it will be empty -> mark them as such right
-                // away
-                if (fids.size() < featuresPerTile)
-                    for (Tile child : tile.getChildren())
-                        storeFids(child, NO_FIDS, conn);
-            }
+    TileFidIndex getIndex(String dataDir) throws Exception {
+        File file = new File(new File(dataDir, "geosearch"), tableName + INDEX_EXTENSION);
+        String key = file.getPath();
+        TileFidIndex index = INDEXES.get(key);
+        if (index != null && index.isValid(featuresPerTile)) {
+            return index;
         }
-        return fids;
-    }
 
-    /**
-     * Store the fids inside
-     * 
-     * @param t
-     * @param fids
-     * @param conn
-     * @throws SQLException
-     */
-    private void storeFids(Tile t, Set<String> fids, Connection conn)
-            throws SQLException {
-        PreparedStatement ps = null;
-        try {
-            // we are going to execute this one many times, 
-            // let's prepare it so that the db engine does 
-            // not have to parse it at every call
-            String stmt = "INSERT INTO TILECACHE VALUES (" + t.x + ", " + t.y
-                    + ", " + t.z + ", ?)";
-            ps = conn.prepareStatement(stmt);
-
-            if (fids.size() == 0) {
-                // we just have to mark the tile as empty
-                ps.setString(1, null);
-                ps.execute();
-            } else {
-                // store all the fids
-                conn.setAutoCommit(false);
-                for (String fid : fids) {
-                    ps.setString(1, fid);
-                    ps.execute();
+        // make sure no two threads in parallel build the same index
+        Object lock = BUILD_LOCKS.computeIfAbsent(key, k -> new Object());
+        synchronized (lock) {
+            index = INDEXES.get(key);
+            if (index != null && index.isValid(featuresPerTile)) {
+                return index;
+            }
+            if (index != null && INDEXES.remove(key, index)) {
+                index.close();
+            }
+            index = TileFidIndex.open(file, featuresPerTile);
+            if (index == null) {
+                long generation = GENERATION.get();
+                file.getParentFile().mkdirs();
+                File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+                try {
+                    buildIndex(dataDir, temp);
+                } catch (Exception e) {
+                    temp.delete();
+                    throw e;
+                }
+                if (GENERATION.get() != generation) {
+                    // the data changed while building, use the index for this request only
+                    return TileFidIndex.open(temp, featuresPerTile, true);
                 }
-                conn.commit();
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                index = TileFidIndex.open(file, featuresPerTile);
             }
-        } finally {
-            conn.setAutoCommit(true);
-            JDBCUtils.close(ps);
+            INDEXES.put(key, index);
+            return index;
         }
     }
 
     /**
-     * Computes the fids that will be stored in the specified tile
-     * 
-     * @param tileCoords
-     * @param st
-     *
-     * @throws SQLException
+     * Builds the index in a single pass over the features, sorted by priority: each feature is
+     * assigned to the top most tile containing its centroid that is not full yet. Only the
+     * number of features in each tile is kept in memory, the fids are handed to the index
+     * writer, which sorts them on disk.
      */
-    private Set<String> computeFids(Tile tile, Connection conn)
-            throws Exception {
-        Tile parent = tile.getParent();
-        Set<String> parentFids = getUpwardFids(parent, conn);
-        Set<String> currFids = new HashSet<String>();
+    private void buildIndex(String dataDir, File file) throws Exception {
+        long start = System.currentTimeMillis();
+
+        List<Tile> roots = getRootTiles();
+        ReferencedEnvelope envelope = roots.size() == 1 ? roots.get(0).getEnvelope()
+                : Tile.WORLD_BOUNDS;
+        Map<Long, int[]> tiles = new HashMap<Long, int[]>();
+        int count = 0;
+        long rootKey = roots.size() == 1 ? TileFidIndex.key(roots.get(0).x, roots.get(0).y,
+                roots.get(0).z) : TileFidIndex.NO_ROOT;
+
+        // the database is just a scratch area for the strategies sorting the features
+        // outside of the store
+        String database = "h2cache_" + tableName;
+        Connection conn = DriverManager.getConnection("jdbc:h2:file:" + dataDir
+                + "/geosearch/" + database, "geoserver", "geopass");
         FeatureIterator fi = null;
-        try {
-            // grab the features
-            FeatureSource fs = featureType.getFeatureSource(null,null);
+        try (TileFidIndex.Writer writer = new TileFidIndex.Writer(file, TileFidIndex.RUN_SIZE)) {
+            FeatureSource fs = featureType.getFeatureSource(null, null);
             GeometryDescriptor geom = fs.getSchema().getGeometryDescriptor();
-            CoordinateReferenceSystem nativeCrs = geom
-                    .getCoordinateReferenceSystem();
-
-            ReferencedEnvelope nativeTileEnvelope = null;
-
-            if (!CRS.equalsIgnoreMetadata(Tile.WGS84, nativeCrs)) {
-                try {
-                    nativeTileEnvelope = tile.getEnvelope().transform(nativeCrs, true);
-                } catch (ProjectionException pe) {
-                    // the WGS84 envelope of the tile is too big for this project,
-                    // let's intersect it with the declared lat/lon bounds then
-                    LOGGER.log(Level.INFO, "Could not reproject the current tile bounds " 
-                            + tile.getEnvelope() + " to the native SRS, intersecting with " 
-                            + "the layer declared lat/lon bounds and retrying");
-                    
-                    // let's compare against the declared data bounds then
-                    ReferencedEnvelope llEnv = featureType.getLatLonBoundingBox();
-                    Envelope reduced = tile.getEnvelope().intersection(llEnv);
-                    if(reduced.isNull() || reduced.getWidth() == 0 || reduced.getHeight() == 0) {
-                        // no overlap, no party, the tile will be empty
-                        return Collections.emptySet();
+            ReferencedEnvelope nativeEnvelope = getNativeEnvelope(envelope,
+                    geom.getCoordinateReferenceSystem());
+            if (nativeEnvelope != null) {
+                fi = getSortedFeatures(geom, envelope, nativeEnvelope, conn);
+
+                // if the crs is not wgs84, we'll need to transform the point
+                MathTransform tx = null;
+                double[] coords = new double[2];
+                boolean first = true;
+                while (fi.hasNext()) {
+                    SimpleFeature f = (SimpleFeature) fi.next();
+
+                    // check the need for a transformation
+                    if (first) {
+                        first = false;
+                        CoordinateReferenceSystem nativeCRS = f.getType()
+                                .getCoordinateReferenceSystem();
+                        if (nativeCRS != null
+                                && !CRS.equalsIgnoreMetadata(nativeCRS, Tile.WGS84)) {
+                            tx = CRS.findMathTransform(nativeCRS, Tile.WGS84);
+                        }
                     }
-                    
-                    // there is some overlap, let's try the reprojection again.
-                    // if even this fails, the user has evidently setup the 
-                    // geographics bounds improperly
-                    ReferencedEnvelope refRed = new ReferencedEnvelope(reduced, 
-                            tile.getEnvelope().getCoordinateReferenceSystem());
-                    nativeTileEnvelope = refRed.transform(nativeCrs, true);
-                }
-            } else {
-                nativeTileEnvelope = tile.getEnvelope();
-            }
 
-            fi = getSortedFeatures(geom, tile.getEnvelope(), nativeTileEnvelope, conn);
-
-            // if the crs is not wgs84, we'll need to transform the point
-            MathTransform tx = null;
-            double[] coords = new double[2];
-
-            // scan counting how many fids we've collected
-            boolean first = true;
-            while (fi.hasNext() && currFids.size() < featuresPerTile) {
-                // grab the feature, skip it if it's already in a parent element
-                SimpleFeature f = (SimpleFeature) fi.next();
-                if (parentFids.contains(f.getID()))
-                    continue;
-
-                // check the need for a transformation
-                if (first) {
-                    first = false;
-                    CoordinateReferenceSystem nativeCRS = f.getType()
-                            .getCoordinateReferenceSystem();
-                    featureType.getFeatureType().getCoordinateReferenceSystem();
-                    if (nativeCRS != null
-                            && !CRS.equalsIgnoreMetadata(nativeCRS, Tile.WGS84)) {
-                        tx = CRS.findMathTransform(nativeCRS, Tile.WGS84);
+                    Geometry g = (Geometry) f.getDefaultGeometry();
+                    if (g == null || g.isEmpty()) {
+                        continue;
+                    }
+                    Point p = g.getCentroid();
+                    coords[0] = p.getX();
+                    coords[1] = p.getY();
+                    if (tx != null)
+                        tx.transform(coords, 0, coords, 0, 1);
+                    for (Tile root : roots) {
+                        if (root.contains(coords[0], coords[1])) {
+                            long key = assign(tiles, root, coords[0], coords[1]);
+                            if (key != NO_TILE) {
+                                writer.add(key, f.getID());
+                                count++;
+                            }
+                            break;
+                        }
                     }
                 }
-
-                // see if the features is to be included in this tile
-                Point p = ((Geometry) f.getDefaultGeometry()).getCentroid();
-                coords[0] = p.getX();
-                coords[1] = p.getY();
-                if (tx != null)
-                    tx.transform(coords, 0, coords, 0, 1);
-                if (tile.contains(coords[0], coords[1]))
-                    currFids.add(f.getID());
             }
+            writer.commit(featuresPerTile, rootKey);
         } finally {
             if (fi != null)
                 fi.close();
+            JDBCUtils.close(conn, null, null);
+            DeleteDbFiles.execute(new File(dataDir, "geosearch").getCanonicalPath(), database,
+                    true);
+        }
+
+        LOGGER.log(Level.FINE, "Built regionating index " + file + " with " + count
+                + " features in " + tiles.size() + " tiles, in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Assigns the feature to the first tile, starting from the root and going down towards the
+     * one containing the centroid, that has room for it
+     * @param tiles the number of features in each tile, by tile key, updated by the call
+     * @return the key of the tile, or {@link #NO_TILE}
+     */
+    long assign(Map<Long, int[]> tiles, Tile root, double x, double y) {
+        long tx = root.x;
+        long ty = root.y;
+        for (long tz = root.z; tz <= TileFidIndex.MAX_ZOOM; tz++) {
+            long key = TileFidIndex.key(tx, ty, tz);
+            int[] size = tiles.get(key);
+            if (size == null) {
+                size = new int[1];
+                tiles.put(key, size);
+            }
+            if (size[0] < featuresPerTile) {
+                size[0]++;
+                return key;
+            }
+
+            // move to the child containing the centroid
+            double childSize = Tile.MAX_TILE_WIDTH / Math.pow(2, tz + 1);
+            tx = tx * 2;
+            ty = ty * 2;
+            if (x >= Tile.WORLD_BOUNDS.getMinX() + (tx + 1) * childSize) {
+                tx++;
+            }
+            if (y >= Tile.WORLD_BOUNDS.getMinY() + (ty + 1) * childSize) {
+                ty++;
+            }
+        }
+        // too many features sharing the same location
+        return NO_TILE;
+    }
+
+    /**
+     * Returns the roots of the tile hierarchy: the smallest tile containing the data envelope,
+     * or the two level 0 tiles if the data crosses them
+     */
+    List<Tile> getRootTiles() {
+        Tile root = null;
+        for (long z = 0; z <= TileFidIndex.MAX_ZOOM; z++) {
+            double tileSize = Tile.MAX_TILE_WIDTH / Math.pow(2, z);
+            long x = (long) Math.floor((dataEnvelope.getMinX() - Tile.WORLD_BOUNDS.getMinX())
+                    / tileSize);
+            long y = (long) Math.floor((dataEnvelope.getMinY() - Tile.WORLD_BOUNDS.getMinY())
+                    / tileSize);
+            Tile tile = new CachedTile(x, y, z);
+            if (!tile.getEnvelope().contains((BoundingBox) dataEnvelope)) {
+                break;
+            }
+            root = tile;
+        }
+        if (root != null) {
+            return Collections.singletonList(root);
+        }
+        return Arrays.asList((Tile) new CachedTile(0, 0, 0), new CachedTile(1, 0, 0));
+    }
+
+    /**
+     * Returns the lat/lon envelope in the native CRS, reduced to the declared lat/lon bounds
+     * if it cannot be projected as a whole, or {@code null} if it does not overlap them
+     */
+    private ReferencedEnvelope getNativeEnvelope(ReferencedEnvelope envelope,
+            CoordinateReferenceSystem nativeCrs) throws Exception {
+        if (CRS.equalsIgnoreMetadata(Tile.WGS84, nativeCrs)) {
+            return envelope;
+        }
+        try {
+            return envelope.transform(nativeCrs, true);
+        } catch (ProjectionException pe) {
+            // the WGS84 envelope of the tile is too big for this project,
+            // let's intersect it with the declared lat/lon bounds then
+            LOGGER.log(Level.INFO, "Could not reproject the current tile bounds " 
+                    + envelope + " to the native SRS, intersecting with " 
+                    + "the layer declared lat/lon bounds and retrying");
+            
+            // let's compare against the declared data bounds then
+            ReferencedEnvelope llEnv = featureType.getLatLonBoundingBox();
+            Envelope reduced = envelope.intersection(llEnv);
+            if(reduced.isNull() || reduced.getWidth() == 0 || reduced.getHeight() == 0) {
+                // no overlap, no party, the tile will be empty
+                return null;
+            }
+            
+            // there is some overlap, let's try the reprojection again.
+            // if even this fails, the user has evidently setup the 
+            // geographics bounds improperly
+            ReferencedEnvelope refRed = new ReferencedEnvelope(reduced, 
+                    envelope.getCoordinateReferenceSystem());
+            return refRed.transform(nativeCrs, true);
         }
-        return currFids;
     }
 
     /**
@@ -454,7 +525,7 @@ public abstract class CachedHierarchyRegionatingStrategy implements
      * 
      * @param envelope
      * @param indexConnection
-     *            a connection to the feature id cache db
+     *            a connection to a scratch database, that can be used to sort the features
      *
      */
     protected abstract FeatureIterator getSortedFeatures(
@@ -463,75 +534,47 @@ public abstract class CachedHierarchyRegionatingStrategy implements
             throws Exception;
 
     /**
-     * Returns a set of all the fids in the specified tile and in the parents of
-     * it, recursing up to the root tile
-     * 
-     * @param tile
-     * @param st
-     *
-     * @throws SQLException
+     * Drops the indexes of the feature type, built by any strategy on any attribute. Called
+     * when the data or the configuration of the feature type change.
      */
-    private Set<String> getUpwardFids(Tile tile, Connection conn)
-            throws Exception {
-        // recursion stop condition
-        if (tile == null) {
-            return Collections.emptySet();
-        }
+    public static void invalidate(GeoServerResourceLoader loader, FeatureTypeInfo cfg) {
+        invalidate(loader, cfg.getNamespace().getPrefix() + "_" + cfg.getName());
+    }
 
-        // return the curren tile fids, and recurse up to the parent
-        Set<String> fids = new HashSet();
-        fids.addAll(readFeaturesForTile(tile, conn));
-        Tile parent = tile.getParent();
-        if(parent != null) {
-            fids.addAll(getUpwardFids(parent, conn));
-        }
-        return fids;
+    /**
+     * Drops all the indexes
+     */
+    public static void invalidateAll(GeoServerResourceLoader loader) {
+        invalidate(loader, "");
     }
 
     /**
-     * Here we have three cases
-     * <ul>
-     * <li>the tile was already computed, and it resulted to be empty. We leave
-     * a "x,y,z,null" marker to know if that happened, and in this case the
-     * returned set will be empty</li> <li>the tile was already computed, and we
-     * have data, the returned sest will be non empty</li> <li>the tile is new,
-     * the db contains nothing, in this case we return "null"</li>
-     * <ul>
-     * 
-     * @param tileCoords
-     * @param conn
-     * @throws SQLException
+     * Drops the indexes whose name starts with the given prefix (which might hit other layers
+     * sharing the same name prefix, at worst they will be rebuilt)
      */
-    protected Set<String> readCachedTileFids(Tile tile, Connection conn)
-            throws SQLException {
-        Set<String> fids = null;
-        Statement st = null;
-        ResultSet rs = null;
-        try {
-            st = conn.createStatement();
-            rs = st.executeQuery("SELECT fid FROM TILECACHE where x = "
-                    + tile.x + " AND y = " + tile.y + " and z = " + tile.z);
-            // decide whether we have to collect the fids or just to
-            // return that the tile was empty
-            if (rs.next()) {
-                String fid = rs.getString(1);
-                if (fid == null) {
-                    return Collections.emptySet();
-                } else {
-                    fids = new HashSet<String>();
-                    fids.add(fid);
-                }
+    static void invalidate(GeoServerResourceLoader loader, String prefix) {
+        GENERATION.incrementAndGet();
+        for (Iterator<Map.Entry<String, TileFidIndex>> it = INDEXES.entrySet().iterator(); it
+                .hasNext();) {
+            Map.Entry<String, TileFidIndex> entry = it.next();
+            if (new File(entry.getKey()).getName().startsWith(prefix)) {
+                it.remove();
+                // unmap before deleting, Windows does not delete mapped files
+                entry.getValue().close();
             }
-            // fill the set with the collected fids
-            while (rs.next()) {
-                fids.add(rs.getString(1));
+        }
+        Resource geosearch = loader.get("geosearch");
+        if (geosearch.getType() == Type.DIRECTORY) {
+            File[] files = geosearch.dir().listFiles(
+                    (dir, name) -> name.startsWith(prefix) && name.endsWith(INDEX_EXTENSION));
+            if (files != null) {
+                for (File file : files) {
+                    if (!file.delete()) {
+                        LOGGER.warning("Could not delete the regionating index " + file);
+                    }
+                }
             }
-        } finally {
-            JDBCUtils.close(rs);
-            JDBCUtils.close(st);
         }
-
-        return fids;
     }
 
     /**
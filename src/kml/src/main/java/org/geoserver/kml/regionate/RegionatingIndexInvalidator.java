@@ -0,0 +1,122 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.kml.regionate;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import net.opengis.wfs.TransactionResponseType;
+import net.opengis.wfs.TransactionType;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.wfs.TransactionEvent;
+import org.geoserver.wfs.TransactionPlugin;
+import org.geoserver.wfs.WFSException;
+
+/**
+ * Drops the regionating tile indexes built by {@link CachedHierarchyRegionatingStrategy} when
+ * the layer data is modified by a WFS transaction, or the layer configuration changes. The
+ * indexes are rebuilt on the next regionated request.
+ */
+public class RegionatingIndexInvalidator implements TransactionPlugin, CatalogListener {
+
+    static final String TRANSACTION_LAYERS = "KML_REGIONATING_LAYERS";
+
+    final Catalog catalog;
+
+    public RegionatingIndexInvalidator(Catalog catalog) {
+        this.catalog = catalog;
+        catalog.addListener(this);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void dataStoreChange(TransactionEvent event) throws WFSException {
+        Set<QName> layers = (Set<QName>) event.getRequest().getExtendedProperties()
+                .get(TRANSACTION_LAYERS);
+        if (layers == null) {
+            layers = new HashSet<>();
+            event.getRequest().getExtendedProperties().put(TRANSACTION_LAYERS, layers);
+        }
+        layers.add(event.getLayerName());
+    }
+
+    @Override
+    public TransactionType beforeTransaction(TransactionType request) throws WFSException {
+        return request;
+    }
+
+    @Override
+    public void beforeCommit(TransactionType request) throws WFSException {
+        // nothing to do
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void afterTransaction(TransactionType request, TransactionResponseType result,
+            boolean committed) {
+        Set<QName> layers = (Set<QName>) request.getExtendedProperties().get(TRANSACTION_LAYERS);
+        if (!committed || layers == null) {
+            return;
+        }
+        for (QName layer : layers) {
+            FeatureTypeInfo featureType = catalog.getFeatureTypeByName(layer.getNamespaceURI(),
+                    layer.getLocalPart());
+            if (featureType != null) {
+                CachedHierarchyRegionatingStrategy.invalidate(catalog.getResourceLoader(),
+                        featureType);
+            }
+        }
+    }
+
+    @Override
+    public int getPriority() {
+        return 0;
+    }
+
+    @Override
+    public void handleAddEvent(CatalogAddEvent event) {
+        // nothing to do
+    }
+
+    @Override
+    public void handleRemoveEvent(CatalogRemoveEvent event) {
+        invalidate(event.getSource());
+    }
+
+    @Override
+    public void handleModifyEvent(CatalogModifyEvent event) {
+        // the name might be changing, drop the index built under the old one
+        invalidate(event.getSource());
+    }
+
+    @Override
+    public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+        invalidate(event.getSource());
+    }
+
+    private void invalidate(Object source) {
+        if (source instanceof FeatureTypeInfo) {
+            CachedHierarchyRegionatingStrategy.invalidate(catalog.getResourceLoader(),
+                    (FeatureTypeInfo) source);
+        } else if (source instanceof StoreInfo) {
+            CachedHierarchyRegionatingStrategy.invalidateAll(catalog.getResourceLoader());
+        }
+    }
+
+    @Override
+    public void reloaded() {
+        CachedHierarchyRegionatingStrategy.invalidateAll(catalog.getResourceLoader());
+    }
+}
@@ -0,0 +1,462 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.kml.regionate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.geotools.resources.NIOUtilities;
+
+/**
+ * A read only, memory mapped index of the feature ids assigned to each regionating tile.
+ * <p>
+ * The file contains the tile keys as a sorted array of longs (level first, so the keys of a level
+ * are contiguous), the position of each tile first fid, and the fids themselves as UTF-8 strings.
+ * Lookups are binary searches over the mapped file, they do not allocate besides the returned
+ * set and only take a shared lock, that keeps the file from being unmapped while in use. Tiles
+ * missing from the index are empty.
+ * <p>
+ * The index is written by a {@link Writer}, which sorts the fids by tile in bounded runs spilled
+ * to disk, and merges them into the final file, so that the fids never have to be all in memory.
+ */
+class TileFidIndex implements Closeable {
+
+    static final int MAGIC = 0x4B4D4C54;
+
+    static final int VERSION = 1;
+
+    /**
+     * The max tile level, the x and y coordinates of deeper levels would not fit in the key
+     */
+    static final int MAX_ZOOM = 27;
+
+    static final long NO_ROOT = -1;
+
+    static final int HEADER_SIZE = 28;
+
+    /**
+     * Max number of fids kept in memory by the writer before spilling a sorted run to disk
+     */
+    static final int RUN_SIZE = 100000;
+
+    final File file;
+
+    /**
+     * True if the file is private to this index, and has to be deleted when it's closed
+     */
+    final boolean temporary;
+
+    /**
+     * Guards the mapped buffer against unmapping while it's being read
+     */
+    final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    boolean closed;
+
+    final long lastModified;
+
+    final ByteBuffer buffer;
+
+    final int featuresPerTile;
+
+    final long rootKey;
+
+    final int tileCount;
+
+    final int fidCount;
+
+    final int firstFidBase;
+
+    final int offsetBase;
+
+    final int stringBase;
+
+    private TileFidIndex(File file, ByteBuffer buffer, boolean temporary) throws IOException {
+        this.file = file;
+        this.temporary = temporary;
+        this.lastModified = file.lastModified();
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Unrecognized regionating index " + file);
+        }
+        this.featuresPerTile = buffer.getInt(8);
+        this.rootKey = buffer.getLong(12);
+        this.tileCount = buffer.getInt(20);
+        this.fidCount = buffer.getInt(24);
+        this.firstFidBase = HEADER_SIZE + tileCount * 8;
+        this.offsetBase = firstFidBase + (tileCount + 1) * 4;
+        this.stringBase = offsetBase + (fidCount + 1) * 4;
+    }
+
+    /**
+     * Encodes the tile coordinates in a key, the keys sort by level, then x, then y
+     */
+    static long key(long x, long y, long z) {
+        return (z << 58) | (x << 29) | y;
+    }
+
+    /**
+     * Maps the index file, returns {@code null} if it does not exist or it has been built with
+     * a different number of features per tile
+     */
+    static TileFidIndex open(File file, int featuresPerTile) throws IOException {
+        return open(file, featuresPerTile, false);
+    }
+
+    /**
+     * Maps the index file, as {@link #open(File, int)}. Temporary files are private to the
+     * returned index, and deleted when the index is closed
+     */
+    static TileFidIndex open(File file, int featuresPerTile, boolean temporary)
+            throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        TileFidIndex index;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            // the mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            index = new TileFidIndex(file, buffer, temporary);
+        }
+        if (index.featuresPerTile != featuresPerTile) {
+            index.close();
+            return null;
+        }
+        return index;
+    }
+
+    /**
+     * Writes the index, replacing atomically the existing one
+     * @param file the index file
+     * @param featuresPerTile the max number of features per tile used to build the index
+     * @param rootKey the key of the hierarchy root tile, or {@link #NO_ROOT} if the hierarchy
+     *        starts with the two level 0 tiles
+     * @param tiles the fids of each tile, by tile key
+     */
+    static void write(File file, int featuresPerTile, long rootKey,
+            Map<Long, List<String>> tiles) throws IOException {
+        try (Writer writer = new Writer(file, RUN_SIZE)) {
+            for (Map.Entry<Long, List<String>> entry : new TreeMap<>(tiles).entrySet()) {
+                for (String fid : entry.getValue()) {
+                    writer.add(entry.getKey(), fid);
+                }
+            }
+            writer.commit(featuresPerTile, rootKey);
+        }
+    }
+
+    /**
+     * Unmaps the index file, the lookups made after this call return {@code null}. Waits for
+     * the lookups in progress to complete, as accessing an unmapped buffer would crash the JVM
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            // otherwise the file cannot be deleted on Windows until the buffer is collected
+            NIOUtilities.clean(buffer, true);
+            if (temporary) {
+                file.delete();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns true if the index file is still the one mapped, and it has been built for the given
+     * number of features per tile
+     */
+    boolean isValid(int featuresPerTile) {
+        return this.featuresPerTile == featuresPerTile && file.lastModified() == lastModified;
+    }
+
+    /**
+     * The key of the hierarchy root tile, or {@link #NO_ROOT}
+     */
+    long getRootKey() {
+        return rootKey;
+    }
+
+    /**
+     * Returns the fids of the tile, an empty set if the tile is empty or outside of the index,
+     * or {@code null} if the index has been closed
+     */
+    Set<String> getFids(long x, long y, long z) {
+        if (x < 0 || y < 0 || z < 0 || z > MAX_ZOOM) {
+            return Collections.emptySet();
+        }
+        return getFids(key(x, y, z));
+    }
+
+    Set<String> getFids(long key) {
+        lock.readLock().lock();
+        try {
+            return closed ? null : search(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Set<String> search(long key) {
+        int low = 0;
+        int high = tileCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = buffer.getLong(HEADER_SIZE + mid * 8);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return readFids(mid);
+            }
+        }
+        return Collections.emptySet();
+    }
+
+    private Set<String> readFids(int tile) {
+        int first = buffer.getInt(firstFidBase + tile * 4);
+        int last = buffer.getInt(firstFidBase + (tile + 1) * 4);
+        Set<String> result = new HashSet<>();
+        for (int i = first; i < last; i++) {
+            int start = buffer.getInt(offsetBase + i * 4);
+            int end = buffer.getInt(offsetBase + (i + 1) * 4);
+            byte[] bytes = new byte[end - start];
+            // absolute gets, the buffer is shared among threads
+            for (int j = 0; j < bytes.length; j++) {
+                bytes[j] = buffer.get(stringBase + start + j);
+            }
+            result.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+
+    /**
+     * Writes an index from the fids of the tiles, added in any order. The fids are buffered up
+     * to a run size, then sorted by tile and spilled to a temporary file, the runs are merged
+     * in the index on {@link #commit(int, long)}. Closing the writer removes the temporary
+     * files.
+     */
+    static final class Writer implements Closeable {
+
+        final File file;
+
+        final int runSize;
+
+        final List<Entry> buffer = new ArrayList<>();
+
+        final List<File> temps = new ArrayList<>();
+
+        final List<File> runs = new ArrayList<>();
+
+        Writer(File file, int runSize) {
+            this.file = file;
+            this.runSize = runSize;
+        }
+
+        /**
+         * Adds a fid to the tile
+         */
+        void add(long key, String fid) throws IOException {
+            buffer.add(new Entry(key, fid.getBytes(StandardCharsets.UTF_8)));
+            if (buffer.size() >= runSize) {
+                spill();
+            }
+        }
+
+        private void spill() throws IOException {
+            // stable, the fids of a tile stay in insertion order
+            buffer.sort(Comparator.comparingLong(e -> e.key));
+            File run = createTemp(".run");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(run)))) {
+                for (Entry entry : buffer) {
+                    out.writeLong(entry.key);
+                    out.writeInt(entry.fid.length);
+                    out.write(entry.fid);
+                }
+            }
+            runs.add(run);
+            buffer.clear();
+        }
+
+        private File createTemp(String suffix) throws IOException {
+            File temp = File.createTempFile(file.getName(), suffix, file.getParentFile());
+            temps.add(temp);
+            return temp;
+        }
+
+        /**
+         * Merges the runs in the index file, replacing atomically the existing one
+         * @param featuresPerTile the max number of features per tile used to build the index
+         * @param rootKey the key of the hierarchy root tile, or {@link #NO_ROOT} if the
+         *        hierarchy starts with the two level 0 tiles
+         */
+        void commit(int featuresPerTile, long rootKey) throws IOException {
+            if (!buffer.isEmpty()) {
+                spill();
+            }
+
+            // the sections following the header are written apart, their sizes are known only
+            // at the end of the merge
+            File keys = createTemp(".keys");
+            File firsts = createTemp(".firsts");
+            File offsets = createTemp(".offsets");
+            File strings = createTemp(".strings");
+            int tileCount = 0;
+            int fidCount = 0;
+            List<RunReader> readers = new ArrayList<>();
+            try (DataOutputStream keysOut = open(keys);
+                    DataOutputStream firstsOut = open(firsts);
+                    DataOutputStream offsetsOut = open(offsets);
+                    DataOutputStream stringsOut = open(strings)) {
+                // on the same key, the earlier run goes first
+                PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, runs.size()),
+                        Comparator.<RunReader> comparingLong(r -> r.key)
+                                .thenComparingInt(r -> r.order));
+                for (File run : runs) {
+                    RunReader reader = new RunReader(run, readers.size());
+                    readers.add(reader);
+                    if (reader.next()) {
+                        queue.add(reader);
+                    }
+                }
+                long lastKey = -1;
+                int offset = 0;
+                while (!queue.isEmpty()) {
+                    RunReader reader = queue.poll();
+                    if (tileCount == 0 || reader.key != lastKey) {
+                        keysOut.writeLong(reader.key);
+                        firstsOut.writeInt(fidCount);
+                        lastKey = reader.key;
+                        tileCount++;
+                    }
+                    offsetsOut.writeInt(offset);
+                    stringsOut.write(reader.fid);
+                    offset += reader.fid.length;
+                    fidCount++;
+                    if (reader.next()) {
+                        queue.add(reader);
+                    }
+                }
+                firstsOut.writeInt(fidCount);
+                offsetsOut.writeInt(offset);
+            } finally {
+                for (RunReader reader : readers) {
+                    reader.close();
+                }
+            }
+
+            File temp = createTemp(".tmp");
+            try (DataOutputStream out = open(temp)) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(featuresPerTile);
+                out.writeLong(rootKey);
+                out.writeInt(tileCount);
+                out.writeInt(fidCount);
+                for (File section : new File[] { keys, firsts, offsets, strings }) {
+                    Files.copy(section.toPath(), out);
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private DataOutputStream open(File file) throws IOException {
+            return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        }
+
+        @Override
+        public void close() {
+            buffer.clear();
+            for (File temp : temps) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * A fid of a tile
+     */
+    static final class Entry {
+        final long key;
+
+        final byte[] fid;
+
+        Entry(long key, byte[] fid) {
+            this.key = key;
+            this.fid = fid;
+        }
+    }
+
+    /**
+     * Reads back a sorted run, one entry at a time
+     */
+    static final class RunReader implements Closeable {
+        final DataInputStream in;
+
+        final int order;
+
+        long key;
+
+        byte[] fid;
+
+        RunReader(File run, int order) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run)));
+            this.order = order;
+        }
+
+        /**
+         * Moves to the next entry, returns false at the end of the run
+         */
+        boolean next() throws IOException {
+            try {
+                key = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            fid = new byte[in.readInt()];
+            in.readFully(fid);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.kml.regionate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.feature.FeatureIterator;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.type.GeometryDescriptor;
+
+public class CachedHierarchyRegionatingStrategyTest {
+
+    CachedHierarchyRegionatingStrategy strategy;
+
+    @Before
+    public void setUp() {
+        strategy = new CachedHierarchyRegionatingStrategy(null) {
+
+            @Override
+            protected FeatureIterator getSortedFeatures(GeometryDescriptor geom,
+                    ReferencedEnvelope latLongEnvelope, ReferencedEnvelope nativeEnvelope,
+                    Connection indexConnection) throws Exception {
+                throw new UnsupportedOperationException();
+            }
+        };
+        strategy.featuresPerTile = 2;
+    }
+
+    @Test
+    public void testSingleRoot() {
+        strategy.dataEnvelope = new ReferencedEnvelope(10, 20, 10, 20, Tile.WGS84);
+        List<Tile> roots = strategy.getRootTiles();
+        assertEquals(1, roots.size());
+        // the smallest tile containing the data, 22.5 degrees wide
+        Tile root = roots.get(0);
+        assertEquals(8, root.x);
+        assertEquals(4, root.y);
+        assertEquals(3, root.z);
+    }
+
+    @Test
+    public void testCrossingRoots() {
+        // crosses the two level 0 tiles
+        strategy.dataEnvelope = new ReferencedEnvelope(-10, 10, -10, 10, Tile.WGS84);
+        List<Tile> roots = strategy.getRootTiles();
+        assertEquals(2, roots.size());
+        assertEquals(TileFidIndex.key(0, 0, 0),
+                TileFidIndex.key(roots.get(0).x, roots.get(0).y, roots.get(0).z));
+        assertEquals(TileFidIndex.key(1, 0, 0),
+                TileFidIndex.key(roots.get(1).x, roots.get(1).y, roots.get(1).z));
+    }
+
+    @Test
+    public void testAssign() {
+        strategy.dataEnvelope = new ReferencedEnvelope(10, 20, 10, 20, Tile.WGS84);
+        Tile root = strategy.getRootTiles().get(0);
+        Map<Long, int[]> tiles = new HashMap<>();
+
+        // the root fills up first
+        long rootKey = TileFidIndex.key(8, 4, 3);
+        assertEquals(rootKey, strategy.assign(tiles, root, 12, 12));
+        assertEquals(rootKey, strategy.assign(tiles, root, 18, 18));
+        // then the children containing the centroids
+        assertEquals(TileFidIndex.key(17, 9, 4), strategy.assign(tiles, root, 12, 12));
+        assertEquals(TileFidIndex.key(16, 8, 4), strategy.assign(tiles, root, 10, 10));
+        assertEquals(2, tiles.get(rootKey)[0]);
+        assertEquals(1, tiles.get(TileFidIndex.key(17, 9, 4))[0]);
+    }
+
+    @Test
+    public void testAssignTooDeep() {
+        strategy.dataEnvelope = new ReferencedEnvelope(10, 20, 10, 20, Tile.WGS84);
+        Tile root = strategy.getRootTiles().get(0);
+        Map<Long, int[]> tiles = new HashMap<>();
+
+        // all the tiles from the root down to the max zoom fill up
+        int levels = TileFidIndex.MAX_ZOOM - 3 + 1;
+        for (int i = 0; i < levels * 2; i++) {
+            assertNotEquals(CachedHierarchyRegionatingStrategy.NO_TILE,
+                    strategy.assign(tiles, root, 12, 12));
+        }
+        assertEquals(levels, tiles.size());
+        assertEquals(CachedHierarchyRegionatingStrategy.NO_TILE,
+                strategy.assign(tiles, root, 12, 12));
+    }
+}
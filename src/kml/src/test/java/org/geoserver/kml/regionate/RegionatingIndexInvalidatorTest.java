@@ -0,0 +1,129 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.kml.regionate;
+
+import static org.easymock.classextension.EasyMock.*;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collections;
+
+import javax.xml.namespace.QName;
+
+import net.opengis.wfs.TransactionType;
+import net.opengis.wfs.WfsFactory;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.event.impl.CatalogPostModifyEventImpl;
+import org.geoserver.platform.GeoServerResourceLoader;
+import org.geoserver.wfs.TransactionEvent;
+import org.geoserver.wfs.TransactionEventType;
+import org.geoserver.wfs.request.TransactionRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RegionatingIndexInvalidatorTest {
+
+    static final QName ROADS = new QName("http://www.openplans.org/topp", "roads", "topp");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    FeatureTypeInfo roads;
+
+    RegionatingIndexInvalidator invalidator;
+
+    File roadsIndex;
+
+    File archsitesIndex;
+
+    @Before
+    public void setUp() throws Exception {
+        NamespaceInfo topp = createNiceMock(NamespaceInfo.class);
+        expect(topp.getPrefix()).andReturn("topp").anyTimes();
+        roads = createNiceMock(FeatureTypeInfo.class);
+        expect(roads.getNamespace()).andReturn(topp).anyTimes();
+        expect(roads.getName()).andReturn("roads").anyTimes();
+        Catalog catalog = createNiceMock(Catalog.class);
+        expect(catalog.getResourceLoader())
+                .andReturn(new GeoServerResourceLoader(folder.getRoot())).anyTimes();
+        expect(catalog.getFeatureTypeByName(ROADS.getNamespaceURI(), ROADS.getLocalPart()))
+                .andReturn(roads).anyTimes();
+        replay(topp, roads, catalog);
+        invalidator = new RegionatingIndexInvalidator(catalog);
+
+        File geosearch = folder.newFolder("geosearch");
+        roadsIndex = new File(geosearch,
+                "topp_roads" + CachedHierarchyRegionatingStrategy.INDEX_EXTENSION);
+        archsitesIndex = new File(geosearch,
+                "sf_archsites" + CachedHierarchyRegionatingStrategy.INDEX_EXTENSION);
+        TileFidIndex.write(roadsIndex, 64, TileFidIndex.NO_ROOT,
+                Collections.singletonMap(0L, Collections.singletonList("roads.1")));
+        TileFidIndex.write(archsitesIndex, 64, TileFidIndex.NO_ROOT,
+                Collections.singletonMap(0L, Collections.singletonList("archsites.1")));
+    }
+
+    @After
+    public void clearIndexes() {
+        for (TileFidIndex index : CachedHierarchyRegionatingStrategy.INDEXES.values()) {
+            index.close();
+        }
+        CachedHierarchyRegionatingStrategy.INDEXES.clear();
+    }
+
+    void change(TransactionType tx) {
+        invalidator.dataStoreChange(new TransactionEvent(TransactionEventType.PRE_UPDATE,
+                TransactionRequest.adapt(tx), ROADS, null));
+    }
+
+    @Test
+    public void testTransaction() throws Exception {
+        // rolled back, nothing changes
+        TransactionType tx = WfsFactory.eINSTANCE.createTransactionType();
+        change(tx);
+        invalidator.afterTransaction(tx, null, false);
+        assertTrue(roadsIndex.exists());
+
+        // committed, only the modified layer index is dropped
+        tx = WfsFactory.eINSTANCE.createTransactionType();
+        change(tx);
+        invalidator.afterTransaction(tx, null, true);
+        assertFalse(roadsIndex.exists());
+        assertTrue(archsitesIndex.exists());
+    }
+
+    @Test
+    public void testCatalogChange() throws Exception {
+        CatalogPostModifyEventImpl event = new CatalogPostModifyEventImpl();
+        event.setSource(roads);
+        invalidator.handlePostModifyEvent(event);
+        assertFalse(roadsIndex.exists());
+        assertTrue(archsitesIndex.exists());
+
+        invalidator.reloaded();
+        assertFalse(archsitesIndex.exists());
+    }
+
+    @Test
+    public void testMappedIndex() throws Exception {
+        TileFidIndex index = TileFidIndex.open(roadsIndex, 64);
+        CachedHierarchyRegionatingStrategy.INDEXES.put(roadsIndex.getPath(), index);
+
+        // the index is unmapped before the file is deleted
+        CatalogPostModifyEventImpl event = new CatalogPostModifyEventImpl();
+        event.setSource(roads);
+        invalidator.handlePostModifyEvent(event);
+        assertTrue(CachedHierarchyRegionatingStrategy.INDEXES.isEmpty());
+        assertNull(index.getFids(0L));
+        assertFalse(roadsIndex.exists());
+    }
+}
@@ -0,0 +1,116 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.kml.regionate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TileFidIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    File write(int featuresPerTile) throws Exception {
+        Map<Long, List<String>> tiles = new HashMap<>();
+        tiles.put(TileFidIndex.key(1, 0, 0), Arrays.asList("roads.1", "roads.2"));
+        tiles.put(TileFidIndex.key(0, 0, 0), Arrays.asList("roads.3"));
+        tiles.put(TileFidIndex.key(3, 1, 1), Arrays.asList("roads.4", "roads.\u00e8"));
+        tiles.put(TileFidIndex.key(100000, 200000, 20), Collections.singletonList("roads.5"));
+        File file = new File(folder.getRoot(), "topp_roads.tiles");
+        TileFidIndex.write(file, featuresPerTile, TileFidIndex.NO_ROOT, tiles);
+        return file;
+    }
+
+    @Test
+    public void testLookup() throws Exception {
+        TileFidIndex index = TileFidIndex.open(write(2), 2);
+        assertEquals(TileFidIndex.NO_ROOT, index.getRootKey());
+        assertEquals(new HashSet<>(Arrays.asList("roads.1", "roads.2")), index.getFids(1, 0, 0));
+        assertEquals(Collections.singleton("roads.3"), index.getFids(0, 0, 0));
+        assertEquals(new HashSet<>(Arrays.asList("roads.4", "roads.\u00e8")),
+                index.getFids(3, 1, 1));
+        assertEquals(Collections.singleton("roads.5"), index.getFids(100000, 200000, 20));
+    }
+
+    @Test
+    public void testMissingTiles() throws Exception {
+        TileFidIndex index = TileFidIndex.open(write(2), 2);
+        assertTrue(index.getFids(2, 1, 1).isEmpty());
+        assertTrue(index.getFids(-1, 0, 0).isEmpty());
+        assertTrue(index.getFids(0, 0, TileFidIndex.MAX_ZOOM + 1).isEmpty());
+    }
+
+    @Test
+    public void testFeaturesPerTile() throws Exception {
+        File file = write(2);
+        assertNull(TileFidIndex.open(file, 64));
+        TileFidIndex index = TileFidIndex.open(file, 2);
+        assertTrue(index.isValid(2));
+        assertTrue(!index.isValid(64));
+        assertNull(TileFidIndex.open(new File(folder.getRoot(), "missing.tiles"), 2));
+    }
+
+    @Test
+    public void testSortedRuns() throws Exception {
+        File file = new File(folder.getRoot(), "topp_roads.tiles");
+        // tiles out of order, spread over several runs
+        try (TileFidIndex.Writer writer = new TileFidIndex.Writer(file, 2)) {
+            writer.add(TileFidIndex.key(3, 1, 1), "roads.4");
+            writer.add(TileFidIndex.key(0, 0, 0), "roads.3");
+            writer.add(TileFidIndex.key(1, 0, 0), "roads.1");
+            writer.add(TileFidIndex.key(3, 1, 1), "roads.\u00e8");
+            writer.add(TileFidIndex.key(100000, 200000, 20), "roads.5");
+            writer.add(TileFidIndex.key(1, 0, 0), "roads.2");
+            writer.commit(2, TileFidIndex.key(1, 0, 0));
+        }
+        // only the index is left behind
+        assertEquals(Collections.singletonList(file), Arrays.asList(folder.getRoot().listFiles()));
+
+        TileFidIndex index = TileFidIndex.open(file, 2);
+        assertEquals(TileFidIndex.key(1, 0, 0), index.getRootKey());
+        assertEquals(4, index.tileCount);
+        assertEquals(6, index.fidCount);
+        assertEquals(new HashSet<>(Arrays.asList("roads.1", "roads.2")), index.getFids(1, 0, 0));
+        assertEquals(Collections.singleton("roads.3"), index.getFids(0, 0, 0));
+        assertEquals(new HashSet<>(Arrays.asList("roads.4", "roads.\u00e8")),
+                index.getFids(3, 1, 1));
+        assertEquals(Collections.singleton("roads.5"), index.getFids(100000, 200000, 20));
+        index.close();
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        File file = write(2);
+        TileFidIndex index = TileFidIndex.open(file, 2);
+        index.close();
+        assertNull(index.getFids(1, 0, 0));
+        // unmapped, can be deleted on any platform
+        assertTrue(file.delete());
+        // closing twice is harmless
+        index.close();
+    }
+
+    @Test
+    public void testTemporary() throws Exception {
+        File file = write(2);
+        TileFidIndex index = TileFidIndex.open(file, 2, true);
+        assertEquals(Collections.singleton("roads.3"), index.getFids(0, 0, 0));
+        index.close();
+        assertTrue(!file.exists());
+    }
+}
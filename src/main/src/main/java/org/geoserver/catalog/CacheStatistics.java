@@ -0,0 +1,155 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Hit, miss, load and eviction counters for one of the {@link ResourcePool} caches. The counters
+ * are cheap to update from many threads concurrently.
+ */
+public class CacheStatistics implements CacheStatisticsMXBean {
+
+    final String name;
+
+    final IntSupplier size;
+
+    final LongAdder hits = new LongAdder();
+
+    final LongAdder misses = new LongAdder();
+
+    final LongAdder loads = new LongAdder();
+
+    final LongAdder loadFailures = new LongAdder();
+
+    final LongAdder coalescedLoads = new LongAdder();
+
+    final LongAdder loadTime = new LongAdder();
+
+    final LongAdder evictions = new LongAdder();
+
+    public CacheStatistics(String name, IntSupplier size) {
+        this.name = name;
+        this.size = size;
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordLoad(long nanos, boolean success) {
+        if (success) {
+            loads.increment();
+        } else {
+            loadFailures.increment();
+        }
+        loadTime.add(nanos);
+    }
+
+    void recordCoalescedLoad() {
+        coalescedLoads.increment();
+    }
+
+    void recordEviction() {
+        evictions.increment();
+    }
+
+    @Override
+    public void reset() {
+        hits.reset();
+        misses.reset();
+        loads.reset();
+        loadFailures.reset();
+        coalescedLoads.reset();
+        loadTime.reset();
+        evictions.reset();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getSize() {
+        return size.getAsInt();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 1 : ((double) h) / total;
+    }
+
+    @Override
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    @Override
+    public long getLoadFailures() {
+        return loadFailures.sum();
+    }
+
+    @Override
+    public long getCoalescedLoads() {
+        return coalescedLoads.sum();
+    }
+
+    @Override
+    public double getAverageLoadTime() {
+        long count = loads.sum() + loadFailures.sum();
+        if (count == 0) {
+            return 0;
+        }
+        return ((double) loadTime.sum()) / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the statistics as a map, suitable for encoding
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", getSize());
+        result.put("hits", getHits());
+        result.put("misses", getMisses());
+        result.put("hitRatio", getHitRatio());
+        result.put("loads", getLoads());
+        result.put("loadFailures", getLoadFailures());
+        result.put("coalescedLoads", getCoalescedLoads());
+        result.put("averageLoadTime", getAverageLoadTime());
+        result.put("evictions", getEvictions());
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatistics[" + name + ": " + toMap() + "]";
+    }
+}
@@ -0,0 +1,69 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+/**
+ * JMX view of the statistics of one of the {@link ResourcePool} caches
+ * 
+ * @see CacheStatistics
+ */
+public interface CacheStatisticsMXBean {
+
+    /**
+     * The cache name
+     */
+    String getName();
+
+    /**
+     * The number of entries currently in the cache
+     */
+    int getSize();
+
+    /**
+     * Number of lookups that found the entry in the cache
+     */
+    long getHits();
+
+    /**
+     * Number of lookups that did not find the entry in the cache
+     */
+    long getMisses();
+
+    /**
+     * Hits over total lookups, or 1 if no lookup was performed yet
+     */
+    double getHitRatio();
+
+    /**
+     * Number of entries loaded into the cache
+     */
+    long getLoads();
+
+    /**
+     * Number of loads that failed with an exception
+     */
+    long getLoadFailures();
+
+    /**
+     * Number of lookups that waited for a load already in progress in another thread, instead
+     * of performing their own
+     */
+    long getCoalescedLoads();
+
+    /**
+     * The average time spent loading an entry, in milliseconds
+     */
+    double getAverageLoadTime();
+
+    /**
+     * Number of entries evicted because of size bounds, expiration, or garbage collection
+     */
+    long getEvictions();
+
+    /**
+     * Resets all the counters to zero
+     */
+    void reset();
+}
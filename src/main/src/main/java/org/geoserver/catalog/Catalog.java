@@ -1605,6 +1605,21 @@ public interface Catalog extends CatalogInfo {
      */
     void fireRemoved(CatalogInfo object);
     
+    /**
+     * Fires the event for the data access object backing a catalog object (a data store, a 
+     * coverage reader, a feature type) being loaded by the resource pool.
+     * <p>
+     * This method should not be called by client code. It is meant to be called
+     * interally by the catalog subsystem.
+     * </p>
+     * 
+     * @param object The catalog object whose resource was loaded
+     * @param loadTime The time it took to load it, in milliseconds
+     */
+    default void fireResourceLoaded(CatalogInfo object, long loadTime) {
+        // by default no listeners are informed
+    }
+    
     /**
      * Returns the pool or cache for resources.
      * <p>
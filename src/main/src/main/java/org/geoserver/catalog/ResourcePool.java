@@ -29,13 +29,19 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,6 +62,7 @@ import org.geoserver.catalog.event.CatalogListener;
 import org.geoserver.catalog.event.CatalogModifyEvent;
 import org.geoserver.catalog.event.CatalogPostModifyEvent;
 import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.catalog.event.CatalogResourceLoadEvent;
 import org.geoserver.catalog.impl.ModificationProxy;
 import org.geoserver.catalog.impl.StoreInfoImpl;
 import org.geoserver.config.GeoServerDataDirectory;
@@ -198,6 +205,13 @@ public class ResourcePool {
      */
     static int FEATURETYPE_CACHE_SIZE_DEFAULT = 100;
     
+    /**
+     * Prefix for the variables used to configure the caches, e.g.
+     * {@code org.geoserver.catalog.cache.featureTypes.maxEntries} or
+     * {@code org.geoserver.catalog.cache.featureTypes.expireAfterAccess} (in seconds)
+     */
+    static final String CACHE_PROPERTY_PREFIX = "org.geoserver.catalog.cache.";
+    
     private static final String IMAGE_PYRAMID = "ImagePyramid";
     private static final String IMAGE_MOSAIC = "ImageMosaic";
 
@@ -285,7 +299,7 @@ public class ResourcePool {
     }
 
     protected Map<String,CoordinateReferenceSystem> createCrsCache() {
-        return new HashMap<String, CoordinateReferenceSystem>();
+        return new SimpleCache<String, CoordinateReferenceSystem>("crs", 1000);
     }
 
     /**
@@ -374,7 +388,7 @@ public class ResourcePool {
     }
 
     protected Map<StyleInfo, StyledLayerDescriptor> createSldCache() {
-        return new HashMap<StyleInfo, StyledLayerDescriptor>();
+        return new SimpleCache<StyleInfo, StyledLayerDescriptor>("sld");
     }
 
     /**
@@ -388,7 +402,7 @@ public class ResourcePool {
     }
 
     protected Map<StyleInfo, Style> createStyleCache() {
-        return new HashMap<StyleInfo, Style>();
+        return new SimpleCache<StyleInfo, Style>("styles");
     }
 
     /**
@@ -415,6 +429,83 @@ public class ResourcePool {
     protected Map<String, WebMapTileServer> createWmtsCache() {
         return new WMTSCache();
     }
+    /**
+     * Returns the statistics of all the caches managed by this pool, keyed by cache name.
+     * Caches that have been replaced by custom {@link Map} implementations are not reported.
+     */
+    public Map<String, CacheStatistics> getCacheStatistics() {
+        Map<String, CacheStatistics> result = new LinkedHashMap<>();
+        for (Map<?, ?> cache : Arrays.asList(crsCache, dataStoreCache, featureTypeCache,
+                featureTypeAttributeCache, hintCoverageReaderCache, wmsCache, wmtsCache,
+                sldCache, styleCache)) {
+            if (cache instanceof CatalogResourceCache) {
+                CacheStatistics statistics = ((CatalogResourceCache<?, ?>) cache).getStatistics();
+                result.put(statistics.getName(), statistics);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads a value through the cache, coalescing concurrent loads of the same key when the
+     * cache supports it
+     */
+    <K, V> V getOrLoad(Map<K, V> cache, K key, Callable<V> loader) throws IOException {
+        if (cache instanceof CatalogResourceCache) {
+            return ((CatalogResourceCache<K, V>) cache).getOrLoad(key, loader);
+        }
+        // custom cache implementation, fall back on a cache wide lock
+        V value = cache.get(key);
+        if (value == null) {
+            synchronized (cache) {
+                value = cache.get(key);
+                if (value == null) {
+                    try {
+                        value = loader.call();
+                    } catch (IOException | RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new IOException(e);
+                    }
+                    if (value != null) {
+                        cache.put(key, value);
+                    }
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Loads a value through the cache like {@link #getOrLoad(Map, Object, Callable)}, and notifies
+     * the catalog listeners with a {@link CatalogResourceLoadEvent} reporting the load time, in
+     * case the current thread actually performed the load
+     */
+    <K, V> V loadAndNotify(Map<K, V> cache, K key, CatalogInfo info, Callable<V> loader)
+            throws IOException {
+        final long[] loadTime = { -1 };
+        V value = getOrLoad(cache, key, () -> {
+            long start = System.nanoTime();
+            V result = loader.call();
+            loadTime[0] = System.nanoTime() - start;
+            return result;
+        });
+        // fire outside of the load, listeners might want to access the resource
+        if (loadTime[0] >= 0) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(loadTime[0]);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Loaded resource for " + info + " in " + millis + "ms");
+            }
+            try {
+                catalog.fireResourceLoaded(info, millis);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Catalog listener failed handling the load of " + info,
+                        e);
+            }
+        }
+        return value;
+    }
+
     /**
      * Sets the size of the feature type cache.
      * <p>
@@ -502,23 +593,14 @@ public class ResourcePool {
         if(srsName == null)
             return null;
         
-        CoordinateReferenceSystem crs = crsCache.get( srsName );
-        if ( crs == null ) {
-            synchronized (crsCache) {
-                crs = crsCache.get( srsName );
-                if ( crs == null ) {
-                    try {
-                        crs = CRS.decode( srsName );
-                        crsCache.put( srsName, crs );
-                    }
-                    catch( Exception e) {
-                        throw (IOException) new IOException().initCause(e);
-                    }
-                }
+        return getOrLoad(crsCache, srsName, () -> {
+            try {
+                return CRS.decode( srsName );
             }
-        }
-        
-        return crs;
+            catch( Exception e) {
+                throw (IOException) new IOException().initCause(e);
+            }
+        });
     }
     
     /**
@@ -563,114 +645,116 @@ public class ResourcePool {
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public DataAccess<? extends FeatureType, ? extends Feature> getDataStore( DataStoreInfo info ) throws IOException {
         
+        String id = info.getId();
+        // cache only if the id is not null, no need to cache the stores
+        // returned from un-saved DataStoreInfo objects (it would be actually
+        // harmful, NPE when trying to dispose of them)
+        if (id == null) {
+            return createDataStore(info);
+        }
+        
+        // concurrent requests for the same store wait for a single load, other stores
+        // can be loaded in parallel
+        return loadAndNotify(dataStoreCache, id, info, () -> createDataStore(info));
+    }
+    
+    /**
+     * Creates a new data store for the given store info, without caching it
+     */
+    private DataAccess<? extends FeatureType, ? extends Feature> createDataStore(DataStoreInfo info) 
+            throws IOException {
         DataStoreInfo expandedStore = clone(info, true);
         
         DataAccess<? extends FeatureType, ? extends Feature> dataStore = null;
         try {
-            String id = info.getId();
-            dataStore = dataStoreCache.get(id);
-            if ( dataStore == null ) {
-                synchronized (dataStoreCache) {
-                    dataStore = dataStoreCache.get( id );
-                    if ( dataStore == null ) {
-                        //create data store
-                        Map<String, Serializable> connectionParameters = expandedStore.getConnectionParameters();
-                        
-                        // call this method to execute the hack which recognizes 
-                        // urls which are relative to the data directory
-                        // TODO: find a better way to do this
-                        connectionParameters = ResourcePool.getParams(connectionParameters, catalog.getResourceLoader() );
-                        
-                        // obtain the factory
-                        DataAccessFactory factory = null;
-                        try {
-                            factory = getDataStoreFactory(info);
-                        } catch(IOException e) {
-                            throw new IOException("Failed to find the datastore factory for " + info.getName() 
-                                    + ", did you forget to install the store extension jar?");
-                        }
-                        if (factory == null) {
-                            throw new IOException("Failed to find the datastore factory for "
-                                    + info.getName()
-                                    + ", did you forget to install the store extension jar?");
-                        }
-                        Param[] params = factory.getParametersInfo();
-                        
-                        //ensure that the namespace parameter is set for the datastore
-                        if (!connectionParameters.containsKey( "namespace") && params != null) {
-                            //if we grabbed the factory, check that the factory actually supports
-                            // a namespace parameter, if we could not get the factory, assume that
-                            // it does
-                            boolean supportsNamespace = true;
-                            supportsNamespace = false;
-                            
-                            for ( Param p : params ) {
-                                if ( "namespace".equalsIgnoreCase( p.key ) ) {
-                                    supportsNamespace = true;
-                                    break;
-                                }
-                            }
-                            
-                            if ( supportsNamespace ) {
-                                WorkspaceInfo ws = info.getWorkspace();
-                                NamespaceInfo ns = info.getCatalog().getNamespaceByPrefix( ws.getName() );
-                                if ( ns == null ) {
-                                    ns = info.getCatalog().getDefaultNamespace();
-                                }
-                                if ( ns != null ) {
-                                    connectionParameters.put( "namespace", ns.getURI() );
-                                }    
-                            }
-                        }
-                        
-                        // see if the store has a repository param, if so, pass the one wrapping
-                        // the store
-                        if(params != null) {
-                            for ( Param p : params ) {
-                                if(Repository.class.equals(p.getType())) {
-                                    connectionParameters.put(p.getName(), repository);
-                                }
-                            }
-                        }
-                        
-                        // see if the store has a entity resolver param, if so, pass it down
-                        EntityResolver resolver = getEntityResolver();
-                        if(resolver != null && params != null) {
-                            for ( Param p : params ) {
-                                if(EntityResolver.class.equals(p.getType())) {
-                                    if(!(resolver instanceof Serializable)) {
-                                        resolver = new SerializableEntityResolver(resolver);
-                                    }
-                                    connectionParameters.put(p.getName(), (Serializable) resolver);
-                                }
-                            }
-                        }
-                        
-                        dataStore = DataStoreUtils.getDataAccess(connectionParameters);
-                        if (dataStore == null) {
-                            /*
-                             * Preserve DataStore retyping behaviour by calling
-                             * DataAccessFinder.getDataStore after the call to
-                             * DataStoreUtils.getDataStore above.
-                             * 
-                             * TODO: DataAccessFinder can also find DataStores, and when retyping is
-                             * supported for DataAccess, we can use a single mechanism.
-                             */
-                            dataStore = DataAccessFinder.getDataStore(connectionParameters);
-                        }
-                        
-                        if ( dataStore == null ) {
-                            throw new NullPointerException("Could not acquire data access '" + info.getName() + "'");
-                        }
-                        
-                        // cache only if the id is not null, no need to cache the stores
-                        // returned from un-saved DataStoreInfo objects (it would be actually
-                        // harmful, NPE when trying to dispose of them)
-                        if(id != null) {
-                            dataStoreCache.put( id, dataStore );
+            //create data store
+            Map<String, Serializable> connectionParameters = expandedStore.getConnectionParameters();
+            
+            // call this method to execute the hack which recognizes 
+            // urls which are relative to the data directory
+            // TODO: find a better way to do this
+            connectionParameters = ResourcePool.getParams(connectionParameters, catalog.getResourceLoader() );
+            
+            // obtain the factory
+            DataAccessFactory factory = null;
+            try {
+                factory = getDataStoreFactory(info);
+            } catch(IOException e) {
+                throw new IOException("Failed to find the datastore factory for " + info.getName() 
+                        + ", did you forget to install the store extension jar?");
+            }
+            if (factory == null) {
+                throw new IOException("Failed to find the datastore factory for "
+                        + info.getName()
+                        + ", did you forget to install the store extension jar?");
+            }
+            Param[] params = factory.getParametersInfo();
+            
+            //ensure that the namespace parameter is set for the datastore
+            if (!connectionParameters.containsKey( "namespace") && params != null) {
+                //if we grabbed the factory, check that the factory actually supports
+                // a namespace parameter, if we could not get the factory, assume that
+                // it does
+                boolean supportsNamespace = true;
+                supportsNamespace = false;
+                
+                for ( Param p : params ) {
+                    if ( "namespace".equalsIgnoreCase( p.key ) ) {
+                        supportsNamespace = true;
+                        break;
+                    }
+                }
+                
+                if ( supportsNamespace ) {
+                    WorkspaceInfo ws = info.getWorkspace();
+                    NamespaceInfo ns = info.getCatalog().getNamespaceByPrefix( ws.getName() );
+                    if ( ns == null ) {
+                        ns = info.getCatalog().getDefaultNamespace();
+                    }
+                    if ( ns != null ) {
+                        connectionParameters.put( "namespace", ns.getURI() );
+                    }    
+                }
+            }
+            
+            // see if the store has a repository param, if so, pass the one wrapping
+            // the store
+            if(params != null) {
+                for ( Param p : params ) {
+                    if(Repository.class.equals(p.getType())) {
+                        connectionParameters.put(p.getName(), repository);
+                    }
+                }
+            }
+            
+            // see if the store has a entity resolver param, if so, pass it down
+            EntityResolver resolver = getEntityResolver();
+            if(resolver != null && params != null) {
+                for ( Param p : params ) {
+                    if(EntityResolver.class.equals(p.getType())) {
+                        if(!(resolver instanceof Serializable)) {
+                            resolver = new SerializableEntityResolver(resolver);
                         }
+                        connectionParameters.put(p.getName(), (Serializable) resolver);
                     }
-                } 
+                }
+            }
+            
+            dataStore = DataStoreUtils.getDataAccess(connectionParameters);
+            if (dataStore == null) {
+                /*
+                 * Preserve DataStore retyping behaviour by calling
+                 * DataAccessFinder.getDataStore after the call to
+                 * DataStoreUtils.getDataStore above.
+                 * 
+                 * TODO: DataAccessFinder can also find DataStores, and when retyping is
+                 * supported for DataAccess, we can use a single mechanism.
+                 */
+                dataStore = DataAccessFinder.getDataStore(connectionParameters);
+            }
+            
+            if ( dataStore == null ) {
+                throw new NullPointerException("Could not acquire data access '" + info.getName() + "'");
             }
             
             return dataStore;
@@ -773,30 +857,28 @@ public class ResourcePool {
             return info.getAttributes();
         }
         
+        // cache attributes only if the id is not null -> the feature type is not new
+        if (info.getId() == null) {
+            return loadAttributesWithOverrides(info);
+        }
+        
         //check the cache
-        List<AttributeTypeInfo> atts = featureTypeAttributeCache.get(info.getId());
-        if (atts == null) {
-            synchronized (featureTypeAttributeCache) {
-                atts = featureTypeAttributeCache.get(info.getId());
-                if (atts == null) {
-                    //load from feature type
-                    atts = loadAttributes(info);
-                    
-                    //check for a schema override
-                    try {
-                        handleSchemaOverride(atts,info);
-                    }
-                    catch( Exception e ) {
-                        LOGGER.log( Level.WARNING, 
-                            "Error occured applying schema override for "+info.getName(), e);
-                    }
-                    
-                    // cache attributes only if the id is not null -> the feature type is not new
-                    if(info.getId() != null) {
-                        featureTypeAttributeCache.put(info.getId(), atts);
-                    }
-                }
-            }
+        return getOrLoad(featureTypeAttributeCache, info.getId(), 
+                () -> loadAttributesWithOverrides(info));
+    }
+    
+    private List<AttributeTypeInfo> loadAttributesWithOverrides(FeatureTypeInfo info)
+            throws IOException {
+        //load from feature type
+        List<AttributeTypeInfo> atts = loadAttributes(info);
+        
+        //check for a schema override
+        try {
+            handleSchemaOverride(atts,info);
+        }
+        catch( Exception e ) {
+            LOGGER.log( Level.WARNING, 
+                "Error occured applying schema override for "+info.getName(), e);
         }
         
         return atts;
@@ -952,27 +1034,17 @@ public class ResourcePool {
 
     FeatureType getCacheableFeatureType( FeatureTypeInfo info, boolean handleProjectionPolicy ) throws IOException {
         String key = getFeatureTypeInfoKey(info, handleProjectionPolicy);
-        FeatureType ft = featureTypeCache.get( key );
-        if ( ft == null ) {
-            synchronized ( featureTypeCache ) {
-                ft = featureTypeCache.get( key );
-                if ( ft == null ) {
-
-                    //grab the underlying feature type
-                    DataAccess<? extends FeatureType, ? extends Feature> dataAccess = getDataStore(info.getStore());
-                    FeatureTypeCallback initializer = getFeatureTypeInitializer(info, dataAccess);
-                    if (initializer != null) {
-                        initializer.initialize(info, dataAccess, null);
-                    }
-                    // ft = jstore.getSchema(vt.getName());
-                    ft = dataAccess.getSchema(info.getQualifiedNativeName());
-                    ft = buildFeatureType(info, handleProjectionPolicy, ft);
-
-                    featureTypeCache.put( key, ft );
-                }
+        return loadAndNotify(featureTypeCache, key, info, () -> {
+            //grab the underlying feature type
+            DataAccess<? extends FeatureType, ? extends Feature> dataAccess = getDataStore(info.getStore());
+            FeatureTypeCallback initializer = getFeatureTypeInitializer(info, dataAccess);
+            if (initializer != null) {
+                initializer.initialize(info, dataAccess, null);
             }
-        }
-        return ft;
+            // ft = jstore.getSchema(vt.getName());
+            FeatureType ft = dataAccess.getSchema(info.getQualifiedNativeName());
+            return buildFeatureType(info, handleProjectionPolicy, ft);
+        });
     }
 
     private FeatureType getNonCacheableFeatureType( FeatureTypeInfo info, boolean handleProjectionPolicy ) throws IOException {
@@ -1483,36 +1555,26 @@ public class ResourcePool {
         if (coverageExecutor != null){
             hints.add(new RenderingHints(Hints.EXECUTOR_SERVICE, coverageExecutor));
         }
-        // look into the cache
-        Object key = new CoverageHintReaderKey(info.getId(), hints);
-        GridCoverageReader reader = hintCoverageReaderCache.get( key );
-        
-        // if not found in cache, create it
-        if (reader == null) {
-            synchronized ( hintCoverageReaderCache ) {
-                if (key != null) {
-                    reader = hintCoverageReaderCache.get(key);
-                }
-                if (reader == null) {
-                    /////////////////////////////////////////////////////////
-                    //
-                    // Getting coverage reader using the format and the real path.
-                    //
-                    // /////////////////////////////////////////////////////////
-                    final String urlString = expandedStore.getURL();
-                    Object readObject = getObjectToRead(urlString);
-
-                    // readers might change the provided hints, pass down a defensive copy
-                    reader = gridFormat.getReader(readObject, hints);
-                    if (reader == null) {
-                        throw new IOException("Failed to create reader from " + urlString + " and hints " + hints);
-                    }
-                    if (key != null) {
-                        hintCoverageReaderCache.put((CoverageHintReaderKey) key, reader);
-                    }
-                }
+        // look into the cache, if not found create it, concurrent requests for the same
+        // reader wait for a single load
+        CoverageHintReaderKey key = new CoverageHintReaderKey(info.getId(), hints);
+        final Hints readerHints = hints;
+        GridCoverageReader reader = loadAndNotify(hintCoverageReaderCache, key, info, () -> {
+            /////////////////////////////////////////////////////////
+            //
+            // Getting coverage reader using the format and the real path.
+            //
+            // /////////////////////////////////////////////////////////
+            final String urlString = expandedStore.getURL();
+            Object readObject = getObjectToRead(urlString);
+
+            // readers might change the provided hints, pass down a defensive copy
+            GridCoverageReader created = gridFormat.getReader(readObject, readerHints);
+            if (created == null) {
+                throw new IOException("Failed to create reader from " + urlString + " and hints " + readerHints);
             }
-        }
+            return created;
+        });
 
         if(coverageInfo == null && coverageName != null) {
             coverageInfo = getCoverageInfo(coverageName, info);
@@ -1948,29 +2010,20 @@ public class ResourcePool {
      * @throws IOException Any parsing errors.
      */
     public StyledLayerDescriptor getSld( final StyleInfo info) throws IOException {
-        StyledLayerDescriptor sld = sldCache.get( info );
-        if ( sld== null ) {
-            synchronized (sldCache) {
-                sld = sldCache.get( info );
-                if ( sld == null ) {
-                    sld = dataDir().parsedSld(info);
-
-                    sldCache.put( info, sld );
-
-                    final Resource styleResource = dataDir().style(info);
-                    styleResource.addListener( new ResourceListener() {
-                        @Override
-                        public void changed(ResourceNotification notify) {
-                            sldCache.remove(info);
-                            styleResource.removeListener( this );
-                        }
-                    });
+        return getOrLoad(sldCache, info, () -> {
+            StyledLayerDescriptor sld = dataDir().parsedSld(info);
 
+            final Resource styleResource = dataDir().style(info);
+            styleResource.addListener( new ResourceListener() {
+                @Override
+                public void changed(ResourceNotification notify) {
+                    sldCache.remove(info);
+                    styleResource.removeListener( this );
                 }
-            }
-        }
-
-        return sld;
+            });
+            
+            return sld;
+        });
     }
     /**
      * Returns the first {@link Style} in a style resource, caching the result. Any associated images should
@@ -1986,39 +2039,31 @@ public class ResourcePool {
      * @throws IOException Any parsing errors.
      */
     public Style getStyle( final StyleInfo info ) throws IOException {
-        Style style = styleCache.get( info );
-        if ( style == null ) {
-            synchronized (styleCache) {
-                style = styleCache.get( info );
-                if ( style == null ) {
-                    style = dataDir().parsedStyle(info);
-
-                    if (style == null) {
-                        throw new ServiceException("Could not extract a UserStyle definition from "
-                                + info.getName());
-                    }
-                    //Make sure we don't change the name of an object in sldCache
-                    if (style instanceof StyleImpl) {
-                        style = (Style)((StyleImpl)style).clone();
-                    }
-                    // remove this when wms works off style info
-                    style.setName( info.getName() );
-                    styleCache.put( info, style );
-                    
-                    final Resource styleResource = dataDir().style(info);
-                    styleResource.addListener( new ResourceListener() {
-                        @Override
-                        public void changed(ResourceNotification notify) {
-                            styleCache.remove(info);
-                            styleResource.removeListener( this );
-                        }
-                    });
-                    
-                }
+        return getOrLoad(styleCache, info, () -> {
+            Style style = dataDir().parsedStyle(info);
+
+            if (style == null) {
+                throw new ServiceException("Could not extract a UserStyle definition from "
+                        + info.getName());
             }
-        }
-        
-        return style;
+            //Make sure we don't change the name of an object in sldCache
+            if (style instanceof StyleImpl) {
+                style = (Style)((StyleImpl)style).clone();
+            }
+            // remove this when wms works off style info
+            style.setName( info.getName() );
+            
+            final Resource styleResource = dataDir().style(info);
+            styleResource.addListener( new ResourceListener() {
+                @Override
+                public void changed(ResourceNotification notify) {
+                    styleCache.remove(info);
+                    styleResource.removeListener( this );
+                }
+            });
+            
+            return style;
+        });
     }
 
     /**
@@ -2191,23 +2236,249 @@ public class ResourcePool {
      */
     abstract class CatalogResourceCache<K, V> extends SoftValueHashMap<K, V> {
 
-        public CatalogResourceCache() {
-            this(100);
+        final CacheStatistics statistics;
+
+        /**
+         * Maximum number of entries, a non positive value means no limit other than the one
+         * imposed by the garbage collector on soft references
+         */
+        int maxEntries;
+
+        /**
+         * Entries not accessed for longer than this amount of milliseconds get evicted, a non
+         * positive value disables expiration
+         */
+        long expireAfterAccess;
+
+        /**
+         * Whether the entries can be evicted because of the size and expiration limits. Evicted
+         * entries are dropped without being disposed, as they might still be in use, caches
+         * whose values hold on to resources (connection pools, open files) are not evictable,
+         * and are cleaned up only by catalog changes and the garbage collector
+         */
+        final boolean evictable;
+
+        /**
+         * The last access time of each entry, least recently accessed first, so that the
+         * entries to evict are always found at the head. Guarded by its own monitor
+         */
+        final LinkedHashMap<Object, Long> accessTimes = new LinkedHashMap<>(16, 0.75f, true);
+
+        final ConcurrentHashMap<K, LoadTask<V>> loading = new ConcurrentHashMap<>();
+
+        public CatalogResourceCache(String name) {
+            this(name, 100, true);
         }
 
-        public CatalogResourceCache(int hardReferences) {
+        public CatalogResourceCache(String name, int hardReferences) {
+            this(name, hardReferences, true);
+        }
+
+        public CatalogResourceCache(String name, int hardReferences, boolean evictable) {
             super(hardReferences);
+            this.statistics = new CacheStatistics(name, this::size);
+            this.evictable = evictable;
+            if (evictable) {
+                this.maxEntries = getCacheProperty(name, "maxEntries", -1);
+                this.expireAfterAccess = getCacheProperty(name, "expireAfterAccess", -1)
+                        * 1000L;
+            } else {
+                this.maxEntries = -1;
+                this.expireAfterAccess = -1;
+            }
             super.cleaner = new ValueCleaner() {
 
                 @Override
                 public void clean(Object key, Object object) {
+                    forget(key);
+                    statistics.recordEviction();
                     dispose((K) key, (V) object);
                 }
             };
         }
 
+        public CacheStatistics getStatistics() {
+            return statistics;
+        }
+
+        /**
+         * Whether the size and expiration limits apply to this cache
+         */
+        public boolean isEvictable() {
+            return evictable;
+        }
+
+        @Override
+        public V get(Object key) {
+            V value = lookup(key);
+            if (value != null) {
+                statistics.recordHit();
+            } else {
+                statistics.recordMiss();
+            }
+            return value;
+        }
+
+        /**
+         * Same as {@link #get(Object)}, but without recording a hit or a miss
+         */
+        private V lookup(Object key) {
+            V value = super.get(key);
+            if (value != null && isExpired(key)) {
+                evict(key);
+                value = null;
+            }
+            if (value != null && (expireAfterAccess > 0 || maxEntries > 0)) {
+                touch(key);
+            }
+            return value;
+        }
+
+        @Override
+        public V put(K key, V value) {
+            V result = super.put(key, value);
+            if (expireAfterAccess > 0 || maxEntries > 0) {
+                touch(key);
+                enforceBounds();
+            }
+            return result;
+        }
+
+        /**
+         * Returns the value associated to the key, loading it with the provided loader if
+         * missing. Concurrent requests for the same missing key are coalesced, only one thread
+         * performs the load while the others wait for its result, requests for other keys are
+         * not blocked. Null values returned by the loader are not cached.
+         */
+        public V getOrLoad(K key, Callable<V> loader) throws IOException {
+            V value = get(key);
+            if (value != null) {
+                return value;
+            }
+
+            LoadTask<V> task = new LoadTask<>(loader);
+            LoadTask<V> running = loading.putIfAbsent(key, task);
+            if (running == null) {
+                try {
+                    // did someone complete the load between our check and the registration?
+                    value = super.get(key);
+                    if (value != null) {
+                        return value;
+                    }
+                    long start = System.nanoTime();
+                    task.run();
+                    try {
+                        value = task.get();
+                        statistics.recordLoad(System.nanoTime() - start, true);
+                    } catch (Exception e) {
+                        statistics.recordLoad(System.nanoTime() - start, false);
+                        throw e;
+                    }
+                    if (value != null) {
+                        put(key, value);
+                    }
+                    return value;
+                } catch (Exception e) {
+                    throw toIOException(e);
+                } finally {
+                    loading.remove(key, task);
+                }
+            } else if (running.owner == Thread.currentThread()) {
+                // waiting would mean waiting forever
+                throw new IOException("Recursive load detected for key " + key);
+            } else {
+                statistics.recordCoalescedLoad();
+                try {
+                    return running.get();
+                } catch (Exception e) {
+                    throw toIOException(e);
+                }
+            }
+        }
+
+        private IOException toIOException(Exception e) {
+            Throwable cause = e;
+            if (e instanceof ExecutionException && e.getCause() != null) {
+                cause = e.getCause();
+            }
+            if (cause instanceof IOException) {
+                return (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            return new IOException(cause);
+        }
+
+        private boolean isExpired(Object key) {
+            if (expireAfterAccess <= 0) {
+                return false;
+            }
+            Long accessed;
+            synchronized (accessTimes) {
+                accessed = accessTimes.get(key);
+            }
+            return accessed != null
+                    && System.currentTimeMillis() - accessed > expireAfterAccess;
+        }
+
+        private void touch(Object key) {
+            synchronized (accessTimes) {
+                accessTimes.put(key, System.currentTimeMillis());
+            }
+        }
+
+        private void forget(Object key) {
+            synchronized (accessTimes) {
+                accessTimes.remove(key);
+            }
+        }
+
+        /**
+         * Evicts the least recently accessed entries while they are expired, or the cache size is
+         * out of bounds. Only the head of the access order is visited, the cost is proportional
+         * to the evicted entries. Does not record hits or misses, and does not dispose the
+         * evicted values
+         */
+        void enforceBounds() {
+            int excess = maxEntries > 0 ? size() - maxEntries : 0;
+            long limit = expireAfterAccess > 0 ? System.currentTimeMillis() - expireAfterAccess
+                    : Long.MIN_VALUE;
+            List<Object> evicted = new ArrayList<>();
+            synchronized (accessTimes) {
+                Iterator<Map.Entry<Object, Long>> it = accessTimes.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<Object, Long> eldest = it.next();
+                    if (excess <= 0 && eldest.getValue() >= limit) {
+                        break;
+                    }
+                    it.remove();
+                    evicted.add(eldest.getKey());
+                    excess--;
+                }
+            }
+            // drop the values outside of the lock, the map calls back the cleaner that takes it
+            for (Object key : evicted) {
+                if (super.remove(key) != null) {
+                    statistics.recordEviction();
+                }
+            }
+        }
+
+        /**
+         * Drops the entry without disposing it, other threads might still be using it
+         */
+        private void evict(Object key) {
+            forget(key);
+            if (super.remove(key) != null) {
+                statistics.recordEviction();
+            }
+        }
+
         @Override
         public V remove(Object key) {
+            forget(key);
             V object = super.remove(key);
             if (object != null) {
                 dispose((K) key, object);
@@ -2225,16 +2496,66 @@ public class ResourcePool {
                     LOGGER.log(Level.WARNING, "Error dispoing entry: " + entry, e);
                 }
             }
+            synchronized (accessTimes) {
+                accessTimes.clear();
+            }
             super.clear();
         }
 
         protected abstract void dispose(K key, V object);
     }
     
+    /**
+     * Reads a cache configuration property, looking up the 
+     * {@code org.geoserver.catalog.cache.<cacheName>.<property>} system/environment/context variable
+     */
+    static int getCacheProperty(String cacheName, String property, int defaultValue) {
+        String key = CACHE_PROPERTY_PREFIX + cacheName + "." + property;
+        String value = GeoServerExtensions.getProperty(key);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid value for " + key + ", should be an integer: " + value);
+            }
+        }
+        return defaultValue;
+    }
+    
+    /**
+     * A load in progress, tracks the thread running it
+     */
+    static class LoadTask<T> extends FutureTask<T> {
+        final Thread owner = Thread.currentThread();
+
+        LoadTask(Callable<T> loader) {
+            super(loader);
+        }
+    }
+    
+    /**
+     * A cache that does not need to dispose its values
+     */
+    class SimpleCache<K, V> extends CatalogResourceCache<K, V> {
+
+        SimpleCache(String name) {
+            super(name);
+        }
+
+        SimpleCache(String name, int hardReferences) {
+            super(name, hardReferences);
+        }
+
+        @Override
+        protected void dispose(K key, V object) {
+            // nothing to do
+        }
+    }
+    
     class FeatureTypeCache extends CatalogResourceCache<String, FeatureType> {
         
         public FeatureTypeCache(int maxSize) {
-            super(maxSize);
+            super("featureTypes", maxSize);
         }
         
         protected void dispose(String key, FeatureType featureType) {
@@ -2259,6 +2580,12 @@ public class ResourcePool {
      */
     @SuppressWarnings("rawtypes")
     class DataStoreCache extends CatalogResourceCache<String, DataAccess> {
+        
+        public DataStoreCache() {
+            // the stores might be in use by other requests, cannot be dropped without disposal
+            super("dataStores", 100, false);
+        }
+        
         /**
          * Ensure data access entry is removed from catalog, and
          * ensure DataAccess dispose is called to return system resources.
@@ -2293,6 +2620,11 @@ public class ResourcePool {
     
     class CoverageReaderCache extends CatalogResourceCache<String, GridCoverageReader> {
         
+        public CoverageReaderCache() {
+            // readers might be in use by other requests, see DataStoreCache
+            super("coverageReaders", 100, false);
+        }
+        
         protected void dispose(String id, GridCoverageReader reader) {
         	CoverageStoreInfo info = catalog.getCoverageStore(id);
         	if(info != null) {
@@ -2313,6 +2645,11 @@ public class ResourcePool {
     
     class CoverageHintReaderCache extends CatalogResourceCache<CoverageHintReaderKey, GridCoverageReader> {
         
+        public CoverageHintReaderCache() {
+            // readers might be in use by other requests, see DataStoreCache
+            super("coverageHintReaders", 100, false);
+        }
+        
         protected void dispose(CoverageHintReaderKey key, GridCoverageReader reader) {
         	CoverageStoreInfo info = catalog.getCoverageStore(key.id);
         	if(info != null) {
@@ -2382,7 +2719,7 @@ public class ResourcePool {
     class FeatureTypeAttributeCache extends CatalogResourceCache<String, List<AttributeTypeInfo>> {
 
         FeatureTypeAttributeCache(int size) {
-            super(size);
+            super("featureTypeAttributes", size);
         }
 
         @Override
@@ -2392,6 +2729,11 @@ public class ResourcePool {
     }
 
     class WMSCache extends CatalogResourceCache<String, WebMapServer> {
+        
+        public WMSCache() {
+            // the http client connection pool has to be closed, see DataStoreCache
+            super("wmsStores", 100, false);
+        }
 
         @Override
         protected void dispose(String key, WebMapServer server) {
@@ -2413,6 +2755,11 @@ public class ResourcePool {
     }
     
     class WMTSCache extends CatalogResourceCache<String, WebMapTileServer> {
+        
+        public WMTSCache() {
+            // the http client connection pool has to be closed, see DataStoreCache
+            super("wmtsStores", 100, false);
+        }
 
         @Override
         protected void dispose(String key, WebMapTileServer server) {
@@ -0,0 +1,145 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.geotools.util.logging.Logging;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Publishes the {@link ResourcePool} cache statistics in the platform MBean server, one MXBean
+ * per cache, named {@code org.geoserver:type=ResourcePoolCache,name=<cacheName>}.
+ * <p>
+ * The beans look up the statistics from the catalog resource pool at each call, so they keep on
+ * working when the pool, or one of its caches, gets replaced.
+ */
+public class ResourcePoolStatisticsExporter implements InitializingBean, DisposableBean {
+
+    static final Logger LOGGER = Logging.getLogger(ResourcePoolStatisticsExporter.class);
+
+    static final String DOMAIN = "org.geoserver";
+
+    final Catalog catalog;
+
+    final List<ObjectName> registered = new ArrayList<>();
+
+    public ResourcePoolStatisticsExporter(Catalog catalog) {
+        this.catalog = catalog;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (String name : catalog.getResourcePool().getCacheStatistics().keySet()) {
+            try {
+                ObjectName objectName = new ObjectName(DOMAIN + ":type=ResourcePoolCache,name="
+                        + ObjectName.quote(name));
+                if (server.isRegistered(objectName)) {
+                    // e.g., another application context in the same JVM
+                    continue;
+                }
+                server.registerMBean(new DelegatingStatistics(name), objectName);
+                registered.add(objectName);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to register JMX bean for cache " + name, e);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : registered) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Failed to unregister JMX bean " + objectName, e);
+            }
+        }
+        registered.clear();
+    }
+
+    /**
+     * Looks up the current statistics for the named cache on each call
+     */
+    class DelegatingStatistics implements CacheStatisticsMXBean {
+
+        final String name;
+
+        DelegatingStatistics(String name) {
+            this.name = name;
+        }
+
+        CacheStatisticsMXBean delegate() {
+            CacheStatistics statistics = catalog.getResourcePool().getCacheStatistics()
+                    .get(name);
+            return statistics != null ? statistics : new CacheStatistics(name, () -> 0);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int getSize() {
+            return delegate().getSize();
+        }
+
+        @Override
+        public long getHits() {
+            return delegate().getHits();
+        }
+
+        @Override
+        public long getMisses() {
+            return delegate().getMisses();
+        }
+
+        @Override
+        public double getHitRatio() {
+            return delegate().getHitRatio();
+        }
+
+        @Override
+        public long getLoads() {
+            return delegate().getLoads();
+        }
+
+        @Override
+        public long getLoadFailures() {
+            return delegate().getLoadFailures();
+        }
+
+        @Override
+        public long getCoalescedLoads() {
+            return delegate().getCoalescedLoads();
+        }
+
+        @Override
+        public double getAverageLoadTime() {
+            return delegate().getAverageLoadTime();
+        }
+
+        @Override
+        public long getEvictions() {
+            return delegate().getEvictions();
+        }
+
+        @Override
+        public void reset() {
+            delegate().reset();
+        }
+    }
+}
@@ -42,6 +42,14 @@ public interface CatalogListener {
      */
     void handlePostModifyEvent(CatalogPostModifyEvent event) throws CatalogException;
     
+    /**
+     * Handles the event of the resource pool loading the data access object backing a catalog
+     * object. The default implementation does nothing.
+     */
+    default void handleResourceLoadEvent(CatalogResourceLoadEvent event) throws CatalogException {
+        // nothing to do
+    }
+    
     /**
      * A callback notifying when GeoServer configuration has been reloaded.
      * <p>
@@ -0,0 +1,25 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.event;
+
+/**
+ * Event for the loading of the data access object backing a catalog object in the
+ * {@link org.geoserver.catalog.ResourcePool}, such as the data store of a
+ * {@link org.geoserver.catalog.DataStoreInfo}, the reader of a
+ * {@link org.geoserver.catalog.CoverageStoreInfo}, or the feature type of a
+ * {@link org.geoserver.catalog.FeatureTypeInfo}.
+ * <p>
+ * The {@link #getSource()} method returns the object whose resource got loaded. The event is
+ * fired once per actual load, requests that waited on a load performed by another thread, or that
+ * found the resource already cached, do not fire it.
+ * </p>
+ */
+public interface CatalogResourceLoadEvent extends CatalogEvent {
+
+    /**
+     * The time it took to load the resource, in milliseconds
+     */
+    long getLoadTime();
+}
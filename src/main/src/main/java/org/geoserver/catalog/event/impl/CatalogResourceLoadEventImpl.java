@@ -0,0 +1,21 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.event.impl;
+
+import org.geoserver.catalog.event.CatalogResourceLoadEvent;
+
+public class CatalogResourceLoadEventImpl extends CatalogEventImpl
+        implements CatalogResourceLoadEvent {
+
+    long loadTime;
+
+    public long getLoadTime() {
+        return loadTime;
+    }
+
+    public void setLoadTime(long loadTime) {
+        this.loadTime = loadTime;
+    }
+}
@@ -656,6 +656,10 @@ public class AbstractCatalogDecorator extends AbstractDecorator<Catalog> impleme
     public void fireRemoved(CatalogInfo object) {
         delegate.fireRemoved(object);
     }
+    
+    public void fireResourceLoaded(CatalogInfo object, long loadTime) {
+        delegate.fireResourceLoaded(object, loadTime);
+    }
 
     //
     // Misc
@@ -668,6 +668,10 @@ public abstract class AbstractFilteredCatalog extends AbstractDecorator<Catalog>
         delegate.fireRemoved(object);
     }
     
+    public void fireResourceLoaded(CatalogInfo object, long loadTime) {
+        delegate.fireResourceLoaded(object, loadTime);
+    }
+    
     // TODO: why is resource pool being exposed???
     public ResourcePool getResourcePool() {
         return delegate.getResourcePool();
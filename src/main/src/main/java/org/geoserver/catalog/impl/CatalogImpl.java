@@ -58,10 +58,12 @@ import org.geoserver.catalog.event.CatalogListener;
 import org.geoserver.catalog.event.CatalogModifyEvent;
 import org.geoserver.catalog.event.CatalogPostModifyEvent;
 import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.catalog.event.CatalogResourceLoadEvent;
 import org.geoserver.catalog.event.impl.CatalogAddEventImpl;
 import org.geoserver.catalog.event.impl.CatalogModifyEventImpl;
 import org.geoserver.catalog.event.impl.CatalogPostModifyEventImpl;
 import org.geoserver.catalog.event.impl.CatalogRemoveEventImpl;
+import org.geoserver.catalog.event.impl.CatalogResourceLoadEventImpl;
 import org.geoserver.catalog.util.CloseableIterator;
 import org.geoserver.config.GeoServer;
 import org.geoserver.ows.util.OwsUtils;
@@ -94,6 +96,12 @@ public class CatalogImpl implements Catalog {
      */
     protected CatalogFacade facade;
     
+    /**
+     * The same facade, without the lock upgrading wrapper, used for all read only operations
+     * so that they don't need to go through a reflective proxy
+     */
+    protected CatalogFacade rawFacade;
+    
     /**
      * listeners
      */
@@ -116,6 +124,7 @@ public class CatalogImpl implements Catalog {
         if(configurationLock != null) {
             facade =  LockingCatalogFacade.create(facade, configurationLock);
         }
+        rawFacade = ProxyUtils.unwrap(facade, LockingCatalogFacade.class);
         resourcePool = ResourcePool.create(this);
     }
     
@@ -144,6 +153,7 @@ public class CatalogImpl implements Catalog {
     
     public void setFacade(CatalogFacade facade) {
         this.facade = facade;
+        this.rawFacade = ProxyUtils.unwrap(facade, LockingCatalogFacade.class);
         facade.setCatalog(this);
     }
     
@@ -232,11 +242,11 @@ public class CatalogImpl implements Catalog {
     }
 
     public <T extends StoreInfo> T detach(T store) {
-        return detached(store, facade.detach(store));
+        return detached(store, rawFacade.detach(store));
     }
 
     public <T extends StoreInfo> T getStore(String id, Class<T> clazz) {
-        return facade.getStore(id, clazz);
+        return rawFacade.getStore(id, clazz);
     }
 
     public <T extends StoreInfo> T getStoreByName(String name, Class<T> clazz) {
@@ -255,9 +265,9 @@ public class CatalogImpl implements Catalog {
             return (T)getDefaultDataStore(workspace);
         }
         
-        T store = facade.getStoreByName(ws, name, clazz);
+        T store = rawFacade.getStoreByName(ws, name, clazz);
         if (store == null && workspace == null) {
-            store = facade.getStoreByName(CatalogFacade.ANY_WORKSPACE, name, clazz);
+            store = rawFacade.getStoreByName(CatalogFacade.ANY_WORKSPACE, name, clazz);
         }
         return store;
     }
@@ -290,11 +300,11 @@ public class CatalogImpl implements Catalog {
     public <T extends StoreInfo> List<T> getStoresByWorkspace(
             WorkspaceInfo workspace, Class<T> clazz) {
 
-        return facade.getStoresByWorkspace(workspace, clazz);
+        return rawFacade.getStoresByWorkspace(workspace, clazz);
     }
 
     public List getStores(Class clazz) {
-        return facade.getStores(clazz);
+        return rawFacade.getStores(clazz);
     }
 
     public DataStoreInfo getDataStore(String id) {
@@ -326,7 +336,7 @@ public class CatalogImpl implements Catalog {
     }
     
     public DataStoreInfo getDefaultDataStore(WorkspaceInfo workspace) {
-        return facade.getDefaultDataStore(workspace);
+        return rawFacade.getDefaultDataStore(workspace);
     }
     
     public void setDefaultDataStore(WorkspaceInfo workspace, DataStoreInfo store) {
@@ -441,11 +451,11 @@ public class CatalogImpl implements Catalog {
     }
 
     public <T extends ResourceInfo> T detach(T resource) {
-        return detached(resource, facade.detach(resource));
+        return detached(resource, rawFacade.detach(resource));
     }
     
     public <T extends ResourceInfo> T getResource(String id, Class<T> clazz) {
-        return facade.getResource(id, clazz);
+        return rawFacade.getResource(id, clazz);
     }
 
     public <T extends ResourceInfo> T getResourceByName(String ns, String name, Class<T> clazz) {
@@ -477,9 +487,9 @@ public class CatalogImpl implements Catalog {
         if (namespace == null) {
             namespace = getDefaultNamespace();
         }
-        T resource = facade.getResourceByName(namespace, name, clazz);
+        T resource = rawFacade.getResourceByName(namespace, name, clazz);
         if (resource == null && ns == null) {
-            resource = facade.getResourceByName(CatalogFacade.ANY_NAMESPACE, name, clazz);
+            resource = rawFacade.getResourceByName(CatalogFacade.ANY_NAMESPACE, name, clazz);
         }
         return resource;
     }
@@ -504,11 +514,11 @@ public class CatalogImpl implements Catalog {
     }
     
     public List getResources(Class clazz) {
-        return facade.getResources(clazz);
+        return rawFacade.getResources(clazz);
     }
 
     public List getResourcesByNamespace(NamespaceInfo namespace, Class clazz) {
-        return facade.getResourcesByNamespace(namespace, clazz);
+        return rawFacade.getResourcesByNamespace(namespace, clazz);
     }
     
     public <T extends ResourceInfo> List<T> getResourcesByNamespace(
@@ -530,12 +540,12 @@ public class CatalogImpl implements Catalog {
 
     public <T extends ResourceInfo> T getResourceByStore(StoreInfo store,
             String name, Class<T> clazz) {
-        return facade.getResourceByStore(store, name, clazz);
+        return rawFacade.getResourceByStore(store, name, clazz);
     }
 
     public <T extends ResourceInfo> List<T> getResourcesByStore(
             StoreInfo store, Class<T> clazz) {
-        return facade.getResourcesByStore(store, clazz); 
+        return rawFacade.getResourcesByStore(store, clazz); 
     }
 
     public FeatureTypeInfo getFeatureType(String id) {
@@ -702,7 +712,7 @@ public class CatalogImpl implements Catalog {
    
     public void remove(LayerInfo layer) {
         //ensure no references to the layer
-        for ( LayerGroupInfo lg : facade.getLayerGroups() ) {
+        for ( LayerGroupInfo lg : rawFacade.getLayerGroups() ) {
             if ( lg.getLayers().contains( layer ) || layer.equals( lg.getRootLayer() ) ) {
                 String msg = "Unable to delete layer referenced by layer group '"+lg.getName()+"'";
                 throw new IllegalArgumentException( msg );
@@ -718,11 +728,11 @@ public class CatalogImpl implements Catalog {
     }
     
     public LayerInfo detach(LayerInfo layer) {
-        return detached(layer, facade.detach(layer));
+        return detached(layer, rawFacade.detach(layer));
     }
 
     public LayerInfo getLayer(String id) {
-        return facade.getLayer(id);
+        return rawFacade.getLayer(id);
     }
     
     
@@ -755,7 +765,7 @@ public class CatalogImpl implements Catalog {
         }
 
         if(result == null) {
-            result = facade.getLayerByName(name);
+            result = rawFacade.getLayerByName(name);
         }
         
         return result;
@@ -775,28 +785,28 @@ public class CatalogImpl implements Catalog {
     }
 
     public List<LayerInfo> getLayers(ResourceInfo resource) {
-        return facade.getLayers(resource);
+        return rawFacade.getLayers(resource);
     }
     
     public List<LayerInfo> getLayers(StyleInfo style) {
-        return facade.getLayers(style);
+        return rawFacade.getLayers(style);
     }
     
     public List<LayerInfo> getLayers() {
-        return facade.getLayers();
+        return rawFacade.getLayers();
     }
 
     // Map methods
     public MapInfo getMap(String id) {
-        return facade.getMap(id);
+        return rawFacade.getMap(id);
     }
 
     public MapInfo getMapByName(String name) {
-        return facade.getMapByName(name);
+        return rawFacade.getMapByName(name);
     }
     
     public List<MapInfo> getMaps() {
-        return facade.getMaps();
+        return rawFacade.getMaps();
     }
 
     public void add(LayerGroupInfo layerGroup) {
@@ -941,7 +951,7 @@ public class CatalogImpl implements Catalog {
     
     public void remove(LayerGroupInfo layerGroup) {
         //ensure no references to the layer group
-        for ( LayerGroupInfo lg : facade.getLayerGroups() ) {
+        for ( LayerGroupInfo lg : rawFacade.getLayerGroups() ) {
             if ( lg.getLayers().contains( layerGroup ) || layerGroup.equals( lg.getRootLayer() ) ) {
                 String msg = "Unable to delete layer group referenced by layer group '"+lg.getName()+"'";
                 throw new IllegalArgumentException( msg );
@@ -958,11 +968,11 @@ public class CatalogImpl implements Catalog {
     }
     
     public LayerGroupInfo detach(LayerGroupInfo layerGroup) {
-        return detached(layerGroup, facade.detach(layerGroup));
+        return detached(layerGroup, rawFacade.detach(layerGroup));
     }
     
     public List<LayerGroupInfo> getLayerGroups() {
-        return facade.getLayerGroups();
+        return rawFacade.getLayerGroups();
     }
 
     public List<LayerGroupInfo> getLayerGroupsByWorkspace(String workspaceName) {
@@ -978,11 +988,11 @@ public class CatalogImpl implements Catalog {
     }
 
     public List<LayerGroupInfo> getLayerGroupsByWorkspace(WorkspaceInfo workspace) {
-        return facade.getLayerGroupsByWorkspace(workspace);
+        return rawFacade.getLayerGroupsByWorkspace(workspace);
     }
 
     public LayerGroupInfo getLayerGroup(String id) {
-        return facade.getLayerGroup(id);
+        return rawFacade.getLayerGroup(id);
     }
     
     @Override
@@ -1030,7 +1040,7 @@ public class CatalogImpl implements Catalog {
             workspace = DefaultCatalogFacade.NO_WORKSPACE;
         }
 
-        LayerGroupInfo layerGroup = facade.getLayerGroupByName(workspace, name);
+        LayerGroupInfo layerGroup = rawFacade.getLayerGroupByName(workspace, name);
         return layerGroup;
     }
 
@@ -1049,12 +1059,12 @@ public class CatalogImpl implements Catalog {
     }
     
     public MapInfo detach(MapInfo map) {
-        return detached(map, facade.detach(map));
+        return detached(map, rawFacade.detach(map));
     }
     
     // Namespace methods
     public NamespaceInfo getNamespace(String id) {
-        return facade.getNamespace(id);
+        return rawFacade.getNamespace(id);
     }
 
     public NamespaceInfo getNamespaceByPrefix(String prefix) {
@@ -1065,15 +1075,15 @@ public class CatalogImpl implements Catalog {
             }
         }
         
-        return facade.getNamespaceByPrefix(prefix);
+        return rawFacade.getNamespaceByPrefix(prefix);
     }
 
     public NamespaceInfo getNamespaceByURI(String uri) {
-       return facade.getNamespaceByURI(uri);
+       return rawFacade.getNamespaceByURI(uri);
     }
 
     public List getNamespaces() {
-        return facade.getNamespaces();
+        return rawFacade.getNamespaces();
     }
 
     public void add(NamespaceInfo namespace) {
@@ -1135,7 +1145,7 @@ public class CatalogImpl implements Catalog {
          
             NamespaceInfo defaultNamespace = getDefaultNamespace();
             if (namespace.equals(defaultNamespace) || defaultNamespace == null) {
-                List<NamespaceInfo> namespaces = facade.getNamespaces(); 
+                List<NamespaceInfo> namespaces = rawFacade.getNamespaces(); 
                 
                 defaultNamespace = null;
                 if (!namespaces.isEmpty()) {
@@ -1161,11 +1171,11 @@ public class CatalogImpl implements Catalog {
     }
     
     public NamespaceInfo detach(NamespaceInfo namespace) {
-        return detached(namespace, facade.detach(namespace));
+        return detached(namespace, rawFacade.detach(namespace));
     }
 
     public NamespaceInfo getDefaultNamespace() {
-        return facade.getDefaultNamespace();
+        return rawFacade.getDefaultNamespace();
     }
 
     public void setDefaultNamespace(NamespaceInfo defaultNamespace) {
@@ -1234,7 +1244,7 @@ public class CatalogImpl implements Catalog {
          
             WorkspaceInfo defaultWorkspace = getDefaultWorkspace();
             if (workspace.equals(defaultWorkspace) || defaultWorkspace == null) {
-                List<WorkspaceInfo> workspaces = facade.getWorkspaces(); 
+                List<WorkspaceInfo> workspaces = rawFacade.getWorkspaces(); 
                 
                 defaultWorkspace = null;
                 if (!workspaces.isEmpty()) {
@@ -1261,16 +1271,16 @@ public class CatalogImpl implements Catalog {
     }
     
     public WorkspaceInfo detach(WorkspaceInfo workspace) {
-        return detached(workspace, facade.detach(workspace));
+        return detached(workspace, rawFacade.detach(workspace));
     }
     
     public WorkspaceInfo getDefaultWorkspace() {
-        return facade.getDefaultWorkspace();
+        return rawFacade.getDefaultWorkspace();
     }
     
     public void setDefaultWorkspace(WorkspaceInfo defaultWorkspace) {
         if (defaultWorkspace != null) {
-            WorkspaceInfo ws = facade.getWorkspaceByName(defaultWorkspace.getName());
+            WorkspaceInfo ws = rawFacade.getWorkspaceByName(defaultWorkspace.getName());
             if ( ws == null ) {
                 throw new IllegalArgumentException( "No such workspace: '" + defaultWorkspace.getName() + "'" );
             } else {
@@ -1281,11 +1291,11 @@ public class CatalogImpl implements Catalog {
     }
     
     public List<WorkspaceInfo> getWorkspaces() {
-        return facade.getWorkspaces(); 
+        return rawFacade.getWorkspaces(); 
     }
     
     public WorkspaceInfo getWorkspace(String id) {
-        return facade.getWorkspace(id);
+        return rawFacade.getWorkspace(id);
     }
     
     public WorkspaceInfo getWorkspaceByName(String name) {
@@ -1295,12 +1305,12 @@ public class CatalogImpl implements Catalog {
                 name = ws.getName();
             }
         }
-        return facade.getWorkspaceByName(name);
+        return rawFacade.getWorkspaceByName(name);
     }
     
     // Style methods
     public StyleInfo getStyle(String id) {
-        return facade.getStyle(id);
+        return rawFacade.getStyle(id);
     }
 
     public StyleInfo getStyleByName(String name) {
@@ -1320,7 +1330,7 @@ public class CatalogImpl implements Catalog {
             }
         }
         if (result == null) {
-            result = facade.getStyleByName(name);
+            result = rawFacade.getStyleByName(name);
         }
         
         return result;
@@ -1342,12 +1352,12 @@ public class CatalogImpl implements Catalog {
         if (workspace == null) {
             workspace = DefaultCatalogFacade.NO_WORKSPACE;
         }
-        StyleInfo style = facade.getStyleByName(workspace, name);
+        StyleInfo style = rawFacade.getStyleByName(workspace, name);
         return style;
     }
 
     public List getStyles() {
-        return facade.getStyles();
+        return rawFacade.getStyles();
     }
 
     public List<StyleInfo> getStylesByWorkspace(String workspaceName) {
@@ -1363,7 +1373,7 @@ public class CatalogImpl implements Catalog {
     }
 
     public List<StyleInfo> getStylesByWorkspace(WorkspaceInfo workspace) {
-        return facade.getStylesByWorkspace(workspace);
+        return rawFacade.getStylesByWorkspace(workspace);
     }
 
     public void add(StyleInfo style) {
@@ -1414,11 +1424,11 @@ public class CatalogImpl implements Catalog {
     
     public void remove(StyleInfo style) {
         //ensure no references to the style
-        for ( LayerInfo l : facade.getLayers(style) ) {
+        for ( LayerInfo l : rawFacade.getLayers(style) ) {
             throw new IllegalArgumentException( "Unable to delete style referenced by '"+ l.getName()+"'");
         }
 
-        for ( LayerGroupInfo lg : facade.getLayerGroups() ) {
+        for ( LayerGroupInfo lg : rawFacade.getLayerGroups() ) {
             if ( lg.getStyles().contains( style ) || style.equals( lg.getRootLayerStyle() ) ) {
                 String msg = "Unable to delete style referenced by layer group '"+lg.getName()+"'";
                 throw new IllegalArgumentException( msg );
@@ -1445,7 +1455,7 @@ public class CatalogImpl implements Catalog {
     }
     
     public StyleInfo detach(StyleInfo style) {
-        return detached(style, facade.detach(style));
+        return detached(style, rawFacade.detach(style));
     }
 
     // Event methods
@@ -1534,6 +1544,14 @@ public class CatalogImpl implements Catalog {
 
         event(event);
     }
+    
+    public void fireResourceLoaded(CatalogInfo object, long loadTime) {
+        CatalogResourceLoadEventImpl event = new CatalogResourceLoadEventImpl();
+        event.setSource(object);
+        event.setLoadTime(loadTime);
+
+        event(event);
+    }
 
     protected void event(CatalogEvent event) {
         CatalogException toThrow = null;
@@ -1549,6 +1567,8 @@ public class CatalogImpl implements Catalog {
                     listener.handleModifyEvent((CatalogModifyEvent) event);
                 } else if (event instanceof CatalogPostModifyEvent) {
                     listener.handlePostModifyEvent((CatalogPostModifyEvent)event);
+                } else if (event instanceof CatalogResourceLoadEvent) {
+                    listener.handleResourceLoadEvent((CatalogResourceLoadEvent) event);
                 }
             } catch(Throwable t) {
                 if ( t instanceof CatalogException && toThrow == null) {
@@ -1594,6 +1614,9 @@ public class CatalogImpl implements Catalog {
     public void resolve() {
         facade.setCatalog(this);
         facade.resolve();
+        if (rawFacade == null) {
+            rawFacade = ProxyUtils.unwrap(facade, LockingCatalogFacade.class);
+        }
         
         if ( listeners == null ) {
             listeners = new ArrayList<CatalogListener>();
@@ -1841,8 +1864,7 @@ public class CatalogImpl implements Catalog {
     @Override
     public <T extends CatalogInfo> int count(final Class<T> of,
             final Filter filter) {
-        final CatalogFacade facade = getFacade();
-        return facade.count(of, filter);
+        return rawFacade.count(of, filter);
     }
 
     @Override
@@ -1854,13 +1876,12 @@ public class CatalogImpl implements Catalog {
     @Override
     public <T extends CatalogInfo> CloseableIterator<T> list(final Class<T> of,
             final Filter filter, Integer offset, Integer count, SortBy sortOrder) {
-        CatalogFacade facade = getFacade();
-        if (sortOrder != null && !facade.canSort(of, sortOrder.getPropertyName().getPropertyName())) {
+        if (sortOrder != null && !rawFacade.canSort(of, sortOrder.getPropertyName().getPropertyName())) {
             // TODO: use GeoTools' merge-sort code to provide sorting anyways
             throw new UnsupportedOperationException("Catalog backend can't sort on property "
                     + sortOrder.getPropertyName() + " in-process sorting is pending implementation");
         }
-        return facade.list(of, filter, offset, count, sortOrder);
+        return rawFacade.list(of, filter, offset, count, sortOrder);
     }
 
     @Override
@@ -7,16 +7,19 @@ package org.geoserver.catalog.impl;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 import org.geoserver.catalog.CatalogInfo;
 import org.opengis.feature.type.Name;
 
+import com.google.common.collect.Iterables;
+
 /**
  * A support index for {@link DefaultCatalogFacade}, can perform fast lookups of {@link CatalogInfo} objects
  * by id or by "name", where the name is defined by a a user provided mapping function.
@@ -24,11 +27,76 @@ import org.opengis.feature.type.Name;
  * The lookups by predicate have been tested and optimized for performance, in particular
  * the current for loops turned out to be significantly faster than building and returning streams
  * 
+ * The contents are kept in immutable {@link Snapshot} objects, built out of persistent maps, so that 
+ * each modification shares most of the structure with the previous version. Writers are serialized
+ * and publish a new snapshot atomically, readers never lock and always work against a consistent
+ * view of the lookup contents, secondary {@link PropertyIndex} indexes included.
+ * 
  * @param <T>
  */
 class CatalogInfoLookup<T extends CatalogInfo> {
-    ConcurrentHashMap<Class<T>, Map<String, T>> idMultiMap = new ConcurrentHashMap<>();
-    ConcurrentHashMap<Class<T>, Map<Name, T>> nameMultiMap = new ConcurrentHashMap<>();
+    
+    /**
+     * An immutable, consistent view of the lookup contents, keyed by implementation class, along
+     * with the secondary indexes over them
+     */
+    static final class Snapshot<T extends CatalogInfo> {
+        final Map<Class<?>, PersistentTreeMap<String, T>> idMultiMap;
+        final Map<Class<?>, PersistentTreeMap<Name, T>> nameMultiMap;
+        final List<PropertyIndex<T>> indexes;
+
+        Snapshot(Map<Class<?>, PersistentTreeMap<String, T>> idMultiMap,
+                Map<Class<?>, PersistentTreeMap<Name, T>> nameMultiMap,
+                List<PropertyIndex<T>> indexes) {
+            this.idMultiMap = idMultiMap;
+            this.nameMultiMap = nameMultiMap;
+            this.indexes = indexes;
+        }
+
+        static <T extends CatalogInfo> Snapshot<T> empty() {
+            return new Snapshot<T>(Collections.emptyMap(), Collections.emptyMap(),
+                    Collections.emptyList());
+        }
+
+        PersistentTreeMap<String, T> ids(Class<?> clazz) {
+            PersistentTreeMap<String, T> map = idMultiMap.get(clazz);
+            return map != null ? map : PersistentTreeMap.empty();
+        }
+
+        PersistentTreeMap<Name, T> names(Class<?> clazz) {
+            PersistentTreeMap<Name, T> map = nameMultiMap.get(clazz);
+            return map != null ? map : PersistentTreeMap.empty();
+        }
+
+        Snapshot<T> with(Class<?> clazz, PersistentTreeMap<String, T> ids,
+                PersistentTreeMap<Name, T> names, List<PropertyIndex<T>> indexes) {
+            Map<Class<?>, PersistentTreeMap<String, T>> newIds = new HashMap<>(idMultiMap);
+            Map<Class<?>, PersistentTreeMap<Name, T>> newNames = new HashMap<>(nameMultiMap);
+            newIds.put(clazz, ids);
+            newNames.put(clazz, names);
+            return new Snapshot<>(newIds, newNames, indexes);
+        }
+
+        Snapshot<T> with(List<PropertyIndex<T>> indexes) {
+            return new Snapshot<>(idMultiMap, nameMultiMap, indexes);
+        }
+
+        /**
+         * Applies the operation to all the indexes, returning the list of the modified ones
+         */
+        List<PropertyIndex<T>> indexes(UnaryOperator<PropertyIndex<T>> operation) {
+            if (indexes.isEmpty()) {
+                return indexes;
+            }
+            List<PropertyIndex<T>> result = new ArrayList<>(indexes.size());
+            for (PropertyIndex<T> index : indexes) {
+                result.add(operation.apply(index));
+            }
+            return Collections.unmodifiableList(result);
+        }
+    }
+    
+    volatile Snapshot<T> snapshot = Snapshot.empty();
     Function<T, Name> nameMapper;
     static final Predicate TRUE = x -> true;
     
@@ -37,55 +105,52 @@ class CatalogInfoLookup<T extends CatalogInfo> {
         this.nameMapper = nameMapper;
     }
     
-    <K> Map<K, T> getMapForValue(ConcurrentHashMap<Class<T>, Map<K, T>> maps, T value) {
-        Class<T> vc;
+    /**
+     * Returns the current snapshot of the lookup contents
+     */
+    Snapshot<T> snapshot() {
+        return snapshot;
+    }
+    
+    static <T> T unwrapProxy(T value) {
         if(Proxy.isProxyClass(value.getClass())) {
             ModificationProxy h = (ModificationProxy) Proxy.getInvocationHandler(value);
-            Object po = (T) h.getProxyObject();
-            vc = (Class<T>) po.getClass();
-        } else {
-            vc = (Class<T>) value.getClass();
-        }
-
-        
-        return getMapForValue(maps, vc);
-    }
-
-    protected <K> Map<K, T> getMapForValue(ConcurrentHashMap<Class<T>, Map<K, T>> maps, Class vc) {
-        Map<K, T> vcMap = maps.get(vc);
-        if(vcMap == null) {
-            vcMap = maps.computeIfAbsent(vc, k -> new ConcurrentSkipListMap<K, T>());
+            return (T) h.getProxyObject();
         }
-        return vcMap;
+        return value;
     }
 
-    public T add(T value) {
-        if(Proxy.isProxyClass(value.getClass())) {
-            ModificationProxy h = (ModificationProxy) Proxy.getInvocationHandler(value);
-            value = (T) h.getProxyObject();
-        }
-        Map<Name, T> nameMap = getMapForValue(nameMultiMap, value);
+    public synchronized T add(T value) {
+        value = unwrapProxy(value);
+        Class<?> vc = value.getClass();
+        Snapshot<T> s = snapshot;
         Name name = nameMapper.apply(value);
-        nameMap.put(name, value);
-        Map<String, T> idMap = getMapForValue(idMultiMap, value);
-        return idMap.put(value.getId(), value);
+        PersistentTreeMap<String, T> ids = s.ids(vc);
+        T result = ids.get(value.getId());
+        T added = value;
+        snapshot = s.with(vc, ids.put(value.getId(), value), s.names(vc).put(name, value),
+                s.indexes(index -> index.add(added)));
+        return result;
     }
     
     public Collection<T> values() {
         List<T> result = new ArrayList<>();
-        for (Map<String, T> v : idMultiMap.values()) {
+        for (PersistentTreeMap<String, T> v : snapshot.idMultiMap.values()) {
             result.addAll(v.values());
         }
         
         return result;
     }
     
-    public T remove(T value) {
+    public synchronized T remove(T value) {
         Name name = nameMapper.apply(value);
-        Map<Name, T> nameMap = getMapForValue(nameMultiMap, value);
-        nameMap.remove(name);
-        Map<String, T> idMap = getMapForValue(idMultiMap, value);
-        return idMap.remove(value.getId());
+        Class<?> vc = unwrapProxy(value).getClass();
+        Snapshot<T> s = snapshot;
+        PersistentTreeMap<String, T> ids = s.ids(vc);
+        T result = ids.get(value.getId());
+        snapshot = s.with(vc, ids.remove(value.getId()), s.names(vc).remove(name),
+                s.indexes(index -> index.remove(value)));
+        return result;
     }
     
     /**
@@ -98,16 +163,86 @@ class CatalogInfoLookup<T extends CatalogInfo> {
         Name oldName = nameMapper.apply(actualValue);
         Name newName = nameMapper.apply(proxiedValue);
         if(!oldName.equals(newName)) {
-            Map<Name, T> nameMap = getMapForValue(nameMultiMap, actualValue);
-            nameMap.remove(oldName);
-            nameMap.put(newName, actualValue);
+            rename(actualValue.getClass(), oldName, newName);
         }
     }
 
-    
-    public void clear() {
-        idMultiMap.clear();
-        nameMultiMap.clear();
+    /**
+     * Moves the object found under the old name to the new name, if any
+     */
+    protected synchronized void rename(Class<?> clazz, Name oldName, Name newName) {
+        Snapshot<T> s = snapshot;
+        PersistentTreeMap<Name, T> names = s.names(clazz);
+        T value = names.get(oldName);
+        if (value != null) {
+            snapshot = s.with(clazz, s.ids(clazz), names.remove(oldName).put(newName, value),
+                    s.indexes);
+        }
+    }
+
+    /**
+     * Refreshes the secondary indexes for the given object, to be called once the changes
+     * to it have been committed
+     */
+    public synchronized void reindex(T value) {
+        T actual = Proxy.isProxyClass(value.getClass()) ? ModificationProxy.unwrap(value) : value;
+        Snapshot<T> s = snapshot;
+        snapshot = s.with(s.indexes(index -> index.add(actual)));
+    }
+
+    public synchronized void clear() {
+        // keep the index definitions
+        snapshot = Snapshot.<T> empty().with(snapshot.indexes(index -> index.clear()));
+    }
+
+    /**
+     * Registers a sorted secondary index on the given property names, all of them should refer to
+     * the same value, the one returned by the extractor function. Used by
+     * {@link CatalogQueryPlanner} to avoid full scans and full sorts when listing objects.
+     * 
+     * @param type The type of the property values
+     * @param extractor Extracts the property value from an object, nested property values are
+     *        supported as long as they get updated when the object itself is saved
+     * @param properties The property names the index can be used for
+     */
+    synchronized CatalogInfoLookup<T> index(Class<? extends Comparable<?>> type, Function<T, ?> extractor,
+            String... properties) {
+        PropertyIndex<T> index = new PropertyIndex<>(type, extractor, properties);
+        for (T value : values()) {
+            index = index.add(value);
+        }
+        Snapshot<T> s = snapshot;
+        List<PropertyIndex<T>> indexes = new ArrayList<>(s.indexes);
+        indexes.add(index);
+        snapshot = s.with(Collections.unmodifiableList(indexes));
+        return this;
+    }
+
+    /**
+     * Returns the index for the given property name in the current snapshot, or null if the
+     * property is not indexed
+     */
+    PropertyIndex<T> getIndex(String property) {
+        for (PropertyIndex<T> index : snapshot.indexes) {
+            if (index.indexes(property)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a live view of all objects of the given class, in the same order as
+     * {@link #list(Class, Predicate)}, without copying them in a new collection
+     */
+    <U extends CatalogInfo> Iterable<U> all(Class<U> clazz) {
+        List<Iterable<U>> views = new ArrayList<>();
+        for (Map.Entry<Class<?>, PersistentTreeMap<Name, T>> entry : snapshot.nameMultiMap.entrySet()) {
+            if (clazz.isAssignableFrom(entry.getKey())) {
+                views.add((Iterable<U>) entry.getValue().values());
+            }
+        }
+        return Iterables.concat(views);
     }
 
     /**
@@ -122,9 +257,9 @@ class CatalogInfoLookup<T extends CatalogInfo> {
      */
     <U extends CatalogInfo> List<U> list(Class<U> clazz, Predicate<U> predicate) {
         ArrayList<U> result = new ArrayList<U>();
-        for (Class<T> key : nameMultiMap.keySet()) {
-            if (clazz.isAssignableFrom(key)) {
-                Map<Name, T> valueMap = nameMultiMap.get(key);
+        for (Map.Entry<Class<?>, PersistentTreeMap<Name, T>> entry : snapshot.nameMultiMap.entrySet()) {
+            if (clazz.isAssignableFrom(entry.getKey())) {
+                PersistentTreeMap<Name, T> valueMap = entry.getValue();
                 if (valueMap != null) {
                     for (T v : valueMap.values()) {
                         final U u = (U) v;
@@ -146,9 +281,9 @@ class CatalogInfoLookup<T extends CatalogInfo> {
      * @return
      */
     public <U extends CatalogInfo> U findById(String id, Class<U> clazz) {
-        for (Class<T> key : idMultiMap.keySet()) {
-            if (clazz.isAssignableFrom(key)) {
-                Map<String, T> valueMap = idMultiMap.get(key);
+        for (Map.Entry<Class<?>, PersistentTreeMap<String, T>> entry : snapshot.idMultiMap.entrySet()) {
+            if (clazz.isAssignableFrom(entry.getKey())) {
+                PersistentTreeMap<String, T> valueMap = entry.getValue();
                 if(valueMap != null) {
                     T t = valueMap.get(id);
                     if(t != null) {
@@ -168,9 +303,9 @@ class CatalogInfoLookup<T extends CatalogInfo> {
      * @return
      */
     public <U extends CatalogInfo> U findByName(Name name, Class<U> clazz) {
-        for (Class<T> key : nameMultiMap.keySet()) {
-            if (clazz.isAssignableFrom(key)) {
-                Map<Name, T> valueMap = nameMultiMap.get(key);
+        for (Map.Entry<Class<?>, PersistentTreeMap<Name, T>> entry : snapshot.nameMultiMap.entrySet()) {
+            if (clazz.isAssignableFrom(entry.getKey())) {
+                PersistentTreeMap<Name, T> valueMap = entry.getValue();
                 if(valueMap != null) {
                     T t = valueMap.get(name);
                     if(t != null) {
@@ -194,9 +329,9 @@ class CatalogInfoLookup<T extends CatalogInfo> {
      * @return
      */
     <U extends CatalogInfo> U findFirst(Class<U> clazz, Predicate<U> predicate) {
-        for (Class<T> key : nameMultiMap.keySet()) {
-            if (clazz.isAssignableFrom(key)) {
-                Map<Name, T> valueMap = nameMultiMap.get(key);
+        for (Map.Entry<Class<?>, PersistentTreeMap<Name, T>> entry : snapshot.nameMultiMap.entrySet()) {
+            if (clazz.isAssignableFrom(entry.getKey())) {
+                PersistentTreeMap<Name, T> valueMap = entry.getValue();
                 if (valueMap != null) {
                     for (T v : valueMap.values()) {
                         final U u = (U) v;
@@ -0,0 +1,334 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.impl;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.ows.util.OwsUtils;
+import org.opengis.filter.And;
+import org.opengis.filter.Filter;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.PropertyIsLike;
+import org.opengis.filter.PropertyIsNull;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Ordering;
+
+/**
+ * Turns a {@link Filter}, a list of {@link SortBy} and paging information into a scan over the
+ * objects of a {@link CatalogInfoLookup}, using its {@link PropertyIndex} secondary indexes when
+ * possible.
+ * <p>
+ * The planner looks for equality, null and prefix "like" comparisons on indexed properties among
+ * the top level conjuncts of the filter, picks the most selective one and uses it as the source of
+ * candidates, which are then checked against the full filter. When the results need to be sorted
+ * on a single indexed property, and no better candidate source is found, the objects are streamed
+ * in order straight from the index. In all other cases sorting is done on the filtered candidates
+ * only, and when a page size is known, only the first {@code offset + count} objects are
+ * retained.
+ * <p>
+ * The returned iterables are lazy views, the catalog is never copied as a whole.
+ */
+class CatalogQueryPlanner {
+
+    static final String PREFIXED_NAME = "prefixedName";
+
+    static final String WORKSPACE_NAME = "workspace.name";
+
+    static final String WORKSPACE_ID = "workspace.id";
+
+    /**
+     * Resolves a workspace name to its identifier, used to turn lookups by workspace name into
+     * lookups by workspace id
+     */
+    final Function<String, String> workspaceIdResolver;
+
+    public CatalogQueryPlanner(Function<String, String> workspaceIdResolver) {
+        this.workspaceIdResolver = workspaceIdResolver;
+    }
+
+    /**
+     * Queries the lookup, returning the raw objects (not wrapped in modification proxies)
+     */
+    <T extends CatalogInfo> Iterable<T> query(CatalogInfoLookup<?> lookup, Class<T> of,
+            Filter filter, SortBy[] sortBy, Integer offset, Integer count) {
+        boolean sorted = sortBy == null || sortBy.length == 0;
+        SortBy singleSort = sortBy != null && sortBy.length == 1 ? sortBy[0] : null;
+
+        Iterable<?> source = null;
+        IndexScan scan = selectScan(lookup, filter);
+        if (scan != null) {
+            source = scan.candidates;
+            if (!sorted && singleSort != null && scan.isSortedOn(singleSort)) {
+                sorted = true;
+            }
+        } else if (singleSort != null) {
+            PropertyIndex<?> index = lookup.getIndex(singleSort.getPropertyName()
+                    .getPropertyName());
+            if (index != null) {
+                source = index.scan(!SortOrder.DESCENDING.equals(singleSort.getSortOrder()));
+                sorted = true;
+            }
+        }
+        if (source == null) {
+            source = lookup.all(of);
+        }
+
+        Iterable<T> candidates = (Iterable<T>) (Iterable) source;
+        Iterable<T> filtered = Iterables.filter(candidates, o -> of.isInstance(o)
+                && (filter == null || filter == Filter.INCLUDE || filter.evaluate(o)));
+        if (sorted) {
+            return page(filtered, offset, count);
+        } else {
+            return sortAndPage(filtered, sortBy, offset, count);
+        }
+    }
+
+    /**
+     * Sorts and pages an arbitrary set of objects, without using indexes. If the page size is
+     * known only the objects up to the end of the page are kept in memory.
+     */
+    static <T> Iterable<T> sortAndPage(Iterable<T> objects, SortBy[] sortBy, Integer offset,
+            Integer count) {
+        if (sortBy == null || sortBy.length == 0) {
+            return page(objects, offset, count);
+        }
+        Ordering<Object> ordering = null;
+        for (SortBy sb : sortBy) {
+            Ordering<Object> o = Ordering.from(comparator(sb.getPropertyName()
+                    .getPropertyName()));
+            if (SortOrder.DESCENDING.equals(sb.getSortOrder())) {
+                o = o.reverse();
+            }
+            ordering = ordering == null ? o : ordering.compound(o);
+        }
+        // make the order total, so that subsequent pages are consistent with each other
+        ordering = ordering.compound(comparator("id"));
+
+        if (count != null && count.intValue() >= 0) {
+            int skip = offset != null && offset.intValue() > 0 ? offset.intValue() : 0;
+            long k = (long) skip + count.intValue();
+            List<T> top = ordering.leastOf(objects, (int) Math.min(k, Integer.MAX_VALUE));
+            return page(top, offset, count);
+        } else {
+            return page(ordering.sortedCopy(objects), offset, null);
+        }
+    }
+
+    static <T> Iterable<T> page(Iterable<T> objects, Integer offset, Integer count) {
+        if (offset != null && offset.intValue() > 0) {
+            objects = Iterables.skip(objects, offset.intValue());
+        }
+        if (count != null && count.intValue() >= 0) {
+            objects = Iterables.limit(objects, count.intValue());
+        }
+        return objects;
+    }
+
+    static Comparator<Object> comparator(final String propertyName) {
+        return new Comparator<Object>() {
+            @Override
+            public int compare(Object o1, Object o2) {
+                Object v1 = OwsUtils.get(o1, propertyName);
+                Object v2 = OwsUtils.get(o2, propertyName);
+                if (v1 == null) {
+                    if (v2 == null) {
+                        return 0;
+                    } else {
+                        return -1;
+                    }
+                } else if (v2 == null) {
+                    return 1;
+                }
+                Comparable c1 = (Comparable) v1;
+                Comparable c2 = (Comparable) v2;
+                return c1.compareTo(c2);
+            }
+        };
+    }
+
+    /**
+     * Picks the most selective index scan among the top level conjuncts of the filter, or returns
+     * null if none can be used
+     */
+    IndexScan selectScan(CatalogInfoLookup<?> lookup, Filter filter) {
+        if (filter == null || filter == Filter.INCLUDE || lookup.snapshot().indexes.isEmpty()) {
+            return null;
+        }
+        List<Filter> conjuncts;
+        if (filter instanceof And) {
+            conjuncts = ((And) filter).getChildren();
+        } else {
+            conjuncts = Collections.singletonList(filter);
+        }
+
+        IndexScan best = null;
+        for (Filter f : conjuncts) {
+            IndexScan scan = toScan(lookup, f);
+            if (scan != null && (best == null || scan.estimate < best.estimate)) {
+                best = scan;
+            }
+        }
+
+        return best;
+    }
+
+    private IndexScan toScan(CatalogInfoLookup<?> lookup, Filter f) {
+        if (f instanceof PropertyIsEqualTo) {
+            PropertyIsEqualTo equal = (PropertyIsEqualTo) f;
+            if (!equal.isMatchingCase()) {
+                return null;
+            }
+            Expression e1 = equal.getExpression1();
+            Expression e2 = equal.getExpression2();
+            if (e1 instanceof Literal && e2 instanceof PropertyName) {
+                Expression tmp = e1;
+                e1 = e2;
+                e2 = tmp;
+            }
+            if (!(e1 instanceof PropertyName) || !(e2 instanceof Literal)) {
+                return null;
+            }
+            String property = ((PropertyName) e1).getPropertyName();
+            Object value = ((Literal) e2).getValue();
+            if (value == null) {
+                return null;
+            }
+
+            // translate derived properties into indexed ones
+            if (PREFIXED_NAME.equals(property) && value instanceof String) {
+                String prefixedName = (String) value;
+                int idx = prefixedName.indexOf(':');
+                if (idx < 0) {
+                    return null;
+                }
+                property = "name";
+                value = prefixedName.substring(idx + 1);
+            } else if (property.endsWith(WORKSPACE_NAME)
+                    && lookup.getIndex(toWorkspaceId(property)) != null) {
+                String id = workspaceIdResolver.apply(String.valueOf(value));
+                if (id == null) {
+                    // no workspace with such name, nothing can match
+                    return new IndexScan(null, Collections.emptyList(), 0, false);
+                }
+                property = toWorkspaceId(property);
+                value = id;
+            }
+
+            PropertyIndex<?> index = lookup.getIndex(property);
+            if (index == null) {
+                return null;
+            }
+            Iterable<?> candidates = index.equalTo(value);
+            if (candidates == null) {
+                return null;
+            }
+            return new IndexScan(index, candidates, index.count(value), true);
+        } else if (f instanceof PropertyIsNull) {
+            Expression e = ((PropertyIsNull) f).getExpression();
+            if (!(e instanceof PropertyName)) {
+                return null;
+            }
+            PropertyIndex<?> index = lookup.getIndex(((PropertyName) e).getPropertyName());
+            if (index == null) {
+                return null;
+            }
+            return new IndexScan(index, index.isNull(), index.nulls.size(), true);
+        } else if (f instanceof PropertyIsLike) {
+            PropertyIsLike like = (PropertyIsLike) f;
+            if (!like.isMatchingCase() || !(like.getExpression() instanceof PropertyName)) {
+                return null;
+            }
+            PropertyIndex<?> index = lookup.getIndex(((PropertyName) like.getExpression())
+                    .getPropertyName());
+            String prefix = literalPrefix(like);
+            if (index == null || prefix == null || prefix.isEmpty()) {
+                return null;
+            }
+            Iterable<?> candidates = index.prefix(prefix);
+            if (candidates == null) {
+                return null;
+            }
+            // we don't know how many, but it's most likely better than a full scan and
+            // worse than an equality match
+            return new IndexScan(index, candidates, Integer.MAX_VALUE - 1, false);
+        }
+
+        return null;
+    }
+
+    private String toWorkspaceId(String property) {
+        return property.substring(0, property.length() - WORKSPACE_NAME.length())
+                + WORKSPACE_ID;
+    }
+
+    /**
+     * Returns the literal part of the like pattern preceding the first special character
+     */
+    static String literalPrefix(PropertyIsLike like) {
+        String pattern = like.getLiteral();
+        if (pattern == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            String c = String.valueOf(pattern.charAt(i));
+            if (c.equals(like.getWildCard()) || c.equals(like.getSingleChar())
+                    || c.equals(like.getEscape())) {
+                break;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A set of candidates extracted from an index
+     */
+    static class IndexScan {
+        PropertyIndex<?> index;
+
+        Iterable<?> candidates;
+
+        int estimate;
+
+        /**
+         * True if all candidates share the same value for the indexed property
+         */
+        boolean singleValue;
+
+        IndexScan(PropertyIndex<?> index, Iterable<?> candidates, int estimate,
+                boolean singleValue) {
+            this.index = index;
+            this.candidates = candidates;
+            this.estimate = estimate;
+            this.singleValue = singleValue;
+        }
+
+        /**
+         * Returns true if the candidates are already sorted in the order requested, that is, if
+         * they all share the same value for the sort property, or they come from an ascending
+         * range scan on it
+         */
+        boolean isSortedOn(SortBy sortBy) {
+            if (index == null) {
+                return true;
+            }
+            if (!index.indexes(sortBy.getPropertyName().getPropertyName())) {
+                return false;
+            }
+            return singleValue || !SortOrder.DESCENDING.equals(sortBy.getSortOrder());
+        }
+    }
+}
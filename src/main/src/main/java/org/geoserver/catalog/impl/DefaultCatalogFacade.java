@@ -10,7 +10,6 @@ import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -42,10 +41,8 @@ import org.geotools.feature.NameImpl;
 import org.opengis.feature.type.Name;
 import org.opengis.filter.Filter;
 import org.opengis.filter.sort.SortBy;
-import org.opengis.filter.sort.SortOrder;
 
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Ordering;
 
 /**
  * Default catalog facade implementation in which all objects are stored in memory.
@@ -90,6 +87,15 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
         public LayerInfoLookup() {
             super(LAYER_NAME_MAPPER);
+            index(String.class, l -> l.getResource() != null ? l.getResource().getId() : null, 
+                    "resource.id");
+            index(String.class, l -> id(l.getResource() != null ? l.getResource().getStore() : null), 
+                    "resource.store.id");
+            index(String.class, l -> id(l.getResource() != null ? l.getResource().getNamespace() : null), 
+                    "resource.namespace.id");
+            index(String.class, LayerInfo::getName, "name", "resource.name");
+            index(Boolean.class, LayerInfo::isEnabled, "enabled", "resource.enabled");
+            index(Boolean.class, LayerInfo::isAdvertised, "advertised", "resource.advertised");
         }
         
         public void update(ResourceInfo proxiedValue) {
@@ -99,21 +105,49 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
             Name oldName = RESOURCE_NAME_MAPPER.apply(actualValue);
             Name newName = RESOURCE_NAME_MAPPER.apply(proxiedValue);
             if(!oldName.equals(newName)) {
-                Map<Name, LayerInfo> nameMap = getMapForValue(nameMultiMap, LayerInfoImpl.class);
-                LayerInfo value = nameMap.remove(oldName);
-                // handle case of feature type without a corresponding layer
-                if(value != null) {
-                    nameMap.put(newName, value);
-                }
+                // a feature type without a corresponding layer is handled by rename
+                rename(LayerInfoImpl.class, oldName, newName);
             }
         }
         
     }
     
+    static CatalogInfoLookup<StoreInfo> newStoreLookup() {
+        return new CatalogInfoLookup<>(STORE_NAME_MAPPER)
+                .index(String.class, s -> id(s.getWorkspace()), "workspace.id")
+                .index(String.class, StoreInfo::getName, "name")
+                .index(Boolean.class, StoreInfo::isEnabled, "enabled");
+    }
+    
+    static CatalogInfoLookup<ResourceInfo> newResourceLookup() {
+        return new CatalogInfoLookup<>(RESOURCE_NAME_MAPPER)
+                .index(String.class, r -> id(r.getStore()), "store.id")
+                .index(String.class, r -> id(r.getNamespace()), "namespace.id")
+                .index(String.class, ResourceInfo::getName, "name")
+                .index(Boolean.class, ResourceInfo::isEnabled, "enabled")
+                .index(Boolean.class, ResourceInfo::isAdvertised, "advertised");
+    }
+    
+    static CatalogInfoLookup<LayerGroupInfo> newLayerGroupLookup() {
+        return new CatalogInfoLookup<>(LAYERGROUP_NAME_MAPPER)
+                .index(String.class, lg -> id(lg.getWorkspace()), "workspace.id")
+                .index(String.class, LayerGroupInfo::getName, "name");
+    }
+    
+    static CatalogInfoLookup<StyleInfo> newStyleLookup() {
+        return new CatalogInfoLookup<>(STYLE_NAME_MAPPER)
+                .index(String.class, s -> id(s.getWorkspace()), "workspace.id")
+                .index(String.class, StyleInfo::getName, "name");
+    }
+    
+    static String id(CatalogInfo info) {
+        return info != null ? info.getId() : null;
+    }
+    
     /**
      * Contains the stores keyed by implementation class
      */
-    protected CatalogInfoLookup<StoreInfo> stores = new CatalogInfoLookup<>(STORE_NAME_MAPPER);
+    protected CatalogInfoLookup<StoreInfo> stores = newStoreLookup();
     
     /**
      * The default store keyed by workspace id
@@ -123,7 +157,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     /**
      * resources
      */
-    protected CatalogInfoLookup<ResourceInfo> resources = new CatalogInfoLookup<>(RESOURCE_NAME_MAPPER);
+    protected CatalogInfoLookup<ResourceInfo> resources = newResourceLookup();
 
     /**
      * The default namespace
@@ -158,12 +192,12 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     /**
      * layer groups
      */
-    protected CatalogInfoLookup<LayerGroupInfo> layerGroups = new CatalogInfoLookup<>(LAYERGROUP_NAME_MAPPER);
+    protected CatalogInfoLookup<LayerGroupInfo> layerGroups = newLayerGroupLookup();
     
     /**
      * styles
      */
-    protected CatalogInfoLookup<StyleInfo> styles = new CatalogInfoLookup<>(STYLE_NAME_MAPPER);
+    protected CatalogInfoLookup<StyleInfo> styles = newStyleLookup();
 
     /**
      * the catalog
@@ -194,9 +228,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     public void remove(StoreInfo store) {
         store = unwrap(store);
 
-        synchronized(stores) {
-            stores.remove(store);
-        }
+        stores.remove(store);
     }
     
     public void save(StoreInfo store) {
@@ -210,6 +242,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         beforeSaved(store, propertyNames, oldValues, newValues);
         stores.update(store);
         commitProxy(store);
+        stores.reindex(store);
         afterSaved(store, propertyNames, oldValues, newValues);
     }
     
@@ -289,17 +322,13 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     //
     public ResourceInfo add(ResourceInfo resource) {
         resolve(resource);
-        synchronized(resources) {
-            resources.add(resource);
-        }
+        resources.add(resource);
         return ModificationProxy.create(resource, ResourceInfo.class);
     }
     
     public void remove(ResourceInfo resource) {
         resource = unwrap(resource);
-        synchronized(resources) {
-            resources.remove(resource);
-        }
+        resources.remove(resource);
     }
     
    
@@ -315,6 +344,12 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         resources.update(resource);
         layers.update(resource);
         commitProxy(resource);
+        resources.reindex(resource);
+        // layers index some of the resource properties too
+        LayerInfo layer = layers.findByName(RESOURCE_NAME_MAPPER.apply(resource), LayerInfo.class);
+        if (layer != null) {
+            layers.reindex(layer);
+        }
         afterSaved(resource, propertyNames, oldValues, newValues);
     }
     
@@ -413,6 +448,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         beforeSaved(layer, propertyNames, oldValues, newValues);
         layers.update(layer);
         commitProxy(layer);
+        layers.reindex(layer);
         afterSaved(layer, propertyNames, oldValues, newValues);
     }
     
@@ -464,17 +500,13 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     //
     public MapInfo add(MapInfo map) {
         resolve(map);
-        synchronized(maps) {
-            maps.add(map);
-        }
+        maps.add(map);
         
         return ModificationProxy.create(map, MapInfo.class);
     }
 
     public void remove(MapInfo map) {
-        synchronized(maps) {
-            maps.remove(unwrap(map));
-        }
+        maps.remove(unwrap(map));
     }
 
     public void save(MapInfo map) {
@@ -523,9 +555,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     //
     public LayerGroupInfo add (LayerGroupInfo layerGroup) {
         resolve(layerGroup);
-        synchronized(layerGroups) {
-            layerGroups.add( layerGroup );
-        }
+        layerGroups.add( layerGroup );
         return ModificationProxy.create(layerGroup, LayerGroupInfo.class);
     }
     
@@ -533,9 +563,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
      * @see org.geoserver.catalog.impl.CatalogDAO#remove(org.geoserver.catalog.LayerGroupInfo)
      */
     public void remove(LayerGroupInfo layerGroup) {
-        synchronized(layerGroups) {
-            layerGroups.remove( unwrap(layerGroup) );
-        }
+        layerGroups.remove( unwrap(layerGroup) );
     }
     
     /* (non-Javadoc)
@@ -552,6 +580,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         beforeSaved(layerGroup, propertyNames, oldValues, newValues);
         layerGroups.update(layerGroup);
         commitProxy(layerGroup);
+        layerGroups.reindex(layerGroup);
         afterSaved(layerGroup, propertyNames, oldValues, newValues);
     }
     
@@ -760,16 +789,12 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     //
     public StyleInfo add(StyleInfo style) {
         resolve(style);
-        synchronized(styles) {
-            styles.add(style);
-        }
+        styles.add(style);
         return ModificationProxy.create(style, StyleInfo.class);
     }
 
     public void remove(StyleInfo style) {
-        synchronized(styles) {
-            styles.remove(unwrap(style));
-        }
+        styles.remove(unwrap(style));
     }
 
     public void save(StyleInfo style) {
@@ -783,6 +808,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         beforeSaved(style, propertyNames, oldValues, newValues);
         styles.update(style);
         commitProxy(style);
+        styles.reindex(style);
         afterSaved(style, propertyNames, oldValues, newValues);
     }
 
@@ -877,7 +903,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         
         //stores
         if ( stores == null ) {
-            stores = new CatalogInfoLookup<>(STORE_NAME_MAPPER);
+            stores = newStoreLookup();
         }
         for ( Object o : stores.values() ) {
             resolve((StoreInfoImpl)o);
@@ -885,7 +911,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         
         //styles
         if ( styles == null ) {
-            styles = new CatalogInfoLookup<>(STYLE_NAME_MAPPER);
+            styles = newStyleLookup();
         }
         for ( StyleInfo s : styles.values() ) {
             resolve(s);
@@ -893,7 +919,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         
         //resources
         if ( resources == null ) {
-            resources = new CatalogInfoLookup<>(RESOURCE_NAME_MAPPER);
+            resources = newResourceLookup();
         }
         for( Object o : resources.values() ) {
             resolve((ResourceInfo)o);
@@ -909,7 +935,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         
         //layer groups
         if ( layerGroups == null ) {
-            layerGroups = new CatalogInfoLookup<>(LAYERGROUP_NAME_MAPPER);
+            layerGroups = newLayerGroupLookup();
         }
         for (LayerGroupInfo lg : layerGroups.values()) {
             resolve(lg);
@@ -978,7 +1004,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
     @Override
     public <T extends CatalogInfo> int count(final Class<T> of, final Filter filter) {
-        return Iterables.size(iterable(of, filter, null));
+        return Iterables.size(query(of, filter, null, null, null));
     }
 
     /**
@@ -1040,63 +1066,65 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
             }
         }
 
-        Iterable<T> iterable = iterable(of, filter, sortOrder);
-
-        if (offset != null && offset.intValue() > 0) {
-            iterable = Iterables.skip(iterable, offset.intValue());
-        }
-
-        if (count != null && count.intValue() >= 0) {
-            iterable = Iterables.limit(iterable, count.intValue());
-        }
-
+        Iterable<T> iterable = iterable(of, filter, sortOrder, offset, count);
         Iterator<T> iterator = iterable.iterator();
 
         return new CloseableIteratorAdapter<T>(iterator);
     }
 
-    @SuppressWarnings("unchecked")
     public <T extends CatalogInfo> Iterable<T> iterable(final Class<T> of,
             final Filter filter, final SortBy[] sortByList) {
-        List<T> all;
-        
-        T t = null;
+        return iterable(of, filter, sortByList, null, null);
+    }
+
+    /**
+     * Returns the requested page of objects, wrapped in modification proxies. The catalog is 
+     * not copied, the objects are streamed out of the lookups secondary indexes whenever the 
+     * filter and sort order allow for it, see {@link CatalogQueryPlanner} 
+     */
+    public <T extends CatalogInfo> Iterable<T> iterable(final Class<T> of,
+            final Filter filter, final SortBy[] sortByList, @Nullable Integer offset,
+            @Nullable Integer count) {
+        Iterable<T> raw = query(of, filter, sortByList, offset, count);
+        return Iterables.transform(raw, o -> ModificationProxy.create(o, of));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends CatalogInfo> Iterable<T> query(final Class<T> of,
+            final Filter filter, final SortBy[] sortByList, Integer offset, Integer count) {
+        CatalogQueryPlanner planner = new CatalogQueryPlanner(this::getWorkspaceId);
         if (NamespaceInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) namespaces.list(of, toPredicate(filter));
+            return planner.query(namespaces, of, filter, sortByList, offset, count);
         } else if (WorkspaceInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) workspaces.list(of, toPredicate(filter));
+            return planner.query(workspaces, of, filter, sortByList, offset, count);
         } else if (StoreInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) stores.list(of, toPredicate(filter));
+            return planner.query(stores, of, filter, sortByList, offset, count);
         } else if (ResourceInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) resources.list(of, toPredicate(filter));
+            return planner.query(resources, of, filter, sortByList, offset, count);
         } else if (LayerInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) layers.list(of, toPredicate(filter));
+            return planner.query(layers, of, filter, sortByList, offset, count);
         } else if (LayerGroupInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) layerGroups.list(of, toPredicate(filter));
+            return planner.query(layerGroups, of, filter, sortByList, offset, count);
         } else if (PublishedInfo.class.isAssignableFrom(of)) {
-            all = new ArrayList<>();
-            all.addAll((List<T>) layers.list(LayerInfo.class, toPredicate(filter)));
-            all.addAll((List<T>) layerGroups.list(LayerGroupInfo.class, toPredicate(filter)));
+            Iterable<T> all = Iterables.concat((Iterable<T>) layers.all(LayerInfo.class), 
+                    (Iterable<T>) layerGroups.all(LayerGroupInfo.class));
+            Predicate<T> predicate = toPredicate(filter);
+            return CatalogQueryPlanner.sortAndPage(Iterables.filter(all, o -> predicate.test(o)), 
+                    sortByList, offset, count);
         } else if (StyleInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) styles.list(of, toPredicate(filter));
+            return planner.query(styles, of, filter, sortByList, offset, count);
         } else if (MapInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) new ArrayList<>(maps);
+            Predicate<T> predicate = toPredicate(filter);
+            Iterable<T> all = Iterables.filter((List<T>) maps, o -> predicate.test(o));
+            return CatalogQueryPlanner.sortAndPage(all, sortByList, offset, count);
         } else {
             throw new IllegalArgumentException("Unknown type: " + of);
         }
+    }
 
-        if (null != sortByList) {
-            for (int i = sortByList.length - 1; i >= 0; i--) {
-                SortBy sortBy = sortByList[i];
-                Ordering<Object> ordering = Ordering.from(comparator(sortBy));
-                if (SortOrder.DESCENDING.equals(sortBy.getSortOrder())) {
-                    ordering = ordering.reverse();
-                }
-                all = ordering.sortedCopy(all);
-            }
-        }
-
-        return ModificationProxy.createList(all, of);
+    private String getWorkspaceId(String name) {
+        WorkspaceInfo ws = workspaces.findByName(new NameImpl(name), WorkspaceInfo.class);
+        return ws != null ? ws.getId() : null;
     }
 
     private <T> Predicate<T> toPredicate(Filter filter) {
@@ -1107,26 +1135,4 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         }
     }
 
-    private Comparator<Object> comparator(final SortBy sortOrder) {
-        return new Comparator<Object>() {
-            @Override
-            public int compare(Object o1, Object o2) {
-                Object v1 = OwsUtils.get(o1, sortOrder.getPropertyName().getPropertyName());
-                Object v2 = OwsUtils.get(o2, sortOrder.getPropertyName().getPropertyName());
-                if (v1 == null) {
-                    if (v2 == null) {
-                        return 0;
-                    } else {
-                        return -1;
-                    }
-                } else if (v2 == null) {
-                    return 1;
-                }
-                Comparable c1 = (Comparable) v1;
-                Comparable c2 = (Comparable) v2;
-                return c1.compareTo(c2);
-            }
-        };
-    }
-
 }
@@ -0,0 +1,287 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.impl;
+
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.google.common.collect.Iterators;
+
+/**
+ * An immutable sorted map, based on a persistent AVL tree. Modifications return a new map sharing
+ * all the untouched nodes with the original one, so they cost O(log n) in time and memory, while
+ * the original map stays valid and unchanged, and can be read without any locking.
+ * <p>
+ * Keys are compared using their natural ordering, same as a {@link java.util.TreeMap} built
+ * without a comparator. Null keys are not supported.
+ *
+ * @param <K>
+ * @param <V>
+ */
+final class PersistentTreeMap<K, V> {
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentTreeMap EMPTY = new PersistentTreeMap<>(null, 0);
+
+    static final class Node<K, V> implements Map.Entry<K, V> {
+        final K key;
+
+        final V value;
+
+        final Node<K, V> left;
+
+        final Node<K, V> right;
+
+        final int height;
+
+        Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException("The map is immutable");
+        }
+    }
+
+    final Node<K, V> root;
+
+    final int size;
+
+    private PersistentTreeMap(Node<K, V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentTreeMap<K, V> empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public V get(K key) {
+        Node<K, V> n = root;
+        while (n != null) {
+            int c = compare(key, n.key);
+            if (c == 0) {
+                return n.value;
+            }
+            n = c < 0 ? n.left : n.right;
+        }
+        return null;
+    }
+
+    /**
+     * Returns a new map with the given key mapped to the value
+     */
+    public PersistentTreeMap<K, V> put(K key, V value) {
+        if (key == null) {
+            throw new NullPointerException("Null keys are not supported");
+        }
+        boolean[] added = new boolean[1];
+        Node<K, V> newRoot = put(root, key, value, added);
+        return new PersistentTreeMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Returns a new map without the given key, or this same map if the key was not found
+     */
+    public PersistentTreeMap<K, V> remove(K key) {
+        boolean[] removed = new boolean[1];
+        Node<K, V> newRoot = remove(root, key, removed);
+        if (!removed[0]) {
+            return this;
+        }
+        return new PersistentTreeMap<>(newRoot, size - 1);
+    }
+
+    /**
+     * Returns the values, sorted by key
+     */
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+
+            @Override
+            public Iterator<V> iterator() {
+                return Iterators.transform(new NodeIterator<>(root, true, null), n -> n.value);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Returns the values, in descending key order
+     */
+    public Iterable<V> descendingValues() {
+        return () -> Iterators.transform(new NodeIterator<>(root, false, null), n -> n.value);
+    }
+
+    /**
+     * Returns the entries whose key is greater than or equal to the given one, sorted by key
+     */
+    public Iterable<Map.Entry<K, V>> tailEntries(K from) {
+        return () -> Iterators.transform(new NodeIterator<>(root, true, from), n -> n);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object k1, Object k2) {
+        return ((Comparable<Object>) k1).compareTo(k2);
+    }
+
+    private static int height(Node<?, ?> n) {
+        return n == null ? 0 : n.height;
+    }
+
+    private static <K, V> Node<K, V> put(Node<K, V> n, K key, V value, boolean[] added) {
+        if (n == null) {
+            added[0] = true;
+            return new Node<>(key, value, null, null);
+        }
+        int c = compare(key, n.key);
+        if (c < 0) {
+            return balance(n.key, n.value, put(n.left, key, value, added), n.right);
+        } else if (c > 0) {
+            return balance(n.key, n.value, n.left, put(n.right, key, value, added));
+        } else {
+            return new Node<>(key, value, n.left, n.right);
+        }
+    }
+
+    private static <K, V> Node<K, V> remove(Node<K, V> n, K key, boolean[] removed) {
+        if (n == null) {
+            return null;
+        }
+        int c = compare(key, n.key);
+        if (c < 0) {
+            Node<K, V> left = remove(n.left, key, removed);
+            return left == n.left ? n : balance(n.key, n.value, left, n.right);
+        } else if (c > 0) {
+            Node<K, V> right = remove(n.right, key, removed);
+            return right == n.right ? n : balance(n.key, n.value, n.left, right);
+        } else {
+            removed[0] = true;
+            if (n.left == null) {
+                return n.right;
+            } else if (n.right == null) {
+                return n.left;
+            }
+            Node<K, V> min = n.right;
+            while (min.left != null) {
+                min = min.left;
+            }
+            return balance(min.key, min.value, n.left, removeMin(n.right));
+        }
+    }
+
+    private static <K, V> Node<K, V> removeMin(Node<K, V> n) {
+        if (n.left == null) {
+            return n.right;
+        }
+        return balance(n.key, n.value, removeMin(n.left), n.right);
+    }
+
+    private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> l, Node<K, V> r) {
+        int hl = height(l);
+        int hr = height(r);
+        if (hl > hr + 1) {
+            if (height(l.left) >= height(l.right)) {
+                return new Node<>(l.key, l.value, l.left, new Node<>(key, value, l.right, r));
+            } else {
+                Node<K, V> lr = l.right;
+                return new Node<>(lr.key, lr.value, new Node<>(l.key, l.value, l.left, lr.left),
+                        new Node<>(key, value, lr.right, r));
+            }
+        } else if (hr > hl + 1) {
+            if (height(r.right) >= height(r.left)) {
+                return new Node<>(r.key, r.value, new Node<>(key, value, l, r.left), r.right);
+            } else {
+                Node<K, V> rl = r.left;
+                return new Node<>(rl.key, rl.value, new Node<>(key, value, l, rl.left),
+                        new Node<>(r.key, r.value, rl.right, r.right));
+            }
+        }
+        return new Node<>(key, value, l, r);
+    }
+
+    /**
+     * In order traversal of the tree nodes, ascending or descending, the ascending one can
+     * start from a given key
+     */
+    static final class NodeIterator<K, V> implements Iterator<Node<K, V>> {
+        final Deque<Node<K, V>> stack = new ArrayDeque<>();
+
+        final boolean ascending;
+
+        NodeIterator(Node<K, V> root, boolean ascending, K from) {
+            this.ascending = ascending;
+            if (from == null) {
+                push(root);
+            } else {
+                // the path to the first key not lower than from
+                Node<K, V> n = root;
+                while (n != null) {
+                    if (compare(n.key, from) >= 0) {
+                        stack.push(n);
+                        n = n.left;
+                    } else {
+                        n = n.right;
+                    }
+                }
+            }
+        }
+
+        private void push(Node<K, V> n) {
+            while (n != null) {
+                stack.push(n);
+                n = ascending ? n.left : n.right;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public Node<K, V> next() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node<K, V> n = stack.pop();
+            push(ascending ? n.right : n.left);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.impl;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.geoserver.catalog.CatalogInfo;
+import org.geotools.util.Converters;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterables;
+
+/**
+ * A sorted secondary index over a single property of the {@link CatalogInfo} objects held by a
+ * {@link CatalogInfoLookup}.
+ * <p>
+ * Objects are kept in buckets keyed by the property value, the buckets are sorted by value (with
+ * null values in a separate bucket that sorts first) and each bucket is sorted by object id. This
+ * allows equality lookups, prefix range scans on string properties, and fully ordered scans that
+ * match the ordering {@link DefaultCatalogFacade} uses when sorting on the same property.
+ * <p>
+ * The index is immutable, built out of persistent maps, modifications return a new index and
+ * are published along with the lookup contents in the same {@link CatalogInfoLookup.Snapshot}.
+ *
+ * @param <T>
+ */
+class PropertyIndex<T extends CatalogInfo> {
+
+    static final Object NULL_KEY = new Object();
+
+    final Class<? extends Comparable<?>> type;
+
+    final Function<T, ?> extractor;
+
+    final String[] properties;
+
+    final PersistentTreeMap<Comparable<?>, PersistentTreeMap<String, T>> entries;
+
+    final PersistentTreeMap<String, T> nulls;
+
+    /**
+     * The key each object has been indexed with, used to remove/reindex objects whose property
+     * value has changed in the meantime
+     */
+    final PersistentTreeMap<String, Object> keys;
+
+    public PropertyIndex(Class<? extends Comparable<?>> type, Function<T, ?> extractor,
+            String... properties) {
+        this(type, extractor, properties, PersistentTreeMap.empty(), PersistentTreeMap.empty(),
+                PersistentTreeMap.empty());
+    }
+
+    private PropertyIndex(Class<? extends Comparable<?>> type, Function<T, ?> extractor,
+            String[] properties,
+            PersistentTreeMap<Comparable<?>, PersistentTreeMap<String, T>> entries,
+            PersistentTreeMap<String, T> nulls, PersistentTreeMap<String, Object> keys) {
+        this.type = type;
+        this.extractor = extractor;
+        this.properties = properties;
+        this.entries = entries;
+        this.nulls = nulls;
+        this.keys = keys;
+    }
+
+    /**
+     * Returns true if this index is sorted against the specified property
+     */
+    boolean indexes(String property) {
+        for (String p : properties) {
+            if (p.equals(property)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a new index with the value added, or moved to the bucket of its current property
+     * value if already indexed
+     */
+    PropertyIndex<T> add(T value) {
+        PropertyIndex<T> base = remove(value);
+        Comparable<?> key = key(value);
+        String id = value.getId();
+        PersistentTreeMap<Comparable<?>, PersistentTreeMap<String, T>> newEntries = base.entries;
+        PersistentTreeMap<String, T> newNulls = base.nulls;
+        if (key == null) {
+            newNulls = newNulls.put(id, value);
+        } else {
+            PersistentTreeMap<String, T> bucket = newEntries.get(key);
+            if (bucket == null) {
+                bucket = PersistentTreeMap.empty();
+            }
+            newEntries = newEntries.put(key, bucket.put(id, value));
+        }
+        return new PropertyIndex<>(type, extractor, properties, newEntries, newNulls,
+                base.keys.put(id, key == null ? NULL_KEY : key));
+    }
+
+    /**
+     * Returns a new index without the value, or this same index if the value was not indexed
+     */
+    PropertyIndex<T> remove(T value) {
+        String id = value.getId();
+        Object key = keys.get(id);
+        if (key == null) {
+            return this;
+        }
+        PersistentTreeMap<Comparable<?>, PersistentTreeMap<String, T>> newEntries = entries;
+        PersistentTreeMap<String, T> newNulls = nulls;
+        if (key == NULL_KEY) {
+            newNulls = nulls.remove(id);
+        } else {
+            PersistentTreeMap<String, T> bucket = entries.get((Comparable<?>) key);
+            if (bucket != null) {
+                bucket = bucket.remove(id);
+                newEntries = bucket.isEmpty() ? entries.remove((Comparable<?>) key)
+                        : entries.put((Comparable<?>) key, bucket);
+            }
+        }
+        return new PropertyIndex<>(type, extractor, properties, newEntries, newNulls,
+                keys.remove(id));
+    }
+
+    /**
+     * Returns an empty index on the same property
+     */
+    PropertyIndex<T> clear() {
+        return new PropertyIndex<>(type, extractor, properties);
+    }
+
+    private Comparable<?> key(T value) {
+        try {
+            return (Comparable<?>) extractor.apply(value);
+        } catch (RuntimeException e) {
+            // some getters throw when the object is not fully resolved, e.g. layers
+            // without a resource, treat them as null
+            return null;
+        }
+    }
+
+    /**
+     * Converts the value to the index key type, returns null if not possible
+     */
+    Comparable<?> toKey(Object value) {
+        if (value == null) {
+            return null;
+        }
+        return (Comparable<?>) Converters.convert(value, type);
+    }
+
+    /**
+     * Returns the objects whose property value equals the provided key, or null if the key cannot
+     * be converted to the type of this index
+     */
+    Iterable<T> equalTo(Object value) {
+        Comparable<?> key = toKey(value);
+        if (key == null) {
+            return null;
+        }
+        PersistentTreeMap<String, T> bucket = entries.get(key);
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+        return bucket.values();
+    }
+
+    /**
+     * Returns the number of objects whose property value equals the provided key
+     */
+    int count(Object value) {
+        Comparable<?> key = toKey(value);
+        if (key == null) {
+            return Integer.MAX_VALUE;
+        }
+        PersistentTreeMap<String, T> bucket = entries.get(key);
+        return bucket == null ? 0 : bucket.size();
+    }
+
+    /**
+     * Returns the objects whose property value is null
+     */
+    Iterable<T> isNull() {
+        return nulls.values();
+    }
+
+    /**
+     * Returns, in ascending order, the objects whose string property starts with the given prefix
+     */
+    Iterable<T> prefix(String prefix) {
+        if (!String.class.equals(type)) {
+            return null;
+        }
+        Iterable<Map.Entry<Comparable<?>, PersistentTreeMap<String, T>>> tail = entries
+                .tailEntries(prefix);
+        Iterable<PersistentTreeMap<String, T>> buckets = () -> new AbstractIterator<
+                PersistentTreeMap<String, T>>() {
+            Iterator<Map.Entry<Comparable<?>, PersistentTreeMap<String, T>>> it = tail.iterator();
+
+            @Override
+            protected PersistentTreeMap<String, T> computeNext() {
+                if (it.hasNext()) {
+                    Map.Entry<Comparable<?>, PersistentTreeMap<String, T>> entry = it.next();
+                    if (((String) entry.getKey()).startsWith(prefix)) {
+                        return entry.getValue();
+                    }
+                }
+                return endOfData();
+            }
+        };
+        return Iterables.concat(Iterables.transform(buckets, b -> b.values()));
+    }
+
+    /**
+     * Returns all the indexed objects, sorted on the property value. Null values sort first in
+     * ascending order, and last in descending order, same as the default catalog comparators
+     */
+    Iterable<T> scan(boolean ascending) {
+        if (ascending) {
+            return Iterables.concat(nulls.values(),
+                    Iterables.concat(Iterables.transform(entries.values(), b -> b.values())));
+        } else {
+            return Iterables.concat(
+                    Iterables.concat(Iterables.transform(entries.descendingValues(),
+                            b -> b.values())), nulls.values());
+        }
+    }
+
+}
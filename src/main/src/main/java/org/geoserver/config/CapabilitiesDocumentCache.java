@@ -0,0 +1,599 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.config.impl.GeoServerLifecycleHandler;
+import org.geoserver.ows.AbstractDispatcherCallback;
+import org.geoserver.ows.LocalWorkspace;
+import org.geoserver.ows.Request;
+import org.geoserver.ows.Response;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.Operation;
+import org.geoserver.platform.ServiceException;
+import org.geotools.util.logging.Logging;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Caches the encoded capabilities documents, so that they are not rebuilt from the catalog on each
+ * request.
+ * <p>
+ * Documents are keyed by the full request (path, parameters, host and proxy headers) and by the
+ * authenticated user along with its roles, and are dropped as soon as the catalog or the
+ * configuration changes: changes to objects in a workspace drop the global documents and the ones
+ * of that workspace virtual services, changes to global objects drop them all. A gzipped copy of
+ * each document is kept too, and served to the clients accepting it. Only GET requests are
+ * cached.
+ * <p>
+ * Parts of the documents depending on the data (e.g., the time and elevation domains) or on the
+ * security rules are refreshed only when the cached documents expire, this is why the cache is
+ * disabled by default. It can be controlled with the following variables, either as system,
+ * environment or servlet context variables:
+ * <ul>
+ * <li>CAPABILITIES_CACHE_ENABLED: set to true to enable the cache</li>
+ * <li>CAPABILITIES_CACHE_TTL: the time to live of the cached documents, in seconds (defaults to
+ * 600)</li>
+ * <li>CAPABILITIES_CACHE_MAX_SIZE: the max memory used by the cache, in megabytes (defaults to
+ * 64)</li>
+ * <li>CAPABILITIES_CACHE_GZIP: set to false to avoid keeping the gzipped documents</li>
+ * </ul>
+ */
+public class CapabilitiesDocumentCache extends AbstractDispatcherCallback
+        implements CatalogListener, GeoServerLifecycleHandler {
+
+    static final Logger LOGGER = Logging.getLogger(CapabilitiesDocumentCache.class);
+
+    static final String[] PROXY_HEADERS = { "Host", "Forwarded", "X-Forwarded-Proto",
+            "X-Forwarded-Host", "X-Forwarded-Port", "X-Forwarded-Path", "X-Forwarded-For" };
+
+    /**
+     * A cached document
+     */
+    static final class Entry {
+        final String service;
+
+        /**
+         * The workspace of the virtual service, or null for the global services
+         */
+        final String workspace;
+
+        final byte[] document;
+
+        final byte[] gzipped;
+
+        final long expires;
+
+        Entry(String service, String workspace, byte[] document, byte[] gzipped, long expires) {
+            this.service = service;
+            this.workspace = workspace;
+            this.document = document;
+            this.gzipped = gzipped;
+            this.expires = expires;
+        }
+
+        long size() {
+            return document.length + (gzipped != null ? gzipped.length : 0);
+        }
+    }
+
+    final GeoServer gs;
+
+    boolean enabled;
+
+    long timeToLive;
+
+    long maxSize;
+
+    boolean gzip;
+
+    /**
+     * The cached documents, in least recently used order, guarded by this
+     */
+    final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    long size;
+
+    /**
+     * Incremented on each invalidation, documents built while the configuration changed are not
+     * stored
+     */
+    final AtomicLong generation = new AtomicLong();
+
+    final AtomicLong hits = new AtomicLong();
+
+    final AtomicLong misses = new AtomicLong();
+
+    public CapabilitiesDocumentCache(GeoServer gs) {
+        this.gs = gs;
+        this.enabled = Boolean.parseBoolean(getProperty("CAPABILITIES_CACHE_ENABLED", "false"));
+        this.timeToLive = TimeUnit.SECONDS
+                .toMillis(Long.parseLong(getProperty("CAPABILITIES_CACHE_TTL", "600")));
+        this.maxSize = Long.parseLong(getProperty("CAPABILITIES_CACHE_MAX_SIZE", "64")) * 1024
+                * 1024;
+        this.gzip = Boolean.parseBoolean(getProperty("CAPABILITIES_CACHE_GZIP", "true"));
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Capabilities document cache enabled: " + enabled);
+        }
+
+        gs.getCatalog().addListener(this);
+        gs.addListener(new ConfigurationListenerAdapter() {
+            @Override
+            public void handlePostGlobalChange(GeoServerInfo global) {
+                clear();
+            }
+
+            @Override
+            public void handleSettingsAdded(SettingsInfo settings) {
+                invalidateSettings(settings);
+            }
+
+            @Override
+            public void handleSettingsPostModified(SettingsInfo settings) {
+                invalidateSettings(settings);
+            }
+
+            @Override
+            public void handleSettingsRemoved(SettingsInfo settings) {
+                invalidateSettings(settings);
+            }
+
+            @Override
+            public void handlePostServiceChange(ServiceInfo service) {
+                invalidateService(service);
+            }
+
+            @Override
+            public void handleServiceRemove(ServiceInfo service) {
+                invalidateService(service);
+            }
+
+            @Override
+            public void reloaded() {
+                clear();
+            }
+        });
+    }
+
+    static String getProperty(String name, String defaultValue) {
+        String value = GeoServerExtensions.getProperty(name);
+        return value != null ? value : defaultValue;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public Response responseDispatched(Request request, Operation operation, Object result,
+            Response response) {
+        if (!enabled || !"GetCapabilities".equalsIgnoreCase(request.getRequest())
+                || !request.isGet() || request.isSOAP() || request.getHttpRequest() == null) {
+            return response;
+        }
+        WorkspaceInfo workspace = LocalWorkspace.get();
+        String service = operation.getService().getId().toLowerCase();
+        String key = buildKey(request, service, result);
+        return new CachingResponse(response, key, service,
+                workspace != null ? workspace.getName() : null, acceptsGzip(request));
+    }
+
+    /**
+     * Builds a key covering everything the document depends onto: the service, the request path
+     * (workspace, layer), its parameters (version, namespace filter, sections, ...), the host and
+     * proxy headers the base URL is built from, and the user
+     */
+    String buildKey(Request request, String service, Object result) {
+        HttpServletRequest http = request.getHttpRequest();
+        StringBuilder sb = new StringBuilder(service);
+        sb.append('|').append(result.getClass().getName());
+        sb.append('|').append(http.getScheme()).append("://").append(http.getServerName())
+                .append(':').append(http.getServerPort()).append(http.getRequestURI());
+        for (String header : PROXY_HEADERS) {
+            String value = http.getHeader(header);
+            if (value != null) {
+                sb.append('|').append(header).append('=').append(value);
+            }
+        }
+        Map<String, Object> kvp = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        if (request.getRawKvp() != null) {
+            kvp.putAll(request.getRawKvp());
+        }
+        for (Map.Entry<String, Object> e : kvp.entrySet()) {
+            sb.append('|').append(e.getKey().toUpperCase()).append('=').append(e.getValue());
+        }
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null) {
+            sb.append("|user=").append(auth.getName());
+            List<String> roles = new ArrayList<>();
+            for (GrantedAuthority authority : auth.getAuthorities()) {
+                roles.add(authority.getAuthority());
+            }
+            roles.sort(null);
+            sb.append("|roles=").append(roles);
+        }
+        return sb.toString();
+    }
+
+    boolean acceptsGzip(Request request) {
+        String encoding = request.getHttpRequest().getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return gzip && encoding != null && encoding.toLowerCase().contains("gzip");
+    }
+
+    synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expires < System.currentTimeMillis()) {
+            remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    synchronized void put(String key, Entry entry, long expectedGeneration) {
+        if (generation.get() != expectedGeneration || entry.size() > maxSize) {
+            return;
+        }
+        remove(key);
+        entries.put(key, entry);
+        size += entry.size();
+        // evict the least recently used ones
+        Iterator<Entry> it = entries.values().iterator();
+        while (size > maxSize && it.hasNext()) {
+            size -= it.next().size();
+            it.remove();
+        }
+    }
+
+    synchronized void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            size -= removed.size();
+        }
+    }
+
+    /**
+     * Drops the documents matching the predicate
+     */
+    synchronized void invalidateIf(Predicate<Entry> predicate) {
+        generation.incrementAndGet();
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (predicate.test(entry)) {
+                size -= entry.size();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops all the cached documents
+     */
+    public void clear() {
+        invalidateIf(e -> true);
+    }
+
+    /**
+     * Drops the documents depending on the given workspace: its virtual services and the global
+     * ones. A null workspace drops all the documents.
+     */
+    public void invalidateWorkspace(String workspace) {
+        if (workspace == null) {
+            clear();
+        } else {
+            invalidateIf(e -> e.workspace == null || e.workspace.equals(workspace));
+        }
+    }
+
+    void invalidateSettings(SettingsInfo settings) {
+        WorkspaceInfo ws = settings.getWorkspace();
+        if (ws == null) {
+            clear();
+        } else {
+            String name = ws.getName();
+            invalidateIf(e -> name.equals(e.workspace));
+        }
+    }
+
+    void invalidateService(ServiceInfo service) {
+        String name = service.getName() != null ? service.getName().toLowerCase() : null;
+        WorkspaceInfo ws = service.getWorkspace();
+        String wsName = ws != null ? ws.getName() : null;
+        invalidateIf(e -> (name == null || name.equals(e.service))
+                && (wsName == null || wsName.equals(e.workspace)));
+    }
+
+    /**
+     * Drops the documents affected by a change to the given catalog object
+     */
+    void invalidate(CatalogEvent event) {
+        Object source = event.getSource();
+        if (source instanceof WorkspaceInfo) {
+            // might be a rename, or a change of the default workspace
+            clear();
+            return;
+        }
+        invalidateWorkspace(getWorkspace(source));
+    }
+
+    /**
+     * Returns the workspace the object belongs to, or null if the object is global
+     */
+    String getWorkspace(Object source) {
+        WorkspaceInfo ws = null;
+        if (source instanceof LayerInfo) {
+            source = ((LayerInfo) source).getResource();
+        }
+        if (source instanceof ResourceInfo) {
+            source = ((ResourceInfo) source).getStore();
+        }
+        if (source instanceof StoreInfo) {
+            ws = ((StoreInfo) source).getWorkspace();
+        } else if (source instanceof StyleInfo) {
+            ws = ((StyleInfo) source).getWorkspace();
+        } else if (source instanceof LayerGroupInfo) {
+            ws = ((LayerGroupInfo) source).getWorkspace();
+        } else if (source instanceof NamespaceInfo) {
+            return ((NamespaceInfo) source).getPrefix();
+        }
+        return ws != null ? ws.getName() : null;
+    }
+
+    @Override
+    public void handleAddEvent(CatalogAddEvent event) {
+        invalidate(event);
+    }
+
+    @Override
+    public void handleRemoveEvent(CatalogRemoveEvent event) {
+        invalidate(event);
+    }
+
+    @Override
+    public void handleModifyEvent(CatalogModifyEvent event) {
+        // wait for the post modify
+    }
+
+    @Override
+    public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+        invalidate(event);
+    }
+
+    @Override
+    public void reloaded() {
+        clear();
+    }
+
+    @Override
+    public void onReset() {
+        clear();
+    }
+
+    @Override
+    public void onDispose() {
+        clear();
+    }
+
+    @Override
+    public void beforeReload() {
+        // nothing to do
+    }
+
+    @Override
+    public void onReload() {
+        clear();
+    }
+
+    /**
+     * Serves the cached document if available, otherwise writes the response and caches its
+     * output
+     */
+    class CachingResponse extends Response {
+
+        final Response delegate;
+
+        final String key;
+
+        final String service;
+
+        final String workspace;
+
+        final boolean acceptsGzip;
+
+        final long expectedGeneration;
+
+        /**
+         * Looked up once, so that the headers and the content are consistent
+         */
+        final Entry entry;
+
+        CachingResponse(Response delegate, String key, String service, String workspace,
+                boolean acceptsGzip) {
+            super(delegate.getBinding());
+            this.delegate = delegate;
+            this.key = key;
+            this.service = service;
+            this.workspace = workspace;
+            this.acceptsGzip = acceptsGzip;
+            this.expectedGeneration = generation.get();
+            this.entry = get(key);
+        }
+
+        boolean isGzipped() {
+            return entry != null && acceptsGzip && entry.gzipped != null;
+        }
+
+        @Override
+        public boolean canHandle(Operation operation) {
+            return delegate.canHandle(operation);
+        }
+
+        @Override
+        public String getMimeType(Object value, Operation operation) throws ServiceException {
+            return delegate.getMimeType(value, operation);
+        }
+
+        @Override
+        public String[][] getHeaders(Object value, Operation operation) throws ServiceException {
+            String[][] headers = delegate.getHeaders(value, operation);
+            if (!isGzipped()) {
+                return headers;
+            }
+            List<String[]> result = new ArrayList<>();
+            if (headers != null) {
+                for (String[] header : headers) {
+                    result.add(header);
+                }
+            }
+            result.add(new String[] { HttpHeaders.CONTENT_ENCODING, "gzip" });
+            result.add(new String[] { HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING });
+            return result.toArray(new String[result.size()][]);
+        }
+
+        @Override
+        public void write(Object value, OutputStream output, Operation operation)
+                throws IOException, ServiceException {
+            if (entry != null) {
+                hits.incrementAndGet();
+                output.write(isGzipped() ? entry.gzipped : entry.document);
+                return;
+            }
+
+            misses.incrementAndGet();
+            CopyOutputStream copy = new CopyOutputStream(output, maxSize);
+            delegate.write(value, copy, operation);
+            if (copy.isComplete()) {
+                byte[] document = copy.buffer.toByteArray();
+                byte[] gzipped = null;
+                if (gzip) {
+                    ByteArrayOutputStream bos = new ByteArrayOutputStream(document.length / 4);
+                    try (GZIPOutputStream gos = new GZIPOutputStream(bos)) {
+                        gos.write(document);
+                    }
+                    gzipped = bos.toByteArray();
+                }
+                put(key, new Entry(service, workspace, document, gzipped,
+                        System.currentTimeMillis() + timeToLive), expectedGeneration);
+            }
+        }
+
+        @Override
+        public String getPreferredDisposition(Object value, Operation operation) {
+            return delegate.getPreferredDisposition(value, operation);
+        }
+
+        @Override
+        public String getAttachmentFileName(Object value, Operation operation) {
+            return delegate.getAttachmentFileName(value, operation);
+        }
+
+        @Override
+        public String getCharset(Operation operation) {
+            return delegate.getCharset(operation);
+        }
+    }
+
+    /**
+     * Writes to the target stream, keeping a copy of the output until it grows past the limit
+     */
+    static class CopyOutputStream extends OutputStream {
+
+        final OutputStream target;
+
+        final long limit;
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+
+        CopyOutputStream(OutputStream target, long limit) {
+            this.target = target;
+            this.limit = limit;
+        }
+
+        boolean isComplete() {
+            return buffer != null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+            if (buffer != null) {
+                buffer.write(b);
+                checkLimit();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+            if (buffer != null) {
+                buffer.write(b, off, len);
+                checkLimit();
+            }
+        }
+
+        void checkLimit() {
+            if (buffer.size() > limit) {
+                buffer = null;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            target.close();
+        }
+    }
+}
@@ -1300,6 +1300,10 @@ public class SecureCatalogImpl extends AbstractDecorator<Catalog> implements Cat
         delegate.fireRemoved(object);
     }
     
+    public void fireResourceLoaded(CatalogInfo object, long loadTime) {
+        delegate.fireResourceLoaded(object, loadTime);
+    }
+    
     // TODO: why is resource pool being exposed???
     public ResourcePool getResourcePool() {
         return delegate.getResourcePool();
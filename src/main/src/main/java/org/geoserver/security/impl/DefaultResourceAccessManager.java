@@ -10,20 +10,27 @@ import static org.geoserver.security.impl.DataAccessRule.ANY;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogException;
 import org.geoserver.catalog.CatalogInfo;
 import org.geoserver.catalog.CoverageInfo;
 import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.catalog.LayerGroupInfo;
 import org.geoserver.catalog.LayerGroupInfo.Mode;
 import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.MapInfo;
 import org.geoserver.catalog.Predicates;
 import org.geoserver.catalog.PublishedInfo;
 import org.geoserver.catalog.ResourceInfo;
@@ -31,6 +38,12 @@ import org.geoserver.catalog.StyleInfo;
 import org.geoserver.catalog.WMSLayerInfo;
 import org.geoserver.catalog.WMTSLayerInfo;
 import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
 import org.geoserver.ows.Dispatcher;
 import org.geoserver.ows.Request;
 import org.geoserver.platform.GeoServerExtensions;
@@ -40,6 +53,7 @@ import org.geoserver.security.CatalogMode;
 import org.geoserver.security.CoverageAccessLimits;
 import org.geoserver.security.DataAccessLimits;
 import org.geoserver.security.DataAccessManager;
+import org.geoserver.security.GeoServerSecurityFilterChainProxy;
 import org.geoserver.security.InMemorySecurityFilter;
 import org.geoserver.security.LayerGroupAccessLimits;
 import org.geoserver.security.ResourceAccessManager;
@@ -52,6 +66,11 @@ import org.geoserver.security.impl.LayerGroupContainmentCache.LayerGroupSummary;
 import org.geotools.util.logging.Logging;
 import org.opengis.filter.Filter;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 /**
  * Default implementation of {@link DataAccessManager}, loads simple access
@@ -107,6 +126,57 @@ public class DefaultResourceAccessManager implements ResourceAccessManager, Data
         
     }
     
+    /**
+     * The key of a memoized access decision. The decisions depend only on the roles of the user,
+     * so they can be shared among all the users having the same roles
+     */
+    static final class DecisionKey {
+
+        final Set<String> roles;
+
+        final String object;
+
+        final AccessMode mode;
+
+        final boolean directAccess;
+
+        final boolean groupCheck;
+
+        DecisionKey(Set<String> roles, String object, AccessMode mode, boolean directAccess,
+                boolean groupCheck) {
+            this.roles = roles;
+            this.object = object;
+            this.mode = mode;
+            this.directAccess = directAccess;
+            this.groupCheck = groupCheck;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof DecisionKey)) {
+                return false;
+            }
+            DecisionKey other = (DecisionKey) obj;
+            return directAccess == other.directAccess && groupCheck == other.groupCheck
+                    && mode == other.mode && object.equals(other.object)
+                    && Objects.equals(roles, other.roles);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(roles, object, mode, directAccess, groupCheck);
+        }
+    }
+
+    /**
+     * Max number of memoized access decisions and security filters
+     */
+    static final int DECISION_CACHE_SIZE = Integer
+            .getInteger("org.geoserver.security.decisionCacheSize", 100000);
+
     SecureTreeNode root;
 
     DataAccessRuleDAO dao;
@@ -117,6 +187,12 @@ public class DefaultResourceAccessManager implements ResourceAccessManager, Data
     
     LayerGroupContainmentCache groupsCache;
 
+    /**
+     * The memoized access decisions (and security filters), replaced with an empty one when the
+     * rules are reloaded or the catalog changes
+     */
+    volatile Cache<DecisionKey, Object> decisions = newDecisionCache();
+
     @Deprecated
     public DefaultResourceAccessManager(DataAccessRuleDAO dao) {
         this(dao, (Catalog) GeoServerExtensions.bean("rawCatalog"));
@@ -133,6 +209,58 @@ public class DefaultResourceAccessManager implements ResourceAccessManager, Data
         this.rawCatalog = rawCatalog;
         this.root = buildAuthorizationTree(dao);
         this.groupsCache = new LayerGroupContainmentCache(rawCatalog);
+        // registered after the containment cache one, so that it's already up to date when
+        // the decisions are dropped
+        rawCatalog.addListener(new DecisionCacheInvalidator());
+    }
+
+    static Cache<DecisionKey, Object> newDecisionCache() {
+        return CacheBuilder.newBuilder().maximumSize(DECISION_CACHE_SIZE).build();
+    }
+
+    /**
+     * Drops all the memoized access decisions
+     */
+    void clearDecisions() {
+        decisions = newDecisionCache();
+    }
+
+    /**
+     * Returns the memoized decision, computing it if missing. The decision is not memoized if the
+     * key is null, or security is disabled for the current request
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T decide(DecisionKey key, Supplier<T> decision) {
+        if (key == null || !GeoServerSecurityFilterChainProxy.isSecurityEnabledForCurrentRequest()) {
+            return decision.get();
+        }
+        // grab the cache before computing, if it gets replaced in the meantime the decision,
+        // possibly computed against stale rules, goes with the old cache
+        Cache<DecisionKey, Object> cache = this.decisions;
+        try {
+            return (T) cache.get(key, () -> decision.get());
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private DecisionKey decisionKey(Authentication user, String object, AccessMode mode,
+            boolean directAccess, boolean groupCheck) {
+        if (object == null) {
+            return null;
+        }
+        Set<String> roles = null;
+        if (user != null && user.getAuthorities() != null) {
+            roles = new HashSet<>();
+            for (GrantedAuthority authority : user.getAuthorities()) {
+                roles.add(authority.getAuthority());
+            }
+        }
+        return new DecisionKey(roles, object, mode, directAccess, groupCheck);
     }
 
     
@@ -143,6 +271,13 @@ public class DefaultResourceAccessManager implements ResourceAccessManager, Data
 
     public boolean canAccess(Authentication user, WorkspaceInfo workspace, AccessMode mode) {
         checkPropertyFile();
+        DecisionKey key = decisionKey(user, "workspace:" + workspace.getName(), mode, false,
+                false);
+        return decide(key, () -> canAccessWorkspace(user, workspace, mode));
+    }
+
+    private boolean canAccessWorkspace(Authentication user, WorkspaceInfo workspace,
+            AccessMode mode) {
         SecureTreeNode node = root.getDeepestNode(new String[] { workspace.getName() });
         if(node.canAccess(user, mode)) {
             return true;
@@ -207,13 +342,24 @@ public class DefaultResourceAccessManager implements ResourceAccessManager, Data
             // it's a layer whose resource we don't know about
             return true;
         }
-        
+
+        // the names are part of the key, the object might carry uncommitted changes
+        final boolean groupCheck = layerGroupContainmentCheckRequired();
+        DecisionKey key = resource.getId() == null ? null
+                : decisionKey(user, "resource:" + resource.getId() + ":" + workspace + ":"
+                        + resourceName, mode, directAccess, groupCheck);
+        return decide(key, () -> canAccessResource(user, resource, workspace, mode,
+                directAccess, groupCheck));
+    }
+
+    private boolean canAccessResource(Authentication user, ResourceInfo resource,
+            String workspace, AccessMode mode, boolean directAccess, boolean groupCheck) {
         // if we have a catalog rule that is at resource level, it's the most specific type,
         // it wins. Or it could be that we do not need to check layer groups at all
-        SecureTreeNode securityNode = root.getDeepestNode(new String[] { workspace, resourceName });
+        SecureTreeNode securityNode = root.getDeepestNode(new String[] { workspace, resource.getName() });
         int catalogNodeDepth = securityNode.getDepth();
         boolean rulesAllowAccess = securityNode.canAccess(user, mode);
-        if(catalogNodeDepth == SecureTreeNode.RESOURCE_DEPTH || !layerGroupContainmentCheckRequired()) {
+        if(catalogNodeDepth == SecureTreeNode.RESOURCE_DEPTH || !groupCheck) {
             return rulesAllowAccess;
         }
         
@@ -315,6 +461,7 @@ public class DefaultResourceAccessManager implements ResourceAccessManager, Data
         if(lastLoaded < daoLastModified || force) {
             root = buildAuthorizationTree(dao);
             lastLoaded = daoLastModified;
+            clearDecisions();
         }
     }
 
@@ -442,6 +589,15 @@ public class DefaultResourceAccessManager implements ResourceAccessManager, Data
     
     
     private boolean canAccess(Authentication user, LayerGroupInfo layerGroup, boolean directAccess) {
+        DecisionKey key = layerGroup.getId() == null ? null
+                : decisionKey(user, "group:" + layerGroup.getId() + ":"
+                        + String.join(":", getLayerGroupPath(layerGroup)), AccessMode.READ,
+                        directAccess, false);
+        return decide(key, () -> canAccessGroup(user, layerGroup, directAccess));
+    }
+
+    private boolean canAccessGroup(Authentication user, LayerGroupInfo layerGroup,
+            boolean directAccess) {
         String[] path = getLayerGroupPath(layerGroup);
         SecureTreeNode node = root.getDeepestNode(path);
         boolean catalogNodeAllowsAccess = node.canAccess(user, AccessMode.READ);
@@ -490,7 +646,22 @@ public class DefaultResourceAccessManager implements ResourceAccessManager, Data
             return InMemorySecurityFilter.buildUserAccessFilter(this, user);
         }
 
-        
+        // the filters built out of the rules tree depend only on the roles, they can be reused
+        // by all listings. The in memory ones are bound to the user instead
+        if (WorkspaceInfo.class.isAssignableFrom(clazz)
+                || PublishedInfo.class.isAssignableFrom(clazz)
+                || ResourceInfo.class.isAssignableFrom(clazz)
+                || StyleInfo.class.isAssignableFrom(clazz)
+                || LayerGroupInfo.class.isAssignableFrom(clazz)) {
+            checkPropertyFile();
+            DecisionKey key = decisionKey(user, "filter:" + clazz.getName(), AccessMode.READ,
+                    false, AdminRequest.get() != null);
+            return decide(key, () -> buildSecurityFilter(user, clazz));
+        }
+        return buildSecurityFilter(user, clazz);
+    }
+
+    Filter buildSecurityFilter(Authentication user, Class<? extends CatalogInfo> clazz) {
         if (WorkspaceInfo.class.isAssignableFrom(clazz)) {
             // base access
             boolean rootAccess = canAccess(user, root);
@@ -645,5 +816,44 @@ public class DefaultResourceAccessManager implements ResourceAccessManager, Data
         return getAccessLimits(user, layerGroup, Collections.emptyList());
     }
 
+    /**
+     * Drops the memoized decisions when the catalog objects taking part in them change
+     */
+    final class DecisionCacheInvalidator implements CatalogListener {
+
+        @Override
+        public void handleAddEvent(CatalogAddEvent event) throws CatalogException {
+            invalidate(event);
+        }
+
+        @Override
+        public void handleRemoveEvent(CatalogRemoveEvent event) throws CatalogException {
+            invalidate(event);
+        }
+
+        @Override
+        public void handleModifyEvent(CatalogModifyEvent event) throws CatalogException {
+            invalidate(event);
+        }
+
+        @Override
+        public void handlePostModifyEvent(CatalogPostModifyEvent event) throws CatalogException {
+            invalidate(event);
+        }
+
+        @Override
+        public void reloaded() {
+            clearDecisions();
+        }
+
+        private void invalidate(CatalogEvent event) {
+            // styles and maps do not affect the decisions
+            CatalogInfo source = event.getSource();
+            if (!(source instanceof StyleInfo) && !(source instanceof MapInfo)) {
+                clearDecisions();
+            }
+        }
+    }
+
 }
  
\ No newline at end of file
@@ -20,8 +20,16 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.media.jai.PlanarImage;
@@ -33,6 +41,12 @@ import javax.xml.transform.stream.StreamResult;
 import org.apache.commons.io.FileUtils;
 import org.easymock.Capture;
 import org.easymock.classextension.EasyMock;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.catalog.event.CatalogResourceLoadEvent;
 import org.geoserver.catalog.util.ReaderUtils;
 import org.geoserver.config.GeoServer;
 import org.geoserver.config.GeoServerDataDirectory;
@@ -671,4 +685,188 @@ public class ResourcePoolTest extends GeoServerSystemTestSupport {
         assertThat(hints2, hasEntry(Hints.REPOSITORY, pool.repository));
         assertThat(hints2, hasEntry(Hints.KEY_ANTIALIASING, Hints.VALUE_ANTIALIAS_ON));
     }
+
+    @Test
+    public void testCacheCoalescesLoads() throws Exception {
+        ResourcePool pool = ResourcePool.create(getCatalog());
+        final ResourcePool.CatalogResourceCache<String, String> cache = pool.new SimpleCache<>(
+                "test");
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Callable<String> loader = () -> {
+            loads.incrementAndGet();
+            started.countDown();
+            release.await();
+            return "value";
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> cache.getOrLoad("key", loader)));
+            started.await();
+            for (int i = 0; i < 3; i++) {
+                futures.add(executor.submit(() -> cache.getOrLoad("key", loader)));
+            }
+            // wait for the other threads to pile up on the running load
+            while (cache.getStatistics().getCoalescedLoads() < 3) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            for (Future<String> future : futures) {
+                assertEquals("value", future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, loads.get());
+        CacheStatistics statistics = cache.getStatistics();
+        assertEquals(1, statistics.getLoads());
+        assertEquals(3, statistics.getCoalescedLoads());
+        assertEquals("value", cache.getOrLoad("key", loader));
+        assertEquals(1, statistics.getHits());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testCacheBounds() throws Exception {
+        ResourcePool pool = ResourcePool.create(getCatalog());
+        ResourcePool.CatalogResourceCache<String, String> cache = pool.new SimpleCache<>("test");
+        cache.maxEntries = 2;
+        cache.put("a", "a");
+        Thread.sleep(2);
+        cache.put("b", "b");
+        Thread.sleep(2);
+        // access "a" so that "b" becomes the least recently used
+        assertEquals("a", cache.get("a"));
+        Thread.sleep(2);
+        cache.put("c", "c");
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.getStatistics().getEvictions());
+
+        // failed loads are recorded and not cached
+        try {
+            cache.getOrLoad("d", () -> {
+                throw new IOException("failed");
+            });
+            fail("Should have thrown an exception");
+        } catch (IOException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertEquals(1, cache.getStatistics().getLoadFailures());
+        assertNull(cache.get("d"));
+
+        assertTrue(pool.getCacheStatistics().containsKey("featureTypes"));
+        assertTrue(pool.getCacheStatistics().containsKey("crs"));
+    }
+
+    @Test
+    public void testCacheExpiry() throws Exception {
+        ResourcePool pool = ResourcePool.create(getCatalog());
+        ResourcePool.CatalogResourceCache<String, String> cache = pool.new SimpleCache<>("test");
+        cache.expireAfterAccess = 50;
+        cache.put("a", "a");
+        cache.put("b", "b");
+        Thread.sleep(100);
+        // the next put drops the expired entries from the head of the access order
+        cache.put("c", "c");
+
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getStatistics().getEvictions());
+        assertEquals("c", cache.get("c"));
+    }
+
+    @Test
+    public void testEvictionDoesNotDispose() throws Exception {
+        ResourcePool pool = ResourcePool.create(getCatalog());
+        final List<String> disposed = new ArrayList<>();
+        ResourcePool.CatalogResourceCache<String, String> cache;
+        cache = pool.new CatalogResourceCache<String, String>("test") {
+
+            @Override
+            protected void dispose(String key, String object) {
+                disposed.add(key);
+            }
+        };
+        cache.maxEntries = 1;
+        cache.put("a", "a");
+        Thread.sleep(2);
+        cache.put("b", "b");
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getStatistics().getEvictions());
+        // the evicted value might still be in use, only explicit removals dispose
+        assertTrue(disposed.isEmpty());
+        assertEquals(0, cache.getStatistics().getHits());
+        assertEquals(0, cache.getStatistics().getMisses());
+
+        cache.remove("b");
+        assertEquals(Arrays.asList("b"), disposed);
+
+        // stores are never evicted because of the size limits
+        assertFalse(pool.dataStoreCache.isEvictable());
+        assertTrue(((ResourcePool.CatalogResourceCache<?, ?>) pool.featureTypeCache).isEvictable());
+    }
+
+    @Test
+    public void testSingleFlightDataStoreLoading() throws Exception {
+        Catalog catalog = getCatalog();
+        final DataStoreInfo store = catalog.getFeatureTypeByName(getLayerId(MockData.BUILDINGS))
+                .getStore();
+        final ResourcePool pool = new ResourcePool(catalog);
+        final List<CatalogResourceLoadEvent> events = new CopyOnWriteArrayList<>();
+        CatalogListener listener = new CatalogListener() {
+
+            @Override
+            public void handleAddEvent(CatalogAddEvent event) {
+            }
+
+            @Override
+            public void handleRemoveEvent(CatalogRemoveEvent event) {
+            }
+
+            @Override
+            public void handleModifyEvent(CatalogModifyEvent event) {
+            }
+
+            @Override
+            public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+            }
+
+            @Override
+            public void handleResourceLoadEvent(CatalogResourceLoadEvent event) {
+                events.add(event);
+            }
+
+            @Override
+            public void reloaded() {
+            }
+        };
+        catalog.addListener(listener);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<DataAccess>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(executor.submit(() -> (DataAccess) pool.getDataStore(store)));
+            }
+            DataAccess first = futures.get(0).get();
+            for (Future<DataAccess> future : futures) {
+                assertSame(first, future.get());
+            }
+
+            // a single load happened, and it was reported
+            assertEquals(1, events.size());
+            assertEquals(store.getId(), events.get(0).getSource().getId());
+            assertTrue(events.get(0).getLoadTime() >= 0);
+            CacheStatistics statistics = pool.getCacheStatistics().get("dataStores");
+            assertEquals(1, statistics.getLoads());
+        } finally {
+            executor.shutdown();
+            catalog.removeListener(listener);
+            pool.dispose();
+        }
+    }
 }
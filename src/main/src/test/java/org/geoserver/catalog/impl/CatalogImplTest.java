@@ -22,6 +22,7 @@ import static org.junit.Assert.fail;
 
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
@@ -66,6 +67,7 @@ import org.geoserver.catalog.event.CatalogModifyEvent;
 import org.geoserver.catalog.event.CatalogPostModifyEvent;
 import org.geoserver.catalog.event.CatalogRemoveEvent;
 import org.geoserver.catalog.util.CloseableIterator;
+import org.geoserver.ows.util.OwsUtils;
 import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.util.logging.Logging;
 import org.junit.Before;
@@ -2949,6 +2951,69 @@ public class CatalogImplTest {
         assertEquals(props, actual);
     }
 
+    @Test
+    public void testIndexedListing() {
+        addDataStore();
+        addNamespace();
+
+        StyleInfo s1;
+        catalog.add(s1 = newStyle("s1", "s1Filename"));
+        List<FeatureTypeInfo> fts = new ArrayList<>();
+        for (String name : new String[] { "ft3", "ft1", "other", "ft2", "ft4" }) {
+            FeatureTypeInfo ft = newFeatureType(name, ds);
+            catalog.add(ft);
+            catalog.add(newLayer(catalog.getFeatureTypeByName(ns.getPrefix(), name), s1));
+        }
+
+        // equality on an indexed property, sorted on another indexed one, paged
+        Filter filter = equal("resource.store.id", ds.getId());
+        assertEquals(5, catalog.count(LayerInfo.class, filter));
+        assertEquals(Arrays.asList("ft2", "ft3"),
+                names(catalog.list(LayerInfo.class, filter, 1, 2, asc("name"))));
+        assertEquals(Arrays.asList("other", "ft4"),
+                names(catalog.list(LayerInfo.class, filter, 0, 2, desc("resource.name"))));
+
+        // prefix scan
+        filter = Predicates.factory.like(Predicates.factory.property("name"), "ft*");
+        assertEquals(Arrays.asList("ft1", "ft2", "ft3", "ft4"),
+                names(catalog.list(FeatureTypeInfo.class, filter, null, null, asc("name"))));
+
+        // derived properties
+        filter = equal("prefixedName", ns.getPrefix() + ":ft1");
+        assertEquals(Arrays.asList("ft1"), names(catalog.list(LayerInfo.class, filter)));
+        filter = equal("workspace.name", ws.getName());
+        assertEquals(1, catalog.count(DataStoreInfo.class, filter));
+        filter = equal("workspace.name", "notThere");
+        assertEquals(0, catalog.count(DataStoreInfo.class, filter));
+
+        // indexes follow modifications
+        FeatureTypeInfo ft2 = catalog.getFeatureTypeByName(ns.getPrefix(), "ft2");
+        ft2.setName("aaa");
+        ft2.setEnabled(false);
+        catalog.save(ft2);
+        assertEquals(0, catalog.count(LayerInfo.class, equal("name", "ft2")));
+        assertEquals(1, catalog.count(LayerInfo.class, equal("name", "aaa")));
+        assertEquals(Arrays.asList("aaa"),
+                names(catalog.list(LayerInfo.class, equal("enabled", false))));
+        assertEquals(Arrays.asList("aaa", "ft1"), names(catalog.list(LayerInfo.class,
+                equal("resource.store.id", ds.getId()), 0, 2, asc("name"))));
+
+        catalog.remove(catalog.getLayerByName("aaa"));
+        assertEquals(0, catalog.count(LayerInfo.class, equal("enabled", false)));
+    }
+
+    private List<String> names(CloseableIterator<? extends CatalogInfo> it) {
+        List<String> result = new ArrayList<>();
+        try {
+            while (it.hasNext()) {
+                result.add((String) OwsUtils.get(it.next(), "name"));
+            }
+        } finally {
+            it.close();
+        }
+        return result;
+    }
+
     @Test 
     public void testFullTextSearch() {
         // test layer title search
@@ -0,0 +1,158 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.GeoServerConfigurationLock;
+import org.geoserver.catalog.CatalogFacade;
+import org.geoserver.catalog.LockingCatalogFacade;
+import org.geoserver.catalog.StyleInfo;
+import org.geotools.util.logging.Logging;
+import org.junit.Test;
+
+/**
+ * Style lookups per second by id and name, under a concurrent writer, through the locking proxy
+ * and a monitor as the facade used to, and straight from the lookup snapshots.
+ */
+public class CatalogInfoLookupBenchmark {
+
+    static final Logger LOGGER = Logging.getLogger(CatalogInfoLookupBenchmark.class);
+
+    static final int STYLES = Integer.getInteger("benchmark.styles", 10000);
+
+    static final int LOOKUPS_PER_THREAD = 1000000;
+
+    static final int[] THREADS = { 1, 8, 32 };
+
+    /**
+     * How lookups and writes reach the facade
+     */
+    interface Access {
+        StyleInfo read(int idx, boolean byName);
+
+        void write(StyleInfo style);
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        DefaultCatalogFacade facade = new DefaultCatalogFacade(new CatalogImpl());
+        String[] ids = new String[STYLES];
+        String[] names = new String[STYLES];
+        for (int i = 0; i < STYLES; i++) {
+            StyleInfoImpl style = new StyleInfoImpl(null);
+            style.setId("style-" + i);
+            style.setName("style" + i);
+            facade.add(style);
+            ids[i] = style.getId();
+            names[i] = style.getName();
+        }
+
+        // the previous read path, a reflective proxy and a monitor shared with the writers
+        CatalogFacade proxy = LockingCatalogFacade.create(facade,
+                new GeoServerConfigurationLock());
+        Object monitor = new Object();
+        Access locked = new Access() {
+
+            @Override
+            public StyleInfo read(int idx, boolean byName) {
+                synchronized (monitor) {
+                    return byName ? proxy.getStyleByName(names[idx]) : proxy.getStyle(ids[idx]);
+                }
+            }
+
+            @Override
+            public void write(StyleInfo style) {
+                synchronized (monitor) {
+                    proxy.add(style);
+                }
+            }
+        };
+        Access snapshot = new Access() {
+
+            @Override
+            public StyleInfo read(int idx, boolean byName) {
+                return byName ? facade.getStyleByName(names[idx]) : facade.getStyle(ids[idx]);
+            }
+
+            @Override
+            public void write(StyleInfo style) {
+                facade.add(style);
+            }
+        };
+
+        // warm up, then measure
+        for (boolean report : new boolean[] { false, true }) {
+            for (int threads : THREADS) {
+                run("locked", locked, ids, names, threads, report);
+                run("snapshot", snapshot, ids, names, threads, report);
+            }
+        }
+    }
+
+    void run(String label, Access access, String[] ids, String[] names, int threads,
+            boolean report) throws Exception {
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong writes = new AtomicLong();
+        Thread writer = new Thread(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (!done.get()) {
+                // replace a random style with a copy of itself
+                int idx = random.nextInt(ids.length);
+                StyleInfoImpl copy = new StyleInfoImpl(null);
+                copy.setId(ids[idx]);
+                copy.setName(names[idx]);
+                access.write(copy);
+                writes.incrementAndGet();
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> futures = new ArrayList<>();
+        writer.start();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(new Callable<Long>() {
+
+                @Override
+                public Long call() throws Exception {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long found = 0;
+                    for (int i = 0; i < LOOKUPS_PER_THREAD; i++) {
+                        if (access.read(random.nextInt(ids.length), (i & 1) == 1) != null) {
+                            found++;
+                        }
+                    }
+                    return found;
+                }
+            }));
+        }
+        long found = 0;
+        for (Future<Long> future : futures) {
+            found += future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        done.set(true);
+        writer.join();
+        executor.shutdown();
+
+        if (report) {
+            LOGGER.log(Level.INFO, String.format(
+                    "%s, %d styles, %d threads: %.0f lookups/s, %d found, %d concurrent writes",
+                    label, ids.length, threads, threads * LOOKUPS_PER_THREAD / (elapsed / 1e9),
+                    found, writes.get()));
+        }
+    }
+}
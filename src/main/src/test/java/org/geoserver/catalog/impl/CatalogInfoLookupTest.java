@@ -0,0 +1,71 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.geoserver.catalog.StyleInfo;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class CatalogInfoLookupTest {
+
+    StyleInfo style(String id, String name) {
+        StyleInfoImpl style = new StyleInfoImpl(null);
+        style.setId(id);
+        style.setName(name);
+        return style;
+    }
+
+    @Test
+    public void testIndexesInSnapshot() {
+        CatalogInfoLookup<StyleInfo> lookup = new CatalogInfoLookup<StyleInfo>(
+                DefaultCatalogFacade.STYLE_NAME_MAPPER).index(String.class, StyleInfo::getName,
+                        "name");
+        StyleInfo line = style("s1", "line");
+        lookup.add(line);
+        CatalogInfoLookup.Snapshot<StyleInfo> before = lookup.snapshot();
+
+        StyleInfo point = style("s2", "point");
+        lookup.add(point);
+        lookup.remove(line);
+
+        // the old snapshot index is still consistent with the old contents
+        PropertyIndex<StyleInfo> oldIndex = before.indexes.get(0);
+        assertEquals(Arrays.asList(line), Lists.newArrayList(oldIndex.scan(true)));
+        assertEquals(0, oldIndex.count("point"));
+
+        PropertyIndex<StyleInfo> index = lookup.getIndex("name");
+        assertEquals(Arrays.asList(point), Lists.newArrayList(index.scan(true)));
+        assertEquals(Collections.emptyList(), Lists.newArrayList(index.equalTo("line")));
+        assertNull(lookup.getIndex("filename"));
+
+        // clearing keeps the index definitions
+        lookup.clear();
+        assertNotNull(lookup.getIndex("name"));
+        assertEquals(0, lookup.getIndex("name").count("point"));
+    }
+
+    @Test
+    public void testReindex() {
+        CatalogInfoLookup<StyleInfo> lookup = new CatalogInfoLookup<StyleInfo>(
+                DefaultCatalogFacade.STYLE_NAME_MAPPER).index(String.class, StyleInfo::getName,
+                        "name");
+        StyleInfo style = style("s1", "line");
+        lookup.add(style);
+        style.setName("polygon");
+        lookup.reindex(style);
+
+        PropertyIndex<StyleInfo> index = lookup.getIndex("name");
+        assertEquals(0, index.count("line"));
+        assertEquals(1, index.count("polygon"));
+    }
+}
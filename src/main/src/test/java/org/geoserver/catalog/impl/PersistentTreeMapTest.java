@@ -0,0 +1,89 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class PersistentTreeMapTest {
+
+    @Test
+    public void testBasicOperations() {
+        PersistentTreeMap<String, Integer> empty = PersistentTreeMap.empty();
+        PersistentTreeMap<String, Integer> map = empty.put("b", 2).put("a", 1).put("c", 3);
+        assertEquals(0, empty.size());
+        assertEquals(3, map.size());
+        assertEquals(Integer.valueOf(2), map.get("b"));
+        assertNull(map.get("d"));
+        assertEquals(Arrays.asList(1, 2, 3),
+                new ArrayList<>(map.values()));
+
+        // modifications do not alter the original
+        PersistentTreeMap<String, Integer> removed = map.remove("b");
+        assertEquals(2, removed.size());
+        assertNull(removed.get("b"));
+        assertEquals(Integer.valueOf(2), map.get("b"));
+
+        // removing a missing key returns the same map
+        assertSame(removed, removed.remove("b"));
+    }
+
+    @Test
+    public void testAgainstTreeMap() {
+        Random random = new Random(0);
+        TreeMap<Integer, Integer> reference = new TreeMap<>();
+        PersistentTreeMap<Integer, Integer> map = PersistentTreeMap.empty();
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(1000);
+            if (random.nextBoolean()) {
+                reference.put(key, i);
+                map = map.put(key, i);
+            } else {
+                reference.remove(key);
+                map = map.remove(key);
+            }
+            if (i % 100 == 0) {
+                assertEquals(reference.size(), map.size());
+                assertEquals(new ArrayList<>(reference.values()), new ArrayList<>(map.values()));
+            }
+        }
+    }
+
+    @Test
+    public void testOrderedViews() {
+        Random random = new Random(0);
+        TreeMap<Integer, Integer> reference = new TreeMap<>();
+        PersistentTreeMap<Integer, Integer> map = PersistentTreeMap.empty();
+        for (int i = 0; i < 1000; i++) {
+            int key = random.nextInt(500) * 2;
+            reference.put(key, i);
+            map = map.put(key, i);
+        }
+        assertEquals(new ArrayList<>(reference.descendingMap().values()),
+                Lists.newArrayList(map.descendingValues()));
+        // tails starting on existing keys, missing ones, and past the end
+        for (int from : new int[] { -1, 0, 1, 500, 501, 998, 999, 2000 }) {
+            List<Integer> expected = new ArrayList<>(reference.tailMap(from, true).keySet());
+            List<Integer> actual = new ArrayList<>();
+            for (Map.Entry<Integer, Integer> entry : map.tailEntries(from)) {
+                actual.add(entry.getKey());
+                assertEquals(reference.get(entry.getKey()), entry.getValue());
+            }
+            assertEquals(expected, actual);
+        }
+    }
+}
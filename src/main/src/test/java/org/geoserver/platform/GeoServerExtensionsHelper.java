@@ -52,6 +52,7 @@ public class GeoServerExtensionsHelper {
         GeoServerExtensions.singletonBeanCache.clear();
         GeoServerExtensions.propertyCache.clear();
         GeoServerExtensions.fileCache.clear();
+        GeoServerExtensions.generation.incrementAndGet();
     }
     /**
      * Sets the web application context to be used for looking up extensions.
@@ -99,6 +100,7 @@ public class GeoServerExtensionsHelper {
             Class<?> type = bean.getClass();
             addToCache(GeoServerExtensions.extensionsCache, type, name);
         }
+        GeoServerExtensions.generation.incrementAndGet();
     }
     
     static <T> void addToCache(Map<T, String[]> cache, T key, String name) {
@@ -4,14 +4,20 @@
  * application directory.
  */
 package org.geoserver.security.impl;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+
 import org.geoserver.catalog.LayerGroupInfo;
 import org.geoserver.catalog.LayerInfo;
 import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
 import org.geoserver.security.AccessMode;
 import org.geoserver.security.CatalogMode;
 import org.geoserver.security.DataAccessLimits;
@@ -22,7 +28,9 @@ import org.geoserver.security.WorkspaceAccessLimits;
 import org.junit.Before;
 import org.junit.Test;
 import org.opengis.filter.Filter;
+import org.springframework.security.authentication.TestingAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 
 
 public class DefaultResourceAccessManagerAuthTest extends AbstractAuthorizationTest {
@@ -56,6 +64,54 @@ public class DefaultResourceAccessManagerAuthTest extends AbstractAuthorizationT
         checkUserAccessFlat(manager, root, true, true);
     }
     
+    @Test
+    public void testDecisionCache() throws Exception {
+        DefaultResourceAccessManager manager = buildAccessManager("lockedDown.properties");
+        assertFalse(manager.canAccess(roUser, states, AccessMode.READ));
+        assertTrue(manager.canAccess(rwUser, states, AccessMode.READ));
+        long size = manager.decisions.size();
+        assertTrue(size > 0);
+
+        // another user with the same roles shares the decisions
+        Authentication otherReader = new TestingAuthenticationToken("ro2", "secret",
+                Arrays.asList(new GrantedAuthority[] { new GeoServerRole("READER") }));
+        assertFalse(manager.canAccess(otherReader, states, AccessMode.READ));
+        assertEquals(size, manager.decisions.size());
+
+        // the security filters are cached too
+        manager.getSecurityFilter(roUser, LayerInfo.class);
+        assertEquals(size + 1, manager.decisions.size());
+        manager.getSecurityFilter(otherReader, LayerInfo.class);
+        assertEquals(size + 1, manager.decisions.size());
+    }
+
+    @Test
+    public void testDecisionCacheInvalidation() throws Exception {
+        DefaultResourceAccessManager manager = buildAccessManager("lockedDown.properties");
+        DefaultResourceAccessManager.DecisionCacheInvalidator invalidator;
+        invalidator = manager.new DecisionCacheInvalidator();
+        manager.canAccess(roUser, states, AccessMode.READ);
+
+        // styles do not take part in the decisions
+        CatalogAddEvent styleAdded = createNiceMock(CatalogAddEvent.class);
+        expect(styleAdded.getSource()).andReturn(pointStyle).anyTimes();
+        replay(styleAdded);
+        invalidator.handleAddEvent(styleAdded);
+        assertEquals(1, manager.decisions.size());
+
+        CatalogAddEvent groupAdded = createNiceMock(CatalogAddEvent.class);
+        expect(groupAdded.getSource()).andReturn(namedTreeA).anyTimes();
+        replay(groupAdded);
+        invalidator.handleAddEvent(groupAdded);
+        assertEquals(0, manager.decisions.size());
+
+        // rules reloaded, the in memory dao does not change its last modified date
+        manager.canAccess(roUser, states, AccessMode.READ);
+        manager.lastLoaded = Long.MIN_VALUE;
+        manager.canAccess(rwUser, states, AccessMode.READ);
+        assertEquals(1, manager.decisions.size());
+    }
+
     private void checkUserAccessFlat(ResourceAccessManager manager, Authentication user, boolean expectedRead, boolean expectedWrite) {
         // states as a layer
         assertEquals(expectedRead, canAccess(manager, user, statesLayer, AccessMode.READ));
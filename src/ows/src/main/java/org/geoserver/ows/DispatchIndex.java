@@ -0,0 +1,208 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.Operation;
+
+/**
+ * A precompiled index of the extensions taking part in the dispatch of a request:
+ * {@link Response}, {@link KvpParser}, {@link KvpRequestReader} and {@link XmlRequestReader}.
+ * <p>
+ * Looking up and filtering the whole list of extensions for each request is expensive, the index
+ * does it once per extensions generation (see {@link GeoServerExtensions#getGeneration()}), so
+ * it's rebuilt when the application context is set or refreshed. The tables are built lazily, and
+ * keyed only by bounded values (classes, and names declared by the extensions), never by raw
+ * request values.
+ * </p>
+ * <p>
+ * The lookups return candidates in the same order as {@link GeoServerExtensions#extensions(Class)},
+ * the checks depending on the actual request, such as {@link Response#canHandle(Operation)},
+ * are left to the caller, who must not modify the returned lists. Extensions whose output
+ * formats can change at runtime must call {@link #invalidate()} when they do.
+ * </p>
+ */
+public final class DispatchIndex {
+
+    static volatile DispatchIndex current;
+
+    /**
+     * Returns the index for the current set of extensions
+     */
+    public static DispatchIndex get() {
+        DispatchIndex index = current;
+        long generation = GeoServerExtensions.getGeneration();
+        if (index == null || index.generation != generation) {
+            index = new DispatchIndex(generation);
+            current = index;
+        }
+        return index;
+    }
+
+    /**
+     * Drops the current index, it will be rebuilt on the next lookup
+     */
+    public static void invalidate() {
+        current = null;
+    }
+
+    final long generation;
+
+    volatile List<Response> responses;
+
+    final Map<Class<?>, ResponseTable> responseTables = new ConcurrentHashMap<>();
+
+    volatile Map<String, List<KvpParser>> kvpParsers;
+
+    volatile Collection<KvpRequestReader> kvpReaders;
+
+    final Map<Class<?>, KvpRequestReader> kvpReaderTable = new ConcurrentHashMap<>();
+
+    volatile Map<String, List<XmlRequestReader>> xmlReaders;
+
+    DispatchIndex(long generation) {
+        this.generation = generation;
+    }
+
+    /**
+     * Returns the responses whose binding is compatible with the result, and that support the
+     * output format, if any, ignoring case
+     */
+    public List<Response> getResponses(Class<?> resultClass, String outputFormat) {
+        ResponseTable table = responseTables.get(resultClass);
+        if (table == null) {
+            List<Response> responses = this.responses;
+            if (responses == null) {
+                responses = new ArrayList<>(GeoServerExtensions.extensions(Response.class));
+                this.responses = responses;
+            }
+            table = new ResponseTable(resultClass, responses);
+            responseTables.put(resultClass, table);
+        }
+        return table.get(outputFormat);
+    }
+
+    /**
+     * Returns the parsers for the given kvp key, ignoring case. The parsers still need to be
+     * matched against the request service, version and request
+     */
+    public List<KvpParser> getKvpParsers(String key) {
+        Map<String, List<KvpParser>> parsers = kvpParsers;
+        if (parsers == null) {
+            parsers = new HashMap<>();
+            for (KvpParser parser : GeoServerExtensions.extensions(KvpParser.class)) {
+                // parsers without a key cannot match anything
+                if (parser.getKey() != null) {
+                    parsers.computeIfAbsent(parser.getKey().toLowerCase(),
+                            k -> new ArrayList<>()).add(parser);
+                }
+            }
+            kvpParsers = parsers;
+        }
+        List<KvpParser> result = key == null ? null : parsers.get(key.toLowerCase());
+        return result == null ? Collections.<KvpParser>emptyList() : result;
+    }
+
+    /**
+     * Returns the most specific kvp reader for the request type, or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public KvpRequestReader getKvpRequestReader(Class<?> type) {
+        KvpRequestReader reader = kvpReaderTable.get(type);
+        if (reader == null) {
+            Collection<KvpRequestReader> readers = kvpReaders;
+            if (readers == null) {
+                readers = Dispatcher.loadKvpRequestReaders();
+                kvpReaders = readers;
+            }
+            reader = Dispatcher.findKvpRequestReader(type, readers);
+            if (reader != null) {
+                kvpReaderTable.put(type, reader);
+            }
+        }
+        return reader;
+    }
+
+    /**
+     * Returns the xml reader for the given request details, or {@code null}, see
+     * {@link Dispatcher#findXmlReader(String, String, String, String)}
+     */
+    @SuppressWarnings("unchecked")
+    public XmlRequestReader getXmlReader(String namespace, String element, String serviceId,
+            String version) {
+        Map<String, List<XmlRequestReader>> readers = xmlReaders;
+        if (readers == null) {
+            readers = new HashMap<>();
+            for (XmlRequestReader reader : (Collection<XmlRequestReader>) Dispatcher
+                    .loadXmlReaders()) {
+                readers.computeIfAbsent(reader.getElement().getLocalPart().toLowerCase(),
+                        k -> new ArrayList<>()).add(reader);
+            }
+            xmlReaders = readers;
+        }
+        List<XmlRequestReader> candidates = element == null ? null
+                : readers.get(element.toLowerCase());
+        if (candidates == null) {
+            candidates = Collections.emptyList();
+        }
+        return Dispatcher.findXmlReader(namespace, element, serviceId, version, candidates);
+    }
+
+    /**
+     * The responses for a given result class, by output format
+     */
+    static class ResponseTable {
+
+        final List<Response> all = new ArrayList<>();
+
+        /**
+         * The responses not declaring any output format, they match all of them
+         */
+        final List<Response> anyFormat = new ArrayList<>();
+
+        final Map<String, List<Response>> byFormat = new HashMap<>();
+
+        ResponseTable(Class<?> resultClass, List<Response> responses) {
+            for (Response response : responses) {
+                if (!response.getBinding().isAssignableFrom(resultClass)) {
+                    continue;
+                }
+                all.add(response);
+                Set<String> outputFormats = response.getOutputFormats();
+                if (outputFormats.isEmpty()) {
+                    anyFormat.add(response);
+                    for (List<Response> formatResponses : byFormat.values()) {
+                        formatResponses.add(response);
+                    }
+                } else {
+                    for (String outputFormat : outputFormats) {
+                        List<Response> formatResponses = byFormat.computeIfAbsent(
+                                outputFormat.toLowerCase(), k -> new ArrayList<>(anyFormat));
+                        if (!formatResponses.contains(response)) {
+                            formatResponses.add(response);
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Response> get(String outputFormat) {
+            if (outputFormat == null) {
+                return all;
+            }
+            List<Response> result = byFormat.get(outputFormat.toLowerCase());
+            return result != null ? result : anyFormat;
+        }
+    }
+}
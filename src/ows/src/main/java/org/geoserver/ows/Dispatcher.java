@@ -26,7 +26,6 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -878,37 +877,15 @@ public class Dispatcher extends AbstractController {
         throws Throwable {
         //step 6: write response
         if (result != null) {
-            //look up respones
-            List responses = GeoServerExtensions.extensions(Response.class);
-
-            //first filter by binding, and canHandle
-         O: for (Iterator itr = responses.iterator(); itr.hasNext();) {
-                Response response = (Response) itr.next();
-
-                Class binding = response.getBinding();
-
-                if (!binding.isAssignableFrom(result.getClass())
-                        || !response.canHandle(opDescriptor)) {
-                    itr.remove();
-
-                    continue;
-                }
-
-                //filter by output format
-                Set outputFormats = response.getOutputFormats();
-
-                if ((req.getOutputFormat() != null) && (!outputFormats.isEmpty())
-                        && !outputFormats.contains(req.getOutputFormat())) {
-                    
-                    //must do a case insensitive check
-                    for ( Iterator of = outputFormats.iterator(); of.hasNext(); ) {
-                        String outputFormat = (String) of.next();
-                        if( req.getOutputFormat().equalsIgnoreCase( outputFormat ) ) {
-                            continue O;
-                        }
-                    }
-                    
-                    itr.remove();
+            //look up respones, already filtered by binding and output format
+            List<Response> candidates = DispatchIndex.get().getResponses(result.getClass(),
+                    req.getOutputFormat());
+
+            //then filter by canHandle
+            List<Response> responses = new ArrayList<Response>(candidates.size());
+            for (Response response : candidates) {
+                if (response.canHandle(opDescriptor)) {
+                    responses.add(response);
                 }
             }
 
@@ -1226,8 +1203,10 @@ public class Dispatcher extends AbstractController {
     }
 
     public static KvpRequestReader findKvpRequestReader(Class type) {
-        Collection kvpReaders = loadKvpRequestReaders();
+        return DispatchIndex.get().getKvpRequestReader(type);
+    }
 
+    static KvpRequestReader findKvpRequestReader(Class type, Collection kvpReaders) {
         List matches = new ArrayList();
 
         for (Iterator itr = kvpReaders.iterator(); itr.hasNext();) {
@@ -1297,8 +1276,11 @@ public class Dispatcher extends AbstractController {
      * @return An {@link XmlRequestReader} capable of reading the request body
      */
     public static XmlRequestReader findXmlReader(String namespace, String element, String serviceId, String ver) {
-        Collection xmlReaders = loadXmlReaders();
+        return DispatchIndex.get().getXmlReader(namespace, element, serviceId, ver);
+    }
 
+    static XmlRequestReader findXmlReader(String namespace, String element, String serviceId,
+            String ver, Collection xmlReaders) {
         //first just match on namespace, element
         List matches = new ArrayList();
 
@@ -22,6 +22,7 @@ import java.util.StringTokenizer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.geoserver.ows.DispatchIndex;
 import org.geoserver.ows.KvpParser;
 import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ServiceException;
@@ -389,15 +390,12 @@ public class KvpUtils {
      */
     public static List<Throwable> parse(Map kvp) {
 
-        // look up parser objects
-        List<KvpParser> parsers = GeoServerExtensions.extensions(KvpParser.class);
+        // look up parser objects, indexed by key
+        DispatchIndex index = DispatchIndex.get();
 
-        //strip out parsers which do not match current service/request/version
         String service = KvpUtils.getSingleValue(kvp, "service");
         String version = KvpUtils.getSingleValue(kvp, "version");
         String request = KvpUtils.getSingleValue(kvp, "request");
-        
-        purgeParsers(parsers, service, version, request);
 
         // parser the kvp's
         ArrayList<Throwable> errors = new ArrayList<Throwable>();
@@ -405,8 +403,15 @@ public class KvpUtils {
             Map.Entry<Object, Object> entry = itr.next();
             String key = (String) entry.getKey();
 
-            // find the parser for this key value pair
-            KvpParser parser = findParser(key, service, request, version, parsers);
+            // find the parser for this key value pair, among the ones matching the current
+            // service/request/version
+            KvpParser parser = null;
+            List<KvpParser> candidates = index.getKvpParsers(key);
+            if (!candidates.isEmpty()) {
+                List<KvpParser> parsers = new ArrayList<KvpParser>(candidates);
+                purgeParsers(parsers, service, version, request);
+                parser = findParser(key, service, request, version, parsers);
+            }
 
             // parse the value
             Object parsed = null;
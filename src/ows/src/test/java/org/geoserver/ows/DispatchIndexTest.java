@@ -0,0 +1,111 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.Operation;
+import org.geoserver.platform.ServiceException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.StaticApplicationContext;
+
+public class DispatchIndexTest {
+
+    StaticApplicationContext context;
+
+    static class TestResponse extends Response {
+
+        public TestResponse(Class<?> binding, String... outputFormats) {
+            super(binding, new HashSet<String>(Arrays.asList(outputFormats)));
+        }
+
+        @Override
+        public String getMimeType(Object value, Operation operation) throws ServiceException {
+            return "text/plain";
+        }
+
+        @Override
+        public void write(Object value, OutputStream output, Operation operation)
+                throws IOException, ServiceException {
+        }
+    }
+
+    @Before
+    public void setUp() {
+        context = new StaticApplicationContext();
+    }
+
+    @After
+    public void tearDown() {
+        new GeoServerExtensions().setApplicationContext(null);
+    }
+
+    void init(Object... beans) {
+        for (int i = 0; i < beans.length; i++) {
+            context.getBeanFactory().registerSingleton("bean" + i, beans[i]);
+        }
+        context.refresh();
+        new GeoServerExtensions().setApplicationContext(context);
+    }
+
+    @Test
+    public void testResponses() {
+        Response text = new TestResponse(Message.class, "text/plain");
+        Response xml = new TestResponse(Message.class, "text/xml", "application/xml");
+        Response any = new TestResponse(Object.class);
+        Response other = new TestResponse(String.class, "text/plain");
+        init(text, xml, any, other);
+
+        DispatchIndex index = DispatchIndex.get();
+        assertEquals(Arrays.asList(text, xml, any), index.getResponses(Message.class, null));
+        assertEquals(Arrays.asList(text, any), index.getResponses(Message.class, "text/plain"));
+        // case insensitive
+        assertEquals(Arrays.asList(xml, any),
+                index.getResponses(Message.class, "Application/XML"));
+        // unknown formats only match the responses not declaring any
+        assertEquals(Arrays.asList(any), index.getResponses(Message.class, "image/png"));
+        assertEquals(Arrays.asList(any, other), index.getResponses(String.class, "text/plain"));
+    }
+
+    @Test
+    public void testReaders() {
+        init(new MessageKvpRequestReader(), new MessageXmlParser(), new MessageKvpParser());
+
+        DispatchIndex index = DispatchIndex.get();
+        assertTrue(index.getKvpRequestReader(Message.class) instanceof MessageKvpRequestReader);
+        assertNull(index.getKvpRequestReader(String.class));
+        assertTrue(index.getXmlReader(null, "Hello", "hello", null) instanceof MessageXmlParser);
+        assertNull(index.getXmlReader(null, "Goodbye", "hello", null));
+        assertEquals(1, index.getKvpParsers("MESSAGE").size());
+        assertTrue(index.getKvpParsers("other").isEmpty());
+    }
+
+    @Test
+    public void testRebuild() {
+        init(new TestResponse(Message.class));
+        DispatchIndex index = DispatchIndex.get();
+        assertSame(index, DispatchIndex.get());
+
+        // a new context, a new index
+        new GeoServerExtensions().setApplicationContext(context);
+        assertNotSame(index, DispatchIndex.get());
+
+        index = DispatchIndex.get();
+        DispatchIndex.invalidate();
+        assertNotSame(index, DispatchIndex.get());
+    }
+}
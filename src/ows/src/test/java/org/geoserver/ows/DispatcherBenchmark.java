@@ -0,0 +1,117 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.Operation;
+import org.geoserver.platform.Service;
+import org.geotools.util.Version;
+import org.geotools.util.logging.Logging;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.context.support.StaticApplicationContext;
+
+/**
+ * Response lookup time, scanning the {@link Response} beans or using the {@link DispatchIndex}.
+ */
+public class DispatcherBenchmark {
+
+    static final Logger LOGGER = Logging.getLogger(DispatcherBenchmark.class);
+
+    static final int FORMATS = Integer.getInteger("benchmark.formats", 150);
+
+    static final int LOOKUPS = 100000;
+
+    @After
+    public void tearDown() {
+        new GeoServerExtensions().setApplicationContext(null);
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        StaticApplicationContext context = new StaticApplicationContext();
+        for (int i = 0; i < FORMATS; i++) {
+            context.getBeanFactory().registerSingleton("response" + i,
+                    new DispatchIndexTest.TestResponse(Message.class, "format/" + i));
+        }
+        context.refresh();
+        new GeoServerExtensions().setApplicationContext(context);
+
+        Service service = new Service("hello", new HelloWorld(), new Version("1.0.0"), null);
+        Operation operation = new Operation("hello", service, null,
+                new Object[] { new Message("Hello world!") });
+        Object result = new Message("Hello world!");
+
+        // warm up, then measure
+        for (boolean report : new boolean[] { false, true }) {
+            long scanTime = 0, indexTime = 0;
+            for (int i = 0; i < LOOKUPS; i++) {
+                String outputFormat = "FORMAT/" + (i % FORMATS);
+
+                long start = System.nanoTime();
+                if (scan(result, outputFormat, operation).size() != 1) {
+                    throw new IllegalStateException("Expected one response");
+                }
+                scanTime += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                if (lookup(result, outputFormat, operation).size() != 1) {
+                    throw new IllegalStateException("Expected one response");
+                }
+                indexTime += System.nanoTime() - start;
+            }
+
+            if (report) {
+                LOGGER.log(Level.INFO, String.format(
+                        "%d output formats: scan %.2f us/request, index %.2f us/request",
+                        FORMATS, scanTime / 1e3 / LOOKUPS, indexTime / 1e3 / LOOKUPS));
+            }
+        }
+    }
+
+    List<Response> lookup(Object result, String outputFormat, Operation operation) {
+        List<Response> candidates = DispatchIndex.get().getResponses(result.getClass(),
+                outputFormat);
+        List<Response> responses = new ArrayList<Response>(candidates.size());
+        for (Response response : candidates) {
+            if (response.canHandle(operation)) {
+                responses.add(response);
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * The lookup the dispatcher used to perform on each request
+     */
+    List<Response> scan(Object result, String outputFormat, Operation operation) {
+        List<Response> responses = GeoServerExtensions.extensions(Response.class);
+        O: for (Iterator<Response> itr = responses.iterator(); itr.hasNext();) {
+            Response response = itr.next();
+            if (!response.getBinding().isAssignableFrom(result.getClass())
+                    || !response.canHandle(operation)) {
+                itr.remove();
+                continue;
+            }
+            Set<String> outputFormats = response.getOutputFormats();
+            if (!outputFormats.isEmpty() && !outputFormats.contains(outputFormat)) {
+                for (String format : outputFormats) {
+                    if (outputFormat.equalsIgnoreCase(format)) {
+                        continue O;
+                    }
+                }
+                itr.remove();
+            }
+        }
+        return responses;
+    }
+}
@@ -15,6 +15,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -80,6 +81,12 @@ public class GeoServerExtensions implements ApplicationContextAware, Application
      */
     static SoftValueHashMap<Class, List<Object>> spiCache = new SoftValueHashMap<Class, List<Object>>(40);
     
+    /**
+     * Incremented every time the set of extensions might have changed, allows code caching
+     * lookups over the extensions to tell when they need to be redone
+     */
+    static final AtomicLong generation = new AtomicLong();
+
     /**
      * Flag to identify use of spring context via {@link #setApplicationContext(ApplicationContext)} an
      * enable additional consistency checks for missing extensions.
@@ -110,6 +117,17 @@ public class GeoServerExtensions implements ApplicationContextAware, Application
         extensionsCache.clear();
         singletonBeanCache.clear();
         propertyCache.clear();
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Returns the current extensions generation, a number that changes every time the set of
+     * extensions might have changed (context set or refreshed). Code caching results computed
+     * out of the extensions can compare it with the one they were computed at to tell when they
+     * are stale.
+     */
+    public static long getGeneration() {
+        return generation.get();
     }
 
     /**
@@ -379,6 +397,7 @@ public class GeoServerExtensions implements ApplicationContextAware, Application
         if(event instanceof ContextRefreshedEvent) { 
             extensionsCache.clear();
             singletonBeanCache.clear();
+            generation.incrementAndGet();
         }
     }
     
@@ -6,19 +6,36 @@
 package org.geoserver.platform.resource;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.geoserver.platform.resource.ResourceNotification.Kind;
+import org.geotools.util.logging.Logging;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
@@ -26,8 +43,14 @@ import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 /**
  * Active object (using a ScheduledExecutorService) used to watch file system for changes.
  * <p>
- * This implementation currently polls the file system and should be updated with Java 7 WatchService when available. The internal design is similar
- * to WatchService, WatchKey and WatchEvent in order to facilitate this transition.
+ * The directories containing the watched files are registered with the native {@link WatchService}, native events are only used as
+ * a trigger: the events for a directory are coalesced for a short while, after which the watches interested in that directory are
+ * checked against the file system and notified, so that a burst of changes results in a single notification per watch.
+ * <p>
+ * File systems that do not support native watching (e.g., network file systems, or platforms whose WatchService is itself
+ * polling based) and files whose directory does not exist yet are polled instead. Polling is adaptive, the check interval of each
+ * file starts at the configured delay and doubles, up to {@value #MAX_POLL_BACKOFF} times, every time no change is found. Native
+ * watching can be disabled altogether setting the {@value #NATIVE_WATCH_PROPERTY} system property to false.
  * <p>
  * This implementation makes a few concessions to being associated with ResourceStore, reporting changes with resource paths rather than files.
  * 
@@ -98,6 +121,15 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
         boolean exsists;
         
         File[] contents; // directory contents at last check
+        
+        /** Directories registered with the native watch service on behalf of this watch */
+        Set<Path> registered = Collections.emptySet();
+        
+        /** Current adaptive polling interval, in milliseconds */
+        long pollInterval;
+        
+        /** Next time the file should be polled */
+        long nextPoll;
 
         public Watch(File file, String path) {
             this.file = file;
@@ -219,6 +251,10 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
                 List<File> removed = new ArrayList<File>(files.length);
                 List<File> created = new ArrayList<File>(files.length);
                 List<File> modified = new ArrayList<File>(files.length);
+                if (this.contents == null) {
+                    // directory did not exist when the watch was created
+                    this.contents = new File[0];
+                }
 
                 removed.addAll(Arrays.asList(this.contents));
                 removed.removeAll(Arrays.asList(files));
@@ -278,47 +314,137 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
         }
     }
 
+    private static final Logger LOGGER = Logging.getLogger(FileSystemWatcher.class);
+    
+    /**
+     * System property that can be used to disable native file system watching
+     */
+    static final String NATIVE_WATCH_PROPERTY = "org.geoserver.platform.resource.FileSystemWatcher.nativeWatch";
+    
+    /**
+     * Maximum growth factor of the adaptive polling interval
+     */
+    static final int MAX_POLL_BACKOFF = 8;
+    
+    /**
+     * File store types that are known not to deliver native events for remote changes 
+     */
+    static final Set<String> POLLED_FILE_STORES = new HashSet<>(Arrays.asList("nfs", "nfs4",
+            "cifs", "smbfs", "smb2", "afs", "ncpfs", "9p", "fuse.sshfs", "vboxsf", "prl_fs"));
+    
+    /**
+     * Native registration of a directory, along with the watches interested in it
+     */
+    static class DirectoryWatch {
+        final WatchKey key;
+
+        final Set<Watch> watches = new CopyOnWriteArraySet<>();
+
+        DirectoryWatch(WatchKey key) {
+            this.key = key;
+        }
+    }
+
     private ScheduledExecutorService pool;
 
     private FileExtractor fileExtractor;
 
     protected long lastmodified;
 
-    CopyOnWriteArrayList<Watch> watchers = new CopyOnWriteArrayList<Watch>();
+    /** All watches, by notification path */
+    final Map<String, Watch> watchers = new ConcurrentHashMap<>();
+    
+    /** Watches that need to be polled, as they cannot be watched natively */
+    final Set<Watch> polled = ConcurrentHashMap.newKeySet();
+    
+    /** Directories registered with the native watch service */
+    final Map<Path, DirectoryWatch> directories = new ConcurrentHashMap<>();
+    
+    /** Cache of the native watching support, by directory */
+    final Map<Path, Boolean> nativeSupport = new ConcurrentHashMap<>();
+    
+    /** Directories that received native events, waiting to be checked */
+    final Set<Path> dirty = ConcurrentHashMap.newKeySet();
+    
+    final AtomicBoolean flushScheduled = new AtomicBoolean();
+    
+    /** How long native events are accumulated before checking the directories, in milliseconds */
+    long coalesceDelay = 100;
+    
+    boolean nativeWatch = !"false".equalsIgnoreCase(System.getProperty(NATIVE_WATCH_PROPERTY));
+    
+    private WatchService watchService;
+    
+    private Thread watchThread;
     
     /**
-     * Note we have a single runnable here to review all outstanding Watch instances.
-     * The focus is on using minimal system resources while we wait for Java 7 WatchService
-     * (to be more efficient).
+     * Reviews the watches that cannot be watched natively, each one at its own adaptive interval.
      */
     private Runnable sync = new Runnable() {
         @Override
         public void run() {
             long now = System.currentTimeMillis();
-            for (Watch watch : watchers) {
+            long baseInterval = Math.max(1, unit.toMillis(delay));
+            for (Watch watch : polled) {
                 if( watch.getListeners().isEmpty()){
-                    watchers.remove(watch);
+                    unwatch(watch);
+                    continue;
+                }
+                if (now < watch.nextPoll) {
                     continue;
                 }
-                Delta delta = watch.changed(now);
+                Delta delta = check(watch, now);
                 if (delta != null) {
-                    
-                    /** Created based on created/removed/modified files */
-                    List<ResourceNotification.Event> events = ResourceNotification.delta(
-                            watch.file, delta.created, delta.removed, delta.modified);
-                    
-                    ResourceNotification notify = new ResourceNotification( watch.getPath(),
-                            delta.kind, watch.last, events);
-                    
-                    for (ResourceListener listener : watch.getListeners()) {
-                        try {
-                            listener.changed(notify);
-                        } catch (Throwable t) {
-                            Logger logger = Logger.getLogger(listener.getClass().getPackage()
-                                    .getName());
-                            logger.log(Level.FINE,
-                                    "Unable to notify " + watch + ":" + t.getMessage(), t);
-                        }
+                    watch.pollInterval = baseInterval;
+                } else {
+                    watch.pollInterval = Math.min(Math.max(watch.pollInterval, baseInterval) * 2,
+                            baseInterval * MAX_POLL_BACKOFF);
+                }
+                watch.nextPoll = now + watch.pollInterval;
+                // the file or its directory might have been created, try again to watch natively
+                if (register(watch)) {
+                    polled.remove(watch);
+                }
+            }
+        }
+    };
+    
+    /**
+     * Checks the watches interested in directories that received native events
+     */
+    private Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled.set(false);
+            Set<Watch> review = new LinkedHashSet<>();
+            for (Path dir : dirty) {
+                dirty.remove(dir);
+                DirectoryWatch dw = directories.get(dir);
+                if (dw == null) {
+                    continue;
+                }
+                review.addAll(dw.watches);
+                if (!dw.key.isValid()) {
+                    // directory removed or no longer accessible, fall back on polling
+                    for (Watch watch : dw.watches) {
+                        unregister(watch);
+                        polled.add(watch);
+                    }
+                }
+            }
+            long now = System.currentTimeMillis();
+            for (Watch watch : review) {
+                if (watch.getListeners().isEmpty()) {
+                    unwatch(watch);
+                    continue;
+                }
+                Delta delta = check(watch, now);
+                if (delta != null && delta.kind != Kind.ENTRY_MODIFY && !polled.contains(watch)) {
+                    // the file turned into a directory or the other way around, the set of 
+                    // directories of interest might have changed
+                    unregister(watch);
+                    if (!register(watch)) {
+                        polled.add(watch);
                     }
                 }
             }
@@ -340,7 +466,8 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
     /**
      * FileSystemWatcher used to track file changes.
      * <p>
-     * Internally a single threaded schedule executor is used to monitor files.
+     * Internally a single threaded schedule executor is used to check and notify changes, while
+     * a separate daemon thread waits for the native file system events.
      */
     FileSystemWatcher(FileExtractor fileExtractor) {
         this.pool = Executors.newSingleThreadScheduledExecutor(tFactory);
@@ -360,10 +487,9 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
         if( file == null || path == null ){
             return null;
         }
-        for( Watch watch : watchers ){
-            if( watch.isMatch(file,path)){
-                return watch;
-            }
+        Watch watch = watchers.get(path);
+        if( watch != null && watch.isMatch(file,path)){
+            return watch;
         }
         return null; // not found
     }
@@ -378,7 +504,12 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
         Watch watch = watch( file, path );
         if( watch == null ){
             watch = new Watch(file, path);
-            watchers.add(watch);
+            watchers.put(path, watch);
+            if (!register(watch)) {
+                watch.pollInterval = unit.toMillis(delay);
+                watch.nextPoll = System.currentTimeMillis() + watch.pollInterval;
+                polled.add(watch);
+            }
             if( monitor == null){
                 monitor = pool.scheduleWithFixedDelay(sync, delay, delay, unit);
             }                
@@ -399,7 +530,7 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
         if( watch != null ){
             watch.removeListener(listener);
             if( watch.getListeners().isEmpty()){
-                removed = watchers.remove(watch);
+                removed = unwatch(watch);
             }
         }
         if (removed && watchers.isEmpty()) {
@@ -410,9 +541,214 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
         }
         return removed;
     }
+    
+    /**
+     * Stops watching the file, returns true if the watch was active
+     */
+    private synchronized boolean unwatch(Watch watch) {
+        boolean removed = watchers.remove(watch.getPath(), watch);
+        polled.remove(watch);
+        unregister(watch);
+        return removed;
+    }
+    
+    /**
+     * Checks the watch for changes, notifying its listeners if any is found
+     */
+    private Delta check(Watch watch, long now) {
+        Delta delta;
+        try {
+            delta = watch.changed(now);
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Failed to check " + watch + " for changes", e);
+            return null;
+        }
+        if (delta != null) {
+            
+            /** Created based on created/removed/modified files */
+            List<ResourceNotification.Event> events = ResourceNotification.delta(
+                    watch.file, delta.created, delta.removed, delta.modified);
+            
+            ResourceNotification notify = new ResourceNotification( watch.getPath(),
+                    delta.kind, watch.last, events);
+            
+            for (ResourceListener listener : watch.getListeners()) {
+                try {
+                    listener.changed(notify);
+                } catch (Throwable t) {
+                    Logger logger = Logger.getLogger(listener.getClass().getPackage()
+                            .getName());
+                    logger.log(Level.FINE,
+                            "Unable to notify " + watch + ":" + t.getMessage(), t);
+                }
+            }
+        }
+        return delta;
+    }
+    
+    /**
+     * Registers the directories the watch depends on with the native watch service: the parent
+     * directory, to be notified of creation, modification and removal, and the directory
+     * itself if the watched file is a directory, to be notified of changes in its contents.
+     * 
+     * @return true if the watch is now fully watched natively, false if it needs to be polled
+     */
+    private synchronized boolean register(Watch watch) {
+        if (!watch.registered.isEmpty()) {
+            return true;
+        }
+        if (!nativeWatch || !watchers.containsKey(watch.getPath())) {
+            return false;
+        }
+        List<Path> required = new ArrayList<>(2);
+        File parent = watch.file.getAbsoluteFile().getParentFile();
+        if (parent == null || !parent.isDirectory()) {
+            return false;
+        }
+        required.add(parent.toPath());
+        if (watch.file.isDirectory()) {
+            required.add(watch.file.getAbsoluteFile().toPath());
+        }
+        Set<Path> registered = new LinkedHashSet<>();
+        for (Path dir : required) {
+            DirectoryWatch dw = directories.get(dir);
+            if (dw == null || !dw.key.isValid()) {
+                WatchKey key = registerDirectory(dir);
+                if (key == null) {
+                    break;
+                }
+                dw = new DirectoryWatch(key);
+                directories.put(dir, dw);
+            }
+            dw.watches.add(watch);
+            registered.add(dir);
+        }
+        watch.registered = registered;
+        if (registered.size() < required.size()) {
+            unregister(watch);
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Removes the watch from the native watch service, cancelling the registration of the
+     * directories no other watch is interested in
+     */
+    private synchronized void unregister(Watch watch) {
+        for (Path dir : watch.registered) {
+            DirectoryWatch dw = directories.get(dir);
+            if (dw != null) {
+                dw.watches.remove(watch);
+                if (dw.watches.isEmpty()) {
+                    dw.key.cancel();
+                    directories.remove(dir);
+                }
+            }
+        }
+        watch.registered = Collections.emptySet();
+    }
+    
+    /**
+     * Registers a directory with the native watch service, returns null if not possible
+     */
+    private WatchKey registerDirectory(Path dir) {
+        if (!isNativeWatchSupported(dir)) {
+            return null;
+        }
+        try {
+            return dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | RuntimeException e) {
+            // e.g., out of native watches, the file will be polled
+            LOGGER.log(Level.FINE, "Cannot natively watch " + dir + ", will poll it instead", e);
+            return null;
+        }
+    }
+    
+    private boolean isNativeWatchSupported(Path dir) {
+        if (!nativeWatch || watchService() == null) {
+            return false;
+        }
+        return nativeSupport.computeIfAbsent(dir, d -> {
+            try {
+                FileStore store = java.nio.file.Files.getFileStore(d);
+                boolean supported = !POLLED_FILE_STORES.contains(store.type().toLowerCase());
+                if (!supported) {
+                    LOGGER.fine(d + " is on a " + store.type()
+                            + " file store, will be polled instead of natively watched");
+                }
+                return supported;
+            } catch (IOException e) {
+                return false;
+            }
+        });
+    }
+    
+    /**
+     * Lazily sets up the native watch service and the thread waiting on its events, returns null
+     * if not available
+     */
+    private synchronized WatchService watchService() {
+        if (watchService == null && nativeWatch) {
+            try {
+                WatchService service = FileSystems.getDefault().newWatchService();
+                if (service.getClass().getSimpleName().contains("Polling")) {
+                    // the JDK falls back on polling on this platform, ours is adaptive
+                    service.close();
+                    nativeWatch = false;
+                    return null;
+                }
+                watchService = service;
+                watchThread = tFactory.newThread(new Runnable() {
+                    
+                    @Override
+                    public void run() {
+                        processEvents(service);
+                    }
+                });
+                watchThread.start();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.INFO,
+                        "Native file system watching is not available, will poll instead", e);
+                nativeWatch = false;
+            }
+        }
+        return watchService;
+    }
+    
+    /**
+     * Waits for native events, marking the directories that received them as dirty and scheduling
+     * them for a check once the coalescing delay is over
+     */
+    void processEvents(WatchService service) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            // events are just a trigger, the watch check will compute the actual changes
+            key.pollEvents();
+            key.reset();
+            dirty.add((Path) key.watchable());
+            if (flushScheduled.compareAndSet(false, true)) {
+                try {
+                    pool.schedule(flush, coalesceDelay, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // shutting down
+                    return;
+                }
+            }
+        }
+    }
 
     /**
      * Package visibility to allow test cases to set a shorter delay for testing.
+     * <p>
+     * The delay is used as the polling interval for the files that cannot be watched natively,
+     * and as the upper bound of the native event coalescing delay.
      * 
      * @param delay
      * @param unit
@@ -420,6 +756,11 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
     void schedule(long delay, TimeUnit unit) {
         this.delay = delay;
         this.unit = unit;
+        this.coalesceDelay = Math.min(100, Math.max(1, unit.toMillis(delay)));
+        for (Watch watch : polled) {
+            watch.pollInterval = unit.toMillis(delay);
+            watch.nextPoll = 0;
+        }
         if (monitor != null) {
             monitor.cancel(false);
             monitor = pool.scheduleWithFixedDelay(sync, delay, delay, unit);
@@ -429,6 +770,12 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
     @Override
     public void destroy() throws Exception {
         pool.shutdown();
+        synchronized (this) {
+            if (watchService != null) {
+                watchService.close();
+                watchService = null;
+            }
+        }
     }
 
     @Override
@@ -0,0 +1,118 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.platform.resource;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Change notification latency and idle CPU of {@link FileSystemWatcher}, native and polling.
+ */
+public class FileSystemWatcherBenchmark {
+
+    static final Logger LOGGER = Logging.getLogger(FileSystemWatcherBenchmark.class);
+
+    static final int FILES = Integer.getInteger("benchmark.files", 100000);
+
+    static final int FILES_PER_DIRECTORY = 1000;
+
+    static final int SAMPLES = 50;
+
+    static final long IDLE_MILLIS = 10000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void benchmark() throws Exception {
+        for (int i = 0; i < FILES; i++) {
+            File dir = new File(folder.getRoot(), "dir" + (i / FILES_PER_DIRECTORY));
+            dir.mkdir();
+            new File(dir, "file" + i).createNewFile();
+        }
+
+        run("native", true);
+        run("polling", false);
+    }
+
+    void run(String mode, boolean nativeWatch) throws Exception {
+        FileSystemWatcher watcher = new FileSystemWatcher(
+                path -> Paths.toFile(folder.getRoot(), path));
+        watcher.nativeWatch = nativeWatch;
+        watcher.schedule(1, TimeUnit.SECONDS);
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < FILES; i++) {
+                watcher.addListener(path(i), notify -> {
+                });
+            }
+            long setup = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            // cpu used while nothing changes
+            long cpuBefore = watcherCpuTime();
+            Thread.sleep(IDLE_MILLIS);
+            long idleCpu = TimeUnit.NANOSECONDS.toMillis(watcherCpuTime() - cpuBefore);
+
+            // latency between a change and its notification
+            Random random = new Random(0);
+            long total = 0;
+            long max = 0;
+            for (int s = 0; s < SAMPLES; s++) {
+                String path = path(random.nextInt(FILES));
+                CountDownLatch latch = new CountDownLatch(1);
+                ResourceListener listener = notify -> latch.countDown();
+                watcher.addListener(path, listener);
+                long changed = System.nanoTime();
+                File file = Paths.toFile(folder.getRoot(), path);
+                file.setLastModified(System.currentTimeMillis() + 10000 * (s + 1));
+                if (!latch.await(60, TimeUnit.SECONDS)) {
+                    LOGGER.warning(mode + ": change on " + path + " not notified");
+                }
+                long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - changed);
+                total += latency;
+                max = Math.max(max, latency);
+                watcher.removeListener(path, listener);
+            }
+
+            LOGGER.log(Level.INFO, String.format(
+                    "%s: %d files, setup %d ms, idle cpu %d ms over %d ms, "
+                            + "latency avg %d ms, max %d ms, natively watched directories %d",
+                    mode, FILES, setup, idleCpu, IDLE_MILLIS, total / SAMPLES, max,
+                    watcher.directories.size()));
+        } finally {
+            watcher.destroy();
+        }
+    }
+
+    String path(int i) {
+        return "dir" + (i / FILES_PER_DIRECTORY) + "/file" + i;
+    }
+
+    /**
+     * Sums up the CPU time of the watcher threads
+     */
+    long watcherCpuTime() {
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (ThreadInfo info : mx.getThreadInfo(mx.getAllThreadIds())) {
+            if (info != null && info.getThreadName().startsWith("FileSystemWatcher-")) {
+                total += Math.max(0, mx.getThreadCpuTime(info.getThreadId()));
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,116 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.platform.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.geoserver.platform.resource.FileSystemResourceTheoryTest.AwaitResourceListener;
+import org.geoserver.platform.resource.ResourceNotification.Event;
+import org.geoserver.platform.resource.ResourceNotification.Kind;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileSystemWatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    FileSystemWatcher watcher;
+
+    @Before
+    public void setUp() throws Exception {
+        watcher = new FileSystemWatcher(path -> Paths.toFile(folder.getRoot(), path));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        watcher.destroy();
+    }
+
+    @Test
+    public void testBurstIsCoalesced() throws Exception {
+        File dir = folder.newFolder("burst");
+        final List<ResourceNotification> notifications = new CopyOnWriteArrayList<>();
+        watcher.addListener("burst", notify -> notifications.add(notify));
+        watcher.schedule(50, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < 50; i++) {
+            new File(dir, "file" + i).createNewFile();
+        }
+
+        // wait for all the creations to be reported
+        Set<String> created = new HashSet<>();
+        long timeout = System.currentTimeMillis() + 10000;
+        while (created.size() < 50 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+            created.clear();
+            for (ResourceNotification n : notifications) {
+                for (Event e : n.events()) {
+                    if (e.getKind() == Kind.ENTRY_CREATE) {
+                        created.add(e.getPath());
+                    }
+                }
+            }
+        }
+        assertEquals(50, created.size());
+        // far less notifications than changes
+        assertTrue("Got " + notifications.size() + " notifications", notifications.size() < 10);
+    }
+
+    @Test
+    public void testPollingFallback() throws Exception {
+        watcher.nativeWatch = false;
+        File file = folder.newFile("polled");
+        AwaitResourceListener listener = new AwaitResourceListener();
+        watcher.addListener("polled", listener);
+        watcher.schedule(20, TimeUnit.MILLISECONDS);
+        assertEquals(1, watcher.polled.size());
+        assertTrue(watcher.directories.isEmpty());
+
+        // no changes, the interval grows
+        Thread.sleep(300);
+        long interval = watcher.polled.iterator().next().pollInterval;
+        assertTrue("Interval did not grow: " + interval, interval > 20);
+        assertTrue(interval <= 20 * FileSystemWatcher.MAX_POLL_BACKOFF);
+
+        file.delete();
+        ResourceNotification n = listener.await(5, TimeUnit.SECONDS);
+        assertNotNull(n);
+        assertEquals(Kind.ENTRY_DELETE, n.getKind());
+    }
+
+    @Test
+    public void testMissingDirectoryIsPolledThenWatched() throws Exception {
+        AwaitResourceListener listener = new AwaitResourceListener();
+        watcher.addListener("later/file", listener);
+        watcher.schedule(20, TimeUnit.MILLISECONDS);
+        // parent directory missing, cannot be watched natively
+        assertEquals(1, watcher.polled.size());
+
+        File dir = folder.newFolder("later");
+        new File(dir, "file").createNewFile();
+        ResourceNotification n = listener.await(5, TimeUnit.SECONDS);
+        assertNotNull(n);
+        assertEquals(Kind.ENTRY_CREATE, n.getKind());
+
+        assertTrue(watcher.removeListener("later/file", listener));
+        assertTrue(watcher.polled.isEmpty());
+        assertTrue(watcher.directories.isEmpty());
+        assertFalse(watcher.removeListener("later/file", listener));
+    }
+}
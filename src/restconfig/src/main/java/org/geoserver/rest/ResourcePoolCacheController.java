@@ -0,0 +1,53 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.rest;
+
+import java.util.Map;
+
+import org.geoserver.catalog.CacheStatistics;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.rest.catalog.NamedMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Reports the hit, miss, load and eviction statistics of the resource pool caches, and allows
+ * to reset them
+ */
+@RestController
+@RequestMapping(path = RestBaseController.ROOT_PATH + "/resourcepool/caches", produces = {
+        MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE })
+public class ResourcePoolCacheController extends RestBaseController {
+
+    Catalog catalog;
+
+    @Autowired
+    public ResourcePoolCacheController(@Qualifier("catalog") Catalog catalog) {
+        this.catalog = catalog;
+    }
+
+    @GetMapping
+    public Map<String, Object> cachesGet() {
+        Map<String, Object> caches = new NamedMap<>("caches");
+        for (Map.Entry<String, CacheStatistics> entry : catalog.getResourcePool()
+                .getCacheStatistics().entrySet()) {
+            caches.put(entry.getKey(), entry.getValue().toMap());
+        }
+        return caches;
+    }
+
+    @DeleteMapping
+    public void cachesDelete() {
+        for (CacheStatistics statistics : catalog.getResourcePool().getCacheStatistics()
+                .values()) {
+            statistics.reset();
+        }
+    }
+}
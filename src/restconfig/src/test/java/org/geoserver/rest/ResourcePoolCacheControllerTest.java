@@ -0,0 +1,60 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.geoserver.catalog.CacheStatistics;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.data.test.MockData;
+import org.geoserver.test.GeoServerSystemTestSupport;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import net.sf.json.JSON;
+import net.sf.json.JSONObject;
+
+public class ResourcePoolCacheControllerTest extends GeoServerSystemTestSupport {
+
+    @Test
+    public void testGetAsXML() throws Exception {
+        // make sure something went through the caches
+        FeatureTypeInfo ft = getCatalog().getFeatureTypeByName(getLayerId(MockData.BUILDINGS));
+        ft.getFeatureType();
+
+        Document dom = getAsDOM(RestBaseController.ROOT_PATH + "/resourcepool/caches.xml");
+        assertEquals("caches", dom.getDocumentElement().getNodeName());
+        assertNotNull(getFirstElementByTagName(dom, "featureTypes"));
+        assertNotNull(getFirstElementByTagName(dom, "crs"));
+        assertNotNull(getFirstElementByTagName(dom, "hitRatio"));
+    }
+
+    @Test
+    public void testGetAsJSON() throws Exception {
+        JSON json = getAsJSON(RestBaseController.ROOT_PATH + "/resourcepool/caches.json");
+        assertTrue(json instanceof JSONObject);
+        JSONObject featureTypes = ((JSONObject) json).getJSONObject("featureTypes");
+        assertTrue(featureTypes.has("hits"));
+        assertTrue(featureTypes.has("misses"));
+        assertTrue(featureTypes.has("averageLoadTime"));
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        FeatureTypeInfo ft = getCatalog().getFeatureTypeByName(getLayerId(MockData.BUILDINGS));
+        ft.getFeatureType();
+        ft.getFeatureType();
+
+        assertEquals(200, deleteAsServletResponse(RestBaseController.ROOT_PATH
+                + "/resourcepool/caches").getStatus());
+        for (CacheStatistics statistics : getCatalog().getResourcePool().getCacheStatistics()
+                .values()) {
+            assertEquals(0, statistics.getHits());
+            assertEquals(0, statistics.getMisses());
+        }
+    }
+}
@@ -32,9 +32,34 @@ class CountExecutor {
         this.query = query;
     }
 
+    /**
+     * The key used to cache the count, or {@code null} if it cannot be cached
+     */
+    NumberMatchedCache.CountKey key;
+
+    public CountExecutor(FeatureSource source, Query query, NumberMatchedCache.CountKey key) {
+        this(source, query);
+        this.key = key;
+    }
+
     public CountExecutor(int providedCount) {
         this.providedCount = providedCount;
     }
+
+    /**
+     * Returns true if the count needs to be run against the source
+     */
+    public boolean isRequired() {
+        return providedCount == COUNT_UNSET;
+    }
+
+    public int getProvidedCount() {
+        return providedCount;
+    }
+
+    public NumberMatchedCache.CountKey getKey() {
+        return key;
+    }
     
     public int getCount() throws IOException {
         if(providedCount != COUNT_UNSET) {
@@ -15,6 +15,7 @@ import java.util.Calendar;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import javax.xml.namespace.QName;
@@ -34,6 +35,8 @@ import org.geoserver.ows.Dispatcher;
 import org.geoserver.ows.Request;
 import org.geoserver.ows.URLMangler.URLType;
 import org.geoserver.ows.util.KvpMap;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.wfs.NumberMatchedCache.CountKey;
 import org.geoserver.wfs.request.FeatureCollectionResponse;
 import org.geoserver.wfs.request.GetFeatureRequest;
 import org.geoserver.wfs.request.Lock;
@@ -318,6 +321,9 @@ public class GetFeature {
         boolean calculateSize = !(("1.0".equals(request.getVersion()) || "1.0.0".equals(request.getVersion())) && 
             (queries.size() == 1 || maxFeatures == Integer.MAX_VALUE));
 
+        // runs the counts in parallel and caches them, if available
+        final NumberMatchedCache numberMatched = GeoServerExtensions.bean(NumberMatchedCache.class);
+
         List results = new ArrayList();
         final List<CountExecutor> totalCountExecutors = new ArrayList<CountExecutor>();
         try {
@@ -571,7 +577,9 @@ public class GetFeature {
                         org.geotools.data.Query qTotal = toDataQuery(query, filter, 0,
                                 Integer.MAX_VALUE, source, request, allPropNames.get(0), viewParam,
                                 joins, primaryTypeName, primaryAlias);
-                        totalCountExecutors.add(new CountExecutor(source, qTotal));
+                        CountKey key = numberMatched != null ? numberMatched.key(meta, qTotal)
+                                : null;
+                        totalCountExecutors.add(new CountExecutor(source, qTotal, key));
                     }
                 }
 
@@ -623,14 +631,20 @@ public class GetFeature {
                  totalCount = BigInteger.valueOf(count);
             } else {
                 // ok, in this case we're forced to run the queries to discover the actual total count
-                // We do so lazily, not all output formats need it, leveraging the fact that BigInteger
+                // We start them in parallel right away, so that they run while the features are
+                // encoded, and read them lazily leveraging the fact that BigInteger
                 // is not final to wrap it in a lazy loading proxy
+                final List<Future<Integer>> totalCounts = numberMatched != null
+                        ? numberMatched.submitAll(totalCountExecutors) : null;
                 Enhancer enhancer = new Enhancer();
                 enhancer.setSuperclass(BigInteger.class);
                 enhancer.setCallback(new LazyLoader() {
                     
                     @Override
                     public Object loadObject() throws Exception {
+                        if (totalCounts != null) {
+                            return BigInteger.valueOf(NumberMatchedCache.sum(totalCounts));
+                        }
                         long totalCount = 0;
                         for (CountExecutor q : totalCountExecutors) {
                             int result = q.getCount();
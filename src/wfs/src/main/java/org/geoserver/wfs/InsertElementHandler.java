@@ -6,13 +6,16 @@
 package org.geoserver.wfs;
 
 import java.math.BigInteger;
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import javax.xml.namespace.QName;
@@ -54,6 +57,7 @@ public class InsertElementHandler extends AbstractTransactionElementHandler {
      * logger
      */
     static Logger LOGGER = org.geotools.util.logging.Logging.getLogger("org.geoserver.wfs");
+
     private FilterFactory filterFactory;
 
     public InsertElementHandler(GeoServer gs, FilterFactory filterFactory) {
@@ -78,16 +82,25 @@ public class InsertElementHandler extends AbstractTransactionElementHandler {
         long inserted = response.getTotalInserted().longValue();
 
         try {
+            // the unadapted insert is the source of all events, build it once
+            final Object source = Insert.WFS11.unadapt(insert);
+
             // group features by their schema
-            HashMap /* <SimpleFeatureType,FeatureCollection> */ schema2features = new HashMap();
+            Map<SimpleFeatureType, ListFeatureCollection> schema2features = new LinkedHashMap<>();
+
+            // JD: change from set fo list because if inserting
+            // features into different feature stores, they could very well
+            // get given the same id
+            // JD: change from list to map so that the map can later be
+            // processed and we can report the fids back in the same order
+            // as they were supplied
+            Map<String, Deque<FeatureId>> schema2fids = new HashMap<>();
 
-            
             List featureList = insert.getFeatures();
             for (Iterator f = featureList.iterator(); f.hasNext();) {
                 SimpleFeature feature = (SimpleFeature) f.next();
                 SimpleFeatureType schema = feature.getFeatureType();
-                ListFeatureCollection collection =
-                    (ListFeatureCollection) schema2features.get(schema);
+                ListFeatureCollection collection = schema2features.get(schema);
 
                 if (collection == null) {
                     collection = new ListFeatureCollection(schema);
@@ -103,88 +116,9 @@ public class InsertElementHandler extends AbstractTransactionElementHandler {
                 collection.add(feature);
             }
 
-            // JD: change from set fo list because if inserting
-            // features into different feature stores, they could very well
-            // get given the same id
-            // JD: change from list to map so that the map can later be
-            // processed and we can report the fids back in the same order
-            // as they were supplied
-            Map<String, List<FeatureId>> schema2fids = new HashMap<String, List<FeatureId>>();
-
-            for (Iterator c = schema2features.values().iterator(); c.hasNext();) {
-                SimpleFeatureCollection collection = (SimpleFeatureCollection) c.next();
-                SimpleFeatureType schema = collection.getSchema();
-
-                final QName elementName = new QName(schema.getName().getNamespaceURI(), schema.getTypeName());
-                SimpleFeatureStore store;
-                store = DataUtilities.simple((FeatureStore) featureStores.get(elementName));
-
-                if (store == null) {
-                    throw new WFSException(request, "Could not locate FeatureStore for '" + elementName
-                        + "'");
-                }
-
-                if (collection != null) {
-                    // if we really need to, make sure we are inserting coordinates that do
-                    // match the CRS area of validity
-                    if(getInfo().isCiteCompliant()) {
-                        checkFeatureCoordinatesRange(collection);
-                    }
-                    
-                    // reprojection
-                    final GeometryDescriptor defaultGeometry = store.getSchema().getGeometryDescriptor();
-                    if(defaultGeometry != null) {
-                        CoordinateReferenceSystem target = defaultGeometry.getCoordinateReferenceSystem();
-                        if (target != null /* && !CRS.equalsIgnoreMetadata(collection.getSchema().getCoordinateReferenceSystem(), target) */) {
-                            collection = new ReprojectingFeatureCollection(collection, target);
-                        }
-                    }
-                    
-                    // Need to use the namespace here for the
-                    // lookup, due to our weird
-                    // prefixed internal typenames. see
-                    // https://osgeo-org.atlassian.net/browse/GEOS-143
-
-                    // Once we get our datastores making features
-                    // with the correct namespaces
-                    // we can do something like this:
-                    // FeatureTypeInfo typeInfo =
-                    // catalog.getFeatureTypeInfo(schema.getTypeName(),
-                    // schema.getNamespace());
-                    // until then (when geos-144 is resolved) we're
-                    // stuck with:
-                    // QName qName = (QName) typeNames.get( i );
-                    // FeatureTypeInfo typeInfo =
-                    // catalog.featureType( qName.getPrefix(),
-                    // qName.getLocalPart() );
-
-                    // this is possible with the insert hack above.
-                    LOGGER.finer("Use featureValidation to check contents of insert");
-
-                    // featureValidation(
-                    // typeInfo.getDataStore().getId(), schema,
-                    // collection );
-                    List<FeatureId> fids = schema2fids.get(schema.getTypeName());
-
-                    if (fids == null) {
-                        fids = new LinkedList<FeatureId>();
-                        schema2fids.put(schema.getTypeName(), fids);
-                    }
-
-                    //fire pre insert event
-                    TransactionEvent event = new TransactionEvent(TransactionEventType.PRE_INSERT,
-                            request, elementName, collection);
-                    event.setSource(Insert.WFS11.unadapt(insert));
-                    
-                    listener.dataStoreChange( event );
-                    fids.addAll(store.addFeatures(collection));
-                    
-                    //fire post insert event
-                    SimpleFeatureCollection features = store.getFeatures(filterFactory.id(new HashSet<FeatureId>(fids)));
-                    event = new TransactionEvent(TransactionEventType.POST_INSERT, request, 
-                        elementName, features, Insert.WFS11.unadapt(insert));
-                    listener.dataStoreChange( event );
-                }
+            // one store write, and one pair of insert events, per schema
+            for (ListFeatureCollection collection : schema2features.values()) {
+                insertFeatures(collection, request, featureStores, listener, source, schema2fids);
             }
 
             // report back fids, we need to keep the same order the
@@ -194,8 +128,7 @@ public class InsertElementHandler extends AbstractTransactionElementHandler {
                 SimpleFeatureType schema = feature.getFeatureType();
 
                 // get the next fid
-                LinkedList<FeatureId> fids = (LinkedList<FeatureId>) schema2fids.get(schema.getTypeName());
-                FeatureId fid = fids.removeFirst();
+                FeatureId fid = schema2fids.get(schema.getTypeName()).removeFirst();
 
                 response.addInsertedFeature(insert.getHandle(), fid);
             }
@@ -211,6 +144,85 @@ public class InsertElementHandler extends AbstractTransactionElementHandler {
         response.setTotalInserted(BigInteger.valueOf(inserted));
     }
 
+    /**
+     * Inserts the features of the element sharing the same schema, firing the pre and post
+     * insert events for them
+     */
+    void insertFeatures(SimpleFeatureCollection collection, TransactionRequest request,
+            Map featureStores, TransactionListener listener, Object source,
+            Map<String, Deque<FeatureId>> schema2fids) throws Exception {
+        SimpleFeatureType schema = collection.getSchema();
+
+        final QName elementName = new QName(schema.getName().getNamespaceURI(), schema.getTypeName());
+        SimpleFeatureStore store;
+        store = DataUtilities.simple((FeatureStore) featureStores.get(elementName));
+
+        if (store == null) {
+            throw new WFSException(request, "Could not locate FeatureStore for '" + elementName
+                + "'");
+        }
+
+        // if we really need to, make sure we are inserting coordinates that do
+        // match the CRS area of validity
+        if(getInfo().isCiteCompliant()) {
+            checkFeatureCoordinatesRange(collection);
+        }
+
+        // reprojection
+        final GeometryDescriptor defaultGeometry = store.getSchema().getGeometryDescriptor();
+        if(defaultGeometry != null) {
+            CoordinateReferenceSystem target = defaultGeometry.getCoordinateReferenceSystem();
+            if (target != null /* && !CRS.equalsIgnoreMetadata(collection.getSchema().getCoordinateReferenceSystem(), target) */) {
+                collection = new ReprojectingFeatureCollection(collection, target);
+            }
+        }
+
+        // Need to use the namespace here for the
+        // lookup, due to our weird
+        // prefixed internal typenames. see
+        // https://osgeo-org.atlassian.net/browse/GEOS-143
+
+        // Once we get our datastores making features
+        // with the correct namespaces
+        // we can do something like this:
+        // FeatureTypeInfo typeInfo =
+        // catalog.getFeatureTypeInfo(schema.getTypeName(),
+        // schema.getNamespace());
+        // until then (when geos-144 is resolved) we're
+        // stuck with:
+        // QName qName = (QName) typeNames.get( i );
+        // FeatureTypeInfo typeInfo =
+        // catalog.featureType( qName.getPrefix(),
+        // qName.getLocalPart() );
+
+        // this is possible with the insert hack above.
+        LOGGER.finer("Use featureValidation to check contents of insert");
+
+        // featureValidation(
+        // typeInfo.getDataStore().getId(), schema,
+        // collection );
+        Deque<FeatureId> fids = schema2fids.get(schema.getTypeName());
+
+        if (fids == null) {
+            fids = new ArrayDeque<FeatureId>();
+            schema2fids.put(schema.getTypeName(), fids);
+        }
+
+        //fire pre insert event
+        TransactionEvent event = new TransactionEvent(TransactionEventType.PRE_INSERT,
+                request, elementName, collection);
+        event.setSource(source);
+
+        listener.dataStoreChange( event );
+        List<FeatureId> insertedFids = store.addFeatures(collection);
+        fids.addAll(insertedFids);
+
+        //fire post insert event
+        SimpleFeatureCollection features = store.getFeatures(filterFactory.id(new HashSet<FeatureId>(insertedFids)));
+        event = new TransactionEvent(TransactionEventType.POST_INSERT, request, 
+            elementName, features, source);
+        listener.dataStoreChange( event );
+    }
     
     /**
      * Checks that all features coordinates are within the expected coordinate range
@@ -247,15 +259,21 @@ public class InsertElementHandler extends AbstractTransactionElementHandler {
     public QName[] getTypeNames(TransactionElement element) throws WFSTransactionException {
         Insert insert = (Insert) element;
         
-        List typeNames = new ArrayList();
+        // the features share a handful of schemas, don't build a name per feature
+        Set<SimpleFeatureType> schemas = new HashSet<>();
+        Set<QName> typeNames = new LinkedHashSet<>();
 
         List features = insert.getFeatures();
         if (!features.isEmpty()) {
             for (Iterator f = features.iterator(); f.hasNext();) {
                 SimpleFeature feature = (SimpleFeature) f.next();
+                SimpleFeatureType schema = feature.getFeatureType();
+                if (!schemas.add(schema)) {
+                    continue;
+                }
 
-                String name = feature.getFeatureType().getTypeName();
-                String namespaceURI = feature.getFeatureType().getName().getNamespaceURI();
+                String name = schema.getTypeName();
+                String namespaceURI = schema.getName().getNamespaceURI();
 
                 typeNames.add(new QName(namespaceURI, name));
             }
@@ -263,6 +281,6 @@ public class InsertElementHandler extends AbstractTransactionElementHandler {
             LOGGER.finer("Insert was empty - does not need a FeatureSource");
         }
 
-        return (QName[]) typeNames.toArray(new QName[typeNames.size()]);
+        return typeNames.toArray(new QName[typeNames.size()]);
     }
 }
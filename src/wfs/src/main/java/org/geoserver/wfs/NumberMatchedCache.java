@@ -0,0 +1,456 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.namespace.QName;
+
+import net.opengis.wfs.TransactionResponseType;
+import net.opengis.wfs.TransactionType;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.ows.AbstractDispatcherCallback;
+import org.geoserver.ows.Request;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
+import org.geotools.data.Query;
+import org.geotools.factory.Hints;
+import org.geotools.util.logging.Logging;
+import org.opengis.filter.Filter;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Runs the counts needed to compute the WFS 2.0 numberMatched attribute, and remembers them for a
+ * short while.
+ * <p>
+ * The counts of a GetFeature request are started in parallel, one per query, as soon as the
+ * features are ready to be encoded, so that they run while the features are being streamed out.
+ * The threads are set by the {@code org.geoserver.wfs.numberMatched.threads} system property,
+ * and default to the number of processors.
+ * </p>
+ * <p>
+ * The results are cached by feature type, filter, view parameters and user roles, so that a
+ * client paging over a result set with {@code startIndex} pays for the count only once. The
+ * entries expire after {@code org.geoserver.wfs.numberMatched.ttl} seconds (defaults to 30, 0
+ * disables the cache), and are dropped when a WFS transaction touches the feature type, or when
+ * the feature type or its store are modified in the catalog. Changes made to the data outside
+ * of GeoServer are picked up only when the entries expire.
+ * </p>
+ * <p>
+ * Counts still waiting for a thread when the request finishes are cancelled, as the response
+ * did not need them (e.g., the output format does not report numberMatched, or the encoding
+ * failed).
+ * </p>
+ */
+public class NumberMatchedCache extends AbstractDispatcherCallback
+        implements TransactionPlugin, DisposableBean {
+
+    static final Logger LOGGER = Logging.getLogger(NumberMatchedCache.class);
+
+    static final int THREADS = Integer.getInteger("org.geoserver.wfs.numberMatched.threads",
+            Runtime.getRuntime().availableProcessors());
+
+    static final int TTL = Integer.getInteger("org.geoserver.wfs.numberMatched.ttl", 30);
+
+    static final int CACHE_SIZE = Integer.getInteger("org.geoserver.wfs.numberMatched.cacheSize",
+            1000);
+
+    /**
+     * Key of the feature types touched by a transaction, in the request extended properties
+     */
+    static final String TRANSACTION_TYPES = "NUMBER_MATCHED_TRANSACTION_TYPES";
+
+    final ExecutorService executor;
+
+    /**
+     * The cached counts, or {@code null} if caching is disabled
+     */
+    final Cache<CountKey, Integer> counts;
+
+    /**
+     * The version of the data of each feature type, bumped by the transactions. The versions
+     * are part of the cache keys, so a count started before a change is never returned after it
+     */
+    final Map<QName, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    /**
+     * Bumped on catalog changes, that can alter the counts in ways the cache cannot track
+     * (feature type CQL filters, store connection parameters and the like)
+     */
+    final AtomicLong catalogVersion = new AtomicLong();
+
+    /**
+     * The counts started by the current request, cancelled when it finishes
+     */
+    final ThreadLocal<List<Future<Integer>>> requestCounts = new ThreadLocal<>();
+
+    public NumberMatchedCache(Catalog catalog) {
+        this.executor = Executors.newFixedThreadPool(Math.max(1, THREADS), new ThreadFactory() {
+            final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r,
+                        "GeoServer WFS numberMatched " + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        if (TTL > 0) {
+            this.counts = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE)
+                    .expireAfterWrite(TTL, TimeUnit.SECONDS).build();
+        } else {
+            this.counts = null;
+        }
+        catalog.addListener(new CountInvalidator());
+    }
+
+    /**
+     * Builds the cache key for the count of the query against the feature type, or returns
+     * {@code null} if the count cannot be cached
+     */
+    CountKey key(FeatureTypeInfo meta, Query query) {
+        if (counts == null || query.getJoins() != null && !query.getJoins().isEmpty()) {
+            return null;
+        }
+        QName typeName = new QName(meta.getNamespace().getURI(), meta.getName());
+        Object viewParams = query.getHints() != null
+                ? query.getHints().get(Hints.VIRTUAL_TABLE_PARAMETERS) : null;
+        Set<String> roles = null;
+        Authentication user = SecurityContextHolder.getContext().getAuthentication();
+        if (user != null) {
+            roles = new HashSet<>();
+            roles.add(user.getName());
+            for (GrantedAuthority authority : user.getAuthorities()) {
+                roles.add(authority.getAuthority());
+            }
+        }
+        return new CountKey(typeName, version(typeName), catalogVersion.get(), query.getFilter(),
+                viewParams, roles);
+    }
+
+    /**
+     * Starts the count in the background, looking it up in the cache first
+     */
+    Future<Integer> submit(CountExecutor count) {
+        if (!count.isRequired()) {
+            return CompletableFuture.completedFuture(count.getProvidedCount());
+        }
+        if (counts != null && count.getKey() != null) {
+            // no need to bother the pool for a cached count
+            Integer cached = counts.getIfPresent(count.getKey());
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+        final ThreadLocalsTransfer threadLocals = new ThreadLocalsTransfer();
+        return executor.submit(() -> {
+            threadLocals.apply();
+            try {
+                return count(count);
+            } finally {
+                threadLocals.cleanup();
+            }
+        });
+    }
+
+    /**
+     * Runs the count, or returns the cached one
+     */
+    int count(final CountExecutor count) throws IOException {
+        if (counts == null || count.getKey() == null) {
+            return count.getCount();
+        }
+        try {
+            return counts.get(count.getKey(), new Callable<Integer>() {
+
+                @Override
+                public Integer call() throws Exception {
+                    return count.getCount();
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to compute the number of matched features", cause);
+        }
+    }
+
+    /**
+     * Sums the counts, returning -1 if any of them is unknown
+     */
+    static long sum(List<Future<Integer>> futures) throws IOException {
+        long total = 0;
+        for (Future<Integer> future : futures) {
+            int result;
+            try {
+                result = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while computing the number of matched features",
+                        e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Failed to compute the number of matched features",
+                        e.getCause());
+            }
+            // if the count is unknown for one, we don't know the total, period
+            if (result == -1) {
+                return -1;
+            }
+            total += result;
+        }
+        return total;
+    }
+
+    /**
+     * Starts all the counts, and returns their futures in the same order
+     */
+    List<Future<Integer>> submitAll(List<CountExecutor> executors) {
+        List<Future<Integer>> futures = new ArrayList<>(executors.size());
+        for (CountExecutor executor : executors) {
+            futures.add(submit(executor));
+        }
+        List<Future<Integer>> pending = requestCounts.get();
+        if (pending == null) {
+            pending = new ArrayList<>();
+            requestCounts.set(pending);
+        } else {
+            // GetFeature might be called outside of the dispatcher, don't accumulate
+            pending.removeIf(Future::isDone);
+        }
+        pending.addAll(futures);
+        return futures;
+    }
+
+    /**
+     * Cancels the counts of the request that have not been read. The ones already running are
+     * left alone when caching, another page request might be waiting on them
+     */
+    @Override
+    public void finished(Request request) {
+        List<Future<Integer>> pending = requestCounts.get();
+        if (pending != null) {
+            requestCounts.remove();
+            for (Future<Integer> future : pending) {
+                future.cancel(counts == null);
+            }
+        }
+    }
+
+    long version(QName typeName) {
+        AtomicLong version = versions.get(typeName);
+        return version == null ? 0 : version.get();
+    }
+
+    /**
+     * Drops the cached counts of the feature type
+     */
+    void invalidate(QName typeName) {
+        versions.computeIfAbsent(new QName(typeName.getNamespaceURI(), typeName.getLocalPart()),
+                k -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Drops all the cached counts
+     */
+    public void clear() {
+        catalogVersion.incrementAndGet();
+        if (counts != null) {
+            counts.invalidateAll();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void dataStoreChange(TransactionEvent event) throws WFSException {
+        QName typeName = event.getLayerName();
+        if (typeName == null) {
+            return;
+        }
+        invalidate(typeName);
+        // remember the type, the transaction is not committed yet
+        TransactionType request = event.getRequest();
+        if (request != null) {
+            Map<Object, Object> properties = request.getExtendedProperties();
+            Set<QName> typeNames = (Set<QName>) properties.get(TRANSACTION_TYPES);
+            if (typeNames == null) {
+                typeNames = new HashSet<>();
+                properties.put(TRANSACTION_TYPES, typeNames);
+            }
+            typeNames.add(typeName);
+        }
+    }
+
+    /**
+     * Not used, we're interested in the {@link #dataStoreChange} and {@link #afterTransaction}
+     * hooks
+     */
+    @Override
+    public TransactionType beforeTransaction(TransactionType request) throws WFSException {
+        // nothing to do
+        return request;
+    }
+
+    /**
+     * Not used, we're interested in the {@link #dataStoreChange} and {@link #afterTransaction}
+     * hooks
+     */
+    @Override
+    public void beforeCommit(TransactionType request) throws WFSException {
+        // nothing to do
+    }
+
+    /**
+     * Bumps again the versions of the feature types touched by the transaction, the counts
+     * computed between the change events and the commit did not see the changes yet
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void afterTransaction(TransactionType request, TransactionResponseType result,
+            boolean committed) {
+        Set<QName> typeNames = (Set<QName>) request.getExtendedProperties().get(TRANSACTION_TYPES);
+        if (typeNames != null) {
+            for (QName typeName : typeNames) {
+                invalidate(typeName);
+            }
+        }
+    }
+
+    @Override
+    public int getPriority() {
+        return 0;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The key of a cached count
+     */
+    static final class CountKey {
+
+        final QName typeName;
+
+        final long version;
+
+        final long catalogVersion;
+
+        final Filter filter;
+
+        final Object viewParams;
+
+        final Set<String> roles;
+
+        CountKey(QName typeName, long version, long catalogVersion, Filter filter,
+                Object viewParams, Set<String> roles) {
+            this.typeName = typeName;
+            this.version = version;
+            this.catalogVersion = catalogVersion;
+            this.filter = filter;
+            this.viewParams = viewParams;
+            this.roles = roles == null ? null : Collections.unmodifiableSet(roles);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CountKey)) {
+                return false;
+            }
+            CountKey other = (CountKey) obj;
+            return version == other.version && catalogVersion == other.catalogVersion
+                    && Objects.equals(typeName, other.typeName)
+                    && Objects.equals(filter, other.filter)
+                    && Objects.equals(viewParams, other.viewParams)
+                    && Objects.equals(roles, other.roles);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(typeName, version, catalogVersion, filter, viewParams, roles);
+        }
+    }
+
+    /**
+     * Drops the counts when the feature types or stores change
+     */
+    final class CountInvalidator implements CatalogListener {
+
+        @Override
+        public void handleAddEvent(CatalogAddEvent event) {
+            // a new feature type has no counts yet
+        }
+
+        @Override
+        public void handleRemoveEvent(CatalogRemoveEvent event) {
+            handle(event.getSource());
+        }
+
+        @Override
+        public void handleModifyEvent(CatalogModifyEvent event) {
+            // wait for the post modify event
+        }
+
+        @Override
+        public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+            handle(event.getSource());
+        }
+
+        void handle(Object source) {
+            if (source instanceof FeatureTypeInfo || source instanceof StoreInfo) {
+                LOGGER.log(Level.FINE, "Catalog change, dropping the cached feature counts");
+                clear();
+            }
+        }
+
+        @Override
+        public void reloaded() {
+            clear();
+        }
+    }
+}
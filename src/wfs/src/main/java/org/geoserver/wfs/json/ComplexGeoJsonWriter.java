@@ -33,13 +33,17 @@ import java.util.Map;
  */
 public final class ComplexGeoJsonWriter {
 
-    private final GeoJSONBuilder jsonWriter;
+    private final GeoJSONWriter jsonWriter;
 
     private boolean geometryFound = false;
     private CoordinateReferenceSystem crs;
     private long featuresCount = 0;
 
-    public ComplexGeoJsonWriter(GeoJSONBuilder jsonWriter) {
+    // the axis order of the last CRS seen, the features usually share it
+    private CoordinateReferenceSystem axisOrderCrs;
+    private CRS.AxisOrder axisOrder = CRS.AxisOrder.EAST_NORTH;
+
+    public ComplexGeoJsonWriter(GeoJSONWriter jsonWriter) {
         this.jsonWriter = jsonWriter;
     }
 
@@ -102,7 +106,11 @@ public final class ComplexGeoJsonWriter {
             // extract CRS information from the geometry attribute description
             CoordinateReferenceSystem crs = geometryType.getCoordinateReferenceSystem();
             // we let the setAxisOrder method handle the NULL case
-            jsonWriter.setAxisOrder(CRS.getAxisOrder(crs));
+            if (crs != axisOrderCrs) {
+                axisOrder = CRS.getAxisOrder(crs);
+                axisOrderCrs = crs;
+            }
+            jsonWriter.setAxisOrder(axisOrder);
             if (crs != null) {
                 // store the found CRS, this may be useful for the invoker
                 this.crs = crs;
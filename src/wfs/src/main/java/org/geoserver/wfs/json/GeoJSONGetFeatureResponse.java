@@ -7,6 +7,7 @@ package org.geoserver.wfs.json;
 
 import com.vividsolutions.jts.geom.Geometry;
 import net.sf.json.JSONException;
+import org.apache.commons.io.output.WriterOutputStream;
 import org.geoserver.config.GeoServer;
 import org.geoserver.ows.Dispatcher;
 import org.geoserver.ows.Request;
@@ -30,12 +31,12 @@ import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.ReferenceIdentifier;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
@@ -120,21 +121,23 @@ public class GeoJSONGetFeatureResponse extends WFSGetFeatureOutputFormat {
         if (request != null) {
             id_option = JSONType.getIdPolicy( request.getKvp() );
         }
-        // prepare to write out
-        OutputStreamWriter osw = null;
-        Writer outWriter = null;
-
         // get feature count for request
         BigInteger totalNumberOfFeatures = featureCollection.getTotalNumberOfFeatures();
         BigInteger featureCount = (totalNumberOfFeatures != null && totalNumberOfFeatures.longValue() < 0)
                 ? null : totalNumberOfFeatures;
 
         try {
-            osw = new OutputStreamWriter(output, gs.getGlobal().getSettings().getCharset());
-            outWriter = new BufferedWriter(osw);
+            // the writer produces ASCII compatible output, transcode it for the other charsets
+            Charset charset = Charset.forName(gs.getGlobal().getSettings().getCharset());
+            if (!GeoJSONWriter.isSupported(charset)) {
+                output = new WriterOutputStream(new OutputStreamWriter(output, charset),
+                        StandardCharsets.UTF_8);
+                charset = StandardCharsets.UTF_8;
+            }
+            final GeoJSONWriter jsonWriter = new GeoJSONWriter(output, charset);
 
             if (jsonp) {
-                outWriter.write(getCallbackFunction() + "(");
+                jsonWriter.writeRaw(getCallbackFunction() + "(");
             }
 
             // currently complex features count always return zero
@@ -144,7 +147,6 @@ public class GeoJSONGetFeatureResponse extends WFSGetFeatureOutputFormat {
                 featureCount = null;
             }
             
-            final GeoJSONBuilder jsonWriter = new GeoJSONBuilder(outWriter);
             jsonWriter.setNumberOfDecimals(numDecimals);
             jsonWriter.object().key("type").value("FeatureCollection");
             if(featureCount != null) {
@@ -210,10 +212,10 @@ public class GeoJSONGetFeatureResponse extends WFSGetFeatureOutputFormat {
             jsonWriter.endObject(); // end featurecollection
 
             if (jsonp) {
-                outWriter.write(")");
+                jsonWriter.writeRaw(")");
             }
 
-            outWriter.flush();
+            jsonWriter.flush();
 
         } catch (JSONException jsonException) {
             ServiceException serviceException = new ServiceException("Error: "
@@ -237,10 +239,13 @@ public class GeoJSONGetFeatureResponse extends WFSGetFeatureOutputFormat {
         }
     }
 
-    private FeaturesInfo encodeSimpleFeatures(GeoJSONBuilder jsonWriter, List<FeatureCollection> resultsList,
+    private FeaturesInfo encodeSimpleFeatures(GeoJSONWriter jsonWriter, List<FeatureCollection> resultsList,
                                               String id_option, boolean featureBounding) {
         CoordinateReferenceSystem crs = null;
         boolean hasGeom = false;
+        // the features of a collection usually share the same type, look up its details once
+        SimpleFeatureType lastType = null;
+        CRS.AxisOrder axisOrder = CRS.AxisOrder.EAST_NORTH;
         for (FeatureCollection collection : resultsList) {
             try (FeatureIterator iterator = collection.features()) {
                 SimpleFeatureType fType;
@@ -265,17 +270,21 @@ public class GeoJSONGetFeatureResponse extends WFSGetFeatureOutputFormat {
                     }
                     // set that axis order that should be used to write geometries
                     GeometryDescriptor defaultGeomType = fType.getGeometryDescriptor();
-                    if (defaultGeomType != null) {
-                        CoordinateReferenceSystem featureCrs =
-                                defaultGeomType.getCoordinateReferenceSystem();
-                        jsonWriter.setAxisOrder(CRS.getAxisOrder(featureCrs));
-                        if (crs == null) {
-                            crs = featureCrs;
+                    if (fType != lastType) {
+                        if (defaultGeomType != null) {
+                            CoordinateReferenceSystem featureCrs =
+                                    defaultGeomType.getCoordinateReferenceSystem();
+                            axisOrder = CRS.getAxisOrder(featureCrs);
+                            if (crs == null) {
+                                crs = featureCrs;
+                            }
+                        } else {
+                            // If we don't know, assume EAST_NORTH so that no swapping occurs
+                            axisOrder = CRS.AxisOrder.EAST_NORTH;
                         }
-                    } else {
-                        // If we don't know, assume EAST_NORTH so that no swapping occurs
-                        jsonWriter.setAxisOrder(CRS.AxisOrder.EAST_NORTH);
+                        lastType = fType;
                     }
+                    jsonWriter.setAxisOrder(axisOrder);
                     // start writing the simple feature geometry JSON object
                     jsonWriter.key("geometry");
                     Geometry aGeom = (Geometry) simpleFeature.getDefaultGeometry();
@@ -322,9 +331,11 @@ public class GeoJSONGetFeatureResponse extends WFSGetFeatureOutputFormat {
                         }
                     }
                     // Bounding box for feature in properties
-                    ReferencedEnvelope refenv = ReferencedEnvelope.reference(simpleFeature.getBounds());
-                    if (featureBounding && !refenv.isEmpty())
-                        jsonWriter.writeBoundingBox(refenv);
+                    if (featureBounding) {
+                        ReferencedEnvelope refenv = ReferencedEnvelope.reference(simpleFeature.getBounds());
+                        if (!refenv.isEmpty())
+                            jsonWriter.writeBoundingBox(refenv);
+                    }
                     jsonWriter.endObject(); // end the properties
                     jsonWriter.endObject(); // end the feature
                 }
@@ -333,7 +344,7 @@ public class GeoJSONGetFeatureResponse extends WFSGetFeatureOutputFormat {
         return new FeaturesInfo(crs, hasGeom);
     }
 
-    private void writeCrs(final GeoJSONBuilder jsonWriter,
+    private void writeCrs(final GeoJSONWriter jsonWriter,
             CoordinateReferenceSystem crs) throws FactoryException {
         if (crs != null) {
             String identifier = null;
@@ -362,7 +373,7 @@ public class GeoJSONGetFeatureResponse extends WFSGetFeatureOutputFormat {
     }
     
     // Doesn't follow spec, but GeoServer used to do this.
-    private void writeCrsLegacy(final GeoJSONBuilder jsonWriter,
+    private void writeCrsLegacy(final GeoJSONWriter jsonWriter,
             CoordinateReferenceSystem crs) {
         // Coordinate Reference System, currently only if the namespace is
         // EPSG
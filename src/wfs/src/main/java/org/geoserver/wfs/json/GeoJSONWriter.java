@@ -0,0 +1,674 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.geometry.jts.coordinatesequence.CoordinateSequences;
+import org.geotools.referencing.CRS;
+import org.geotools.util.Converters;
+
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+
+import net.sf.json.JSONException;
+import net.sf.json.util.JSONUtils;
+
+/**
+ * A streaming GeoJSON encoder, producing the same output as {@link GeoJSONBuilder} without
+ * going through json-lib for each value.
+ * <p>
+ * The output is accumulated in a byte buffer that is reused for the whole document, and sent
+ * to the stream each time it fills up. Strings are encoded directly in UTF-8, or escaped as
+ * {@code \\uXXXX} sequences when they contain non ASCII characters and the charset is not UTF-8.
+ * Coordinates are rounded to the configured number of decimals and written straight from the
+ * {@link CoordinateSequence}, without boxing or building intermediate strings. Values other than
+ * strings, numbers, booleans, dates, geometries, lists and maps are still handed to json-lib.
+ * </p>
+ * <p>
+ * Only charsets encoding the ASCII characters in a single byte are supported, see
+ * {@link #isSupported(Charset)}. Errors, including the ones writing to the stream, are reported
+ * as {@link JSONException}, like the json-lib builders do. The writer is not thread safe.
+ * </p>
+ */
+public class GeoJSONWriter {
+
+    static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Max number of decimals the coordinates can be written with without going through
+     * {@link Double#toString(double)}
+     */
+    static final int MAX_FAST_DECIMALS = 15;
+
+    /**
+     * Scaled coordinates past this value are written through {@link Double#toString(double)},
+     * the rounding would go past the double precision anyways
+     */
+    static final double MAX_FAST_SCALED = 1e15;
+
+    static final byte[] NULL = ascii("null");
+
+    static final byte[] TRUE = ascii("true");
+
+    static final byte[] FALSE = ascii("false");
+
+    static final byte[] HEX = ascii("0123456789abcdef");
+
+    /**
+     * The escape sequences of the ASCII characters, {@code null} if the char is written as is
+     */
+    static final byte[][] ESCAPES = new byte[128][];
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = new byte[] { '\\', 'u', '0', '0', HEX[c >> 4], HEX[c & 0xF] };
+        }
+        ESCAPES['\b'] = ascii("\\b");
+        ESCAPES['\t'] = ascii("\\t");
+        ESCAPES['\n'] = ascii("\\n");
+        ESCAPES['\f'] = ascii("\\f");
+        ESCAPES['\r'] = ascii("\\r");
+        ESCAPES['"'] = ascii("\\\"");
+        ESCAPES['\\'] = ascii("\\\\");
+    }
+
+    static final long[] POWERS = new long[MAX_FAST_DECIMALS + 1];
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i < POWERS.length; i++) {
+            POWERS[i] = POWERS[i - 1] * 10;
+        }
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns true if the charset writes the ASCII characters as single bytes, with their ASCII
+     * value, which is what this writer produces
+     */
+    public static boolean isSupported(Charset charset) {
+        if (StandardCharsets.UTF_8.equals(charset)) {
+            return true;
+        }
+        if (!charset.canEncode()) {
+            return false;
+        }
+        byte[] expected = new byte[0x7F - 0x20];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = (byte) (0x20 + i);
+        }
+        String printable = new String(expected, StandardCharsets.US_ASCII) + "\b\t\n\f\r";
+        return Arrays.equals(printable.getBytes(StandardCharsets.US_ASCII),
+                printable.getBytes(charset));
+    }
+
+    final OutputStream out;
+
+    final boolean utf8;
+
+    final Charset charset;
+
+    final byte[] buffer = new byte[BUFFER_SIZE];
+
+    int position;
+
+    /**
+     * Nesting state, for each level if it's an object, and if it has elements already
+     */
+    boolean[] objects = new boolean[16];
+
+    boolean[] elements = new boolean[16];
+
+    int depth;
+
+    /**
+     * True when a key has been written and its value is expected
+     */
+    boolean afterKey;
+
+    private CRS.AxisOrder axisOrder = CRS.AxisOrder.EAST_NORTH;
+
+    private int numDecimals = 6;
+
+    private double scale = 1e6;
+
+    public GeoJSONWriter(OutputStream out, Charset charset) {
+        if (!isSupported(charset)) {
+            throw new IllegalArgumentException("Unsupported charset " + charset
+                    + ", the ASCII characters must be encoded as single bytes");
+        }
+        this.out = out;
+        this.charset = charset;
+        this.utf8 = StandardCharsets.UTF_8.equals(charset);
+    }
+
+    /**
+     * Set the axis order to assume all input will be provided in. Has no effect on geometries
+     * that have already been written.
+     */
+    public void setAxisOrder(CRS.AxisOrder axisOrder) {
+        this.axisOrder = axisOrder;
+    }
+
+    public void setNumberOfDecimals(int numberOfDecimals) {
+        this.numDecimals = numberOfDecimals;
+        this.scale = numberOfDecimals >= 0 && numberOfDecimals <= MAX_FAST_DECIMALS
+                ? POWERS[numberOfDecimals] : Math.pow(10, numberOfDecimals);
+    }
+
+    public GeoJSONWriter object() {
+        beforeValue();
+        push(true);
+        write((byte) '{');
+        return this;
+    }
+
+    public GeoJSONWriter endObject() {
+        pop(true);
+        write((byte) '}');
+        return this;
+    }
+
+    public GeoJSONWriter array() {
+        beforeValue();
+        push(false);
+        write((byte) '[');
+        return this;
+    }
+
+    public GeoJSONWriter endArray() {
+        pop(false);
+        write((byte) ']');
+        return this;
+    }
+
+    public GeoJSONWriter key(String key) {
+        if (key == null) {
+            throw new JSONException("Null key.");
+        }
+        if (depth == 0 || !objects[depth - 1] || afterKey) {
+            throw new JSONException("Misplaced key.");
+        }
+        if (elements[depth - 1]) {
+            write((byte) ',');
+        }
+        elements[depth - 1] = true;
+        writeQuoted(key);
+        write((byte) ':');
+        afterKey = true;
+        return this;
+    }
+
+    /**
+     * Writes a value. Dates and calendars are written as ISO 8601 strings, lists and maps as
+     * arrays and objects, geometries as GeoJSON geometries.
+     */
+    @SuppressWarnings("rawtypes")
+    public GeoJSONWriter value(Object value) {
+        if (value == null) {
+            beforeValue();
+            write(NULL);
+        } else if (value instanceof String) {
+            value((String) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte) {
+            value(((Number) value).longValue());
+        } else if (value instanceof Double) {
+            value(((Double) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            value(((Boolean) value).booleanValue());
+        } else if (value instanceof Geometry) {
+            writeGeom((Geometry) value);
+        } else if (value instanceof List) {
+            writeList((List) value);
+        } else if (value instanceof Map) {
+            writeMap((Map) value);
+        } else if (value instanceof Date || value instanceof Calendar) {
+            value(Converters.convert(value, String.class));
+        } else if (value instanceof Character) {
+            value(value.toString());
+        } else {
+            // whatever json-lib would do with it
+            beforeValue();
+            writeRaw(JSONUtils.valueToString(value));
+        }
+        return this;
+    }
+
+    public GeoJSONWriter value(String value) {
+        if (value == null || "null".equals(value)
+                || value.startsWith("function") && JSONUtils.isFunction(value)) {
+            // json-lib quirks, the "null" string is written as null and functions as they are
+            beforeValue();
+            writeRaw(JSONUtils.valueToString(value));
+            return this;
+        }
+        beforeValue();
+        writeQuoted(value);
+        return this;
+    }
+
+    public GeoJSONWriter value(long value) {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    public GeoJSONWriter value(double value) {
+        beforeValue();
+        checkFinite(value);
+        if (value == Math.rint(value) && Math.abs(value) < 1e7) {
+            // same as json-lib, that strips the trailing ".0"
+            if (value == 0 && 1 / value < 0) {
+                write((byte) '-');
+            }
+            writeLong((long) value);
+        } else {
+            writeRaw(JSONUtils.numberToString(value));
+        }
+        return this;
+    }
+
+    public GeoJSONWriter value(boolean value) {
+        beforeValue();
+        write(value ? TRUE : FALSE);
+        return this;
+    }
+
+    /**
+     * Writes a java.util.List out as a JSON Array
+     */
+    @SuppressWarnings("rawtypes")
+    public GeoJSONWriter writeList(List list) {
+        array();
+        for (Object o : list) {
+            value(o);
+        }
+        return endArray();
+    }
+
+    /**
+     * Writes a java.util.Map out as a JSON Object, using the keys string representation
+     */
+    @SuppressWarnings("rawtypes")
+    public GeoJSONWriter writeMap(Map map) {
+        object();
+        for (Object o : map.entrySet()) {
+            Map.Entry entry = (Map.Entry) o;
+            key(entry.getKey().toString());
+            value(entry.getValue());
+        }
+        return endObject();
+    }
+
+    /**
+     * Writes any geometry object
+     */
+    public GeoJSONWriter writeGeom(Geometry geometry) {
+        object();
+        key("type");
+        value(GeoJSONBuilder.getGeometryName(geometry));
+
+        final int geometryType = GeoJSONBuilder.getGeometryType(geometry);
+        if (geometryType == GeoJSONBuilder.MULTIGEOMETRY) {
+            key("geometries");
+            array();
+            for (int i = 0, n = geometry.getNumGeometries(); i < n; i++) {
+                writeGeom(geometry.getGeometryN(i));
+            }
+            endArray();
+            return endObject();
+        }
+
+        key("coordinates");
+        switch (geometryType) {
+        case GeoJSONBuilder.POINT:
+            writePoint((Point) geometry);
+            break;
+        case GeoJSONBuilder.LINESTRING:
+            writeCoordinates(((LineString) geometry).getCoordinateSequence());
+            break;
+        case GeoJSONBuilder.POLYGON:
+            writePolygon((Polygon) geometry);
+            break;
+        case GeoJSONBuilder.MULTIPOINT:
+            array();
+            for (int i = 0, n = geometry.getNumGeometries(); i < n; i++) {
+                writePoint((Point) geometry.getGeometryN(i));
+            }
+            endArray();
+            break;
+        case GeoJSONBuilder.MULTILINESTRING:
+            array();
+            for (int i = 0, n = geometry.getNumGeometries(); i < n; i++) {
+                writeCoordinates(((LineString) geometry.getGeometryN(i)).getCoordinateSequence());
+            }
+            endArray();
+            break;
+        case GeoJSONBuilder.MULTIPOLYGON:
+            array();
+            for (int i = 0, n = geometry.getNumGeometries(); i < n; i++) {
+                writePolygon((Polygon) geometry.getGeometryN(i));
+            }
+            endArray();
+            break;
+        }
+        return endObject();
+    }
+
+    private void writePoint(Point point) {
+        CoordinateSequence cs = point.getCoordinateSequence();
+        if (cs.size() == 0) {
+            array();
+            endArray();
+        } else {
+            writeCoordinate(cs.getX(0), cs.getY(0),
+                    cs.getDimension() > 2 ? cs.getOrdinate(0, 2) : Double.NaN);
+        }
+    }
+
+    private void writePolygon(Polygon polygon) {
+        array();
+        writeCoordinates(polygon.getExteriorRing().getCoordinateSequence());
+        for (int i = 0, n = polygon.getNumInteriorRing(); i < n; i++) {
+            writeCoordinates(polygon.getInteriorRingN(i).getCoordinateSequence());
+        }
+        endArray();
+    }
+
+    private void writeCoordinates(CoordinateSequence coords) {
+        array();
+        // guess the dimension of the coordinate sequence
+        final boolean hasZ = CoordinateSequences.coordinateDimension(coords) > 2;
+        for (int i = 0, n = coords.size(); i < n; i++) {
+            writeCoordinate(coords.getX(i), coords.getY(i),
+                    hasZ ? coords.getOrdinate(i, 2) : Double.NaN);
+        }
+        endArray();
+    }
+
+    private void writeCoordinate(double x, double y, double z) {
+        beforeValue();
+        write((byte) '[');
+        if (axisOrder == CRS.AxisOrder.NORTH_EAST) {
+            writeRounded(y);
+            write((byte) ',');
+            writeRounded(x);
+        } else {
+            writeRounded(x);
+            write((byte) ',');
+            writeRounded(y);
+        }
+        if (!Double.isNaN(z)) {
+            write((byte) ',');
+            writeRounded(z);
+        }
+        write((byte) ']');
+    }
+
+    /**
+     * Turns an envelope into an array [minX,minY,maxX,maxY]
+     */
+    public GeoJSONWriter writeBoundingBox(Envelope env) {
+        key("bbox");
+        beforeValue();
+        write((byte) '[');
+        if (axisOrder == CRS.AxisOrder.NORTH_EAST) {
+            writeRounded(env.getMinY());
+            write((byte) ',');
+            writeRounded(env.getMinX());
+            write((byte) ',');
+            writeRounded(env.getMaxY());
+            write((byte) ',');
+            writeRounded(env.getMaxX());
+        } else {
+            writeRounded(env.getMinX());
+            write((byte) ',');
+            writeRounded(env.getMinY());
+            write((byte) ',');
+            writeRounded(env.getMaxX());
+            write((byte) ',');
+            writeRounded(env.getMaxY());
+        }
+        write((byte) ']');
+        return this;
+    }
+
+    /**
+     * Writes text as is, outside of the JSON structure (e.g. the JSONP callback)
+     */
+    public void writeRaw(String text) {
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                write((byte) c);
+            } else if (utf8) {
+                i = writeUTF8(text, i);
+            } else {
+                write(text.substring(i, i + 1).getBytes(charset));
+            }
+        }
+    }
+
+    /**
+     * Sends the buffered output to the stream, and flushes it
+     */
+    public void flush() {
+        try {
+            out.write(buffer, 0, position);
+            position = 0;
+            out.flush();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+    /**
+     * Writes a number rounded to the configured decimals, like {@link RoundingUtil} followed by
+     * json-lib would do, only without the scientific notation for the very small and large ones
+     */
+    void writeRounded(double value) {
+        checkFinite(value);
+        double scaled = value * scale;
+        if (numDecimals < 0 || numDecimals > MAX_FAST_DECIMALS
+                || Math.abs(scaled) >= MAX_FAST_SCALED || Math.ulp(value) * scale > 1d) {
+            writeRaw(JSONUtils.numberToString(RoundingUtil.round(value, numDecimals)));
+            return;
+        }
+        long rounded = (long) Math.floor(scaled + 0.5);
+        if (rounded < 0) {
+            write((byte) '-');
+            rounded = -rounded;
+        }
+        long power = POWERS[numDecimals];
+        writeLong(rounded / power);
+        long fraction = rounded % power;
+        if (fraction != 0) {
+            // strip the trailing zeroes
+            int digits = numDecimals;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            write((byte) '.');
+            ensureCapacity(digits);
+            for (int i = position + digits - 1; i >= position; i--) {
+                buffer[i] = (byte) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            position += digits;
+        }
+    }
+
+    void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeRaw(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            write((byte) '-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += digits;
+    }
+
+    /**
+     * Writes a JSON string, escaping it the same way json-lib does
+     */
+    void writeQuoted(String s) {
+        write((byte) '"');
+        char previous = 0;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                byte[] escape = ESCAPES[c];
+                if (escape != null) {
+                    write(escape);
+                } else {
+                    if (c == '/' && previous == '<') {
+                        write((byte) '\\');
+                    }
+                    write((byte) c);
+                }
+            } else if (utf8) {
+                i = writeUTF8(s, i);
+            } else {
+                ensureCapacity(6);
+                buffer[position++] = '\\';
+                buffer[position++] = 'u';
+                buffer[position++] = HEX[(c >> 12) & 0xF];
+                buffer[position++] = HEX[(c >> 8) & 0xF];
+                buffer[position++] = HEX[(c >> 4) & 0xF];
+                buffer[position++] = HEX[c & 0xF];
+            }
+            previous = c;
+        }
+        write((byte) '"');
+    }
+
+    /**
+     * Writes the non ASCII char at the given position in UTF-8, returns the position of the last
+     * char consumed
+     */
+    private int writeUTF8(String s, int i) {
+        char c = s.charAt(i);
+        ensureCapacity(4);
+        if (c < 0x800) {
+            buffer[position++] = (byte) (0xC0 | (c >> 6));
+            buffer[position++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(i + 1));
+            buffer[position++] = (byte) (0xF0 | (cp >> 18));
+            buffer[position++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            buffer[position++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            buffer[position++] = (byte) (0x80 | (cp & 0x3F));
+            return i + 1;
+        } else if (Character.isSurrogate(c)) {
+            // unpaired surrogate, same replacement the JDK encoder uses
+            buffer[position++] = '?';
+        } else {
+            buffer[position++] = (byte) (0xE0 | (c >> 12));
+            buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[position++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return i;
+    }
+
+    private void checkFinite(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new JSONException("JSON does not allow non-finite numbers.");
+        }
+    }
+
+    /**
+     * Checks a value can be written at this point, and writes the separator if needed
+     */
+    private void beforeValue() {
+        if (depth == 0) {
+            return;
+        }
+        if (objects[depth - 1]) {
+            if (!afterKey) {
+                throw new JSONException("Misplaced value, a key is expected.");
+            }
+            afterKey = false;
+        } else {
+            if (elements[depth - 1]) {
+                write((byte) ',');
+            }
+            elements[depth - 1] = true;
+        }
+    }
+
+    private void push(boolean object) {
+        if (depth == objects.length) {
+            objects = Arrays.copyOf(objects, depth * 2);
+            elements = Arrays.copyOf(elements, depth * 2);
+        }
+        objects[depth] = object;
+        elements[depth] = false;
+        depth++;
+    }
+
+    private void pop(boolean object) {
+        if (depth == 0 || objects[depth - 1] != object || afterKey) {
+            throw new JSONException("Nesting error.");
+        }
+        depth--;
+    }
+
+    private void write(byte b) {
+        if (position == buffer.length) {
+            drain();
+        }
+        buffer[position++] = b;
+    }
+
+    private void write(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void ensureCapacity(int length) {
+        if (position + length > buffer.length) {
+            drain();
+        }
+    }
+
+    private void drain() {
+        try {
+            out.write(buffer, 0, position);
+            position = 0;
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+}
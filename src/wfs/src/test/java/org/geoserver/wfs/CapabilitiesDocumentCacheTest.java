@@ -0,0 +1,129 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.config.CapabilitiesDocumentCache;
+import org.geoserver.data.test.MockData;
+import org.geoserver.platform.GeoServerExtensions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class CapabilitiesDocumentCacheTest extends WFSTestSupport {
+
+    static final String CAPABILITIES = "wfs?service=WFS&version=1.1.0&request=GetCapabilities";
+
+    CapabilitiesDocumentCache cache;
+
+    @Before
+    public void enableCache() {
+        cache = GeoServerExtensions.bean(CapabilitiesDocumentCache.class);
+        cache.setEnabled(true);
+    }
+
+    @After
+    public void disableCache() {
+        cache.setEnabled(false);
+    }
+
+    MockHttpServletResponse getCapabilities(String path, String... headers) throws Exception {
+        MockHttpServletRequest request = createRequest(path);
+        request.setMethod("GET");
+        request.setContent(new byte[] {});
+        for (int i = 0; i < headers.length - 1; i += 2) {
+            request.addHeader(headers[i], headers[i + 1]);
+        }
+        return dispatch(request);
+    }
+
+    @Test
+    public void testHit() throws Exception {
+        long misses = cache.getMisses();
+        long hits = cache.getHits();
+        String first = getCapabilities(CAPABILITIES).getContentAsString();
+        String second = getCapabilities(CAPABILITIES).getContentAsString();
+        assertEquals(first, second);
+        assertEquals(misses + 1, cache.getMisses());
+        assertEquals(hits + 1, cache.getHits());
+
+        // a different request is a different document
+        getCapabilities("wfs?service=WFS&version=1.0.0&request=GetCapabilities");
+        assertEquals(misses + 2, cache.getMisses());
+    }
+
+    @Test
+    public void testGzip() throws Exception {
+        String plain = getCapabilities(CAPABILITIES).getContentAsString();
+        MockHttpServletResponse response = getCapabilities(CAPABILITIES,
+                HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        byte[] unzipped = IOUtils.toByteArray(
+                new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray())));
+        assertEquals(plain, new String(unzipped, response.getCharacterEncoding()));
+
+        // not gzipped if not accepted
+        response = getCapabilities(CAPABILITIES);
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    public void testCatalogChange() throws Exception {
+        String before = getCapabilities(CAPABILITIES).getContentAsString();
+        String workspaceBefore = getCapabilities("cite/" + CAPABILITIES).getContentAsString();
+        String otherWorkspace = getCapabilities("sf/" + CAPABILITIES).getContentAsString();
+
+        FeatureTypeInfo ft = getCatalog().getFeatureTypeByName(getLayerId(MockData.BUILDINGS));
+        String title = ft.getTitle();
+        try {
+            ft.setTitle("A brand new title");
+            getCatalog().save(ft);
+
+            // the global and the cite documents are rebuilt, the sf one is still cached
+            long hits = cache.getHits();
+            String after = getCapabilities(CAPABILITIES).getContentAsString();
+            assertFalse(before.equals(after));
+            assertTrue(after.contains("A brand new title"));
+            assertTrue(getCapabilities("cite/" + CAPABILITIES).getContentAsString()
+                    .contains("A brand new title"));
+            assertFalse(workspaceBefore.contains("A brand new title"));
+            assertEquals(hits, cache.getHits());
+            assertEquals(otherWorkspace,
+                    getCapabilities("sf/" + CAPABILITIES).getContentAsString());
+            assertEquals(hits + 1, cache.getHits());
+        } finally {
+            ft.setTitle(title);
+            getCatalog().save(ft);
+        }
+    }
+
+    @Test
+    public void testServiceChange() throws Exception {
+        getCapabilities(CAPABILITIES);
+        WFSInfo wfs = getGeoServer().getService(WFSInfo.class);
+        String title = wfs.getTitle();
+        try {
+            wfs.setTitle("Changed WFS title");
+            getGeoServer().save(wfs);
+            assertTrue(getCapabilities(CAPABILITIES).getContentAsString()
+                    .contains("Changed WFS title"));
+        } finally {
+            wfs.setTitle(title);
+            getGeoServer().save(wfs);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import org.custommonkey.xmlunit.XMLAssert;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.data.test.MockData;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.wfs.v2_0.WFS20TestSupport;
+import org.geotools.data.Query;
+import org.geotools.filter.v2_0.FES;
+import org.geotools.gml3.v3_2.GML;
+import org.geotools.wfs.v2_0.WFS;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class NumberMatchedCacheTest extends WFS20TestSupport {
+
+    static final String PAGE = "wfs?request=GetFeature&version=2.0.0&service=wfs"
+            + "&typename=cdf:Fifteen&count=5&startIndex=";
+
+    NumberMatchedCache cache;
+
+    @Before
+    public void clearCache() {
+        cache = GeoServerExtensions.bean(NumberMatchedCache.class);
+        cache.clear();
+    }
+
+    @Test
+    public void testPagingReusesCount() throws Exception {
+        long size = cache.counts.size();
+        for (int startIndex = 0; startIndex < 15; startIndex += 5) {
+            Document doc = getAsDOM(PAGE + startIndex);
+            XMLAssert.assertXpathEvaluatesTo("15", "/wfs:FeatureCollection/@numberMatched", doc);
+            XMLAssert.assertXpathEvaluatesTo("5", "/wfs:FeatureCollection/@numberReturned", doc);
+            // only the first page runs the count
+            assertEquals(size + 1, cache.counts.size());
+        }
+    }
+
+    @Test
+    public void testTransactionInvalidates() throws Exception {
+        Document doc = getAsDOM(PAGE + 0);
+        XMLAssert.assertXpathEvaluatesTo("15", "/wfs:FeatureCollection/@numberMatched", doc);
+        long size = cache.counts.size();
+        long version = cache.version(MockData.FIFTEEN);
+
+        String update = "<wfs:Transaction service='WFS' version='2.0.0' "
+                + "xmlns:cdf='" + MockData.CDF_URI + "' "
+                + "xmlns:fes='" + FES.NAMESPACE + "' "
+                + "xmlns:gml='" + GML.NAMESPACE + "' "
+                + "xmlns:wfs='" + WFS.NAMESPACE + "'>"
+                + "<wfs:Update typeName='cdf:Fifteen'>"
+                + "<wfs:Property><wfs:ValueReference>pointProperty</wfs:ValueReference>"
+                + "<wfs:Value><gml:Point srsName='EPSG:32615'><gml:pos>500050 500050</gml:pos>"
+                + "</gml:Point></wfs:Value></wfs:Property>"
+                + "<fes:Filter><fes:ResourceId rid='Fifteen.0'/></fes:Filter>"
+                + "</wfs:Update></wfs:Transaction>";
+        doc = postAsDOM("wfs", update);
+        XMLAssert.assertXpathEvaluatesTo("1", "//wfs:totalUpdated", doc);
+        assertTrue(cache.version(MockData.FIFTEEN) > version);
+
+        // the next page cannot use the count computed before the transaction
+        doc = getAsDOM(PAGE + 5);
+        XMLAssert.assertXpathEvaluatesTo("15", "/wfs:FeatureCollection/@numberMatched", doc);
+        assertEquals(size + 1, cache.counts.size());
+    }
+
+    @Test
+    public void testUnreadCountsCancelled() throws Exception {
+        FeatureTypeInfo info = getCatalog().getFeatureTypeByName(getLayerId(MockData.FIFTEEN));
+        Query query = new Query(MockData.FIFTEEN.getLocalPart());
+        CountExecutor count = new CountExecutor(info.getFeatureSource(null, null), query,
+                cache.key(info, query));
+
+        // keep the threads busy, so that the count stays queued
+        CountDownLatch latch = new CountDownLatch(1);
+        List<Future<?>> blockers = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, NumberMatchedCache.THREADS); i++) {
+            blockers.add(cache.executor.submit(() -> {
+                latch.await();
+                return null;
+            }));
+        }
+        try {
+            List<Future<Integer>> futures = cache.submitAll(Collections.singletonList(count));
+            assertFalse(futures.get(0).isDone());
+            // the request finishes without reading the numberMatched
+            cache.finished(null);
+            assertTrue(futures.get(0).isCancelled());
+            assertNull(cache.requestCounts.get());
+        } finally {
+            latch.countDown();
+        }
+        for (Future<?> blocker : blockers) {
+            blocker.get();
+        }
+    }
+}
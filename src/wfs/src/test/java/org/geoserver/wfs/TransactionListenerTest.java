@@ -8,7 +8,13 @@ package org.geoserver.wfs;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
 
 import net.opengis.wfs.DeleteElementType;
 import net.opengis.wfs.InsertElementType;
@@ -19,6 +25,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.opengis.feature.Feature;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
 
 /**
  * This test must be run with the server configured with the wfs 1.0 cite
@@ -120,6 +128,60 @@ public class TransactionListenerTest extends WFSTestSupport {
         assertEquals(fid, inserted.getIdentifier().getID());
     }
 
+    String line(String id) {
+        return "<cgf:Lines>" + "<cgf:lineStringProperty>" + "<gml:LineString>"
+                + "<gml:coordinates decimal=\".\" cs=\",\" ts=\" \">"
+                + "494475.71056415,5433016.8189323 494982.70115662,5435041.95096618"
+                + "</gml:coordinates>" + "</gml:LineString>" + "</cgf:lineStringProperty>"
+                + "<cgf:id>" + id + "</cgf:id>" + "</cgf:Lines>";
+    }
+
+    String point(String id) {
+        return "<cgf:Points>" + "<cgf:id>" + id + "</cgf:id>"
+                + "<cgf:altitude>100</cgf:altitude>" + "<cgf:pointProperty>"
+                + "<gml:Point><gml:coordinates>494475.71056415,5433016.8189323</gml:coordinates>"
+                + "</gml:Point>" + "</cgf:pointProperty>" + "</cgf:Points>";
+    }
+
+    @Test
+    public void testInsertMixedTypes() throws Exception {
+        String insert = "<wfs:Transaction service=\"WFS\" version=\"1.0.0\" "
+                + "xmlns:cgf=\"http://www.opengis.net/cite/geometry\" "
+                + "xmlns:ogc=\"http://www.opengis.net/ogc\" "
+                + "xmlns:wfs=\"http://www.opengis.net/wfs\" "
+                + "xmlns:gml=\"http://www.opengis.net/gml\"> " + "<wfs:Insert > "
+                + line("l1") + point("p1") + line("l2") + line("l3") + point("p2")
+                + "</wfs:Insert>" + "</wfs:Transaction>";
+        Document dom = postAsDOM("wfs", insert);
+
+        // one pair of events per type, in order of first appearance
+        assertEquals(4, listener.events.size());
+        QName[] layers = { CiteTestData.LINES, CiteTestData.POINTS };
+        for (int i = 0; i < listener.events.size(); i++) {
+            TransactionEvent event = (TransactionEvent) listener.events.get(i);
+            assertEquals(i % 2 == 0 ? TransactionEventType.PRE_INSERT
+                    : TransactionEventType.POST_INSERT, event.getType());
+            assertEquals(layers[i / 2], event.getLayerName());
+            assertTrue(event.getSource() instanceof InsertElementType);
+        }
+        // the pre and post insert events of each type carry all its features
+        assertEquals(10, listener.features.size());
+
+        // the fids are reported in document order, across types
+        Map<String, Object> ids = new HashMap<>();
+        for (Object f : listener.features) {
+            Feature feature = (Feature) f;
+            ids.put(feature.getIdentifier().getID(), feature.getProperty("id").getValue());
+        }
+        NodeList fids = dom.getElementsByTagName("ogc:FeatureId");
+        assertEquals(5, fids.getLength());
+        List<Object> inserted = new ArrayList<>();
+        for (int i = 0; i < fids.getLength(); i++) {
+            inserted.add(ids.get(((Element) fids.item(i)).getAttribute("fid")));
+        }
+        assertEquals(Arrays.asList("l1", "p1", "l2", "l3", "p2"), inserted);
+    }
+
     @Test
     public void testUpdate() throws Exception {
         // perform an update
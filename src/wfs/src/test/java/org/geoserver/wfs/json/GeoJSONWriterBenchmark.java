@@ -0,0 +1,117 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.json;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Feature collection encoding time with {@link GeoJSONBuilder} and with {@link GeoJSONWriter}.
+ */
+public class GeoJSONWriterBenchmark {
+
+    static final Logger LOGGER = Logging.getLogger(GeoJSONWriterBenchmark.class);
+
+    static final int FEATURES = Integer.getInteger("benchmark.features", 20000);
+
+    static final int VERTICES = Integer.getInteger("benchmark.vertices", 50);
+
+    static final int ROUNDS = 5;
+
+    /**
+     * Counts the bytes, and throws them away
+     */
+    static class CountingOutputStream extends OutputStream {
+
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        GeometryFactory gf = new GeometryFactory();
+        Geometry[] geometries = new Geometry[FEATURES];
+        for (int i = 0; i < FEATURES; i++) {
+            Coordinate[] coordinates = new Coordinate[VERTICES + 1];
+            for (int j = 0; j < VERTICES; j++) {
+                double angle = 2 * Math.PI * j / VERTICES;
+                coordinates[j] = new Coordinate(500000 + i + Math.cos(angle) * 123.456789,
+                        4500000 + i + Math.sin(angle) * 123.456789);
+            }
+            coordinates[VERTICES] = coordinates[0];
+            geometries[i] = gf.createPolygon(coordinates);
+        }
+
+        // warm up, then measure
+        for (boolean report : new boolean[] { false, true }) {
+            long builderTime = 0, writerTime = 0, builderBytes = 0, writerBytes = 0;
+            for (int r = 0; r < ROUNDS; r++) {
+                CountingOutputStream out = new CountingOutputStream();
+                long start = System.nanoTime();
+                Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                GeoJSONBuilder builder = new GeoJSONBuilder(w);
+                builder.object().key("type").value("FeatureCollection").key("features").array();
+                for (int i = 0; i < FEATURES; i++) {
+                    builder.object().key("type").value("Feature").key("id")
+                            .value("feature." + i).key("geometry");
+                    builder.writeGeom(geometries[i]);
+                    builder.key("properties").object().key("name").value("Feature " + i)
+                            .key("count").value(i).key("area").value(geometries[i].getArea())
+                            .endObject().endObject();
+                }
+                builder.endArray().endObject();
+                w.flush();
+                builderTime += System.nanoTime() - start;
+                builderBytes += out.count;
+
+                out = new CountingOutputStream();
+                start = System.nanoTime();
+                GeoJSONWriter writer = new GeoJSONWriter(out, StandardCharsets.UTF_8);
+                writer.object().key("type").value("FeatureCollection").key("features").array();
+                for (int i = 0; i < FEATURES; i++) {
+                    writer.object().key("type").value("Feature").key("id").value("feature." + i)
+                            .key("geometry");
+                    writer.writeGeom(geometries[i]);
+                    writer.key("properties").object().key("name").value("Feature " + i)
+                            .key("count").value(i).key("area").value(geometries[i].getArea())
+                            .endObject().endObject();
+                }
+                writer.endArray().endObject();
+                writer.flush();
+                writerTime += System.nanoTime() - start;
+                writerBytes += out.count;
+            }
+
+            if (report) {
+                LOGGER.log(Level.INFO, String.format(
+                        "%d features, %d vertices: json-lib %.1f ms (%.1f MB/s), writer %.1f ms (%.1f MB/s)",
+                        FEATURES, VERTICES, builderTime / 1e6 / ROUNDS,
+                        builderBytes / (builderTime / 1e9) / 1e6, writerTime / 1e6 / ROUNDS,
+                        writerBytes / (writerTime / 1e9) / 1e6));
+            }
+        }
+    }
+}
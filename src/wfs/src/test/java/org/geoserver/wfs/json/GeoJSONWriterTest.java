@@ -0,0 +1,250 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import org.geotools.referencing.CRS;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKTReader;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+
+public class GeoJSONWriterTest {
+
+    ByteArrayOutputStream bytes;
+
+    GeoJSONWriter writer;
+
+    @Before
+    public void setUp() {
+        bytes = new ByteArrayOutputStream();
+        writer = new GeoJSONWriter(bytes, StandardCharsets.UTF_8);
+    }
+
+    String written() {
+        writer.flush();
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks the writer produces the same output as the {@link GeoJSONBuilder}
+     */
+    void assertSameAsBuilder(Object value, int numDecimals) {
+        StringWriter expected = new StringWriter();
+        GeoJSONBuilder builder = new GeoJSONBuilder(expected);
+        builder.setNumberOfDecimals(numDecimals);
+        builder.array().value(value).endArray();
+
+        setUp();
+        writer.setNumberOfDecimals(numDecimals);
+        writer.array().value(value).endArray();
+        assertEquals(expected.toString(), written());
+    }
+
+    @Test
+    public void testWriteNormal() throws Exception {
+        Geometry g = new WKTReader().read("MULTILINESTRING((0 0, 1 1))");
+        writer.writeGeom(g);
+
+        assertEquals("{\"type\":\"MultiLineString\",\"coordinates\":[[[0,0],[1,1]]]}",
+                written());
+    }
+
+    @Test
+    public void testWriteGeomCollection() throws Exception {
+        Geometry g = new WKTReader().read("GEOMETRYCOLLECTION(POINT(2 0),POINT(7 1))");
+        writer.writeGeom(g);
+        assertEquals("{\"type\":\"GeometryCollection\",\"geometries\":[{\"type\":\"Point\",\"coordinates\":[2,0]},{\"type\":\"Point\",\"coordinates\":[7,1]}]}",
+                written());
+    }
+
+    @Test
+    public void testWrite3DPolygon() throws Exception {
+        Geometry g = new WKTReader().read("POLYGON((0 0 0, 0 10 1, 10 10 2, 10 0 3, 0 0 0),(1 1 4, 1 2 5, 2 2 6, 2 1 7, 1 1 4))");
+        writer.writeGeom(g);
+        assertEquals("{\"type\":\"Polygon\",\"coordinates\":[[[0,0,0],[0,10,1],[10,10,2],[10,0,3],[0,0,0]],[[1,1,4],[1,2,5],[2,2,6],[2,1,7],[1,1,4]]]}", written());
+    }
+
+    @Test
+    public void testNumberOfDecimalsFor3dLine() throws Exception {
+        writer.setNumberOfDecimals(3);
+        Geometry g = new WKTReader().read("LINESTRING(1E-3 1E-4 1E-5, 0 10.12312321 1.000002, 10.1 10.2 2.0, 10 0 3, 0 0 0)");
+        writer.writeGeom(g);
+        assertEquals("{\"type\":\"LineString\",\"coordinates\":[[0.001,0,0],[0,10.123,1],[10.1,10.2,2],[10,0,3],[0,0,0]]}", written());
+    }
+
+    @Test
+    public void testNegativeRounding() throws Exception {
+        writer.setNumberOfDecimals(2);
+        Geometry g = new WKTReader().read("MULTIPOINT((-0.001 -2.125), (-10.994 0.05))");
+        writer.writeGeom(g);
+        assertEquals("{\"type\":\"MultiPoint\",\"coordinates\":[[0,-2.12],[-10.99,0.05]]}",
+                written());
+    }
+
+    @Test
+    public void testAxisOrderAndBoundingBox() throws Exception {
+        writer.setAxisOrder(CRS.AxisOrder.NORTH_EAST);
+        writer.object();
+        writer.key("geometry").writeGeom(new WKTReader().read("POINT(1 2)"));
+        writer.writeBoundingBox(new Envelope(1, 3, 2, 4));
+        writer.endObject();
+        assertEquals("{\"geometry\":{\"type\":\"Point\",\"coordinates\":[2,1]},\"bbox\":[2,1,4,3]}",
+                written());
+    }
+
+    @Test
+    public void testSameGeometriesAsBuilder() throws Exception {
+        WKTReader reader = new WKTReader();
+        String[] wkts = new String[] { "POINT(500050.123456789 -4.5E-7)",
+                "LINESTRING(1.0E7 2.5E8, 123456789.987654321 0.30000000000000004)",
+                "MULTIPOLYGON(((0 0, 0 1, 1 1, 0 0)),((-10.5 -10.5, -10.5 -11, -11 -11, -10.5 -10.5)))",
+                "MULTILINESTRING((0 0 1, 1 1 2), (2 2 3, 3 3 4))" };
+        for (String wkt : wkts) {
+            for (int numDecimals : new int[] { 0, 2, 6, 8, 16 }) {
+                Geometry g = reader.read(wkt);
+                StringWriter expected = new StringWriter();
+                GeoJSONBuilder builder = new GeoJSONBuilder(expected);
+                builder.setNumberOfDecimals(numDecimals);
+                builder.writeGeom(g);
+
+                setUp();
+                writer.setNumberOfDecimals(numDecimals);
+                writer.writeGeom(g);
+                // the very large and very small numbers do not use the scientific notation
+                // anymore, compare the values
+                assertSameJSON(JSONObject.fromObject(expected.toString()),
+                        JSONObject.fromObject(written()));
+            }
+        }
+    }
+
+    void assertSameJSON(Object expected, Object actual) {
+        if (expected instanceof JSONObject) {
+            JSONObject eo = (JSONObject) expected;
+            JSONObject ao = (JSONObject) actual;
+            assertEquals(eo.keySet(), ao.keySet());
+            for (Object key : eo.keySet()) {
+                assertSameJSON(eo.get(key), ao.get(key));
+            }
+        } else if (expected instanceof JSONArray) {
+            JSONArray ea = (JSONArray) expected;
+            JSONArray aa = (JSONArray) actual;
+            assertEquals(ea.size(), aa.size());
+            for (int i = 0; i < ea.size(); i++) {
+                assertSameJSON(ea.get(i), aa.get(i));
+            }
+        } else if (expected instanceof Number) {
+            assertEquals(((Number) expected).doubleValue(), ((Number) actual).doubleValue(), 0);
+        } else {
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testSameValuesAsBuilder() throws Exception {
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+        cal.clear();
+        cal.set(Calendar.YEAR, 2011);
+        cal.set(Calendar.MONTH, 9);
+        cal.set(Calendar.DAY_OF_MONTH, 25);
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("a", 1);
+        map.put("b", Arrays.asList("x", null, 2.5));
+
+        List<Object> values = Arrays.asList(null, "", "plain", "quote\" back\\slash",
+                "</script>", "tab\tnew\nline\u0001", "caf\u00e9 \ud83d\ude00", "null",
+                Integer.MAX_VALUE, Long.MIN_VALUE, (short) -3, (byte) 7, 0d, -0d, 1d, 123.0,
+                -333.2365d, 1e7, 1e-5, Double.MAX_VALUE, Double.MIN_VALUE, 0.23235656f,
+                new BigDecimal("2.50"), BigInteger.TEN, true, false, 'c',
+                UUID.fromString("12345678-1234-1234-1234-123456781234"),
+                new java.sql.Date(cal.getTimeInMillis()), cal, map);
+        for (Object value : values) {
+            assertSameAsBuilder(value, 6);
+        }
+    }
+
+    @Test
+    public void testNonUTF8Charset() throws Exception {
+        Charset latin1 = StandardCharsets.ISO_8859_1;
+        assertTrue(GeoJSONWriter.isSupported(latin1));
+        writer = new GeoJSONWriter(bytes, latin1);
+        writer.object().key("name").value("caf\u00e9 \u20ac").endObject();
+        writer.flush();
+        // non ASCII chars are escaped, the output is valid in any ASCII compatible charset
+        assertEquals("{\"name\":\"caf\\u00e9 \\u20ac\"}",
+                new String(bytes.toByteArray(), latin1));
+    }
+
+    @Test
+    public void testUnsupportedCharset() throws Exception {
+        assertFalse(GeoJSONWriter.isSupported(StandardCharsets.UTF_16));
+        try {
+            new GeoJSONWriter(bytes, StandardCharsets.UTF_16);
+            fail("UTF-16 should not be supported");
+        } catch (IllegalArgumentException e) {
+            // fine
+        }
+    }
+
+    @Test
+    public void testLargeOutput() throws Exception {
+        // goes past the buffer size a few times
+        writer.array();
+        StringBuilder expected = new StringBuilder("[");
+        for (int i = 0; i < 10000; i++) {
+            writer.value("value" + i);
+            expected.append(i > 0 ? "," : "").append("\"value").append(i).append("\"");
+        }
+        writer.endArray();
+        assertEquals(expected.append("]").toString(), written());
+    }
+
+    @Test
+    public void testMisplacedValue() throws Exception {
+        writer.object();
+        try {
+            writer.value("no key");
+            fail("A key should be required");
+        } catch (JSONException e) {
+            // fine
+        }
+    }
+
+    @Test
+    public void testNonFiniteCoordinate() throws Exception {
+        try {
+            writer.writeGeom(new WKTReader().read("POINT(1 2)").getFactory()
+                    .createPoint(new com.vividsolutions.jts.geom.Coordinate(Double.NaN, 1)));
+            fail("NaN is not valid JSON");
+        } catch (JSONException e) {
+            // fine
+        }
+    }
+}
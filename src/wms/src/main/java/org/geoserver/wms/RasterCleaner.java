@@ -7,8 +7,12 @@ package org.geoserver.wms;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.RenderedImage;
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.media.jai.PlanarImage;
 import javax.media.jai.RenderedImageList;
@@ -17,8 +21,11 @@ import org.geoserver.ows.AbstractDispatcherCallback;
 import org.geoserver.ows.Request;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.resources.image.ImageUtilities;
+import org.geotools.util.logging.Logging;
 
 public class RasterCleaner extends AbstractDispatcherCallback {
+    static final Logger LOGGER = Logging.getLogger(RasterCleaner.class);
+
     static final ThreadLocal<List<RenderedImage>> images = new ThreadLocal<List<RenderedImage>>();
 
     static final ThreadLocal<List<GridCoverage2D>> coverages = new ThreadLocal<List<GridCoverage2D>>();
@@ -70,6 +77,14 @@ public class RasterCleaner extends AbstractDispatcherCallback {
         if (list != null) {
             images.remove();
             for (RenderedImage image : list) {
+                if (image instanceof Closeable) {
+                    // e.g., frames still being rendered
+                    try {
+                        ((Closeable) image).close();
+                    } catch (IOException e) {
+                        LOGGER.log(Level.FINE, "Failed to close image", e);
+                    }
+                }
                 if (image instanceof RenderedImageList) {
                     RenderedImageList ril = (RenderedImageList) image;
                     for (int i = 0; i < ril.size(); i++) {
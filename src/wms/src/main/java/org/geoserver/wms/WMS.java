@@ -50,6 +50,8 @@ import org.geoserver.wms.WMSInfo.WMSInterpolation;
 import org.geoserver.wms.WatermarkInfo.Position;
 import org.geoserver.wms.dimension.DimensionDefaultValueSelectionStrategy;
 import org.geoserver.wms.dimension.DimensionDefaultValueSelectionStrategyFactory;
+import org.geoserver.wms.dimension.DimensionDomain;
+import org.geoserver.wms.dimension.DimensionDomainCache;
 import org.geoserver.wms.dimension.DimensionFilterBuilder;
 import org.geoserver.wms.featureinfo.GetFeatureInfoOutputFormat;
 import org.geoserver.wms.map.RenderedImageMapOutputFormat;
@@ -251,6 +253,8 @@ public class WMS implements ApplicationContextAware {
 
     private DimensionDefaultValueSelectionStrategyFactory defaultDimensionValueFactory;
 
+    private DimensionDomainCache dimensionDomainCache;
+
     public WMS(GeoServer geoserver) {
         this.geoserver = geoserver;
     }
@@ -829,6 +833,9 @@ public class WMS implements ApplicationContextAware {
         defaultDimensionValueFactory = GeoServerExtensions.extensions(
                 DimensionDefaultValueSelectionStrategyFactory.class).get(0);
 
+        dimensionDomainCache = GeoServerExtensions.bean(DimensionDomainCache.class,
+                applicationContext);
+
         // enable/disable map wrapping
         if (ENABLE_MAP_WRAPPING == null) {
             String wrapping = GeoServerExtensions.getProperty("ENABLE_MAP_WRAPPING",
@@ -1239,10 +1246,28 @@ public class WMS implements ApplicationContextAware {
                     + " does not have time support enabled");
         }
 
+        boolean list = time.getPresentation() == DimensionPresentation.LIST;
+        DimensionDomain domain = getDimensionDomain(typeInfo, time);
+        if (domain != null && (!list || domain.hasValues())) {
+            if (list && domain.isEmpty()) {
+                return null;
+            }
+            TreeSet<Date> result = new TreeSet<Date>();
+            if (list) {
+                for (Object value : domain.getValues()) {
+                    result.add((Date) value);
+                }
+            } else if (!domain.isEmpty()) {
+                result.add((Date) domain.getMin());
+                result.add((Date) domain.getMax());
+            }
+            return result;
+        }
+
         FeatureCollection collection = getDimensionCollection(typeInfo, time);
 
         TreeSet<Date> result = new TreeSet<Date>();
-        if (time.getPresentation() == DimensionPresentation.LIST) {
+        if (list) {
             final UniqueVisitor visitor = new UniqueVisitor(time.getAttribute());
             collection.accepts(visitor, null);
 
@@ -1314,12 +1339,30 @@ public class WMS implements ApplicationContextAware {
                     + " does not have elevation support enabled");
         }
 
+        boolean list = elevation.getPresentation() == DimensionPresentation.LIST
+                || (elevation.getPresentation() == DimensionPresentation.DISCRETE_INTERVAL && elevation
+                        .getResolution() == null);
+        DimensionDomain domain = getDimensionDomain(typeInfo, elevation);
+        if (domain != null && (!list || domain.hasValues())) {
+            if (list && domain.isEmpty()) {
+                return null;
+            }
+            TreeSet<Double> result = new TreeSet<Double>();
+            if (list) {
+                for (Object value : domain.getValues()) {
+                    result.add(((Number) value).doubleValue());
+                }
+            } else if (!domain.isEmpty()) {
+                result.add(((Number) domain.getMin()).doubleValue());
+                result.add(((Number) domain.getMax()).doubleValue());
+            }
+            return result;
+        }
+
         FeatureCollection collection = getDimensionCollection(typeInfo, elevation);
 
         TreeSet<Double> result = new TreeSet<Double>();
-        if (elevation.getPresentation() == DimensionPresentation.LIST
-                || (elevation.getPresentation() == DimensionPresentation.DISCRETE_INTERVAL && elevation
-                        .getResolution() == null)) {
+        if (list) {
             final UniqueVisitor visitor = new UniqueVisitor(elevation.getAttribute());
             collection.accepts(visitor, null);
 
@@ -1366,6 +1409,11 @@ public class WMS implements ApplicationContextAware {
                     + " does not have " + dimensionName + " support enabled");
         }
 
+        DimensionDomain domain = getDimensionDomain(typeInfo, di);
+        if (domain != null && domain.hasValues()) {
+            return domain.getValues(range.getMinValue(), range.getMaxValue(), maxItems);
+        }
+
         // filter by date range
         FeatureSource fs = getFeatureSource(typeInfo);
         // build query to grab the time values
@@ -1482,6 +1530,16 @@ public class WMS implements ApplicationContextAware {
         return source.getFeatures(dimQuery);
     }
 
+    /**
+     * Returns the cached domain of the dimension, or null if not available
+     */
+    DimensionDomain getDimensionDomain(FeatureTypeInfo typeInfo, DimensionInfo dimension) {
+        if (dimensionDomainCache == null) {
+            return null;
+        }
+        return dimensionDomainCache.getDomain(typeInfo, dimension);
+    }
+
     /**
      * Returns the feature source for the given feature type
      */
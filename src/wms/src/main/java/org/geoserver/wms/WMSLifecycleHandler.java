@@ -20,9 +20,9 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,6 +35,12 @@ public class WMSLifecycleHandler implements GeoServerLifecycleHandler, Applicati
 
     static final Logger LOGGER = Logging.getLogger(WMSLifecycleHandler.class);
 
+    /**
+     * Number of threads rendering the animation frames
+     */
+    static final int ANIMATOR_THREADS = Integer.getInteger("org.geoserver.wms.animator.threads",
+            Runtime.getRuntime().availableProcessors());
+
     GeoServerDataDirectory data;
     WMS wmsConfig;
 
@@ -81,10 +87,19 @@ public class WMSLifecycleHandler implements GeoServerLifecycleHandler, Applicati
     private void resetAnimatorExecutorService() {
         shutdownAnimatorExecutorService();
 
-        Long framesTimeout = this.wmsConfig.getMaxAnimatorRenderingTime() != null ? 
-                this.wmsConfig.getMaxAnimatorRenderingTime() : Long.MAX_VALUE;
-        ExecutorService animatorExecutorService = 
-            new ThreadPoolExecutor(4, 20, framesTimeout, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+        // a bounded pool, the frames exceeding it wait in the queue
+        ExecutorService animatorExecutorService = Executors.newFixedThreadPool(ANIMATOR_THREADS,
+                new ThreadFactory() {
+                    final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r,
+                                "GeoServer animator " + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
 
         this.wmsConfig.setAnimatorExecutorService(animatorExecutorService);
     }
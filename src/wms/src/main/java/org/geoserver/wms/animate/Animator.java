@@ -5,13 +5,15 @@
  */
 package org.geoserver.wms.animate;
 
-import java.awt.image.RenderedImage;
+import java.io.Closeable;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
 
+import javax.media.jai.RenderedImageList;
+
 import org.geoserver.catalog.LayerGroupInfo;
 import org.geoserver.catalog.LayerInfo;
 import org.geoserver.wms.DefaultWebMapService;
@@ -122,13 +124,21 @@ public class Animator {
         }
 
         // initializing the catalog visitor. This takes care of producing single
-        // RenderedImages.
+        // RenderedImages, the frames start rendering in the background right away
         FrameCatalogVisitor visitor = new FrameCatalogVisitor();
         frameCatalog.getFrames(visitor);
-        RenderedImage imageList = visitor.produce(frameCatalog.getWmsConfiguration());
+        RenderedImageList imageList = visitor.produce(frameCatalog.getWmsConfiguration());
 
         // run a single getmap to get the right mime type and map context
-        WebMap wmsResponse = wms.getMap(request);
+        WebMap wmsResponse;
+        try {
+            wmsResponse = wms.getMap(request);
+        } catch (Exception e) {
+            if (imageList instanceof Closeable) {
+                ((Closeable) imageList).close();
+            }
+            throw e;
+        }
 
         return new RenderedImageMap(((RenderedImageMap) wmsResponse).getMapContext(), imageList,
                 wmsResponse.getMimeType());
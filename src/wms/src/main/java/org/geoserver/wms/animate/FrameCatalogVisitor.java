@@ -11,13 +11,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.concurrent.FutureTask;
 
 import javax.media.jai.RenderedImageList;
 
@@ -36,25 +32,33 @@ import org.geoserver.wms.map.RenderedImageMapResponse;
 
 /**
  * The Frame Visitor contains the logic to produce frame images.<br/>
- * The "visit" method initializes the runnables and the animatorExecutor service, while
- * the "produce" method runs the tasks and generated the frames images.
+ * The "visit" method collects the frames to be rendered, while the "produce" method returns
+ * the list of frames, rendered concurrently on the animator executor service as the encoder
+ * consumes them.
+ * <p>
+ * The frames rendered ahead of the encoder are limited by a memory budget, controlled by the
+ * {@code org.geoserver.wms.animator.memoryBudget} system property (in bytes, defaults to 64MB).
+ * 
  * @author Alessio Fabiani, GeoSolutions S.A.S., alessio.fabiani@geo-solutions.it
  * @author Andrea Aime, GeoSolutions S.A.S., andrea.aime@geo-solutions.it
  */
 public class FrameCatalogVisitor {
 
+    static final long MEMORY_BUDGET = Long.getLong("org.geoserver.wms.animator.memoryBudget",
+            64 * 1024 * 1024);
+
     /**
      * total number of available frames for this visitor
      */
     int framesNumber;
 
     /**
-     * the list of runnables to be executed
+     * the frames to be rendered
      */
-    List<Future<RenderedImage>> tasks;
+    List<FrameLoader> loaders;
 
     /**
-     * Adds a new visitor to the runnables list and initializes the animatorExecutor service is not yet initialied. 
+     * Adds a new frame to the list of frames to be rendered 
      * @param request
      * @param wms
      * @param wmsConfiguration
@@ -62,87 +66,47 @@ public class FrameCatalogVisitor {
      * @param avalue
      */
     public void visit(final GetMapRequest request, WebMapService wms, WMS wmsConfiguration, String aparam, String avalue) {
-        if (this.tasks == null) {
-            this.tasks = new LinkedList<Future<RenderedImage>>();
+        if (this.loaders == null) {
+            this.loaders = new ArrayList<FrameLoader>();
         }
 
-        FrameLoader loader = new FrameLoader(request, wms, wmsConfiguration, aparam, avalue);
-        
-        
-        final FutureTask<RenderedImage> task = new FutureTask<RenderedImage>(loader);
-        this.tasks.add(task);
+        this.loaders.add(new FrameLoader(request, wms, wmsConfiguration, aparam, avalue));
         this.framesNumber++;
-
-        // run the loading in this thread
-        wmsConfiguration.getAnimatorExecutorService().execute(task);
     }
 
     /**
-     * Invokes the Executor service and produces the frames images.
+     * Starts rendering the frames images, and returns them as a list that can be consumed
+     * while the rendering is still in progress.
      * @param wmsConfiguration
      *
      * @throws IOException
      */
     public RenderedImageList produce(WMS wmsConfiguration) throws IOException {
-        List<RenderedImage> images = new ArrayList<RenderedImage>();
-
-        long gifAnimatedSize = 0;
-
-        for (Future<RenderedImage> future : tasks) {
-            RenderedImage image = null;
-            try {
-                image = future.get();
-            } catch (InterruptedException e) {
-                dispose();
-                throw new IOException(e);
-            } catch (ExecutionException e) {
-                dispose();
-                throw new IOException(e);
-            }
-
-            if (image == null) {
-                continue;
-            }
-
-            // collect the images
-            gifAnimatedSize += getImageSizeInBytes(image);
-            if (wmsConfiguration.getMaxRenderingSize() != null
-                    && gifAnimatedSize >= wmsConfiguration.getMaxRenderingSize()) {
-                dispose();
-                throw new IOException("Max rendering size exceed!");
-            }
-
-            images.add(image);
-        }
-
-        if (images == null || images.size() == 0) {
+        if (loaders == null || loaders.isEmpty()) {
             dispose();
             throw new IOException("Empty list of frames.");
         }
 
-        dispose();
-        return new RenderedImageList(images);
-    }
-
-    private long getImageSizeInBytes(RenderedImage image) {
-        int tileWidth = image.getTileWidth();
-        int tileLength = image.getNumXTiles();
-        int numBands = image.getSampleModel().getNumBands();
-        int[] sampleSize = image.getSampleModel().getSampleSize();
+        // how many frames can be kept in memory at the same time, assuming 4 bytes per pixel
+        GetMapRequest request = loaders.get(0).request;
+        long frameSize = Math.max(1, 4L * request.getWidth() * request.getHeight());
+        int window = (int) Math.min(loaders.size(), Math.max(1, MEMORY_BUDGET / frameSize));
 
-        return (long) Math.ceil(2 * tileWidth * tileLength * numBands * (sampleSize[0] / 8.0));
+        FrameList frames = new FrameList(loaders, wmsConfiguration.getAnimatorExecutorService(),
+                window, wmsConfiguration.getMaxRenderingSize());
+        dispose();
+        // the encoder writes out the frames as they come, report the first frame failures
+        // and the oversized animations before the response is committed
+        frames.checkFirstFrame();
+        return frames;
     }
 
     /**
-     * Suddenly stops the Executor service and clear instantiated visitors.
+     * Clear the visited frames.
      */
     private void dispose() {
         this.framesNumber = 0;
-
-        if (this.tasks != null)
-            this.tasks.clear();
-        
-        this.tasks = null;
+        this.loaders = null;
     }
 
 }
@@ -160,7 +124,7 @@ class FrameLoader implements Callable<RenderedImage> {
      */
     private static final String GIF_FORMAT = "image/gif";
 
-    private GetMapRequest request;
+    GetMapRequest request;
 
     private WebMapService wms;
     
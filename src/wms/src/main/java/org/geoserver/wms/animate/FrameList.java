@@ -0,0 +1,212 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.animate;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.Closeable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.media.jai.PlanarImage;
+import javax.media.jai.RenderedImageList;
+
+import org.geoserver.platform.ServiceException;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
+import org.geotools.resources.image.ImageUtilities;
+import org.geotools.util.logging.Logging;
+
+/**
+ * The frames of an animation, rendered concurrently on the animator executor while the encoder
+ * consumes them in order.
+ * <p>
+ * Only a window of frames ahead of the encoder is rendered at any given time, sized so that the
+ * frames in flight fit the memory budget, and the frames are released as soon as they are
+ * consumed, so the whole animation is never held in memory. The first frame is retained, as
+ * the list delegates its {@link RenderedImage} methods to it. The frames are expected to be
+ * read in order, once: asking for a frame already consumed returns {@code null}.
+ */
+class FrameList extends RenderedImageList implements Closeable {
+
+    static final Logger LOGGER = Logging.getLogger(FrameList.class);
+
+    final List<FrameLoader> loaders;
+
+    final ExecutorService executor;
+
+    final int window;
+
+    final Long maxRenderingSize;
+
+    final ThreadLocalsTransfer threadLocals = new ThreadLocalsTransfer();
+
+    final List<Future<RenderedImage>> futures;
+
+    RenderedImage first;
+
+    int submitted;
+
+    int consumed;
+
+    long renderedSize;
+
+    boolean closed;
+
+    /**
+     * @param loaders the frames to render
+     * @param executor the executor rendering the frames
+     * @param window the max number of frames rendered ahead of the encoder
+     * @param maxRenderingSize the max size of the animation, or {@code null}
+     */
+    FrameList(List<FrameLoader> loaders, ExecutorService executor, int window,
+            Long maxRenderingSize) {
+        this.loaders = loaders;
+        this.executor = executor;
+        this.window = Math.max(1, window);
+        this.maxRenderingSize = maxRenderingSize;
+        this.futures = new ArrayList<Future<RenderedImage>>(loaders.size());
+        this.imageCollection = new AbstractList<RenderedImage>() {
+
+            @Override
+            public RenderedImage get(int index) {
+                return getFrame(index);
+            }
+
+            @Override
+            public int size() {
+                return FrameList.this.loaders.size();
+            }
+        };
+        // get the first frames going
+        submit();
+    }
+
+    private void submit() {
+        int limit = Math.min(loaders.size(), consumed + window);
+        for (; submitted < limit; submitted++) {
+            final FrameLoader loader = loaders.get(submitted);
+            futures.add(executor.submit(() -> {
+                threadLocals.apply();
+                try {
+                    return loader.call();
+                } finally {
+                    threadLocals.cleanup();
+                }
+            }));
+        }
+    }
+
+    /**
+     * Waits for the first frame, and checks the whole animation will fit in the max rendering
+     * size, assuming the other frames are as big as the first one. Meant to be called before the
+     * response starts, so that the most common failures are reported as a service exception.
+     * Failures in the later frames can only surface while encoding, and truncate the output
+     */
+    synchronized void checkFirstFrame() {
+        RenderedImage image = getFrame(0);
+        if (image != null && maxRenderingSize != null
+                && getImageSizeInBytes(image) * loaders.size() >= maxRenderingSize) {
+            close();
+            throw new ServiceException("Max rendering size exceed!");
+        }
+    }
+
+    synchronized RenderedImage getFrame(int index) {
+        if (index == 0 && first != null) {
+            return first;
+        }
+        if (closed || index < consumed) {
+            return null;
+        }
+
+        RenderedImage image = null;
+        while (consumed <= index) {
+            if (image != null) {
+                // a frame skipped by the caller
+                dispose(image);
+            }
+            image = await(consumed);
+            futures.set(consumed, null);
+            consumed++;
+            if (image != null) {
+                renderedSize += getImageSizeInBytes(image);
+                if (maxRenderingSize != null && renderedSize >= maxRenderingSize) {
+                    close();
+                    throw new ServiceException("Max rendering size exceed!");
+                }
+            }
+            submit();
+        }
+        if (index == 0) {
+            first = image;
+        }
+        return image;
+    }
+
+    private RenderedImage await(int index) {
+        try {
+            return futures.get(index).get();
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new ServiceException("Interrupted while rendering the animation frames", e);
+        } catch (ExecutionException e) {
+            close();
+            throw new ServiceException("Failed to render animation frame " + index, e.getCause());
+        } catch (CancellationException e) {
+            close();
+            throw new ServiceException("Animation frame " + index + " rendering was cancelled",
+                    e);
+        }
+    }
+
+    private long getImageSizeInBytes(RenderedImage image) {
+        int tileWidth = image.getTileWidth();
+        int tileLength = image.getNumXTiles();
+        int numBands = image.getSampleModel().getNumBands();
+        int[] sampleSize = image.getSampleModel().getSampleSize();
+
+        return (long) Math.ceil(2 * tileWidth * tileLength * numBands * (sampleSize[0] / 8.0));
+    }
+
+    /**
+     * Cancels the frames still being rendered, and disposes the ones rendered but not consumed
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Future<RenderedImage> future : futures) {
+            if (future == null) {
+                continue;
+            }
+            if (!future.cancel(true) && future.isDone()) {
+                try {
+                    dispose(future.get());
+                } catch (Exception e) {
+                    LOGGER.log(Level.FINE, "Failed to dispose animation frame", e);
+                }
+            }
+        }
+        futures.clear();
+    }
+
+    private void dispose(RenderedImage image) {
+        if (image instanceof PlanarImage) {
+            ImageUtilities.disposePlanarImageChain((PlanarImage) image);
+        } else if (image instanceof BufferedImage) {
+            ((BufferedImage) image).flush();
+        }
+    }
+}
@@ -19,10 +19,12 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -30,6 +32,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -59,6 +67,7 @@ import org.geoserver.config.ResourceErrorHandling;
 import org.geoserver.ows.URLMangler.URLType;
 import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ServiceException;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
 import org.geoserver.wms.ExtendedCapabilitiesProvider;
 import org.geoserver.wms.GetCapabilities;
 import org.geoserver.wms.GetCapabilitiesRequest;
@@ -86,6 +95,7 @@ import org.springframework.util.Assert;
 import org.vfny.geoserver.util.ResponseUtils;
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
 import org.xml.sax.helpers.AttributesImpl;
 
 import com.google.common.collect.Iterables;
@@ -125,6 +135,37 @@ public class Capabilities_1_3_0_Transformer extends TransformerBase {
 
     private WMS wmsConfig;
 
+    /**
+     * Number of threads encoding the layers in parallel, with 1 or less the layers are encoded
+     * sequentially by the request thread
+     */
+    static final int THREADS = Integer.getInteger("org.geoserver.wms.capabilities.threads",
+            Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Max number of layers being encoded ahead of the one written out, keeps the memory usage
+     * flat regardless of the number of layers
+     */
+    static final int WINDOW = THREADS * 2;
+
+    /**
+     * Lazily creates the layer encoding threads
+     */
+    static final class LayerEncoderThreads {
+        static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREADS,
+                new ThreadFactory() {
+                    final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r,
+                                "GeoServer capabilities encoder " + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
     /**
      * Creates a new WMSCapsTransformer object.
      * 
@@ -194,6 +235,13 @@ public class Capabilities_1_3_0_Transformer extends TransformerBase {
         
         private LegendSample legendSample;
 
+        /**
+         * The layers being encoded in parallel, in document order
+         */
+        private final Deque<PendingLayer> pendingLayers = new ArrayDeque<>();
+
+        private ThreadLocalsTransfer threadLocals;
+
         /**
          * Creates a new CapabilitiesTranslator object.
          * 
@@ -891,11 +939,15 @@ public class Capabilities_1_3_0_Transformer extends TransformerBase {
                     continue;
                 }
 
-                doHandleLayer(layer);
+                queueLayer(layer);
             }
             
             //handle nested layers
-            handleLayerTree(nestedLayers);
+            try {
+                handleLayerTree(nestedLayers);
+            } finally {
+                cancelLayers();
+            }
         }
         
         /**
@@ -915,9 +967,10 @@ public class Capabilities_1_3_0_Transformer extends TransformerBase {
                 // no sense in exposing a geometryless layer through wms...
                 boolean wmsExposable = isExposable(layer);
                 if (wmsExposable) {
-                    doHandleLayer(layer);
+                    queueLayer(layer);
                 }
             }
+            writeLayers();
 
             for (LayerTree childLayerTree : children) {
                 start("Layer");
@@ -948,6 +1001,88 @@ public class Capabilities_1_3_0_Transformer extends TransformerBase {
             }
         }
 
+        /**
+         * Schedules the encoding of the layer on the encoder threads, writing out the layers
+         * encoded so far in document order. Encodes the layer right away if the encoding is not
+         * parallel.
+         */
+        private void queueLayer(LayerInfo layer) {
+            if (THREADS <= 1) {
+                doHandleLayer(layer);
+                return;
+            }
+            if (threadLocals == null) {
+                threadLocals = new ThreadLocalsTransfer();
+            }
+            final ThreadLocalsTransfer transfer = threadLocals;
+            Future<SAXEventBuffer> future = LayerEncoderThreads.EXECUTOR.submit(() -> {
+                transfer.apply();
+                try {
+                    SAXEventBuffer buffer = new SAXEventBuffer();
+                    Capabilities_1_3_0_Translator translator = new Capabilities_1_3_0_Translator(
+                            buffer, wmsConfig, getMapFormats, extCapsProviders, schemaBaseURL);
+                    translator.request = request;
+                    translator.handleLayer(layer);
+                    return buffer;
+                } finally {
+                    transfer.cleanup();
+                }
+            });
+            pendingLayers.add(new PendingLayer(layer, future));
+            while (pendingLayers.size() > WINDOW) {
+                writeLayer(pendingLayers.removeFirst());
+            }
+        }
+
+        /**
+         * Writes out all the queued layers
+         */
+        private void writeLayers() {
+            while (!pendingLayers.isEmpty()) {
+                writeLayer(pendingLayers.removeFirst());
+            }
+        }
+
+        /**
+         * Cancels the queued layers, in case the encoding failed
+         */
+        private void cancelLayers() {
+            for (PendingLayer pending : pendingLayers) {
+                pending.future.cancel(true);
+            }
+            pendingLayers.clear();
+        }
+
+        /**
+         * Waits for the layer to be encoded and writes it out, handles the failures like
+         * {@link #doHandleLayer(LayerInfo)}
+         */
+        private void writeLayer(PendingLayer pending) {
+            SAXEventBuffer buffer;
+            try {
+                buffer = pending.future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServiceException("Interrupted while encoding layer: "
+                        + pending.layer.getName(), e);
+            } catch (ExecutionException e) {
+                if (skipping) {
+                    LOGGER.log(Level.WARNING, "Error writing metadata; skipping layer: "
+                            + pending.layer.getName(), e.getCause());
+                    return;
+                } else {
+                    throw new ServiceException(
+                            "Error occurred trying to write out metadata for layer: "
+                                    + pending.layer.getName(), e.getCause());
+                }
+            }
+            try {
+                buffer.replay(contentHandler);
+            } catch (SAXException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
         private boolean isExposable(LayerInfo layer) {
             // we filtered by the isEnabled property,but check for enabled() to account for the
             // resource and store
@@ -1591,5 +1726,19 @@ public class Capabilities_1_3_0_Transformer extends TransformerBase {
                 element("Identifier", id, atts);
             }
         }
+    
+        /**
+         * A layer being encoded on the encoder threads
+         */
+        private static class PendingLayer {
+            final LayerInfo layer;
+
+            final Future<SAXEventBuffer> future;
+
+            PendingLayer(LayerInfo layer, Future<SAXEventBuffer> future) {
+                this.layer = layer;
+                this.future = future;
+            }
+        }
     }
 }
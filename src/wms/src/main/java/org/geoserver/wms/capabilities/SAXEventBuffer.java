@@ -0,0 +1,147 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.capabilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Records the SAX events of a document fragment, so that the fragment can be built on a thread and
+ * written out later, on another one
+ */
+class SAXEventBuffer implements ContentHandler, LexicalHandler {
+
+    interface Event {
+        void replay(ContentHandler handler) throws SAXException;
+    }
+
+    final List<Event> events = new ArrayList<>();
+
+    /**
+     * Sends the recorded events to the handler. The lexical events are sent only if the handler
+     * is a {@link LexicalHandler}.
+     */
+    public void replay(ContentHandler handler) throws SAXException {
+        for (Event event : events) {
+            event.replay(handler);
+        }
+    }
+
+    @Override
+    public void setDocumentLocator(Locator locator) {
+        // not relevant for a fragment
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        // not relevant for a fragment
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        // not relevant for a fragment
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        events.add(h -> h.startPrefixMapping(prefix, uri));
+    }
+
+    @Override
+    public void endPrefixMapping(String prefix) throws SAXException {
+        events.add(h -> h.endPrefixMapping(prefix));
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts)
+            throws SAXException {
+        // attributes objects can be reused by the caller, copy them
+        Attributes copy = new AttributesImpl(atts);
+        events.add(h -> h.startElement(uri, localName, qName, copy));
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        events.add(h -> h.endElement(uri, localName, qName));
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        char[] text = Arrays.copyOfRange(ch, start, start + length);
+        events.add(h -> h.characters(text, 0, text.length));
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        char[] text = Arrays.copyOfRange(ch, start, start + length);
+        events.add(h -> h.ignorableWhitespace(text, 0, text.length));
+    }
+
+    @Override
+    public void processingInstruction(String target, String data) throws SAXException {
+        events.add(h -> h.processingInstruction(target, data));
+    }
+
+    @Override
+    public void skippedEntity(String name) throws SAXException {
+        events.add(h -> h.skippedEntity(name));
+    }
+
+    @Override
+    public void comment(char[] ch, int start, int length) throws SAXException {
+        char[] text = Arrays.copyOfRange(ch, start, start + length);
+        events.add(h -> {
+            if (h instanceof LexicalHandler) {
+                ((LexicalHandler) h).comment(text, 0, text.length);
+            }
+        });
+    }
+
+    @Override
+    public void startDTD(String name, String publicId, String systemId) throws SAXException {
+        // not relevant for a fragment
+    }
+
+    @Override
+    public void endDTD() throws SAXException {
+        // not relevant for a fragment
+    }
+
+    @Override
+    public void startEntity(String name) throws SAXException {
+        // not relevant for a fragment
+    }
+
+    @Override
+    public void endEntity(String name) throws SAXException {
+        // not relevant for a fragment
+    }
+
+    @Override
+    public void startCDATA() throws SAXException {
+        events.add(h -> {
+            if (h instanceof LexicalHandler) {
+                ((LexicalHandler) h).startCDATA();
+            }
+        });
+    }
+
+    @Override
+    public void endCDATA() throws SAXException {
+        events.add(h -> {
+            if (h instanceof LexicalHandler) {
+                ((LexicalHandler) h).endCDATA();
+            }
+        });
+    }
+}
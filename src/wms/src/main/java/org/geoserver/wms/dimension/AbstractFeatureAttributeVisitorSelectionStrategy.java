@@ -12,6 +12,7 @@ import java.util.logging.Logger;
 
 import org.geoserver.catalog.DimensionInfo;
 import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ServiceException;
 import org.geotools.data.FeatureSource;
 import org.geotools.data.Query;
@@ -61,6 +62,23 @@ public abstract class AbstractFeatureAttributeVisitorSelectionStrategy extends A
         return retval;
     }
 
+    /**
+     * Returns the cached domain of the dimension, or null if not available, in which case the
+     * dimension collection should be visited instead
+     * 
+     * @param typeInfo
+     * @param dimension
+     *
+     */
+    protected DimensionDomain getDimensionDomain(FeatureTypeInfo typeInfo,
+            DimensionInfo dimension) {
+        DimensionDomainCache cache = GeoServerExtensions.bean(DimensionDomainCache.class);
+        if (cache == null) {
+            return null;
+        }
+        return cache.getDomain(typeInfo, dimension);
+    }
+
     private FeatureCollection<?, ?> getDimensionCollection(FeatureTypeInfo typeInfo,
             DimensionInfo dimension) throws IOException {
         // grab the feature source
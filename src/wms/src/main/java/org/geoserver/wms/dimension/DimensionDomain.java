@@ -0,0 +1,206 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.dimension;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.geotools.feature.visitor.NearestVisitor;
+import org.geotools.util.Converters;
+
+/**
+ * The domain of a vector dimension: the sorted distinct values of the dimension attribute, along
+ * with their minimum and maximum. Domains with too many distinct values only track the minimum
+ * and maximum, see {@link #hasValues()}.
+ * <p>
+ * Instances are maintained by {@link DimensionDomainCache}, which updates them as the data changes.
+ *
+ * @see DimensionDomainCache
+ */
+public class DimensionDomain {
+
+    final int maxValues;
+
+    /**
+     * The distinct values, or null if there are more than {@link #maxValues}
+     */
+    volatile NavigableSet<Object> values;
+
+    volatile Object min;
+
+    volatile Object max;
+
+    /**
+     * Builds a domain out of the given values, the nulls are ignored
+     */
+    DimensionDomain(Collection<?> values, int maxValues) {
+        this.maxValues = maxValues;
+        ConcurrentSkipListSet<Object> set = new ConcurrentSkipListSet<>();
+        for (Object value : values) {
+            if (value != null) {
+                set.add(value);
+            }
+        }
+        if (!set.isEmpty()) {
+            min = set.first();
+            max = set.last();
+        }
+        if (set.size() <= maxValues) {
+            this.values = set;
+        }
+    }
+
+    /**
+     * Builds a domain tracking only the minimum and maximum
+     */
+    DimensionDomain(Object min, Object max, int maxValues) {
+        this.maxValues = maxValues;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Returns true if the domain tracks the distinct values, false if it only knows about the
+     * minimum and maximum
+     */
+    public boolean hasValues() {
+        return values != null;
+    }
+
+    /**
+     * Returns true if there are no values in the domain
+     */
+    public boolean isEmpty() {
+        return min == null;
+    }
+
+    /**
+     * The distinct values, sorted, as a read only view
+     *
+     * @throws IllegalStateException if the domain does not track the distinct values
+     */
+    public NavigableSet<Object> getValues() {
+        NavigableSet<Object> values = this.values;
+        if (values == null) {
+            throw new IllegalStateException("Too many distinct values, only min and max are known");
+        }
+        return Collections.unmodifiableNavigableSet(values);
+    }
+
+    /**
+     * Returns the distinct values in the given range, extremes included, up to maxItems values
+     * (no limit if maxItems is not positive)
+     */
+    public TreeSet<Object> getValues(Object from, Object to, int maxItems) {
+        NavigableSet<Object> values = getValues();
+        TreeSet<Object> result = new TreeSet<>();
+        if (values.isEmpty()) {
+            return result;
+        }
+        Class<?> binding = values.first().getClass();
+        Object lower = from == null ? null : Converters.convert(from, binding);
+        Object upper = to == null ? null : Converters.convert(to, binding);
+        NavigableSet<Object> range = values;
+        if (lower != null) {
+            range = range.tailSet(lower, true);
+        }
+        if (upper != null) {
+            range = range.headSet(upper, true);
+        }
+        for (Object value : range) {
+            if (maxItems > 0 && result.size() >= maxItems) {
+                break;
+            }
+            result.add(value);
+        }
+        return result;
+    }
+
+    public Object getMin() {
+        return min;
+    }
+
+    public Object getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the value nearest to the one provided, using the same criteria as
+     * {@link NearestVisitor}, or null if the domain is empty
+     *
+     * @throws IllegalStateException if the domain does not track the distinct values
+     */
+    public Object getNearest(NearestVisitor visitor, Object toMatch) {
+        NavigableSet<Object> values = getValues();
+        if (values.isEmpty()) {
+            return null;
+        }
+        Object converted = Converters.convert(toMatch, values.first().getClass());
+        if (converted == null) {
+            return null;
+        }
+        visitor.setValue(values.floor(converted), values.ceiling(converted));
+        return visitor.getNearestMatch();
+    }
+
+    /**
+     * Adds the values to the domain
+     */
+    synchronized void addAll(Collection<?> newValues) {
+        for (Object value : newValues) {
+            if (value == null) {
+                continue;
+            }
+            if (min == null || compare(value, min) < 0) {
+                min = value;
+            }
+            if (max == null || compare(value, max) > 0) {
+                max = value;
+            }
+            NavigableSet<Object> values = this.values;
+            if (values != null) {
+                values.add(value);
+                if (values.size() > maxValues) {
+                    // too many, switch to min/max tracking
+                    this.values = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a value that is no longer found in the data. Returns false if the domain cannot be
+     * updated incrementally, which happens when a min/max only domain loses one of its extremes.
+     */
+    synchronized boolean remove(Object value) {
+        NavigableSet<Object> values = this.values;
+        if (values == null) {
+            return min == null || (compare(value, min) != 0 && compare(value, max) != 0);
+        }
+        values.remove(value);
+        if (values.isEmpty()) {
+            min = null;
+            max = null;
+        } else {
+            min = values.first();
+            max = values.last();
+        }
+        return true;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static int compare(Object o1, Object o2) {
+        return ((Comparable) o1).compareTo(o2);
+    }
+
+    @Override
+    public String toString() {
+        return "DimensionDomain [min=" + min + ", max=" + max + ", values="
+                + (values == null ? "n/a" : String.valueOf(values.size())) + "]";
+    }
+}
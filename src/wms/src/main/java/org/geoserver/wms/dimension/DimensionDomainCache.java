@@ -0,0 +1,541 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.dimension;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.namespace.QName;
+
+import net.opengis.wfs.TransactionResponseType;
+import net.opengis.wfs.TransactionType;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.DimensionInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.config.impl.GeoServerLifecycleHandler;
+import org.geoserver.security.decorators.SecuredFeatureTypeInfo;
+import org.geoserver.wfs.TransactionEvent;
+import org.geoserver.wfs.TransactionEventType;
+import org.geoserver.wfs.TransactionPlugin;
+import org.geoserver.wfs.WFSException;
+import org.geotools.data.FeatureEvent;
+import org.geotools.data.FeatureListener;
+import org.geotools.data.FeatureSource;
+import org.geotools.data.FeatureStore;
+import org.geotools.data.Query;
+import org.geotools.data.Transaction;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.factory.GeoTools;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.visitor.UniqueVisitor;
+import org.geotools.util.logging.Logging;
+import org.opengis.filter.FilterFactory2;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Keeps the {@link DimensionDomain} of the vector dimensions in memory, so that capabilities
+ * documents and default value lookups do not need to scan the data on each request.
+ * <p>
+ * Domains are loaded in the background the first time they are requested (the callers fall back on
+ * querying the data while that happens), and are then kept up to date:
+ * <ul>
+ * <li>WFS-T inserts and updates add the new values as the transaction commits</li>
+ * <li>values touched by deletes and updates are checked against the data in the background, and
+ * removed if no longer present</li>
+ * <li>other non transactional changes made to the data through GeoServer (reported by
+ * {@link FeatureEvent}) cause a reload, the data is queried directly until it completes</li>
+ * <li>changes to the feature type or its store configuration drop the domain</li>
+ * <li>domains older than the time to live are reloaded in the background, to account for changes
+ * made to the data outside of GeoServer. The stale domain keeps on being used in the meantime.</li>
+ * </ul>
+ * Feature types with security limits are not cached, as the domain would be shared among users that
+ * see different data.
+ * <p>
+ * The following system variables control the cache:
+ * <ul>
+ * <li>{@code org.geoserver.wms.dimensionDomain.disabled}: set to true to disable the cache</li>
+ * <li>{@code org.geoserver.wms.dimensionDomain.maxValues}: max number of distinct values kept
+ * per domain, beyond it only the minimum and maximum are tracked (defaults to 100000)</li>
+ * <li>{@code org.geoserver.wms.dimensionDomain.ttl}: time to live of a domain, in seconds
+ * (defaults to 600)</li>
+ * </ul>
+ */
+public class DimensionDomainCache implements TransactionPlugin, CatalogListener,
+        GeoServerLifecycleHandler, DisposableBean {
+
+    static final Logger LOGGER = Logging.getLogger(DimensionDomainCache.class);
+
+    static final FilterFactory2 FF = CommonFactoryFinder.getFilterFactory2();
+
+    static final boolean DISABLED = Boolean
+            .getBoolean("org.geoserver.wms.dimensionDomain.disabled");
+
+    static final int MAX_VALUES = Integer.getInteger("org.geoserver.wms.dimensionDomain.maxValues",
+            100000);
+
+    static final long TIME_TO_LIVE = TimeUnit.SECONDS
+            .toMillis(Long.getLong("org.geoserver.wms.dimensionDomain.ttl", 600));
+
+    /**
+     * Key used to accumulate the dimension values touched by a transaction in its extended
+     * properties, until it gets committed
+     */
+    static final String CHANGES_KEY = "DIMENSION_DOMAIN_CHANGES";
+
+    /**
+     * The domain of one attribute of a feature type, and its loading state
+     */
+    static class Entry implements FeatureListener {
+        final String key;
+
+        final String featureTypeId;
+
+        final String attribute;
+
+        volatile DimensionDomain domain;
+
+        /**
+         * Last time the domain was loaded, or failed to load
+         */
+        volatile long loaded;
+
+        /**
+         * A load is scheduled or running
+         */
+        boolean loading;
+
+        /**
+         * The domain could not be updated incrementally, or changed during a load. Stays set
+         * until a load starts querying the data
+         */
+        volatile boolean dirty;
+
+        /**
+         * The source this entry listens to
+         */
+        FeatureSource<?, ?> source;
+
+        Entry(String key, String featureTypeId, String attribute) {
+            this.key = key;
+            this.featureTypeId = featureTypeId;
+            this.attribute = attribute;
+        }
+
+        @Override
+        public void changed(FeatureEvent event) {
+            if (event.getType() == FeatureEvent.Type.COMMIT
+                    || event.getType() == FeatureEvent.Type.ROLLBACK) {
+                return;
+            }
+            // transactional changes are tracked on commit (WFS-T), or left to the time to live
+            FeatureSource<?, ?> source = event.getFeatureSource();
+            if (source instanceof FeatureStore
+                    && ((FeatureStore<?, ?>) source).getTransaction() != Transaction.AUTO_COMMIT) {
+                return;
+            }
+            dirty = true;
+        }
+
+        synchronized void dispose() {
+            if (source != null) {
+                source.removeFeatureListener(this);
+                source = null;
+            }
+        }
+    }
+
+    /**
+     * The values added and possibly removed by a transaction, for a given entry
+     */
+    static class Changes {
+        final Set<Object> added = new HashSet<>();
+
+        final Set<Object> removed = new HashSet<>();
+    }
+
+    final Catalog catalog;
+
+    final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Single threaded, to avoid hitting the stores with several full scans at the same time, and
+     * to run the checks on removed values after the loads scheduled before them
+     */
+    final ExecutorService executor;
+
+    int maxValues = MAX_VALUES;
+
+    long timeToLive = TIME_TO_LIVE;
+
+    public DimensionDomainCache(Catalog catalog) {
+        this.catalog = catalog;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "GeoServer dimension domain loader");
+            t.setDaemon(true);
+            return t;
+        });
+        catalog.addListener(this);
+    }
+
+    /**
+     * Returns the domain of the given dimension, or null if it is not available yet (in that case
+     * it gets loaded in the background, and the caller should query the data directly). The
+     * domain might be slightly stale while it's being refreshed.
+     */
+    public DimensionDomain getDomain(FeatureTypeInfo typeInfo, DimensionInfo dimension) {
+        if (DISABLED || typeInfo == null || typeInfo.getId() == null || dimension == null
+                || dimension.getAttribute() == null
+                || typeInfo instanceof SecuredFeatureTypeInfo) {
+            return null;
+        }
+        String key = typeInfo.getId() + "/" + dimension.getAttribute();
+        Entry entry = entries.computeIfAbsent(key,
+                k -> new Entry(k, typeInfo.getId(), dimension.getAttribute()));
+        if (entry.dirty) {
+            // known to be out of date
+            scheduleLoad(entry);
+            return null;
+        }
+        DimensionDomain domain = entry.domain;
+        if (domain == null || System.currentTimeMillis() - entry.loaded > timeToLive) {
+            scheduleLoad(entry);
+        }
+        return domain;
+    }
+
+    void scheduleLoad(Entry entry) {
+        synchronized (entry) {
+            if (entry.loading) {
+                return;
+            }
+            entry.loading = true;
+        }
+        executor.execute(() -> load(entry));
+    }
+
+    void load(Entry entry) {
+        try {
+            FeatureTypeInfo typeInfo = catalog.getFeatureType(entry.featureTypeId);
+            if (typeInfo == null) {
+                invalidate(entry.featureTypeId);
+                return;
+            }
+            if (entry.dirty) {
+                // known to be out of date, have the callers query the data until the new domain
+                // gets published
+                entry.domain = null;
+            }
+            // changes made from now on might be missed by the query, they mark the entry dirty
+            // again
+            entry.dirty = false;
+            long start = System.currentTimeMillis();
+            DimensionDomain domain = loadDomain(typeInfo, entry);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Loaded " + domain + " for " + typeInfo.prefixedName() + "/"
+                        + entry.attribute + " in " + (System.currentTimeMillis() - start)
+                        + "ms");
+            }
+            entry.domain = domain;
+        } catch (Exception e) {
+            // will retry once the time to live expires
+            LOGGER.log(Level.WARNING, "Failed to load the dimension domain for attribute "
+                    + entry.attribute + " of feature type " + entry.featureTypeId, e);
+        } finally {
+            entry.loaded = System.currentTimeMillis();
+            synchronized (entry) {
+                entry.loading = false;
+            }
+        }
+    }
+
+    /**
+     * Collects the distinct values of the attribute
+     */
+    DimensionDomain loadDomain(FeatureTypeInfo typeInfo, Entry entry) throws IOException {
+        FeatureSource<?, ?> source = typeInfo.getFeatureSource(null, GeoTools.getDefaultHints());
+        synchronized (entry) {
+            // start listening before reading, changes made during the load will mark it dirty
+            if (entry.source == null && entries.get(entry.key) == entry) {
+                source.addFeatureListener(entry);
+                entry.source = source;
+            }
+        }
+        Query query = new Query(source.getSchema().getName().getLocalPart());
+        query.setPropertyNames(Arrays.asList(entry.attribute));
+        FeatureCollection<?, ?> collection = source.getFeatures(query);
+        UniqueVisitor visitor = new UniqueVisitor(entry.attribute);
+        collection.accepts(visitor, null);
+        return new DimensionDomain(visitor.getUnique(), maxValues);
+    }
+
+    /**
+     * Checks if the values are still found in the data, and removes them from the domain if not
+     */
+    void checkRemoved(Entry entry, Set<Object> values) {
+        try {
+            FeatureTypeInfo typeInfo = catalog.getFeatureType(entry.featureTypeId);
+            if (typeInfo == null) {
+                return;
+            }
+            FeatureSource<?, ?> source = typeInfo.getFeatureSource(null,
+                    GeoTools.getDefaultHints());
+            String typeName = source.getSchema().getName().getLocalPart();
+            for (Object value : values) {
+                Query query = new Query(typeName,
+                        FF.equals(FF.property(entry.attribute), FF.literal(value)));
+                query.setPropertyNames(Arrays.asList(entry.attribute));
+                query.setMaxFeatures(1);
+                if (source.getFeatures(query).isEmpty()) {
+                    DimensionDomain domain = entry.domain;
+                    if (domain != null && !domain.remove(value)) {
+                        entry.dirty = true;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to check the values removed from the domain of "
+                    + entry.attribute + " in feature type " + entry.featureTypeId, e);
+            entry.dirty = true;
+        }
+    }
+
+    /**
+     * Drops the domains of the given feature type
+     */
+    public void invalidate(String featureTypeId) {
+        for (Entry entry : getEntries(featureTypeId)) {
+            entries.remove(entry.key);
+            entry.dispose();
+        }
+    }
+
+    /**
+     * Drops all the domains
+     */
+    public void clear() {
+        for (Entry entry : entries.values()) {
+            entries.remove(entry.key);
+            entry.dispose();
+        }
+    }
+
+    List<Entry> getEntries(String featureTypeId) {
+        List<Entry> result = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.featureTypeId.equals(featureTypeId)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // TransactionPlugin
+
+    @Override
+    public void dataStoreChange(TransactionEvent event) throws WFSException {
+        try {
+            dataStoreChangeInternal(event);
+        } catch (Exception e) {
+            // never make the transaction fail because of the cache
+            LOGGER.log(Level.WARNING, "Failed to collect the dimension values touched by the "
+                    + "transaction, the domains of " + event.getLayerName() + " will be reloaded",
+                    e);
+            FeatureTypeInfo typeInfo = getFeatureType(event.getLayerName());
+            if (typeInfo != null) {
+                for (Entry entry : getEntries(typeInfo.getId())) {
+                    entry.dirty = true;
+                }
+            }
+        }
+    }
+
+    void dataStoreChangeInternal(TransactionEvent event) throws IOException {
+        TransactionEventType type = event.getType();
+        boolean adding = TransactionEventType.PRE_INSERT.equals(type)
+                || TransactionEventType.POST_UPDATE.equals(type);
+        boolean removing = TransactionEventType.PRE_DELETE.equals(type)
+                || TransactionEventType.PRE_UPDATE.equals(type);
+        if ((!adding && !removing) || entries.isEmpty()) {
+            return;
+        }
+        FeatureTypeInfo typeInfo = getFeatureType(event.getLayerName());
+        if (typeInfo == null) {
+            return;
+        }
+        List<Entry> typeEntries = getEntries(typeInfo.getId());
+        if (typeEntries.isEmpty()) {
+            return;
+        }
+
+        Map<String, Changes> changes = getChanges(event.getRequest());
+        for (Entry entry : typeEntries) {
+            UniqueVisitor visitor = new UniqueVisitor(entry.attribute);
+            event.getAffectedFeatures().accepts(visitor, null);
+            Changes entryChanges = changes.computeIfAbsent(entry.key, k -> new Changes());
+            @SuppressWarnings("unchecked")
+            Set<Object> values = visitor.getUnique();
+            values.remove(null);
+            if (adding) {
+                entryChanges.added.addAll(values);
+            } else {
+                entryChanges.removed.addAll(values);
+            }
+        }
+    }
+
+    FeatureTypeInfo getFeatureType(QName name) {
+        if (name == null) {
+            return null;
+        }
+        return catalog.getFeatureTypeByName(name.getNamespaceURI(), name.getLocalPart());
+    }
+
+    @SuppressWarnings("unchecked")
+    Map<String, Changes> getChanges(TransactionType transaction) {
+        Map<Object, Object> properties = transaction.getExtendedProperties();
+        Map<String, Changes> changes = (Map<String, Changes>) properties.get(CHANGES_KEY);
+        if (changes == null) {
+            changes = new HashMap<>();
+            properties.put(CHANGES_KEY, changes);
+        }
+        return changes;
+    }
+
+    @Override
+    public TransactionType beforeTransaction(TransactionType request) throws WFSException {
+        return request;
+    }
+
+    @Override
+    public void beforeCommit(TransactionType request) throws WFSException {
+        // nothing to do
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void afterTransaction(TransactionType request, TransactionResponseType result,
+            boolean committed) {
+        Map<String, Changes> changes = (Map<String, Changes>) request.getExtendedProperties()
+                .remove(CHANGES_KEY);
+        if (!committed || changes == null) {
+            return;
+        }
+        for (Map.Entry<String, Changes> e : changes.entrySet()) {
+            Entry entry = entries.get(e.getKey());
+            if (entry == null) {
+                continue;
+            }
+            Changes entryChanges = e.getValue();
+            synchronized (entry) {
+                // the load in progress might or might not see the changes, do it again later
+                if (entry.loading) {
+                    entry.dirty = true;
+                }
+            }
+            DimensionDomain domain = entry.domain;
+            if (domain != null) {
+                domain.addAll(entryChanges.added);
+            }
+            Set<Object> removed = entryChanges.removed;
+            removed.removeAll(entryChanges.added);
+            if (!removed.isEmpty()) {
+                executor.execute(() -> checkRemoved(entry, removed));
+            }
+        }
+    }
+
+    @Override
+    public int getPriority() {
+        return 0;
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // CatalogListener
+
+    @Override
+    public void handleAddEvent(CatalogAddEvent event) {
+        // nothing to do
+    }
+
+    @Override
+    public void handleRemoveEvent(CatalogRemoveEvent event) {
+        if (event.getSource() instanceof FeatureTypeInfo) {
+            invalidate(((FeatureTypeInfo) event.getSource()).getId());
+        }
+    }
+
+    @Override
+    public void handleModifyEvent(CatalogModifyEvent event) {
+        // nothing to do
+    }
+
+    @Override
+    public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+        Object source = event.getSource();
+        if (source instanceof FeatureTypeInfo) {
+            invalidate(((FeatureTypeInfo) source).getId());
+        } else if (source instanceof DataStoreInfo && !entries.isEmpty()) {
+            for (FeatureTypeInfo typeInfo : catalog
+                    .getFeatureTypesByDataStore((DataStoreInfo) source)) {
+                invalidate(typeInfo.getId());
+            }
+        }
+    }
+
+    @Override
+    public void reloaded() {
+        clear();
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // GeoServerLifecycleHandler
+
+    @Override
+    public void onReset() {
+        clear();
+    }
+
+    @Override
+    public void onDispose() {
+        clear();
+    }
+
+    @Override
+    public void beforeReload() {
+        // nothing to do
+    }
+
+    @Override
+    public void onReload() {
+        clear();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        catalog.removeListener(this);
+        executor.shutdownNow();
+        clear();
+    }
+}
@@ -9,6 +9,7 @@ import org.geoserver.catalog.DimensionInfo;
 import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.wms.dimension.AbstractFeatureAttributeVisitorSelectionStrategy;
+import org.geoserver.wms.dimension.DimensionDomain;
 import org.geotools.feature.visitor.CalcResult;
 import org.geotools.feature.visitor.MaxVisitor;
 import org.geotools.util.Converters;
@@ -32,6 +33,10 @@ public class FeatureMaximumValueSelectionStrategyImpl extends
     @Override
     public Object getDefaultValue(ResourceInfo resource, String dimensionName,
             DimensionInfo dimension, Class clz) {
+        DimensionDomain domain = getDimensionDomain((FeatureTypeInfo) resource, dimension);
+        if (domain != null) {
+            return domain.isEmpty() ? null : Converters.convert(domain.getMax(), clz);
+        }
         final MaxVisitor max = new MaxVisitor(dimension.getAttribute());
         CalcResult res = getCalculatedResult((FeatureTypeInfo) resource, dimension, max);
         if (res.equals(CalcResult.NULL_RESULT)) {
@@ -9,6 +9,7 @@ import org.geoserver.catalog.DimensionInfo;
 import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.wms.dimension.AbstractFeatureAttributeVisitorSelectionStrategy;
+import org.geoserver.wms.dimension.DimensionDomain;
 import org.geotools.feature.visitor.CalcResult;
 import org.geotools.feature.visitor.MinVisitor;
 import org.geotools.util.Converters;
@@ -32,6 +33,10 @@ public class FeatureMinimumValueSelectionStrategyImpl extends
     @Override
     public Object getDefaultValue(ResourceInfo resource, String dimensionName,
             DimensionInfo dimension, Class clz) {
+        DimensionDomain domain = getDimensionDomain((FeatureTypeInfo) resource, dimension);
+        if (domain != null) {
+            return domain.isEmpty() ? null : Converters.convert(domain.getMin(), clz);
+        }
         final MinVisitor min = new MinVisitor(dimension.getAttribute());
         CalcResult res = getCalculatedResult((FeatureTypeInfo) resource, dimension, min);
         if (res.equals(CalcResult.NULL_RESULT)) {
@@ -13,9 +13,9 @@ import org.geoserver.catalog.DimensionInfo;
 import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.wms.dimension.AbstractFeatureAttributeVisitorSelectionStrategy;
+import org.geoserver.wms.dimension.DimensionDomain;
 import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.feature.visitor.CalcResult;
-import org.geotools.feature.visitor.FeatureCalc;
 import org.geotools.feature.visitor.NearestVisitor;
 import org.geotools.util.Converters;
 import org.opengis.filter.FilterFactory2;
@@ -67,8 +67,14 @@ public class FeatureNearestValueSelectionStrategyImpl extends
             }                       
         }
 
-        final FeatureCalc nearest = new NearestVisitor(ff.property(dimension.getAttribute()),
+        final NearestVisitor nearest = new NearestVisitor(ff.property(dimension.getAttribute()),
                 this.toMatch);
+
+        DimensionDomain domain = getDimensionDomain((FeatureTypeInfo) resource, dimension);
+        if (domain != null && domain.hasValues()) {
+            Object value = domain.getNearest(nearest, this.toMatch);
+            return value == null ? null : Converters.convert(value, clz);
+        }
         
         CalcResult res = getCalculatedResult((FeatureTypeInfo) resource, dimension, nearest);
         if (res.equals(CalcResult.NULL_RESULT)) {
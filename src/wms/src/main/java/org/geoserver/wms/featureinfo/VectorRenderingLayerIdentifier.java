@@ -22,6 +22,7 @@ import java.awt.image.RenderedImage;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -45,6 +46,7 @@ import org.geoserver.wms.RenderingVariables;
 import org.geoserver.wms.WMS;
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.map.RenderedImageMapOutputFormat;
+import org.geoserver.wms.utfgrid.HitTestCache;
 import org.geotools.data.FeatureSource;
 import org.geotools.data.Query;
 import org.geotools.data.QueryCapabilities;
@@ -52,6 +54,7 @@ import org.geotools.data.collection.ListFeatureCollection;
 import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.factory.Hints;
 import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.geometry.jts.JTS;
@@ -76,6 +79,7 @@ import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.FeatureType;
 import org.opengis.filter.Filter;
 import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.identity.FeatureId;
 import org.opengis.filter.spatial.BBOX;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
@@ -100,6 +104,7 @@ public class VectorRenderingLayerIdentifier extends AbstractVectorLayerIdentifie
     
     private WMS wms;
     private VectorBasicLayerIdentifier fallback;
+    private HitTestCache hitTestCache;
     private static final FilterFactory2 FF = CommonFactoryFinder.getFilterFactory2();
     
     static {
@@ -114,6 +119,14 @@ public class VectorRenderingLayerIdentifier extends AbstractVectorLayerIdentifie
         this.wms = wms;
         this.fallback = fallback;
     }
+
+    /**
+     * Sets the cache of the features painted by the tiled GetMap requests, used to avoid
+     * rendering again the same map
+     */
+    public void setHitTestCache(HitTestCache hitTestCache) {
+        this.hitTestCache = hitTestCache;
+    }
     
     @Override
     public boolean canHandle(MapLayerInfo layer) {
@@ -145,6 +158,18 @@ public class VectorRenderingLayerIdentifier extends AbstractVectorLayerIdentifie
         if (rules.size() == 0) {
             return null;
         }
+
+        // the same map might have been just painted, look up the features there
+        if (hitTestCache != null) {
+            List<String> featureIds = hitTestCache.getFeatureIds(params, buffer, maxFeatures);
+            if (featureIds != null) {
+                LOGGER.log(Level.FINER, "Found {0} features in the hit test cache",
+                        featureIds.size());
+                return aggregateByFeatureType(getFeatures(params, featureIds),
+                        params.getRequestedCRS());
+            }
+        }
+
         GetMapRequest getMap = params.getGetMapRequest();
         getMap.getFormatOptions().put("antialias", "NONE");
         WMSMapContent mc = new WMSMapContent(getMap);
@@ -380,6 +405,43 @@ public class VectorRenderingLayerIdentifier extends AbstractVectorLayerIdentifie
         return result;
     }
 
+    /**
+     * Loads the features with the given ids, in the same order
+     */
+    private List<Feature> getFeatures(FeatureInfoRequestParameters params,
+            List<String> featureIds) throws IOException {
+        if (featureIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<FeatureId> ids = new HashSet<FeatureId>();
+        for (String id : featureIds) {
+            ids.add(FF.featureId(id));
+        }
+        FeatureSource<? extends FeatureType, ? extends Feature> featureSource = params.getLayer()
+                .getFeatureSource(true);
+        Query query = new Query(featureSource.getSchema().getName().getLocalPart(), FF.id(ids));
+        query.setPropertyNames(params.getPropertyNames());
+        Map<String, String> viewParams = params.getViewParams();
+        if (viewParams != null) {
+            query.setHints(new Hints(Hints.VIRTUAL_TABLE_PARAMETERS, viewParams));
+        }
+        Map<String, Feature> features = new HashMap<String, Feature>();
+        try (FeatureIterator<? extends Feature> it = featureSource.getFeatures(query).features()) {
+            while (it.hasNext()) {
+                Feature feature = it.next();
+                features.put(feature.getIdentifier().getID(), feature);
+            }
+        }
+        List<Feature> result = new ArrayList<Feature>();
+        for (String id : featureIds) {
+            Feature feature = features.get(id);
+            if (feature != null) {
+                result.add(feature);
+            }
+        }
+        return result;
+    }
+
     private int getSearchRadius(FeatureInfoRequestParameters params, List<Rule> rules, FeatureLayer layer, GetMapRequest getMap, AffineTransform screenToWorld) throws TransformException, FactoryException, IOException {
         // is it part of the request params?
         int requestBuffer = params.getBuffer();
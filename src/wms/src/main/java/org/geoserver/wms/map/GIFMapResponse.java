@@ -9,11 +9,10 @@ import java.awt.Transparency;
 import java.awt.image.BufferedImage;
 import java.awt.image.IndexColorModel;
 import java.awt.image.RenderedImage;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -178,7 +177,6 @@ public final class GIFMapResponse extends RenderedImageMapResponse {
         param.setCompressionQuality(0.75f);
 
         ImageOutputStream otStream = null;
-        List<RenderedImage> images = new ArrayList<RenderedImage>();
         try {
             otStream = ImageIO.createImageOutputStream(outStream);
             gifWriter.setOutput(otStream);
@@ -222,8 +220,11 @@ public final class GIFMapResponse extends RenderedImageMapResponse {
             for (int i = 0; i < numfiles; i++) {
                 if (LOGGER.isLoggable(Level.FINE))
                     LOGGER.fine("Writing image " + i);
-                // get the image
+                // get the image (animation frames might still be rendering)
                 RenderedImage ri = (RenderedImage) ril.get(i);
+                if (ri == null) {
+                    continue;
+                }
                 // convert it to gif compatible
                 ri = applyPalette(ri, mapContent, MIME_TYPE, false);
                 if (ri != null) {
@@ -234,7 +235,8 @@ public final class GIFMapResponse extends RenderedImageMapResponse {
 
                     // write
                     gifWriter.writeToSequence(new IIOImage(ri, null, imageMetadata), param);
-                    images.add(ri);
+                    // stream, let go of the frame as soon as it's written
+                    dispose(ri);
                 }
             }
 
@@ -262,12 +264,12 @@ public final class GIFMapResponse extends RenderedImageMapResponse {
                 // swallow
             }
 
-            // let go of the image chain as soon as possible to free memory
-            for (RenderedImage image : images) {
-                if (image instanceof PlanarImage) {
-                    ImageUtilities.disposePlanarImageChain((PlanarImage) image);
-                } else if (image instanceof BufferedImage) {
-                    ((BufferedImage) image).flush();
+            // stop rendering the frames not written, if any
+            if (ril instanceof Closeable) {
+                try {
+                    ((Closeable) ril).close();
+                } catch (Exception e) {
+                    // swallow
                 }
             }
         }
@@ -276,6 +278,14 @@ public final class GIFMapResponse extends RenderedImageMapResponse {
             LOGGER.fine("Done writing animated gif");
     }
 
+    private void dispose(RenderedImage image) {
+        if (image instanceof PlanarImage) {
+            ImageUtilities.disposePlanarImageChain((PlanarImage) image);
+        } else if (image instanceof BufferedImage) {
+            ((BufferedImage) image).flush();
+        }
+    }
+
     public String getContentDisposition() {
         // can be null
         return null;
@@ -21,6 +21,7 @@ import org.geoserver.wms.RasterCleaner;
 import org.geoserver.wms.WMS;
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.map.png.PNGJWriter;
+import org.geoserver.wms.map.png.ParallelPNGEncoder;
 import org.geotools.image.ImageWorker;
 import org.geotools.util.logging.Logging;
 
@@ -100,7 +101,13 @@ public class PNGMapResponse extends RenderedImageMapResponse {
         image = applyPalette(image, mapContent, "image/png8", true);
         float quality = (100 - wms.getPngCompression()) / 100.0f;
         JAIInfo.PngEncoderType encoder = wms.getPNGEncoderType();
-        if(encoder == JAIInfo.PngEncoderType.PNGJ) {
+        if (encoder == JAIInfo.PngEncoderType.PARALLEL
+                && ParallelPNGEncoder.isSupported(image)) {
+            new ParallelPNGEncoder(quality).encode(image, outStream);
+            RasterCleaner.addImage(image);
+        } else if (encoder == JAIInfo.PngEncoderType.PNGJ
+                || encoder == JAIInfo.PngEncoderType.PARALLEL) {
+            // PNGJ also handles the image types the parallel encoder does not support
             image = new PNGJWriter().writePNG(image, outStream, quality, mapContent);
             RasterCleaner.addImage(image);
         } else {
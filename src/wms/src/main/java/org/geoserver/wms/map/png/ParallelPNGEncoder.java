@@ -0,0 +1,695 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map.png;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A PNG encoder compressing bands of rows in parallel, and stitching the resulting deflate streams
+ * in a single zlib stream, the same way pigz does. Each scanline uses the filter that minimizes the
+ * sum of absolute differences, as suggested by the PNG specification, with the exception of
+ * paletted images, that compress better without filtering.
+ * <p>
+ * Deflaters, row buffers and output buffers are pooled and reused across requests. Images small
+ * enough to fit in a single band are encoded on the calling thread.
+ * <p>
+ * Only 8 bit RGB, RGBA, gray and gray/alpha images and paletted images up to 256 colors are
+ * supported, see {@link #isSupported(RenderedImage)}, other images should be encoded with
+ * {@link PNGJWriter}.
+ */
+public class ParallelPNGEncoder {
+
+    /**
+     * Uncompressed bytes in a band of rows. Smaller bands parallelize better, larger ones compress
+     * slightly better, as back references cannot cross band boundaries
+     */
+    static final int BAND_SIZE = Integer.getInteger("org.geoserver.png.bandSize", 256 * 1024);
+
+    static final int THREADS = Integer.getInteger("org.geoserver.png.threads",
+            Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Max number of bands being compressed, or waiting to be written, for a single image
+     */
+    static final int WINDOW = THREADS * 2;
+
+    /**
+     * Output buffers larger than this are not pooled
+     */
+    static final int MAX_POOLED_BUFFER = 4 * 1024 * 1024;
+
+    static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+
+    static final byte[] IHDR = type("IHDR");
+
+    static final byte[] PLTE = type("PLTE");
+
+    static final byte[] TRNS = type("tRNS");
+
+    static final byte[] IDAT = type("IDAT");
+
+    static final byte[] IEND = type("IEND");
+
+    static final byte[] EMPTY = new byte[0];
+
+    static final int COLOR_GRAY = 0;
+
+    static final int COLOR_RGB = 2;
+
+    static final int COLOR_PALETTE = 3;
+
+    static final int COLOR_GRAY_ALPHA = 4;
+
+    static final int COLOR_RGBA = 6;
+
+    static final int FILTER_NONE = 0;
+
+    static final int FILTER_SUB = 1;
+
+    static final int FILTER_UP = 2;
+
+    static final int FILTER_AVERAGE = 3;
+
+    static final int FILTER_PAETH = 4;
+
+    static final BlockingQueue<EncoderContext> CONTEXTS = new ArrayBlockingQueue<>(
+            WINDOW * 4);
+
+    static final BlockingQueue<Band> BANDS = new ArrayBlockingQueue<>(WINDOW * 4);
+
+    /**
+     * Lazily creates the encoding threads
+     */
+    static final class EncoderThreads {
+        static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREADS,
+                new ThreadFactory() {
+                    final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r,
+                                "GeoServer PNG encoder " + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * How the image pixels map to the PNG ones
+     */
+    static final class Layout {
+        final int colorType;
+
+        /**
+         * Bytes per pixel, the same as the number of raster bands
+         */
+        final int bpp;
+
+        final int width;
+
+        final int height;
+
+        final int rowBytes;
+
+        Layout(int colorType, int bpp, int width, int height) {
+            this.colorType = colorType;
+            this.bpp = bpp;
+            this.width = width;
+            this.height = height;
+            this.rowBytes = width * bpp;
+        }
+    }
+
+    /**
+     * Deflater and scanline buffers, reused across bands and requests
+     */
+    static final class EncoderContext {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+        final Adler32 adler = new Adler32();
+
+        final CRC32 crc = new CRC32();
+
+        final byte[] header = new byte[8];
+
+        byte[] raw = new byte[0];
+
+        byte[][] filtered = new byte[5][0];
+
+        int[] pixels = new int[0];
+
+        void ensureCapacity(int rawBytes, int rowBytes, int samples) {
+            if (raw.length < rawBytes) {
+                raw = new byte[rawBytes];
+            }
+            if (filtered[0].length < rowBytes + 1) {
+                for (int i = 0; i < filtered.length; i++) {
+                    filtered[i] = new byte[rowBytes + 1];
+                }
+            }
+            if (pixels.length < samples) {
+                pixels = new int[samples];
+            }
+        }
+    }
+
+    /**
+     * The compressed data of a band of rows
+     */
+    static final class Band {
+        byte[] data = new byte[64 * 1024];
+
+        int size;
+
+        long adler;
+
+        long inputLength;
+
+        void ensureFree(int free) {
+            if (data.length - size < free) {
+                byte[] grown = new byte[Math.max(data.length * 2, size + free)];
+                System.arraycopy(data, 0, grown, 0, size);
+                data = grown;
+            }
+        }
+    }
+
+    final int level;
+
+    /**
+     * Builds the encoder
+     *
+     * @param quality The quality, between 0 (best compression) and 1 (fastest)
+     */
+    public ParallelPNGEncoder(float quality) {
+        this.level = Math.max(0, Math.min(9, Math.round(9 * (1f - quality))));
+    }
+
+    /**
+     * Returns true if the image can be encoded by this class
+     */
+    public static boolean isSupported(RenderedImage image) {
+        return getLayout(image) != null;
+    }
+
+    static Layout getLayout(RenderedImage image) {
+        ColorModel cm = image.getColorModel();
+        SampleModel sm = image.getSampleModel();
+        if (cm == null || sm == null) {
+            return null;
+        }
+        int bands = sm.getNumBands();
+        if (cm instanceof IndexColorModel) {
+            if (bands != 1 || cm.getPixelSize() > 8 || sm.getSampleSize(0) > 8) {
+                return null;
+            }
+            return new Layout(COLOR_PALETTE, 1, image.getWidth(), image.getHeight());
+        }
+        if (cm.isAlphaPremultiplied() || bands != cm.getNumComponents()) {
+            return null;
+        }
+        for (int b = 0; b < bands; b++) {
+            if (cm.getComponentSize(b) != 8 || sm.getSampleSize(b) != 8) {
+                return null;
+            }
+        }
+        ColorSpace cs = cm.getColorSpace();
+        int colorType;
+        if (cs.isCS_sRGB() && bands == 3) {
+            colorType = COLOR_RGB;
+        } else if (cs.isCS_sRGB() && bands == 4 && cm.hasAlpha()) {
+            colorType = COLOR_RGBA;
+        } else if (cs.getType() == ColorSpace.TYPE_GRAY && bands == 1) {
+            colorType = COLOR_GRAY;
+        } else if (cs.getType() == ColorSpace.TYPE_GRAY && bands == 2 && cm.hasAlpha()) {
+            colorType = COLOR_GRAY_ALPHA;
+        } else {
+            return null;
+        }
+        return new Layout(colorType, bands, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Encodes the image
+     *
+     * @throws IllegalArgumentException if the image is not supported
+     */
+    public void encode(RenderedImage image, OutputStream out) throws IOException {
+        Layout layout = getLayout(image);
+        if (layout == null) {
+            throw new IllegalArgumentException("Unsupported image layout, sample model "
+                    + image.getSampleModel() + " and color model " + image.getColorModel());
+        }
+        EncoderContext context = acquireContext();
+        try {
+            out.write(SIGNATURE);
+            writeHeader(layout, out, context);
+            if (layout.colorType == COLOR_PALETTE) {
+                writePalette((IndexColorModel) image.getColorModel(), out, context);
+            }
+            writeData(image, layout, out, context);
+            writeChunk(out, IEND, EMPTY, 0, context);
+        } finally {
+            releaseContext(context);
+        }
+    }
+
+    void writeHeader(Layout layout, OutputStream out, EncoderContext context)
+            throws IOException {
+        byte[] data = new byte[13];
+        putInt(data, 0, layout.width);
+        putInt(data, 4, layout.height);
+        data[8] = 8;
+        data[9] = (byte) layout.colorType;
+        // deflate compression, adaptive filtering, no interlacing
+        data[10] = data[11] = data[12] = 0;
+        writeChunk(out, IHDR, data, data.length, context);
+    }
+
+    void writePalette(IndexColorModel icm, OutputStream out, EncoderContext context)
+            throws IOException {
+        int size = icm.getMapSize();
+        byte[] palette = new byte[size * 3];
+        int lastTranslucent = -1;
+        for (int i = 0; i < size; i++) {
+            palette[i * 3] = (byte) icm.getRed(i);
+            palette[i * 3 + 1] = (byte) icm.getGreen(i);
+            palette[i * 3 + 2] = (byte) icm.getBlue(i);
+            if (icm.getAlpha(i) != 255) {
+                lastTranslucent = i;
+            }
+        }
+        writeChunk(out, PLTE, palette, palette.length, context);
+        if (icm.getTransparency() != Transparency.OPAQUE && lastTranslucent >= 0) {
+            byte[] alphas = new byte[lastTranslucent + 1];
+            for (int i = 0; i <= lastTranslucent; i++) {
+                alphas[i] = (byte) icm.getAlpha(i);
+            }
+            writeChunk(out, TRNS, alphas, alphas.length, context);
+        }
+    }
+
+    void writeData(RenderedImage image, Layout layout, OutputStream out,
+            EncoderContext context) throws IOException {
+        int rowsPerBand = Math.max(1, BAND_SIZE / Math.max(1, layout.rowBytes));
+        int bandCount = (layout.height + rowsPerBand - 1) / rowsPerBand;
+        long adler = 1;
+        if (bandCount == 1) {
+            Band band = compress(image, layout, 0, layout.height, true, context);
+            try {
+                adler = combine(adler, band.adler, band.inputLength);
+                writeBand(band, adler, true, out, context);
+            } finally {
+                releaseBand(band);
+            }
+            return;
+        }
+
+        List<Future<Band>> futures = new ArrayList<>(bandCount);
+        int submitted = 0;
+        try {
+            for (int i = 0; i < bandCount; i++) {
+                while (submitted < bandCount && submitted < i + WINDOW) {
+                    final int startRow = submitted * rowsPerBand;
+                    final int rows = Math.min(rowsPerBand, layout.height - startRow);
+                    final boolean last = submitted == bandCount - 1;
+                    futures.add(EncoderThreads.EXECUTOR.submit(() -> {
+                        EncoderContext ctx = acquireContext();
+                        try {
+                            return compress(image, layout, startRow, rows, last, ctx);
+                        } finally {
+                            releaseContext(ctx);
+                        }
+                    }));
+                    submitted++;
+                }
+                Band band = futures.get(i).get();
+                try {
+                    adler = combine(adler, band.adler, band.inputLength);
+                    writeBand(band, adler, i == bandCount - 1, out, context);
+                } finally {
+                    releaseBand(band);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding the PNG image");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to encode the PNG image", cause);
+        } finally {
+            // in case of failure, do not waste time on the remaining bands
+            for (Future<Band> future : futures) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    void writeBand(Band band, long adler, boolean last, OutputStream out, EncoderContext context)
+            throws IOException {
+        if (last) {
+            band.ensureFree(4);
+            putInt(band.data, band.size, (int) adler);
+            band.size += 4;
+        }
+        if (band.size > 0) {
+            writeChunk(out, IDAT, band.data, band.size, context);
+        }
+    }
+
+    /**
+     * Filters and compresses a band of rows
+     */
+    Band compress(RenderedImage image, Layout layout, int startRow, int rows, boolean last,
+            EncoderContext context) {
+        int rowBytes = layout.rowBytes;
+        context.ensureCapacity((rows + 1) * rowBytes, rowBytes, layout.width * layout.bpp);
+        byte[] raw = context.raw;
+        // the first row holds the row before the band, used for filtering
+        if (startRow > 0) {
+            readRows(image, layout, startRow - 1, rows + 1, raw, 0, context);
+        } else {
+            Arrays.fill(raw, 0, rowBytes, (byte) 0);
+            readRows(image, layout, startRow, rows, raw, rowBytes, context);
+        }
+
+        Deflater deflater = context.deflater;
+        deflater.reset();
+        deflater.setLevel(level);
+        Adler32 adler = context.adler;
+        adler.reset();
+        Band band = acquireBand();
+        if (startRow == 0) {
+            // zlib header
+            band.data[0] = 0x78;
+            band.data[1] = (byte) (level <= 1 ? 0x01 : level <= 5 ? 0x5E : level == 6 ? 0x9C
+                    : 0xDA);
+            band.size = 2;
+        }
+        for (int r = 1; r <= rows; r++) {
+            byte[] filtered = filter(raw, (r - 1) * rowBytes, r * rowBytes, rowBytes,
+                    layout.bpp, layout.colorType == COLOR_PALETTE, context);
+            adler.update(filtered, 0, rowBytes + 1);
+            deflater.setInput(filtered, 0, rowBytes + 1);
+            while (!deflater.needsInput()) {
+                band.ensureFree(8192);
+                band.size += deflater.deflate(band.data, band.size, band.data.length - band.size,
+                        Deflater.NO_FLUSH);
+            }
+        }
+        if (last) {
+            deflater.finish();
+            while (!deflater.finished()) {
+                band.ensureFree(8192);
+                band.size += deflater.deflate(band.data, band.size,
+                        band.data.length - band.size);
+            }
+        } else {
+            // byte aligns the output, so that the next band can start a new deflate block
+            int written;
+            do {
+                band.ensureFree(8192);
+                int free = band.data.length - band.size;
+                written = deflater.deflate(band.data, band.size, free, Deflater.SYNC_FLUSH);
+                band.size += written;
+                if (written < free) {
+                    break;
+                }
+            } while (true);
+        }
+        band.adler = adler.getValue();
+        band.inputLength = (long) rows * (rowBytes + 1);
+        return band;
+    }
+
+    /**
+     * Copies the pixels of a set of rows, relative to the image origin, in the raw buffer
+     */
+    void readRows(RenderedImage image, Layout layout, int firstRow, int rows, byte[] raw,
+            int offset, EncoderContext context) {
+        int minX = image.getMinX();
+        int minY = image.getMinY();
+        int tileWidth = image.getTileWidth();
+        int tileHeight = image.getTileHeight();
+        int gridX = image.getTileGridXOffset();
+        int gridY = image.getTileGridYOffset();
+        int minTileX = Math.floorDiv(minX - gridX, tileWidth);
+        int maxTileX = Math.floorDiv(minX + layout.width - 1 - gridX, tileWidth);
+        int y = minY + firstRow;
+        int endY = y + rows;
+        while (y < endY) {
+            int tileY = Math.floorDiv(y - gridY, tileHeight);
+            int tileEndY = Math.min(endY, gridY + (tileY + 1) * tileHeight);
+            for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+                Raster tile = image.getTile(tileX, tileY);
+                int x0 = Math.max(minX, tile.getMinX());
+                int x1 = Math.min(minX + layout.width, tile.getMinX() + tile.getWidth());
+                int target = offset + (y - minY - firstRow) * layout.rowBytes
+                        + (x0 - minX) * layout.bpp;
+                copyPixels(tile, x0, x1 - x0, y, tileEndY - y, layout, raw, target, context);
+            }
+            y = tileEndY;
+        }
+    }
+
+    void copyPixels(Raster tile, int x, int width, int y, int height, Layout layout,
+            byte[] raw, int target, EncoderContext context) {
+        SampleModel sm = tile.getSampleModel();
+        DataBuffer buffer = tile.getDataBuffer();
+        int bpp = layout.bpp;
+        if (sm instanceof ComponentSampleModel && buffer instanceof DataBufferByte) {
+            // direct access to the pixels
+            ComponentSampleModel csm = (ComponentSampleModel) sm;
+            DataBufferByte bytes = (DataBufferByte) buffer;
+            int pixelStride = csm.getPixelStride();
+            int scanlineStride = csm.getScanlineStride();
+            int[] bandOffsets = csm.getBandOffsets();
+            int[] bankIndices = csm.getBankIndices();
+            int[] bankOffsets = bytes.getOffsets();
+            int sx = x - tile.getSampleModelTranslateX();
+            int sy = y - tile.getSampleModelTranslateY();
+            for (int b = 0; b < bpp; b++) {
+                byte[] data = bytes.getData(bankIndices[b]);
+                int rowStart = bankOffsets[bankIndices[b]] + sy * scanlineStride
+                        + sx * pixelStride + bandOffsets[b];
+                int rowTarget = target + b;
+                for (int row = 0; row < height; row++) {
+                    int source = rowStart;
+                    int dest = rowTarget;
+                    for (int i = 0; i < width; i++) {
+                        raw[dest] = data[source];
+                        source += pixelStride;
+                        dest += bpp;
+                    }
+                    rowStart += scanlineStride;
+                    rowTarget += layout.rowBytes;
+                }
+            }
+        } else {
+            // packed pixels, or other data types, let the raster unpack them
+            int[] pixels = context.pixels;
+            for (int row = 0; row < height; row++) {
+                tile.getPixels(x, y + row, width, 1, pixels);
+                int dest = target + row * layout.rowBytes;
+                for (int i = 0, samples = width * bpp; i < samples; i++) {
+                    raw[dest + i] = (byte) pixels[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Filters a row, returning the buffer holding the filter type followed by the filtered bytes
+     */
+    static byte[] filter(byte[] raw, int prior, int current, int rowBytes, int bpp,
+            boolean noFilter, EncoderContext context) {
+        byte[][] filtered = context.filtered;
+        if (noFilter) {
+            byte[] none = filtered[FILTER_NONE];
+            none[0] = FILTER_NONE;
+            System.arraycopy(raw, current, none, 1, rowBytes);
+            return none;
+        }
+
+        byte[] none = filtered[FILTER_NONE];
+        byte[] sub = filtered[FILTER_SUB];
+        byte[] up = filtered[FILTER_UP];
+        byte[] average = filtered[FILTER_AVERAGE];
+        byte[] paeth = filtered[FILTER_PAETH];
+        none[0] = FILTER_NONE;
+        sub[0] = FILTER_SUB;
+        up[0] = FILTER_UP;
+        average[0] = FILTER_AVERAGE;
+        paeth[0] = FILTER_PAETH;
+        long sumNone = 0, sumSub = 0, sumUp = 0, sumAverage = 0, sumPaeth = 0;
+        for (int i = 0; i < rowBytes; i++) {
+            int x = raw[current + i] & 0xFF;
+            int b = raw[prior + i] & 0xFF;
+            int a = i >= bpp ? raw[current + i - bpp] & 0xFF : 0;
+            int c = i >= bpp ? raw[prior + i - bpp] & 0xFF : 0;
+
+            byte v = (byte) x;
+            none[i + 1] = v;
+            sumNone += Math.abs(v);
+            v = (byte) (x - a);
+            sub[i + 1] = v;
+            sumSub += Math.abs(v);
+            v = (byte) (x - b);
+            up[i + 1] = v;
+            sumUp += Math.abs(v);
+            v = (byte) (x - ((a + b) >>> 1));
+            average[i + 1] = v;
+            sumAverage += Math.abs(v);
+            v = (byte) (x - paethPredictor(a, b, c));
+            paeth[i + 1] = v;
+            sumPaeth += Math.abs(v);
+        }
+
+        int best = FILTER_NONE;
+        long bestSum = sumNone;
+        if (sumSub < bestSum) {
+            best = FILTER_SUB;
+            bestSum = sumSub;
+        }
+        if (sumUp < bestSum) {
+            best = FILTER_UP;
+            bestSum = sumUp;
+        }
+        if (sumAverage < bestSum) {
+            best = FILTER_AVERAGE;
+            bestSum = sumAverage;
+        }
+        if (sumPaeth < bestSum) {
+            best = FILTER_PAETH;
+        }
+        return filtered[best];
+    }
+
+    static int paethPredictor(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        } else if (pb <= pc) {
+            return b;
+        }
+        return c;
+    }
+
+    /**
+     * Computes the Adler-32 checksum of two concatenated sequences, given the checksums of each,
+     * and the length of the second one. Same as zlib adler32_combine
+     */
+    static long combine(long adler1, long adler2, long length2) {
+        final long base = 65521;
+        long remainder = length2 % base;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (remainder * sum1) % base;
+        sum1 += (adler2 & 0xFFFF) + base - 1;
+        sum2 += ((adler1 >>> 16) & 0xFFFF) + ((adler2 >>> 16) & 0xFFFF) + base - remainder;
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum2 >= (base << 1)) {
+            sum2 -= (base << 1);
+        }
+        if (sum2 >= base) {
+            sum2 -= base;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    static void writeChunk(OutputStream out, byte[] type, byte[] data, int length,
+            EncoderContext context) throws IOException {
+        byte[] header = context.header;
+        putInt(header, 0, length);
+        System.arraycopy(type, 0, header, 4, 4);
+        out.write(header, 0, 8);
+        if (length > 0) {
+            out.write(data, 0, length);
+        }
+        CRC32 crc = context.crc;
+        crc.reset();
+        crc.update(type, 0, 4);
+        crc.update(data, 0, length);
+        putInt(header, 0, (int) crc.getValue());
+        out.write(header, 0, 4);
+    }
+
+    static void putInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+
+    static byte[] type(String type) {
+        return type.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    static EncoderContext acquireContext() {
+        EncoderContext context = CONTEXTS.poll();
+        return context != null ? context : new EncoderContext();
+    }
+
+    static void releaseContext(EncoderContext context) {
+        if (!CONTEXTS.offer(context)) {
+            context.deflater.end();
+        }
+    }
+
+    static Band acquireBand() {
+        Band band = BANDS.poll();
+        if (band == null) {
+            band = new Band();
+        }
+        band.size = 0;
+        return band;
+    }
+
+    static void releaseBand(Band band) {
+        if (band.data.length <= MAX_POOLED_BUFFER) {
+            BANDS.offer(band);
+        }
+    }
+}
@@ -0,0 +1,741 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.utfgrid;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.namespace.QName;
+
+import net.opengis.wfs.TransactionResponseType;
+import net.opengis.wfs.TransactionType;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
+import org.geoserver.wfs.TransactionEvent;
+import org.geoserver.wfs.TransactionPlugin;
+import org.geoserver.wfs.WFSException;
+import org.geoserver.wms.FeatureInfoRequestParameters;
+import org.geoserver.wms.GetMapCallbackAdapter;
+import org.geoserver.wms.GetMapRequest;
+import org.geoserver.wms.MapLayerInfo;
+import org.geoserver.wms.RenderingVariables;
+import org.geoserver.wms.WMS;
+import org.geoserver.wms.WMSMapContent;
+import org.geoserver.wms.WebMap;
+import org.geoserver.wms.map.RenderedImageMap;
+import org.geoserver.wms.utfgrid.UTFGridEntries.UTFGridEntry;
+import org.geotools.filter.function.EnvFunction;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.FeatureLayer;
+import org.geotools.map.Layer;
+import org.geotools.referencing.CRS;
+import org.geotools.styling.Style;
+import org.geotools.util.logging.Logging;
+import org.opengis.filter.Filter;
+import org.opengis.filter.sort.SortBy;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Keeps, for the layers enabling it, a compact raster of the feature ids painted by the tiled
+ * GetMap requests, so that the rendering based GetFeatureInfo can find the features under the
+ * mouse on the same map without querying and painting the layer again.
+ * <p>
+ * The rasters are built in the background after each tiled GetMap, with the same machinery used
+ * by the UTFGrid output format, at one cell every {@code org.geoserver.wms.hitTestCache.resolution}
+ * map pixels (4 by default). They are associated to the layer, style, filters, dimensions and
+ * resolution of the map, and to the user and roles making the request, the GetFeatureInfo
+ * requests made on a map with different parameters will not use them. Only the top most feature of each cell is recorded, so the features
+ * completely hidden by others are not reported.
+ * <p>
+ * The cache is enabled on a layer basis, setting the {@link #ENABLED_KEY} key in the layer
+ * metadata. The rasters are dropped when the layer data is modified by a WFS transaction or the
+ * configuration changes, and anyways after {@code org.geoserver.wms.hitTestCache.ttl} seconds
+ * (5 minutes by default). The total number of cells kept is bounded by
+ * {@code org.geoserver.wms.hitTestCache.maxCells} (16 millions by default).
+ */
+public class HitTestCache extends GetMapCallbackAdapter implements TransactionPlugin,
+        CatalogListener, DisposableBean {
+
+    static final Logger LOGGER = Logging.getLogger(HitTestCache.class);
+
+    /**
+     * The layer metadata key enabling the cache for the layer
+     */
+    public static final String ENABLED_KEY = "wms.hitTestCache";
+
+    static final int RESOLUTION = Integer.getInteger("org.geoserver.wms.hitTestCache.resolution",
+            UTFGridMapOutputFormat.DEFAULT_UTFRESOLUTION);
+
+    static final long TTL = Long.getLong("org.geoserver.wms.hitTestCache.ttl", 300);
+
+    static final long MAX_CELLS = Long.getLong("org.geoserver.wms.hitTestCache.maxCells",
+            16_000_000);
+
+    static final int THREADS = Integer.getInteger("org.geoserver.wms.hitTestCache.threads", 1);
+
+    /**
+     * Max number of tiles waiting for their raster, the others are skipped
+     */
+    static final int QUEUE_SIZE = 256;
+
+    /**
+     * Number of buckets per power of two in the map resolution, maps whose resolution differs by
+     * less than 0.1% share the rasters
+     */
+    static final int LEVEL_RESOLUTION = 1000;
+
+    static final String TRANSACTION_LAYERS = "WMS_HIT_TEST_CACHE_LAYERS";
+
+    /**
+     * The feature ids painted in a tile. Each cell contains an index in the feature id array, 0
+     * meaning nothing has been painted
+     */
+    static final class Grid {
+        final double minX;
+
+        final double maxY;
+
+        final double cellWidth;
+
+        final double cellHeight;
+
+        final int width;
+
+        final int height;
+
+        final char[] cells;
+
+        final String[] featureIds;
+
+        Grid(ReferencedEnvelope area, int width, int height, char[] cells,
+                String[] featureIds) {
+            this.minX = area.getMinX();
+            this.maxY = area.getMaxY();
+            this.cellWidth = area.getWidth() / width;
+            this.cellHeight = area.getHeight() / height;
+            this.width = width;
+            this.height = height;
+            this.cells = cells;
+            this.featureIds = featureIds;
+        }
+
+        /**
+         * Returns the id of the feature painted at the given position, or {@code null}
+         */
+        String getFeatureId(double x, double y) {
+            int col = clamp((int) Math.floor((x - minX) / cellWidth), width);
+            int row = clamp((int) Math.floor((maxY - y) / cellHeight), height);
+            return featureIds[cells[row * width + col]];
+        }
+
+        private int clamp(int value, int size) {
+            return value < 0 ? 0 : (value >= size ? size - 1 : value);
+        }
+
+        int getWeight() {
+            return cells.length / 2 + featureIds.length * 8;
+        }
+    }
+
+    /**
+     * The tiling of a map, computed from the first tile cached, so that the tile containing a
+     * position can be found without scanning
+     */
+    static final class Shape {
+        final double originX;
+
+        final double originY;
+
+        final double width;
+
+        final double height;
+
+        Shape(ReferencedEnvelope tile) {
+            this.width = tile.getWidth();
+            this.height = tile.getHeight();
+            this.originX = tile.getMinX();
+            this.originY = tile.getMinY();
+        }
+
+        /**
+         * Returns the column and row of the given tile, or {@code null} if it does not match
+         * the tiling
+         */
+        long[] locate(ReferencedEnvelope tile) {
+            if (Math.abs(tile.getWidth() - width) > width * 1e-6
+                    || Math.abs(tile.getHeight() - height) > height * 1e-6) {
+                return null;
+            }
+            double col = (tile.getMinX() - originX) / width;
+            double row = (tile.getMinY() - originY) / height;
+            if (Math.abs(col - Math.rint(col)) > 1e-6 || Math.abs(row - Math.rint(row)) > 1e-6) {
+                return null;
+            }
+            return new long[] { Math.round(col), Math.round(row) };
+        }
+
+        long column(double x) {
+            return (long) Math.floor((x - originX) / width);
+        }
+
+        long row(double y) {
+            return (long) Math.floor((y - originY) / height);
+        }
+    }
+
+    static final class TileKey {
+        final String resource;
+
+        final String key;
+
+        final long col;
+
+        final long row;
+
+        TileKey(String resource, String key, long col, long row) {
+            this.resource = resource;
+            this.key = key;
+            this.col = col;
+            this.row = row;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TileKey)) {
+                return false;
+            }
+            TileKey other = (TileKey) obj;
+            return col == other.col && row == other.row && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, col, row);
+        }
+    }
+
+    /**
+     * A layer of a tile waiting for its raster
+     */
+    static final class GridJob {
+        final String resource;
+
+        final String key;
+
+        final FeatureLayer layer;
+
+        GridJob(String resource, String key, FeatureLayer layer) {
+            this.resource = resource;
+            this.key = key;
+            this.layer = layer;
+        }
+    }
+
+    final Catalog catalog;
+
+    final UTFGridMapOutputFormat format;
+
+    final Cache<TileKey, Grid> grids;
+
+    final Cache<String, Shape> shapes;
+
+    /**
+     * Incremented on each invalidation, so that the rasters being built at the time are not kept
+     */
+    final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Lazily initialized pool building the rasters
+     */
+    ExecutorService executor;
+
+    public HitTestCache(WMS wms) {
+        this(wms, MAX_CELLS);
+    }
+
+    HitTestCache(WMS wms, long maxCells) {
+        this.catalog = wms.getCatalog();
+        this.format = new UTFGridMapOutputFormat(wms);
+        this.grids = CacheBuilder.newBuilder().maximumWeight(maxCells)
+                .weigher((TileKey k, Grid g) -> g.getWeight())
+                .expireAfterWrite(TTL, TimeUnit.SECONDS).build();
+        this.shapes = CacheBuilder.newBuilder().maximumSize(1000).build();
+        catalog.addListener(this);
+    }
+
+    /**
+     * Returns the pool building the rasters, creating it on first use
+     */
+    synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(QUEUE_SIZE), new ThreadFactory() {
+                        final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r,
+                                    "GeoServer hit test cache " + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    }, new ThreadPoolExecutor.DiscardPolicy());
+        }
+        return executor;
+    }
+
+    @Override
+    public synchronized void destroy() throws Exception {
+        catalog.removeListener(this);
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns true if the cache is enabled for the given layer
+     */
+    public boolean isEnabled(MapLayerInfo layer) {
+        if (layer.getType() != MapLayerInfo.TYPE_VECTOR || layer.getLayerInfo() == null) {
+            return false;
+        }
+        Boolean enabled = layer.getLayerInfo().getMetadata().get(ENABLED_KEY, Boolean.class);
+        return enabled != null && enabled;
+    }
+
+    /**
+     * Returns the key identifying the maps sharing the same rasters for the given layer, or
+     * {@code null} if the map cannot be cached
+     */
+    static String getKey(GetMapRequest request, String layerName, Style style, Filter filter,
+            Map<String, String> viewParams, SortBy[] sort) {
+        if (request.getSld() != null || request.getSldBody() != null
+                || request.getStartIndex() != null || request.getMaxFeatures() != null
+                || request.getFeatureVersion() != null || request.getAngle() != 0
+                || (sort != null && sort.length > 0) || style == null || style.getName() == null
+                || request.getCrs() == null || request.getWidth() <= 0
+                || request.getHeight() <= 0) {
+            return null;
+        }
+        String srs = CRS.toSRS(request.getCrs());
+        if (srs == null) {
+            srs = request.getSRS();
+        }
+        double resX = request.getBbox().getWidth() / request.getWidth();
+        double resY = request.getBbox().getHeight() / request.getHeight();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(layerName).append('|').append(style.getName());
+        sb.append('|').append(filter);
+        sb.append('|').append(viewParams == null ? "" : String.valueOf(new TreeMap<>(viewParams)));
+        sb.append('|').append(request.getTime()).append('|').append(request.getElevation());
+        Map<?, ?> env = request.getEnv();
+        sb.append('|').append(env == null ? "" : String.valueOf(new TreeMap<>(env)));
+        sb.append('|').append(request.getFormatOptions().get("dpi"));
+        sb.append('|').append(srs);
+        sb.append('|').append(level(resX)).append('|').append(level(resY));
+        // the rasters are built through the secured feature source, don't share them among
+        // users that could see different features
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null) {
+            sb.append("|user=").append(auth.getName());
+            List<String> roles = new ArrayList<>();
+            for (GrantedAuthority authority : auth.getAuthorities()) {
+                roles.add(authority.getAuthority());
+            }
+            roles.sort(null);
+            sb.append("|roles=").append(roles);
+        }
+        return sb.toString();
+    }
+
+    private static long level(double resolution) {
+        return Math.round(Math.log(resolution) / Math.log(2) * LEVEL_RESOLUTION);
+    }
+
+    @Override
+    public WebMap finished(WebMap map) {
+        if (!(map instanceof RenderedImageMap)) {
+            return map;
+        }
+        WMSMapContent content = ((RenderedImageMap) map).getMapContext();
+        GetMapRequest request = content == null ? null : content.getRequest();
+        if (request == null || !request.isTiled()
+                || request.getLayers().size() != content.layers().size()) {
+            return map;
+        }
+
+        try {
+            ReferencedEnvelope area = content.getRenderingArea();
+            List<GridJob> jobs = new ArrayList<>();
+            for (int i = 0; i < request.getLayers().size(); i++) {
+                MapLayerInfo info = request.getLayers().get(i);
+                Layer layer = content.layers().get(i);
+                if (!(layer instanceof FeatureLayer) || !isEnabled(info)) {
+                    continue;
+                }
+                String key = getKey(request, info.getName(), get(request.getStyles(), i),
+                        get(request.getFilter(), i), get(request.getViewParams(), i),
+                        get(request.getSortByArrays(), i));
+                if (key == null || isCached(info.getFeature().prefixedName(), key, area)) {
+                    continue;
+                }
+                // the original layer is disposed along with the map content
+                FeatureLayer copy = new FeatureLayer(layer.getFeatureSource(), layer.getStyle());
+                copy.setQuery(((FeatureLayer) layer).getQuery());
+                jobs.add(new GridJob(info.getFeature().prefixedName(), key, copy));
+            }
+            if (!jobs.isEmpty()) {
+                submit(request, area, content.getMapWidth(), content.getMapHeight(),
+                        content.getBuffer(), jobs);
+            }
+        } catch (RuntimeException e) {
+            // never make the GetMap fail
+            LOGGER.log(Level.WARNING, "Failed to schedule the hit test rasters", e);
+        }
+        return map;
+    }
+
+    private static <T> T get(List<T> list, int i) {
+        return list == null || list.size() <= i ? null : list.get(i);
+    }
+
+    private boolean isCached(String resource, String key, ReferencedEnvelope area) {
+        Shape shape = shapes.getIfPresent(key);
+        long[] position = shape == null ? null : shape.locate(area);
+        return position != null
+                && grids.getIfPresent(new TileKey(resource, key, position[0], position[1])) != null;
+    }
+
+    void submit(GetMapRequest request, ReferencedEnvelope area, int width, int height,
+            int buffer, List<GridJob> jobs) {
+        long submitted = generation.get();
+        ThreadLocalsTransfer threadLocals = new ThreadLocalsTransfer();
+        Map<String, Object> env = new HashMap<>(EnvFunction.getLocalValues());
+        getExecutor().execute(() -> {
+            threadLocals.apply();
+            EnvFunction.setLocalValues(env);
+            try {
+                for (GridJob job : jobs) {
+                    Grid grid = build(request, area, width, height, buffer, job.layer);
+                    if (grid != null && generation.get() == submitted) {
+                        put(job.resource, job.key, area, grid);
+                    }
+                }
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Failed to build the hit test raster", e);
+            } finally {
+                EnvFunction.clearLocalValues();
+                threadLocals.cleanup();
+            }
+        });
+    }
+
+    Grid build(GetMapRequest request, ReferencedEnvelope area, int width, int height,
+            int buffer, FeatureLayer layer) throws Exception {
+        WMSMapContent mc = new WMSMapContent(request);
+        UTFGridMap map;
+        try {
+            mc.setGetMapCallbacks(Collections.emptyList());
+            mc.getViewport().setBounds(area);
+            mc.setMapWidth(width);
+            mc.setMapHeight(height);
+            mc.setBuffer(buffer);
+            mc.addLayer(layer);
+            RenderingVariables.setupEnvironmentVariables(mc);
+            map = format.produceMap(mc, RESOLUTION);
+        } catch (Exception e) {
+            mc.dispose();
+            throw e;
+        }
+        try {
+            return toGrid(area, map.getImage(), map.getEntries());
+        } finally {
+            // disposes the original map content too
+            map.dispose();
+        }
+    }
+
+    /**
+     * Turns the UTFGrid image into a compact grid, returns {@code null} if too many features
+     * have been painted
+     */
+    static Grid toGrid(ReferencedEnvelope area, RenderedImage image, UTFGridEntries entries) {
+        Map<Integer, UTFGridEntry> keyToFeature = entries.getEntryMap();
+        if (keyToFeature.size() >= Character.MAX_VALUE) {
+            return null;
+        }
+        Raster data = image instanceof BufferedImage ? ((BufferedImage) image).getRaster()
+                : image.getData();
+        int width = data.getWidth();
+        int height = data.getHeight();
+        char[] cells = new char[width * height];
+        Map<Integer, Character> indexes = new HashMap<>();
+        List<String> featureIds = new ArrayList<>();
+        featureIds.add(null);
+        int[] pixels = new int[width];
+        for (int r = 0; r < height; r++) {
+            data.getDataElements(data.getMinX(), data.getMinY() + r, width, 1, pixels);
+            for (int c = 0; c < width; c++) {
+                int pixel = pixels[c] & 0xFFFFFF;
+                if (pixel == 0) {
+                    continue;
+                }
+                Character index = indexes.get(pixel);
+                if (index == null) {
+                    UTFGridEntry entry = keyToFeature.get(pixel);
+                    if (entry == null) {
+                        // some color altering option at work, see UTFGridMap
+                        return null;
+                    }
+                    index = (char) featureIds.size();
+                    featureIds.add(entry.getFeature().getIdentifier().getID());
+                    indexes.put(pixel, index);
+                }
+                cells[r * width + c] = index;
+            }
+        }
+        return new Grid(area, width, height, cells, featureIds.toArray(new String[featureIds
+                .size()]));
+    }
+
+    /**
+     * Caches the grid of a tile
+     */
+    void put(String resource, String key, ReferencedEnvelope area, Grid grid) {
+        Shape shape = shapes.asMap().computeIfAbsent(key, k -> new Shape(area));
+        long[] position = shape.locate(area);
+        if (position != null) {
+            grids.put(new TileKey(resource, key, position[0], position[1]), grid);
+        }
+    }
+
+    /**
+     * Returns the ids of the features painted within the given distance from the GetFeatureInfo
+     * position, nearest first, or {@code null} if the tiles covering the area are not cached
+     */
+    public List<String> getFeatureIds(FeatureInfoRequestParameters params, int buffer,
+            int maxFeatures) {
+        MapLayerInfo layer = params.getLayer();
+        if (!isEnabled(layer)) {
+            return null;
+        }
+        GetMapRequest request = params.getGetMapRequest();
+        String key = getKey(request, layer.getName(), params.getStyle(), params.getFilter(),
+                params.getViewParams(), params.getSort());
+        if (key == null) {
+            return null;
+        }
+        ReferencedEnvelope bounds = params.getRequestedBounds();
+        double resX = bounds.getWidth() / params.getWidth();
+        double resY = bounds.getHeight() / params.getHeight();
+        double x = bounds.getMinX() + (params.getX() + 0.5) * resX;
+        double y = bounds.getMaxY() - (params.getY() + 0.5) * resY;
+        return getFeatureIds(layer.getFeature().prefixedName(), key, x, y,
+                buffer * Math.max(resX, resY), maxFeatures);
+    }
+
+    List<String> getFeatureIds(String resource, String key, double x, double y, double radius,
+            int maxFeatures) {
+        Shape shape = shapes.getIfPresent(key);
+        if (shape == null) {
+            return null;
+        }
+        Map<TileKey, Grid> tiles = new HashMap<>();
+        Grid center = getGrid(resource, key, shape, x, y, tiles);
+        if (center == null) {
+            return null;
+        }
+
+        // visit the cells around the position, nearest first
+        int cx = (int) Math.ceil(radius / center.cellWidth);
+        int cy = (int) Math.ceil(radius / center.cellHeight);
+        List<int[]> offsets = new ArrayList<>();
+        for (int dy = -cy; dy <= cy; dy++) {
+            for (int dx = -cx; dx <= cx; dx++) {
+                offsets.add(new int[] { dx, dy });
+            }
+        }
+        offsets.sort((a, b) -> Integer.compare(a[0] * a[0] + a[1] * a[1],
+                b[0] * b[0] + b[1] * b[1]));
+        Set<String> result = new LinkedHashSet<>();
+        for (int[] offset : offsets) {
+            double px = x + offset[0] * center.cellWidth;
+            double py = y + offset[1] * center.cellHeight;
+            Grid grid = getGrid(resource, key, shape, px, py, tiles);
+            if (grid == null) {
+                // part of the area is not cached, cannot tell
+                return null;
+            }
+            String featureId = grid.getFeatureId(px, py);
+            if (featureId != null) {
+                result.add(featureId);
+                if (result.size() >= maxFeatures) {
+                    break;
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    private Grid getGrid(String resource, String key, Shape shape, double x, double y,
+            Map<TileKey, Grid> tiles) {
+        TileKey tile = new TileKey(resource, key, shape.column(x), shape.row(y));
+        Grid grid = tiles.get(tile);
+        if (grid == null) {
+            grid = grids.getIfPresent(tile);
+            if (grid != null) {
+                tiles.put(tile, grid);
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Drops the rasters of the layers publishing the given feature type
+     */
+    public void invalidate(String resource) {
+        generation.incrementAndGet();
+        grids.asMap().keySet().removeIf(k -> k.resource.equals(resource));
+    }
+
+    /**
+     * Drops all the rasters
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        grids.invalidateAll();
+        shapes.invalidateAll();
+    }
+
+    /**
+     * Number of cached rasters
+     */
+    public long size() {
+        return grids.size();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void dataStoreChange(TransactionEvent event) throws WFSException {
+        QName name = event.getLayerName();
+        FeatureTypeInfo featureType = catalog.getFeatureTypeByName(name.getNamespaceURI(),
+                name.getLocalPart());
+        if (featureType == null) {
+            return;
+        }
+        invalidate(featureType.prefixedName());
+        // a tile request could cache the old data again before the commit,
+        // drop it once more after it
+        Map<Object, Object> properties = event.getRequest().getExtendedProperties();
+        Set<String> resources = (Set<String>) properties.get(TRANSACTION_LAYERS);
+        if (resources == null) {
+            resources = new LinkedHashSet<>();
+            properties.put(TRANSACTION_LAYERS, resources);
+        }
+        resources.add(featureType.prefixedName());
+    }
+
+    @Override
+    public TransactionType beforeTransaction(TransactionType request) throws WFSException {
+        return request;
+    }
+
+    @Override
+    public void beforeCommit(TransactionType request) throws WFSException {
+        // nothing to do
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void afterTransaction(TransactionType request, TransactionResponseType result,
+            boolean committed) {
+        Set<String> resources = (Set<String>) request.getExtendedProperties()
+                .get(TRANSACTION_LAYERS);
+        if (resources != null) {
+            for (String resource : resources) {
+                invalidate(resource);
+            }
+        }
+    }
+
+    @Override
+    public int getPriority() {
+        return 0;
+    }
+
+    @Override
+    public void handleAddEvent(CatalogAddEvent event) {
+        // nothing to do
+    }
+
+    @Override
+    public void handleRemoveEvent(CatalogRemoveEvent event) {
+        invalidate(event.getSource());
+    }
+
+    @Override
+    public void handleModifyEvent(CatalogModifyEvent event) {
+        // the name might be changing, drop the rasters cached under the old one
+        invalidate(event.getSource());
+    }
+
+    @Override
+    public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+        invalidate(event.getSource());
+    }
+
+    private void invalidate(Object source) {
+        if (source instanceof FeatureTypeInfo) {
+            invalidate(((FeatureTypeInfo) source).prefixedName());
+        } else if (source instanceof LayerInfo) {
+            invalidate(((LayerInfo) source).getResource().prefixedName());
+        } else if (source instanceof StoreInfo || source instanceof StyleInfo) {
+            // styles are identified by name in the keys, their contents might have changed
+            invalidateAll();
+        }
+    }
+
+    @Override
+    public void reloaded() {
+        invalidateAll();
+    }
+}
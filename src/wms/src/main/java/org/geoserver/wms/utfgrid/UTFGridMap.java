@@ -195,6 +195,10 @@ public class UTFGridMap extends RawMap {
     }
 
     
+    RenderedImage getImage() {
+        return image;
+    }
+
     UTFGridEntries getEntries() {
         UTFGridMapContent mc = (UTFGridMapContent) mapContent;
         return mc.getEntries();
@@ -82,6 +82,14 @@ public class UTFGridMapOutputFormat extends AbstractMapOutputFormat {
 
     @Override
     public WebMap produceMap(WMSMapContent mapContent) throws ServiceException, IOException {
+        return produceMap(mapContent, DEFAULT_UTFRESOLUTION);
+    }
+
+    /**
+     * Produces the grid scaling down the map size by the given factor
+     */
+    UTFGridMap produceMap(WMSMapContent mapContent, int utfResolution)
+            throws ServiceException, IOException {
         RenderedImageMapOutputFormat of = new RenderedImageMapOutputFormat(wms) {
             @Override
             protected StreamingRenderer buildRenderer() {
@@ -104,23 +112,24 @@ public class UTFGridMapOutputFormat extends AbstractMapOutputFormat {
                 
                 Map hints = renderer.getRendererHints();
                 double dpi = RendererUtilities.getDpi(hints);
-                dpi = dpi / DEFAULT_UTFRESOLUTION;
+                dpi = dpi / utfResolution;
                 hints.put(StreamingRenderer.DPI_KEY, dpi);
             }
 
         };
 
         UTFGridEntries entries = new UTFGridEntries();
-        UTFGridMapContent utfGridMapContent = buildUTFGridMapContent(mapContent, entries);
+        UTFGridMapContent utfGridMapContent = buildUTFGridMapContent(mapContent, entries,
+                utfResolution);
         RenderedImageMap map = of.produceMap(utfGridMapContent);
         return new UTFGridMap(utfGridMapContent, map.getImage());
     }
 
     private UTFGridMapContent buildUTFGridMapContent(WMSMapContent original,
-            UTFGridEntries entries) {
+            UTFGridEntries entries, int utfResolution) {
         UTFGridColorFunction colorFunction = new UTFGridColorFunction(entries);
 
-        UTFGridMapContent result = new UTFGridMapContent(original, entries, DEFAULT_UTFRESOLUTION);
+        UTFGridMapContent result = new UTFGridMapContent(original, entries, utfResolution);
         List<Layer> utfLayers = new ArrayList<>();
         for (Layer layer : original.layers()) {
             // can only draw vector layers, or raster ones that will be transformed into
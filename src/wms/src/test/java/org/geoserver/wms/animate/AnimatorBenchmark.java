@@ -0,0 +1,132 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.animate;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.geotools.util.logging.Logging;
+import org.junit.Test;
+
+/**
+ * Animated GIF production time, frames rendered serially or pipelined through a {@link FrameList}.
+ */
+public class AnimatorBenchmark {
+
+    static final Logger LOGGER = Logging.getLogger(AnimatorBenchmark.class);
+
+    static final int FRAMES = Integer.getInteger("benchmark.frames", 30);
+
+    static final int SIZE = 512;
+
+    static final int SHAPES = 20000;
+
+    static final int ITERATIONS = 5;
+
+    static final int THREADS = Integer.getInteger("org.geoserver.wms.animator.threads",
+            Runtime.getRuntime().availableProcessors());
+
+    @Test
+    public void benchmark() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            // warm up, then measure
+            for (boolean report : new boolean[] { false, true }) {
+                run(executor, report);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    void run(ExecutorService executor, boolean report) throws Exception {
+        long serialTime = 0, pipelineTime = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            List<RenderedImage> frames = new ArrayList<>();
+            for (FrameLoader loader : loaders()) {
+                frames.add(loader.call());
+            }
+            encode(frames);
+            serialTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int window = (int) Math.max(1,
+                    FrameCatalogVisitor.MEMORY_BUDGET / (4L * SIZE * SIZE));
+            try (FrameList list = new FrameList(loaders(), executor, window, null)) {
+                @SuppressWarnings("unchecked")
+                List<RenderedImage> images = (List<RenderedImage>) (List<?>) list;
+                encode(images);
+            }
+            pipelineTime += System.nanoTime() - start;
+        }
+
+        if (report) {
+            LOGGER.log(Level.INFO, String.format(
+                    "%d frames %dx%d: serial %.1f ms, pipelined (%d threads) %.1f ms", FRAMES,
+                    SIZE, SIZE, serialTime / 1e6 / ITERATIONS, THREADS,
+                    pipelineTime / 1e6 / ITERATIONS));
+        }
+    }
+
+    List<FrameLoader> loaders() {
+        List<FrameLoader> loaders = new ArrayList<>();
+        for (int i = 0; i < FRAMES; i++) {
+            final int frame = i;
+            loaders.add(new FrameLoader(null, null, null, "time", String.valueOf(i)) {
+                @Override
+                public RenderedImage call() throws Exception {
+                    return paint(frame);
+                }
+            });
+        }
+        return loaders;
+    }
+
+    static BufferedImage paint(int frame) {
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_BYTE_INDEXED);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            for (int i = 0; i < SHAPES; i++) {
+                int x = (i * 31 + frame * 7) % SIZE;
+                int y = (i * 17) % SIZE;
+                graphics.setColor(new Color((i * 47 + frame) & 0xFFFFFF));
+                graphics.fillOval(x, y, 12, 12);
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    static void encode(List<RenderedImage> frames) throws Exception {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(bos)) {
+            writer.setOutput(ios);
+            writer.prepareWriteSequence(null);
+            for (RenderedImage frame : frames) {
+                writer.writeToSequence(new IIOImage(frame, null, null), null);
+            }
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.animate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.geoserver.platform.ServiceException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FrameListTest {
+
+    ExecutorService executor;
+
+    AtomicInteger started;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        started = new AtomicInteger();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    List<FrameLoader> loaders(int count) {
+        List<FrameLoader> loaders = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final int frame = i;
+            loaders.add(new FrameLoader(null, null, null, "time", String.valueOf(i)) {
+                @Override
+                public RenderedImage call() throws Exception {
+                    started.incrementAndGet();
+                    // later frames complete first
+                    Thread.sleep(5 * (count - frame));
+                    BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+                    image.setRGB(0, 0, frame);
+                    return image;
+                }
+            });
+        }
+        return loaders;
+    }
+
+    int frame(RenderedImage image) {
+        return ((BufferedImage) image).getRGB(0, 0) & 0xFFFFFF;
+    }
+
+    @Test
+    public void testInOrder() throws Exception {
+        try (FrameList frames = new FrameList(loaders(10), executor, 3, null)) {
+            assertEquals(10, frames.size());
+            RenderedImage first = (RenderedImage) frames.get(0);
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i, frame((RenderedImage) frames.get(i)));
+                // never more than the window ahead of the consumer
+                assertTrue(started.get() <= Math.min(10, i + 1 + 3));
+            }
+            // the first frame is kept around, the others are released
+            assertSame(first, frames.get(0));
+            assertNull(frames.get(5));
+            assertEquals(10, frames.getWidth());
+        }
+    }
+
+    @Test
+    public void testSkipFrames() throws Exception {
+        try (FrameList frames = new FrameList(loaders(5), executor, 2, null)) {
+            assertEquals(3, frame((RenderedImage) frames.get(3)));
+            assertEquals(4, frame((RenderedImage) frames.get(4)));
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        FrameList frames = new FrameList(loaders(10), executor, 2, null);
+        frames.get(0);
+        frames.close();
+        assertNull(frames.get(1));
+        // closed before the remaining frames got submitted
+        assertTrue(started.get() <= 3);
+    }
+
+    @Test
+    public void testMaxRenderingSize() throws Exception {
+        try (FrameList frames = new FrameList(loaders(10), executor, 2, 300L)) {
+            for (int i = 0; i < 10; i++) {
+                frames.get(i);
+            }
+            fail("Should have exceeded the max rendering size");
+        } catch (ServiceException e) {
+            assertEquals("Max rendering size exceed!", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCheckFirstFrame() throws Exception {
+        try (FrameList frames = new FrameList(loaders(10), executor, 2, null)) {
+            frames.checkFirstFrame();
+            assertEquals(0, frame((RenderedImage) frames.get(0)));
+            assertEquals(1, frame((RenderedImage) frames.get(1)));
+        }
+
+        // ten frames of 60 bytes each, known to be too big as soon as the first is there
+        FrameList frames = new FrameList(loaders(10), executor, 2, 300L);
+        try {
+            frames.checkFirstFrame();
+            fail("Should have exceeded the max rendering size");
+        } catch (ServiceException e) {
+            assertEquals("Max rendering size exceed!", e.getMessage());
+        }
+        assertNull(frames.get(1));
+
+        // a failure in the first frame is reported too
+        List<FrameLoader> loaders = loaders(3);
+        loaders.set(0, new FrameLoader(null, null, null, "time", "0") {
+            @Override
+            public RenderedImage call() throws Exception {
+                throw new IllegalStateException("Rendering failed");
+            }
+        });
+        try (FrameList failing = new FrameList(loaders, executor, 2, null)) {
+            failing.checkFirstFrame();
+            fail("Should have reported the first frame failure");
+        } catch (ServiceException e) {
+            assertEquals("Rendering failed", e.getCause().getMessage());
+        }
+    }
+}
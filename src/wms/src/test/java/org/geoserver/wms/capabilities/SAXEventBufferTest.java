@@ -0,0 +1,63 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.capabilities;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringWriter;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+
+import org.junit.Test;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+
+public class SAXEventBufferTest {
+
+    void writeFragment(ContentHandler handler) throws SAXException {
+        AttributesImpl atts = new AttributesImpl();
+        atts.addAttribute("", "queryable", "queryable", "", "1");
+        handler.startElement("", "Layer", "Layer", atts);
+        // the attributes get reused by the translators
+        atts.clear();
+        char[] chars = "xxTitlexx".toCharArray();
+        handler.startElement("", "Title", "Title", atts);
+        handler.characters(chars, 2, 5);
+        chars[3] = 'X';
+        handler.endElement("", "Title", "Title");
+        ((LexicalHandler) handler).comment("note".toCharArray(), 0, 4);
+        handler.endElement("", "Layer", "Layer");
+    }
+
+    String encode(boolean buffered) throws Exception {
+        TransformerHandler handler = ((SAXTransformerFactory) SAXTransformerFactory.newInstance())
+                .newTransformerHandler();
+        handler.getTransformer().setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        StringWriter writer = new StringWriter();
+        handler.setResult(new StreamResult(writer));
+        handler.startDocument();
+        if (buffered) {
+            SAXEventBuffer buffer = new SAXEventBuffer();
+            writeFragment(buffer);
+            buffer.replay(handler);
+        } else {
+            writeFragment(handler);
+        }
+        handler.endDocument();
+        return writer.toString();
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        String direct = encode(false);
+        assertEquals("<Layer queryable=\"1\"><Title>Title</Title><!--note--></Layer>", direct);
+        assertEquals(direct, encode(true));
+    }
+}
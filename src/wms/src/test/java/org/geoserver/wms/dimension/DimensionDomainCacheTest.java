@@ -0,0 +1,232 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.dimension;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+
+import javax.xml.namespace.QName;
+
+import net.opengis.wfs.TransactionType;
+import net.opengis.wfs.WfsFactory;
+
+import org.geoserver.catalog.DimensionInfo;
+import org.geoserver.catalog.DimensionPresentation;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.data.test.MockData;
+import org.geoserver.wfs.TransactionEvent;
+import org.geoserver.wfs.TransactionEventType;
+import org.geoserver.wfs.request.TransactionRequest;
+import org.geoserver.wms.WMSDimensionsTestSupport;
+import org.geoserver.wms.dimension.impl.FeatureMaximumValueSelectionStrategyImpl;
+import org.geoserver.wms.dimension.impl.FeatureMinimumValueSelectionStrategyImpl;
+import org.geoserver.wms.dimension.impl.FeatureNearestValueSelectionStrategyImpl;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.FeatureStore;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.FeatureCollection;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.FilterFactory;
+
+public class DimensionDomainCacheTest extends WMSDimensionsTestSupport {
+
+    static final QName TIME_ELEVATION = new QName(MockData.SF_URI, "TimeElevation",
+            MockData.SF_PREFIX);
+
+    DimensionDomainCache cache;
+
+    @Before
+    public void setupCache() throws Exception {
+        cache = applicationContext.getBean(DimensionDomainCache.class);
+        cache.clear();
+        setupVectorDimension(ResourceInfo.TIME, "time", DimensionPresentation.LIST, null, null,
+                null);
+        setupVectorDimension(ResourceInfo.ELEVATION, "elevation", DimensionPresentation.LIST,
+                null, UNITS, UNIT_SYMBOL);
+    }
+
+    FeatureTypeInfo getTimeElevation() {
+        return getCatalog().getFeatureTypeByName(TIME_ELEVATION.getLocalPart());
+    }
+
+    DimensionInfo getDimension(String name) {
+        return getTimeElevation().getMetadata().get(name, DimensionInfo.class);
+    }
+
+    /**
+     * Waits for the loads and checks scheduled so far to complete
+     */
+    void waitForCache() throws Exception {
+        cache.executor.submit(() -> {}).get();
+    }
+
+    DimensionDomain loadDomain(String dimension) throws Exception {
+        cache.getDomain(getTimeElevation(), getDimension(dimension));
+        waitForCache();
+        DimensionDomain domain = cache.getDomain(getTimeElevation(), getDimension(dimension));
+        assertNotNull(domain);
+        return domain;
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        // not available at first, loaded in the background
+        assertNull(cache.getDomain(getTimeElevation(), getDimension(ResourceInfo.ELEVATION)));
+        DimensionDomain domain = loadDomain(ResourceInfo.ELEVATION);
+        assertTrue(domain.hasValues());
+        assertEquals(Arrays.asList(0d, 1d, 2d, 3d), new ArrayList<>(domain.getValues()));
+        assertEquals(0d, domain.getMin());
+        assertEquals(3d, domain.getMax());
+        assertEquals(new TreeSet<>(Arrays.asList(1d, 2d)), domain.getValues(0.5, 2, 0));
+        assertEquals(new TreeSet<>(Arrays.asList(1d)), domain.getValues(0.5, 2, 1));
+
+        // the WMS uses it, and returns the same values as a scan
+        loadDomain(ResourceInfo.TIME);
+        TreeSet<Date> times = getWMS().getFeatureTypeTimes(getTimeElevation());
+        assertEquals(loadDomain(ResourceInfo.TIME).getValues(), times);
+        assertEquals(4, times.size());
+        assertEquals(Arrays.asList(0d, 1d, 2d, 3d),
+                new ArrayList<>(getWMS().getFeatureTypeElevations(getTimeElevation())));
+    }
+
+    @Test
+    public void testMinMaxOnly() throws Exception {
+        cache.maxValues = 2;
+        try {
+            DimensionDomain domain = loadDomain(ResourceInfo.ELEVATION);
+            assertFalse(domain.hasValues());
+            assertEquals(0d, domain.getMin());
+            assertEquals(3d, domain.getMax());
+            // a list cannot be built out of it, the WMS scans the data instead
+            assertEquals(4, getWMS().getFeatureTypeElevations(getTimeElevation()).size());
+        } finally {
+            cache.maxValues = DimensionDomainCache.MAX_VALUES;
+        }
+    }
+
+    @Test
+    public void testCatalogChange() throws Exception {
+        loadDomain(ResourceInfo.ELEVATION);
+        assertFalse(cache.entries.isEmpty());
+
+        FeatureTypeInfo typeInfo = getTimeElevation();
+        typeInfo.setTitle("Changed title");
+        getCatalog().save(typeInfo);
+        assertTrue(cache.entries.isEmpty());
+    }
+
+    @Test
+    public void testDirectWrite() throws Exception {
+        loadDomain(ResourceInfo.ELEVATION);
+
+        FeatureTypeInfo typeInfo = getTimeElevation();
+        FeatureStore fs = (FeatureStore) typeInfo.getFeatureSource(null, null);
+        SimpleFeature feature = DataUtilities.createFeature(
+                (SimpleFeatureType) typeInfo.getFeatureType(),
+                "TimeElevation.100=POLYGON((0 0, 1 0, 1 1, 0 0))|2011-05-05Z|10.0");
+        try {
+            fs.addFeatures(DataUtilities.collection(feature));
+
+            // the domain is out of date, the data needs to be scanned until it's reloaded
+            assertNull(cache.getDomain(typeInfo, getDimension(ResourceInfo.ELEVATION)));
+            assertEquals(10d, getWMS().getFeatureTypeElevations(typeInfo).last(), 0d);
+            waitForCache();
+            assertEquals(10d, loadDomain(ResourceInfo.ELEVATION).getMax());
+        } finally {
+            FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+            fs.removeFeatures(ff.equals(ff.property("elevation"), ff.literal(10d)));
+        }
+    }
+
+    @Test
+    public void testDirtyUntilReloaded() throws Exception {
+        loadDomain(ResourceInfo.ELEVATION);
+        FeatureTypeInfo typeInfo = getTimeElevation();
+        DimensionInfo dimension = getDimension(ResourceInfo.ELEVATION);
+
+        // keep the loader busy, so that the reload stays queued
+        CountDownLatch latch = new CountDownLatch(1);
+        cache.executor.execute(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            for (DimensionDomainCache.Entry entry : cache.entries.values()) {
+                entry.dirty = true;
+            }
+            // the stale domain is not handed out while the reload is pending
+            assertNull(cache.getDomain(typeInfo, dimension));
+            assertNull(cache.getDomain(typeInfo, dimension));
+        } finally {
+            latch.countDown();
+        }
+        waitForCache();
+        assertNotNull(cache.getDomain(typeInfo, dimension));
+    }
+
+    @Test
+    public void testTransaction() throws Exception {
+        DimensionDomain domain = loadDomain(ResourceInfo.ELEVATION);
+
+        FeatureTypeInfo typeInfo = getTimeElevation();
+        SimpleFeatureCollection inserted = DataUtilities.collection(DataUtilities.createFeature(
+                (SimpleFeatureType) typeInfo.getFeatureType(),
+                "TimeElevation.100=POLYGON((0 0, 1 0, 1 1, 0 0))|2011-05-05Z|10.0"));
+
+        // a rolled back transaction does not change the domain
+        TransactionType tx = WfsFactory.eINSTANCE.createTransactionType();
+        cache.dataStoreChange(new TransactionEvent(TransactionEventType.PRE_INSERT,
+                TransactionRequest.adapt(tx), TIME_ELEVATION, inserted));
+        cache.afterTransaction(tx, null, false);
+        assertEquals(3d, domain.getMax());
+
+        // a committed one adds the values right away
+        tx = WfsFactory.eINSTANCE.createTransactionType();
+        cache.dataStoreChange(new TransactionEvent(TransactionEventType.PRE_INSERT,
+                TransactionRequest.adapt(tx), TIME_ELEVATION, inserted));
+        cache.afterTransaction(tx, null, true);
+        assertEquals(10d, domain.getMax());
+        assertSame(domain, cache.getDomain(typeInfo, getDimension(ResourceInfo.ELEVATION)));
+
+        // deletes check the values in the background, 10 was never really there, 3 is
+        FeatureCollection<?, ?> all = typeInfo.getFeatureSource(null, null).getFeatures();
+        tx = WfsFactory.eINSTANCE.createTransactionType();
+        cache.dataStoreChange(new TransactionEvent(TransactionEventType.PRE_DELETE,
+                TransactionRequest.adapt(tx), TIME_ELEVATION, inserted));
+        cache.dataStoreChange(new TransactionEvent(TransactionEventType.PRE_DELETE,
+                TransactionRequest.adapt(tx), TIME_ELEVATION,
+                (SimpleFeatureCollection) all));
+        cache.afterTransaction(tx, null, true);
+        waitForCache();
+        assertEquals(Arrays.asList(0d, 1d, 2d, 3d), new ArrayList<>(domain.getValues()));
+    }
+
+    @Test
+    public void testDefaultValues() throws Exception {
+        loadDomain(ResourceInfo.ELEVATION);
+        FeatureTypeInfo typeInfo = getTimeElevation();
+        DimensionInfo dimension = getDimension(ResourceInfo.ELEVATION);
+
+        assertEquals(0d, new FeatureMinimumValueSelectionStrategyImpl()
+                .getDefaultValue(typeInfo, ResourceInfo.ELEVATION, dimension, Double.class));
+        assertEquals(3d, new FeatureMaximumValueSelectionStrategyImpl()
+                .getDefaultValue(typeInfo, ResourceInfo.ELEVATION, dimension, Double.class));
+        assertEquals(2d, new FeatureNearestValueSelectionStrategyImpl(1.8)
+                .getDefaultValue(typeInfo, ResourceInfo.ELEVATION, dimension, Double.class));
+    }
+}
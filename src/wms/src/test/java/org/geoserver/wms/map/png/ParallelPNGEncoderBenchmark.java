@@ -0,0 +1,81 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map.png;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayOutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+import org.junit.Test;
+
+import ar.com.hjg.pngj.FilterType;
+import it.geosolutions.imageio.plugins.png.PNGWriter;
+
+/**
+ * Encoding time and size of {@link ParallelPNGEncoder} against PNGJ, on RGBA and paletted images.
+ */
+public class ParallelPNGEncoderBenchmark {
+
+    static final Logger LOGGER = Logging.getLogger(ParallelPNGEncoderBenchmark.class);
+
+    static final int SIZE = Integer.getInteger("benchmark.size", 4096);
+
+    static final int ITERATIONS = 10;
+
+    static final float QUALITY = 0.75f;
+
+    @Test
+    public void benchmark() throws Exception {
+        BufferedImage rgba = ParallelPNGEncoderTest
+                .paint(new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_4BYTE_ABGR));
+        BufferedImage paletted = ParallelPNGEncoderTest.paint(new BufferedImage(SIZE, SIZE,
+                BufferedImage.TYPE_BYTE_INDEXED, palette()));
+
+        // warm up, then measure
+        for (boolean report : new boolean[] { false, true }) {
+            run("RGBA", rgba, report);
+            run("paletted", paletted, report);
+        }
+    }
+
+    void run(String name, BufferedImage image, boolean report) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(SIZE * SIZE);
+        long pngjTime = 0, parallelTime = 0;
+        int pngjSize = 0, parallelSize = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            bos.reset();
+            long start = System.nanoTime();
+            new PNGWriter().writePNG(image, bos, QUALITY, FilterType.FILTER_NONE);
+            pngjTime += System.nanoTime() - start;
+            pngjSize = bos.size();
+
+            bos.reset();
+            start = System.nanoTime();
+            new ParallelPNGEncoder(QUALITY).encode(image, bos);
+            parallelTime += System.nanoTime() - start;
+            parallelSize = bos.size();
+        }
+
+        if (report) {
+            LOGGER.log(Level.INFO, String.format(
+                    "%s %dx%d: PNGJ %.1f ms, %d bytes, parallel (%d threads) %.1f ms, %d bytes",
+                    name, SIZE, SIZE, pngjTime / 1e6 / ITERATIONS, pngjSize,
+                    ParallelPNGEncoder.THREADS, parallelTime / 1e6 / ITERATIONS, parallelSize));
+        }
+    }
+
+    IndexColorModel palette() {
+        byte[] r = new byte[256], g = new byte[256], b = new byte[256];
+        for (int i = 0; i < 256; i++) {
+            r[i] = (byte) ((i >> 5) * 36);
+            g[i] = (byte) (((i >> 2) & 7) * 36);
+            b[i] = (byte) ((i & 3) * 85);
+        }
+        return new IndexColorModel(8, 256, r, g, b);
+    }
+}
@@ -0,0 +1,212 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map.png;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+
+import javax.imageio.ImageIO;
+import javax.media.jai.TiledImage;
+
+import org.junit.Test;
+
+public class ParallelPNGEncoderTest {
+
+    /**
+     * Paints something looking like a map, with flat areas, lines, gradients and text
+     */
+    static BufferedImage paint(BufferedImage image) {
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        int w = image.getWidth();
+        int h = image.getHeight();
+        g.setPaint(new GradientPaint(0, 0, new Color(30, 80, 200, 128), w, h,
+                new Color(250, 250, 200, 255)));
+        g.fillRect(0, 0, w / 2, h);
+        g.setColor(Color.GREEN);
+        for (int i = 0; i < 50; i++) {
+            g.drawLine(i * w / 50, 0, w - i * w / 50, h);
+        }
+        g.setColor(Color.RED);
+        g.fillOval(w / 4, h / 4, w / 2, h / 2);
+        g.setColor(Color.BLACK);
+        g.drawString("GeoServer", w / 3, h / 3);
+        g.dispose();
+        return image;
+    }
+
+    byte[] encode(RenderedImage image, float quality) throws Exception {
+        assertTrue(ParallelPNGEncoder.isSupported(image));
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new ParallelPNGEncoder(quality).encode(image, bos);
+        return bos.toByteArray();
+    }
+
+    void assertSamePixels(RenderedImage expected, BufferedImage actual) {
+        BufferedImage reference = expected instanceof BufferedImage ? (BufferedImage) expected
+                : ((TiledImage) expected).getAsBufferedImage();
+        assertEquals(reference.getWidth(), actual.getWidth());
+        assertEquals(reference.getHeight(), actual.getHeight());
+        for (int y = 0; y < reference.getHeight(); y++) {
+            for (int x = 0; x < reference.getWidth(); x++) {
+                int rgb1 = reference.getRGB(x, y);
+                int rgb2 = actual.getRGB(x, y);
+                if (rgb1 != rgb2) {
+                    fail("Pixel " + x + "," + y + " differs, expected " + Integer.toHexString(rgb1)
+                            + " but got " + Integer.toHexString(rgb2));
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the chunk CRCs and inflates the whole zlib stream, which also verifies the Adler-32
+     * checksum of the stitched stream
+     */
+    void assertValidStream(byte[] png, RenderedImage image, int bpp) throws Exception {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(png));
+        in.skipBytes(8);
+        ByteArrayOutputStream idat = new ByteArrayOutputStream();
+        String type;
+        do {
+            int length = in.readInt();
+            byte[] chunk = new byte[length + 4];
+            in.readFully(chunk);
+            CRC32 crc = new CRC32();
+            crc.update(chunk);
+            assertEquals(crc.getValue(), in.readInt() & 0xFFFFFFFFL);
+            type = new String(chunk, 0, 4, "US-ASCII");
+            if ("IDAT".equals(type)) {
+                idat.write(chunk, 4, length);
+            }
+        } while (!"IEND".equals(type));
+
+        Inflater inflater = new Inflater();
+        inflater.setInput(idat.toByteArray());
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        while (!inflater.finished()) {
+            int n = inflater.inflate(buffer);
+            assertFalse(n == 0 && inflater.needsInput());
+            total += n;
+        }
+        assertEquals((long) image.getHeight() * (image.getWidth() * bpp + 1), total);
+        assertEquals(0, inflater.getRemaining());
+        inflater.end();
+    }
+
+    void assertRoundTrip(RenderedImage image, int bpp) throws Exception {
+        byte[] png = encode(image, 0.75f);
+        assertValidStream(png, image, bpp);
+        assertSamePixels(image, ImageIO.read(new ByteArrayInputStream(png)));
+    }
+
+    @Test
+    public void testRGBA() throws Exception {
+        // large enough to be split in several bands
+        BufferedImage image = paint(new BufferedImage(1024, 700, BufferedImage.TYPE_4BYTE_ABGR));
+        assertTrue(image.getHeight() * image.getWidth() * 4 > ParallelPNGEncoder.BAND_SIZE * 4);
+        assertRoundTrip(image, 4);
+    }
+
+    @Test
+    public void testIntARGB() throws Exception {
+        assertRoundTrip(paint(new BufferedImage(600, 500, BufferedImage.TYPE_INT_ARGB)), 4);
+    }
+
+    @Test
+    public void testRGB() throws Exception {
+        assertRoundTrip(paint(new BufferedImage(700, 600, BufferedImage.TYPE_3BYTE_BGR)), 3);
+        assertRoundTrip(paint(new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB)), 3);
+    }
+
+    @Test
+    public void testGray() throws Exception {
+        assertRoundTrip(paint(new BufferedImage(800, 800, BufferedImage.TYPE_BYTE_GRAY)), 1);
+    }
+
+    @Test
+    public void testPaletted() throws Exception {
+        byte[] r = new byte[256], g = new byte[256], b = new byte[256], a = new byte[256];
+        for (int i = 0; i < 256; i++) {
+            r[i] = (byte) i;
+            g[i] = (byte) (255 - i);
+            b[i] = (byte) (i * 7);
+            a[i] = (byte) (i < 10 ? i * 25 : 255);
+        }
+        IndexColorModel icm = new IndexColorModel(8, 256, r, g, b, a);
+        BufferedImage image = new BufferedImage(1200, 1200, BufferedImage.TYPE_BYTE_INDEXED,
+                icm);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.getRaster().setSample(x, y, 0, (x / 10 + y / 20) % 256);
+            }
+        }
+        assertRoundTrip(image, 1);
+    }
+
+    @Test
+    public void testPackedPaletted() throws Exception {
+        // 1 bit per pixel, written out as 8 bit indexes
+        BufferedImage image = paint(new BufferedImage(333, 200,
+                BufferedImage.TYPE_BYTE_BINARY));
+        assertRoundTrip(image, 1);
+    }
+
+    @Test
+    public void testTiled() throws Exception {
+        BufferedImage source = paint(new BufferedImage(1000, 900,
+                BufferedImage.TYPE_4BYTE_ABGR));
+        TiledImage tiled = new TiledImage(source, 256, 256);
+        assertRoundTrip(tiled, 4);
+    }
+
+    @Test
+    public void testCompressionLevels() throws Exception {
+        BufferedImage image = paint(new BufferedImage(512, 512, BufferedImage.TYPE_4BYTE_ABGR));
+        byte[] fast = encode(image, 1f);
+        byte[] best = encode(image, 0f);
+        assertTrue(best.length < fast.length);
+        assertSamePixels(image, ImageIO.read(new ByteArrayInputStream(fast)));
+        assertSamePixels(image, ImageIO.read(new ByteArrayInputStream(best)));
+    }
+
+    @Test
+    public void testUnsupported() throws Exception {
+        assertFalse(ParallelPNGEncoder.isSupported(
+                new BufferedImage(10, 10, BufferedImage.TYPE_USHORT_GRAY)));
+        assertFalse(ParallelPNGEncoder.isSupported(
+                new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB_PRE)));
+    }
+
+    @Test
+    public void testAdlerCombine() throws Exception {
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31 + i / 7);
+        }
+        java.util.zip.Adler32 whole = new java.util.zip.Adler32();
+        whole.update(data);
+        java.util.zip.Adler32 first = new java.util.zip.Adler32();
+        first.update(data, 0, 30000);
+        java.util.zip.Adler32 second = new java.util.zip.Adler32();
+        second.update(data, 30000, 70000);
+        assertEquals(whole.getValue(),
+                ParallelPNGEncoder.combine(first.getValue(), second.getValue(), 70000));
+        assertEquals(second.getValue(), ParallelPNGEncoder.combine(1, second.getValue(), 70000));
+    }
+}
@@ -0,0 +1,223 @@
+/* (c) 2017 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.utfgrid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.wms.GetMapRequest;
+import org.geoserver.wms.WMS;
+import org.geotools.data.DataUtilities;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.styling.Style;
+import org.geotools.styling.StyleBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.sort.SortBy;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+public class HitTestCacheTest {
+
+    static final String RESOURCE = "topp:roads";
+
+    static final String KEY = "topp:roads|line";
+
+    HitTestCache cache;
+
+    @Before
+    public void setUp() {
+        WMS wms = mock(WMS.class);
+        when(wms.getCatalog()).thenReturn(mock(Catalog.class));
+        cache = new HitTestCache(wms);
+    }
+
+    ReferencedEnvelope tile(double minX, double minY) {
+        return new ReferencedEnvelope(minX, minX + 10, minY, minY + 10,
+                DefaultGeographicCRS.WGS84);
+    }
+
+    /**
+     * A 10x10 grid with the given feature painted in the cell at col, row
+     */
+    HitTestCache.Grid grid(ReferencedEnvelope area, int col, int row, String featureId) {
+        char[] cells = new char[100];
+        cells[row * 10 + col] = 1;
+        return new HitTestCache.Grid(area, 10, 10, cells, new String[] { null, featureId });
+    }
+
+    @Test
+    public void testLookup() {
+        cache.put(RESOURCE, KEY, tile(0, 0), grid(tile(0, 0), 2, 7, "roads.1"));
+        cache.put(RESOURCE, KEY, tile(10, 0), grid(tile(10, 0), 5, 5, "roads.2"));
+        assertEquals(2, cache.size());
+
+        // row 7 from the top, y = 2.5
+        assertEquals(Arrays.asList("roads.1"),
+                cache.getFeatureIds(RESOURCE, KEY, 2.5, 2.5, 0, 10));
+        assertEquals(Collections.emptyList(),
+                cache.getFeatureIds(RESOURCE, KEY, 4.5, 2.5, 0, 10));
+        assertEquals(Arrays.asList("roads.1"),
+                cache.getFeatureIds(RESOURCE, KEY, 4.5, 2.5, 2, 10));
+        assertEquals(Arrays.asList("roads.2"),
+                cache.getFeatureIds(RESOURCE, KEY, 15.5, 4.5, 0, 10));
+    }
+
+    @Test
+    public void testNearestFirst() {
+        char[] cells = new char[100];
+        cells[5 * 10 + 5] = 1;
+        cells[5 * 10 + 7] = 2;
+        cells[5 * 10 + 4] = 3;
+        ReferencedEnvelope area = tile(0, 0);
+        cache.put(RESOURCE, KEY, area, new HitTestCache.Grid(area, 10, 10, cells,
+                new String[] { null, "roads.1", "roads.2", "roads.3" }));
+
+        assertEquals(Arrays.asList("roads.1", "roads.3", "roads.2"),
+                cache.getFeatureIds(RESOURCE, KEY, 5.5, 4.5, 2, 10));
+        assertEquals(Arrays.asList("roads.1", "roads.3"),
+                cache.getFeatureIds(RESOURCE, KEY, 5.5, 4.5, 2, 2));
+    }
+
+    @Test
+    public void testMissingTiles() {
+        cache.put(RESOURCE, KEY, tile(0, 0), grid(tile(0, 0), 9, 5, "roads.1"));
+        // other maps, other positions
+        assertNull(cache.getFeatureIds(RESOURCE, "topp:roads|other", 9.5, 4.5, 0, 10));
+        assertNull(cache.getFeatureIds(RESOURCE, KEY, 19.5, 4.5, 0, 10));
+        // the search area spills into the next tile
+        assertNull(cache.getFeatureIds(RESOURCE, KEY, 9.5, 4.5, 2, 10));
+        cache.put(RESOURCE, KEY, tile(10, 0), grid(tile(10, 0), 5, 5, "roads.2"));
+        assertEquals(Arrays.asList("roads.1"),
+                cache.getFeatureIds(RESOURCE, KEY, 9.5, 4.5, 2, 10));
+    }
+
+    @Test
+    public void testMisaligned() {
+        cache.put(RESOURCE, KEY, tile(0, 0), grid(tile(0, 0), 2, 7, "roads.1"));
+        cache.put(RESOURCE, KEY, tile(5, 0), grid(tile(5, 0), 2, 7, "roads.2"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testInvalidation() {
+        cache.put(RESOURCE, KEY, tile(0, 0), grid(tile(0, 0), 2, 7, "roads.1"));
+        cache.put("topp:states", "topp:states|polygon", tile(0, 0),
+                grid(tile(0, 0), 2, 7, "states.1"));
+
+        FeatureTypeInfo featureType = mock(FeatureTypeInfo.class);
+        when(featureType.prefixedName()).thenReturn(RESOURCE);
+        CatalogPostModifyEvent event = mock(CatalogPostModifyEvent.class);
+        when(event.getSource()).thenReturn(featureType);
+        cache.handlePostModifyEvent(event);
+        assertEquals(1, cache.size());
+        assertNull(cache.getFeatureIds(RESOURCE, KEY, 2.5, 2.5, 0, 10));
+
+        cache.reloaded();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testToGrid() throws Exception {
+        SimpleFeatureType type = DataUtilities.createType("roads", "geom:LineString");
+        SimpleFeature f1 = DataUtilities.createFeature(type, "roads.1=LINESTRING(0 0, 1 1)");
+        SimpleFeature f2 = DataUtilities.createFeature(type, "roads.2=LINESTRING(0 0, 1 1)");
+        UTFGridEntries entries = new UTFGridEntries();
+        BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(1, 1, entries.getKeyForFeature(f1));
+        image.setRGB(8, 3, entries.getKeyForFeature(f2));
+
+        ReferencedEnvelope area = tile(0, 0);
+        HitTestCache.Grid grid = HitTestCache.toGrid(area, image, entries);
+        assertNotNull(grid);
+        assertEquals(3, grid.featureIds.length);
+        assertEquals("roads.1", grid.getFeatureId(1.5, 8.5));
+        assertEquals("roads.2", grid.getFeatureId(8.5, 6.5));
+        assertNull(grid.getFeatureId(5.5, 5.5));
+
+        // colors not matching any feature
+        image.setRGB(5, 5, 0xFF00FF);
+        assertNull(HitTestCache.toGrid(area, image, entries));
+    }
+
+    @Test
+    public void testKey() {
+        Style style = new StyleBuilder().createStyle();
+        style.setName("line");
+
+        GetMapRequest request = new GetMapRequest();
+        request.setCrs(DefaultGeographicCRS.WGS84);
+        request.setWidth(256);
+        request.setHeight(256);
+        request.setBbox(new Envelope(0, 10, 0, 10));
+        String key = HitTestCache.getKey(request, RESOURCE, style, null, null, null);
+        assertNotNull(key);
+
+        // another tile at the same zoom level
+        request.setBbox(new Envelope(10, 20, 0, 10));
+        assertEquals(key, HitTestCache.getKey(request, RESOURCE, style, null, null, null));
+
+        // not the same zoom level
+        request.setBbox(new Envelope(10, 15, 0, 5));
+        assertNotEquals(key, HitTestCache.getKey(request, RESOURCE, style, null, null, null));
+
+        // sorted maps are not cached
+        assertNull(HitTestCache.getKey(request, RESOURCE, style, null, null, new SortBy[] {
+                SortBy.NATURAL_ORDER }));
+    }
+
+    @Test
+    public void testKeyDependsOnUser() {
+        Style style = new StyleBuilder().createStyle();
+        style.setName("line");
+        GetMapRequest request = new GetMapRequest();
+        request.setCrs(DefaultGeographicCRS.WGS84);
+        request.setWidth(256);
+        request.setHeight(256);
+        request.setBbox(new Envelope(0, 10, 0, 10));
+        String anonymous = HitTestCache.getKey(request, RESOURCE, style, null, null, null);
+        try {
+            SecurityContextHolder.getContext().setAuthentication(
+                    new UsernamePasswordAuthenticationToken("bob", null, Arrays.asList(
+                            new SimpleGrantedAuthority("B"), new SimpleGrantedAuthority("A"))));
+            String bob = HitTestCache.getKey(request, RESOURCE, style, null, null, null);
+            assertNotEquals(anonymous, bob);
+            assertTrue(bob.endsWith("|user=bob|roles=[A, B]"));
+
+            SecurityContextHolder.getContext().setAuthentication(
+                    new UsernamePasswordAuthenticationToken("alice", null, Arrays.asList(
+                            new SimpleGrantedAuthority("A"), new SimpleGrantedAuthority("B"))));
+            assertNotEquals(bob, HitTestCache.getKey(request, RESOURCE, style, null, null, null));
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    @Test
+    public void testDestroy() throws Exception {
+        ExecutorService executor = cache.getExecutor();
+        cache.destroy();
+        assertTrue(executor.isShutdown());
+    }
+}